@@ -16,12 +16,14 @@
 
 package com.esri.arcgisruntime.sample.addfeaturesfeatureservice;
 
+import java.io.File;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.widget.Toast;
@@ -31,10 +33,10 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.FeatureEditResult;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.Viewpoint;
@@ -45,10 +47,22 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // features added are sent to the server once this many are waiting, or after a delay
+  private static final int EDIT_BATCH_SIZE = 10;
+  private static final long EDIT_BATCH_DELAY_MILLIS = 5000;
+  private static final long EDIT_RETRY_MILLIS = 1000;
+  private static final long EDIT_MAX_RETRY_MILLIS = 60000;
+
+  // the edits belong to the process rather than the activity, so a batch being applied when the activity is
+  // recreated isn't restored to the new activity's table and applied again
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+  private static EditQueue sEditQueue;
+
   private MapView mMapView;
 
   private ServiceFeatureTable mServiceFeatureTable;
 
+
   @Override protected void onCreate(@Nullable Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
@@ -65,6 +79,35 @@ public class MainActivity extends AppCompatActivity {
     // create service feature table from URL
     mServiceFeatureTable = new ServiceFeatureTable(getString(R.string.service_layer_url));
 
+    // queue the features added, and send them to the server in batches
+    if (sEditQueue == null) {
+      sEditQueue = new EditQueue(new File(getFilesDir(), "edits.journal"), (task, delayMillis) -> {
+        sMainHandler.postDelayed(task, delayMillis);
+        return () -> sMainHandler.removeCallbacks(task);
+      }, EDIT_BATCH_SIZE, EDIT_BATCH_DELAY_MILLIS, EDIT_RETRY_MILLIS, EDIT_MAX_RETRY_MILLIS);
+    }
+
+    // once the table has loaded, add the features which hadn't been sent to the server when the app was last closed
+    mServiceFeatureTable.addDoneLoadingListener(() -> {
+      if (mServiceFeatureTable.getLoadStatus() == LoadStatus.LOADED) {
+        sEditQueue.attach(EditQueue.serviceEditService(mServiceFeatureTable),
+            (edits, onDone) -> EditQueue.restore(mServiceFeatureTable, edits, onDone), new EditQueue.Listener() {
+          @Override public void onBatchApplied(int editCount, int failedCount, Exception firstError) {
+            if (failedCount == 0) {
+              logToUser(false, getResources().getQuantityString(R.plurals.features_added, editCount, editCount));
+            } else {
+              logToUser(true, getString(R.string.error_applying_edits, firstError.getMessage()));
+            }
+          }
+
+          @Override public void onBatchFailed(Exception e, long retryMillis) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logToUser(true, getString(R.string.error_applying_edits_retrying, message, retryMillis / 1000));
+          }
+        });
+      }
+    });
+
     // create a feature layer from table
     FeatureLayer featureLayer = new FeatureLayer(mServiceFeatureTable);
 
@@ -93,8 +136,7 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Adds a new Feature to a ServiceFeatureTable and applies the changes to the
-   * server.
+   * Adds a new Feature to a ServiceFeatureTable and queues it to be applied to the server.
    *
    * @param mapPoint     location to add feature
    * @param featureTable service feature table to add feature
@@ -111,39 +153,21 @@ public class MainActivity extends AppCompatActivity {
 
     // check if feature can be added to feature table
     if (featureTable.canAdd()) {
-      // add the new feature to the feature table and to server
-      featureTable.addFeatureAsync(feature).addDoneListener(() -> applyEdits(featureTable));
+      // add the new feature to the feature table, and queue it to be sent to the server with the next batch
+      final ListenableFuture<Void> addFeatureFuture = featureTable.addFeatureAsync(feature);
+      addFeatureFuture.addDoneListener(() -> {
+        try {
+          addFeatureFuture.get();
+          sEditQueue.add(attributes, mapPoint.toJson());
+        } catch (InterruptedException | ExecutionException e) {
+          logToUser(true, getString(R.string.error_applying_edits, e.getCause().getMessage()));
+        }
+      });
     } else {
       runOnUiThread(() -> logToUser(true, getString(R.string.error_cannot_add_to_feature_table)));
     }
   }
 
-  /**
-   * Sends any edits on the ServiceFeatureTable to the server.
-   *
-   * @param featureTable service feature table
-   */
-  private void applyEdits(ServiceFeatureTable featureTable) {
-
-    // apply the changes to the server
-    final ListenableFuture<List<FeatureEditResult>> editResult = featureTable.applyEditsAsync();
-    editResult.addDoneListener(() -> {
-      try {
-        List<FeatureEditResult> editResults = editResult.get();
-        // check if the server edit was successful
-        if (editResults != null && !editResults.isEmpty()) {
-          if (!editResults.get(0).hasCompletedWithErrors()) {
-            runOnUiThread(() -> logToUser(false, getString(R.string.feature_added)));
-          } else {
-            throw editResults.get(0).getError();
-          }
-        }
-      } catch (InterruptedException | ExecutionException e) {
-        runOnUiThread(() -> logToUser(true, getString(R.string.error_applying_edits, e.getCause().getMessage())));
-      }
-    });
-  }
-
   /**
    * Shows a Toast to user and logs to logcat.
    *
@@ -165,11 +189,15 @@ public class MainActivity extends AppCompatActivity {
   }
 
   @Override protected void onPause() {
+    // send the features waiting for the next batch while the app is still in the foreground
+    sEditQueue.flush();
+    Log.i(TAG, "Edit queue: " + sEditQueue);
     mMapView.pause();
     super.onPause();
   }
 
   @Override protected void onDestroy() {
+    sEditQueue.detach();
     mMapView.dispose();
     super.onDestroy();
   }
@@ -0,0 +1,195 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.animate3dgraphic;
+
+/**
+ * Blends the key frames of a {@link MissionTrack} so a graphic can be placed at any fractional key frame rather than
+ * snapping from one key frame to the next. Position is interpolated linearly in degrees or along the great circle
+ * between key frames, and attitude is interpolated with quaternion slerp so heading takes the short way around at the
+ * 359 to 0 degree boundary.
+ *
+ * Key frame quaternions are computed once up front. Sampling writes into a caller owned {@link Pose} and allocates
+ * nothing, so it can be called from every display frame.
+ */
+final class KeyframeInterpolator {
+
+  /**
+   * How position is interpolated between two key frames.
+   */
+  enum PositionMode {
+    LINEAR,
+    GEODESIC
+  }
+
+  private final MissionTrack mTrack;
+  private final PositionMode mPositionMode;
+  // attitude of each key frame as a unit quaternion, stored as w, x, y, z
+  private final double[] mQuaternions;
+
+  KeyframeInterpolator(MissionTrack track, PositionMode positionMode) {
+    mTrack = track;
+    mPositionMode = positionMode;
+    mQuaternions = new double[track.size() * 4];
+    for (int i = 0; i < track.size(); i++) {
+      toQuaternion(track.getHeading(i), track.getPitch(i), track.getRoll(i), mQuaternions, i * 4);
+    }
+  }
+
+  /**
+   * @return the length of the mission in key frames, the exclusive upper bound of {@link #sample(double, Pose)}
+   */
+  double getDuration() {
+    return mTrack.size();
+  }
+
+  /**
+   * Samples the track at a fractional key frame. The final key frame blends back into the first so a looping
+   * animation doesn't jump when it wraps.
+   *
+   * @param frame position on the track in key frames, wrapped into [0, duration)
+   * @param out   pose to write the blended position and attitude into
+   */
+  void sample(double frame, Pose out) {
+    int size = mTrack.size();
+    if (size == 0) {
+      return;
+    }
+    frame %= size;
+    if (frame < 0) {
+      frame += size;
+    }
+    int a = (int) frame;
+    int b = a + 1 == size ? 0 : a + 1;
+    double t = frame - a;
+
+    if (mPositionMode == PositionMode.GEODESIC) {
+      interpolateGreatCircle(a, b, t, out);
+    } else {
+      out.x = lerp(mTrack.getX(a), mTrack.getX(b), t);
+      out.y = lerp(mTrack.getY(a), mTrack.getY(b), t);
+    }
+    out.z = lerp(mTrack.getZ(a), mTrack.getZ(b), t);
+    slerp(a * 4, b * 4, t, out);
+  }
+
+  private static double lerp(double a, double b, double t) {
+    return a + (b - a) * t;
+  }
+
+  /**
+   * Interpolates longitude and latitude along the great circle between two key frames on a spherical earth.
+   */
+  private void interpolateGreatCircle(int a, int b, double t, Pose out) {
+    double lon1 = Math.toRadians(mTrack.getX(a));
+    double lat1 = Math.toRadians(mTrack.getY(a));
+    double lon2 = Math.toRadians(mTrack.getX(b));
+    double lat2 = Math.toRadians(mTrack.getY(b));
+    double cosLat1 = Math.cos(lat1);
+    double cosLat2 = Math.cos(lat2);
+    double x1 = cosLat1 * Math.cos(lon1);
+    double y1 = cosLat1 * Math.sin(lon1);
+    double z1 = Math.sin(lat1);
+    double x2 = cosLat2 * Math.cos(lon2);
+    double y2 = cosLat2 * Math.sin(lon2);
+    double z2 = Math.sin(lat2);
+    double dot = Math.max(-1, Math.min(1, x1 * x2 + y1 * y2 + z1 * z2));
+    double angle = Math.acos(dot);
+    double w1;
+    double w2;
+    if (angle < 1e-12) {
+      w1 = 1 - t;
+      w2 = t;
+    } else {
+      double sinAngle = Math.sin(angle);
+      w1 = Math.sin((1 - t) * angle) / sinAngle;
+      w2 = Math.sin(t * angle) / sinAngle;
+    }
+    double x = w1 * x1 + w2 * x2;
+    double y = w1 * y1 + w2 * y2;
+    double z = w1 * z1 + w2 * z2;
+    out.x = Math.toDegrees(Math.atan2(y, x));
+    out.y = Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+  }
+
+  /**
+   * Spherically interpolates between two key frame quaternions and writes the result as heading, pitch and roll.
+   */
+  private void slerp(int a, int b, double t, Pose out) {
+    double[] q = mQuaternions;
+    double dot = q[a] * q[b] + q[a + 1] * q[b + 1] + q[a + 2] * q[b + 2] + q[a + 3] * q[b + 3];
+    // q and -q are the same rotation, flip one so the blend takes the shorter arc
+    double sign = 1;
+    if (dot < 0) {
+      dot = -dot;
+      sign = -1;
+    }
+    double wa;
+    double wb;
+    if (dot > 0.9995) {
+      // nearly identical rotations, fall back to a normalized linear blend
+      wa = 1 - t;
+      wb = t * sign;
+    } else {
+      double angle = Math.acos(dot);
+      double sinAngle = Math.sin(angle);
+      wa = Math.sin((1 - t) * angle) / sinAngle;
+      wb = Math.sin(t * angle) / sinAngle * sign;
+    }
+    double w = wa * q[a] + wb * q[b];
+    double x = wa * q[a + 1] + wb * q[b + 1];
+    double y = wa * q[a + 2] + wb * q[b + 2];
+    double z = wa * q[a + 3] + wb * q[b + 3];
+    double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+    w /= norm;
+    x /= norm;
+    y /= norm;
+    z /= norm;
+
+    // heading about the vertical axis, then pitch, then roll
+    out.heading = Math.toDegrees(Math.atan2(2 * (w * z + x * y), 1 - 2 * (y * y + z * z)));
+    out.pitch = Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, 2 * (w * y - z * x)))));
+    out.roll = Math.toDegrees(Math.atan2(2 * (w * x + y * z), 1 - 2 * (x * x + y * y)));
+  }
+
+  /**
+   * Converts heading, pitch and roll in degrees to a unit quaternion, composed in heading, pitch, roll order.
+   */
+  private static void toQuaternion(double heading, double pitch, double roll, double[] out, int offset) {
+    double ch = Math.cos(Math.toRadians(heading) / 2);
+    double sh = Math.sin(Math.toRadians(heading) / 2);
+    double cp = Math.cos(Math.toRadians(pitch) / 2);
+    double sp = Math.sin(Math.toRadians(pitch) / 2);
+    double cr = Math.cos(Math.toRadians(roll) / 2);
+    double sr = Math.sin(Math.toRadians(roll) / 2);
+    out[offset] = cr * cp * ch + sr * sp * sh;
+    out[offset + 1] = sr * cp * ch - cr * sp * sh;
+    out[offset + 2] = cr * sp * ch + sr * cp * sh;
+    out[offset + 3] = cr * cp * sh - sr * sp * ch;
+  }
+
+  /**
+   * Mutable position and attitude written by {@link #sample(double, Pose)}.
+   */
+  static final class Pose {
+    double x;
+    double y;
+    double z;
+    double heading;
+    double pitch;
+    double roll;
+  }
+}
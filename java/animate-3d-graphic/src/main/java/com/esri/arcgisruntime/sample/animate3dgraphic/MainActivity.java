@@ -16,21 +16,15 @@
 
 package com.esri.arcgisruntime.sample.animate3dgraphic;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import android.content.res.AssetManager;
+import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
@@ -43,6 +37,7 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.PointCollection;
 import com.esri.arcgisruntime.geometry.Polyline;
@@ -70,9 +65,23 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
-  private List<Map<String, Object>> mMissionData;
-  private Timer mTimer;
-  private int mKeyFrame;
+  // number of display frames between logs of the average interpolation cost
+  private static final int FRAME_COST_LOG_INTERVAL = 600;
+
+  // reads the mission data, which parses the .csv on first use, off the main thread
+  private final ExecutorService mMissionLoader = Executors.newSingleThreadExecutor();
+  // the mission last selected, so the data of a mission selected before it is ignored once read
+  private String mMission;
+  private MissionTrack mMissionData;
+  private KeyframeInterpolator mInterpolator;
+  private final KeyframeInterpolator.Pose mPose = new KeyframeInterpolator.Pose();
+  private final AnimationClock.OnTickListener mTickListener = this::onFrame;
+  private AnimationClock mAnimationClock;
+  // fractional position on the mission in key frames
+  private double mKeyFrame;
+  private double mKeyFramesPerSecond;
+  private long mInterpolationNanos;
+  private int mInterpolatedFrames;
 
   private TextView mCurrAltitude;
   private TextView mCurrHeading;
@@ -97,9 +106,13 @@ public class MainActivity extends AppCompatActivity {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    // load tank model from assets into cache directory
-    copyFileFromAssetsToCache(getString(R.string.bristol_model));
-    copyFileFromAssetsToCache(getString(R.string.bristol_skin));
+    // create a clock which ticks on every display frame and pauses with the activity
+    mAnimationClock = new AnimationClock(getWindowManager().getDefaultDisplay().getRefreshRate());
+    getLifecycle().addObserver(mAnimationClock);
+
+    // stage the plane model from assets into the cache directory in the background
+    ListenableFuture<Map<String, File>> stagedModel = new AssetStager(this)
+        .stage(getString(R.string.bristol_model), getString(R.string.bristol_skin));
 
     // create a scene and add it to the scene view
     mSceneView = findViewById(R.id.sceneView);
@@ -155,11 +168,20 @@ public class MainActivity extends AppCompatActivity {
     plane2dOverlay.getGraphics().add(mPlane2D);
     mMapView.getGraphicsOverlays().add(plane2dOverlay);
 
-    // when the plane model is done loading, create an orbit camera controller to follow the plane
-    loadModel().addDoneLoadingListener(() -> {
-      mOrbitCameraController = new OrbitGeoElementCameraController(mPlane3D, 30.0);
-      mOrbitCameraController.setCameraPitchOffset(75.0);
-      mSceneView.setCameraController(mOrbitCameraController);
+    // once the plane model is staged, load it and create an orbit camera controller to follow the plane
+    stagedModel.addDoneListener(() -> {
+      try {
+        File model = stagedModel.get().get(getString(R.string.bristol_model));
+        loadModel(model).addDoneLoadingListener(() -> {
+          mOrbitCameraController = new OrbitGeoElementCameraController(mPlane3D, 30.0);
+          mOrbitCameraController.setCameraPitchOffset(75.0);
+          mSceneView.setCameraController(mOrbitCameraController);
+        });
+      } catch (InterruptedException | ExecutionException e) {
+        String error = "Error staging plane model: " + e.getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
     });
 
     // get references to and wire up UI elements
@@ -187,7 +209,9 @@ public class MainActivity extends AppCompatActivity {
     mMissionProgressSeekBar = findViewById(R.id.missionProgressSeekBar);
     mMissionProgressSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
       @Override public void onProgressChanged(SeekBar seekBar, int i, boolean b) {
-        mKeyFrame = i;
+        if (b) {
+          mKeyFrame = i;
+        }
       }
 
       @Override public void onStartTrackingTouch(SeekBar seekBar) {
@@ -257,11 +281,12 @@ public class MainActivity extends AppCompatActivity {
 
   /**
    * Load the plane model from the cache, use to construct a Model Scene Symbol and add it to the scene's graphic overlay.
+   *
+   * @param model staged plane model file
    */
-  private ModelSceneSymbol loadModel() {
+  private ModelSceneSymbol loadModel(File model) {
     // create a graphic with a ModelSceneSymbol of a plane to add to the scene
-    String pathToModel = getCacheDir() + File.separator + getString(R.string.bristol_model);
-    ModelSceneSymbol plane3DSymbol = new ModelSceneSymbol(pathToModel, 1.0);
+    ModelSceneSymbol plane3DSymbol = new ModelSceneSymbol(model.getPath(), 1.0);
     plane3DSymbol.loadAsync();
     mPlane3D = new Graphic(new Point(0, 0, 0, SpatialReferences.getWgs84()), plane3DSymbol);
     mSceneOverlay.getGraphics().add(mPlane3D);
@@ -277,17 +302,32 @@ public class MainActivity extends AppCompatActivity {
 
     stopAnimation();
 
-    // clear previous mission data
-    mMissionData = new ArrayList<>();
+    // get mission data in the background
+    mMission = mission;
+    mMissionLoader.execute(() -> {
+      MissionTrack track = getMissionData(mission);
+      runOnUiThread(() -> {
+        if (mission.equals(mMission) && !isDestroyed()) {
+          showMission(track);
+        }
+      });
+    });
+  }
 
-    // get mission data
-    mMissionData = getMissionData(mission);
+  /**
+   * Show the route of a mission and animate it from the current key frame progress point.
+   *
+   * @param track the mission data
+   */
+  private void showMission(MissionTrack track) {
+    mMissionData = track;
+    mInterpolator = new KeyframeInterpolator(mMissionData, KeyframeInterpolator.PositionMode.GEODESIC);
     mMissionProgressSeekBar.setMax(mMissionData.size());
 
     // draw mission route on mini map
     PointCollection points = new PointCollection(SpatialReferences.getWgs84());
-    for (Map<String, Object> ordinates : mMissionData) {
-      points.add((Point) ordinates.get("POSITION"));
+    for (int i = 0; i < mMissionData.size(); i++) {
+      points.add(mMissionData.getX(i), mMissionData.getY(i), mMissionData.getZ(i));
     }
     Polyline route = new Polyline(points);
     mRouteGraphic.setGeometry(route);
@@ -300,115 +340,140 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Loads the mission data from a .csv file into memory.
+   * Loads the mission data into memory. The .csv file is only parsed on first use, and again once the app has been
+   * updated, after which the parsed track is memory mapped from a binary copy in the cache directory. Called in the
+   * background.
    *
    * @param mission name of the .csv file containing the mission data
-   * @return ordered list of mapped key value pairs representing coordinates and rotation parameters for each step of
-   * the mission
+   * @return columnar track of coordinates and rotation parameters for each step of the mission
    */
-  private List<Map<String, Object>> getMissionData(String mission) {
-    List<Map<String, Object>> missionList = new ArrayList<>();
-
-    // open a file reader to the mission file that automatically closes after read
-    try (BufferedReader missionFile = new BufferedReader(new InputStreamReader(getAssets().open(mission)))) {
-      String line;
-      while ((line = missionFile.readLine()) != null) {
-        String[] l = line.split(",");
-        Map<String, Object> ordinates = new HashMap<>();
-        ordinates.put("POSITION",
-            new Point(Float.valueOf(l[0]), Float.valueOf(l[1]), Float.valueOf(l[2]), SpatialReferences.getWgs84()));
-        ordinates.put("HEADING", Float.valueOf(l[3]));
-        ordinates.put("PITCH", Float.valueOf(l[4]));
-        ordinates.put("ROLL", Float.valueOf(l[5]));
-        missionList.add(ordinates);
-      }
+  private MissionTrack getMissionData(String mission) {
+    File sidecar = new File(getCacheDir(), mission + ".track");
+    boolean cached = sidecar.isFile();
+    Runtime runtime = Runtime.getRuntime();
+    long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+    long start = System.nanoTime();
+    try {
+      MissionTrack track = MissionTrack.load(() -> getAssets().open(mission), sidecar, getAppUpdateTime());
+      long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+      Log.d(TAG, String.format("Loaded %d key frames of %s from %s in %.2f ms, heap delta %d KB", track.size(), mission,
+          cached ? "mapped track" : "csv", (System.nanoTime() - start) / 1e6, (heapAfter - heapBefore) / 1024));
+      return track;
     } catch (IOException e) {
       String error = "Error reading mission file: " + e.getMessage();
-      Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+      runOnUiThread(() -> Toast.makeText(this, error, Toast.LENGTH_LONG).show());
       Log.e(TAG, error);
+      return MissionTrack.EMPTY;
+    }
+  }
+
+  /**
+   * @return the time the app was last installed or updated, which is when the mission files in its assets can change
+   */
+  private long getAppUpdateTime() {
+    try {
+      return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+      // the app's own package is always found
+      return 0;
     }
-    return missionList;
   }
 
   /**
-   * Start the animation.
+   * Start the animation. The plane is moved on every display frame and speed only scales how fast the mission
+   * timeline advances, so a slow speed still animates smoothly between key frames.
    *
    * @param speed at which key frames increment
    */
   private void startAnimation(int speed) {
 
-    // stop the current animation timer
+    // stop the current animation
     stopAnimation();
 
-    // calculate period from speed
-    int period = mSpeedSeekBar.getMax() - speed + 10;
+    // the speed seek bar used to set a timer period in ms per key frame, keep the same rates as a time scale
+    mKeyFramesPerSecond = 1000.0 / (mSpeedSeekBar.getMax() - speed + 10);
 
-    // create a timer to animate the tank
-    mTimer = new Timer();
-    mTimer.scheduleAtFixedRate(new TimerTask() {
-      @Override public void run() {
-        if (mMissionData == null) {
-          return;
-        }
-        // reset key frame at end of mission
-        if (mKeyFrame >= mMissionData.size()) {
-          mKeyFrame = 0;
-        }
-        // animate the given key frame
-        animate(mKeyFrame);
-        mKeyFrame++;
-      }
-    }, 0, period);
+    mAnimationClock.addOnTickListener(mTickListener);
   }
 
   /**
-   * Stop the animation by canceling the timer.
+   * Stop the animation by unsubscribing from the animation clock.
    */
   private void stopAnimation() {
-    if (mTimer != null) {
-      mTimer.cancel();
+    mAnimationClock.removeOnTickListener(mTickListener);
+  }
+
+  /**
+   * Advances the mission timeline by the time elapsed since the previous display frame and animates the result.
+   *
+   * @param frameTimeNanos vsync time of the frame being rendered
+   * @param elapsedNanos   time since the previous frame
+   */
+  private void onFrame(long frameTimeNanos, long elapsedNanos) {
+    if (mInterpolator == null || mMissionData.size() == 0) {
+      return;
+    }
+    mKeyFrame += elapsedNanos / 1e9 * mKeyFramesPerSecond;
+    // reset key frame at end of mission
+    if (mKeyFrame >= mInterpolator.getDuration()) {
+      mKeyFrame %= mInterpolator.getDuration();
     }
+
+    long start = System.nanoTime();
+    mInterpolator.sample(mKeyFrame, mPose);
+    mInterpolationNanos += System.nanoTime() - start;
+    if (++mInterpolatedFrames == FRAME_COST_LOG_INTERVAL) {
+      Log.d(TAG, String.format("Average interpolation cost %.2f us per frame, %d missed display frames",
+          mInterpolationNanos / 1e3 / mInterpolatedFrames, mAnimationClock.getMissedFrames()));
+      mInterpolationNanos = 0;
+      mInterpolatedFrames = 0;
+    }
+    animate(mPose);
   }
 
   /**
-   * Animates a single keyframe corresponding to the index in the mission data profile. Updates the position and
-   * rotation of the 2D/3D plane graphic and sets the camera viewpoint.
+   * Animates the plane to an interpolated pose on the mission. Updates the position and rotation of the 2D/3D plane
+   * graphic and sets the camera viewpoint.
    *
-   * @param keyFrame index in mission data to show
+   * @param pose interpolated position and attitude to show
    */
-  private void animate(int keyFrame) {
+  private void animate(KeyframeInterpolator.Pose pose) {
 
-    // get the next position from the mission data
-    Map<String, Object> datum = mMissionData.get(keyFrame);
-    Point position = (Point) datum.get("POSITION");
+    // the plane model is still being staged
+    if (mPlane3D == null) {
+      return;
+    }
+
+    Point position = new Point(pose.x, pose.y, pose.z, SpatialReferences.getWgs84());
+    float heading = (float) pose.heading;
+    float pitch = (float) pose.pitch;
+    float roll = (float) pose.roll;
 
     // update the HUD
-    runOnUiThread(() -> {
-      mCurrAltitude.setText(String.format("%.2f", position.getZ()));
-      mCurrHeading.setText(String.format("%.2f", (float) datum.get("HEADING")));
-      mCurrPitch.setText(String.format("%.2f", (float) datum.get("PITCH")));
-      mCurrRoll.setText(String.format("%.2f", (float) datum.get("ROLL")));
-    });
+    mCurrAltitude.setText(String.format("%.2f", pose.z));
+    mCurrHeading.setText(String.format("%.2f", heading));
+    mCurrPitch.setText(String.format("%.2f", pitch));
+    mCurrRoll.setText(String.format("%.2f", roll));
 
     // update mission progress seek bar
-    mMissionProgressSeekBar.setProgress(mKeyFrame);
+    mMissionProgressSeekBar.setProgress((int) mKeyFrame);
 
     // update plane's position and orientation
     mPlane3D.setGeometry(position);
-    mPlane3D.getAttributes().put("HEADING", datum.get("HEADING"));
-    mPlane3D.getAttributes().put("PITCH", datum.get("PITCH"));
-    mPlane3D.getAttributes().put("ROLL", datum.get("ROLL"));
+    mPlane3D.getAttributes().put("HEADING", heading);
+    mPlane3D.getAttributes().put("PITCH", pitch);
+    mPlane3D.getAttributes().put("ROLL", roll);
 
     // update mini map plane's position and rotation
     mPlane2D.setGeometry(position);
     if (mFollowFreeCamButton.isSelected()) {
-      if (mMapView == null || position == null) {
+      if (mMapView == null) {
         return;
       }
       // rotate the map view in the direction of motion to make graphic always point up
-      mMapView.setViewpoint(new Viewpoint(position, mMapView.getMapScale(), 360 + (float) datum.get("HEADING")));
+      mMapView.setViewpoint(new Viewpoint(position, mMapView.getMapScale(), 360 + heading));
     } else {
-      mPlane2D.getAttributes().put("ANGLE", 360 + (float) datum.get("HEADING") - mMapView.getMapRotation());
+      mPlane2D.getAttributes().put("ANGLE", 360 + heading - mMapView.getMapRotation());
     }
   }
 
@@ -427,38 +492,10 @@ public class MainActivity extends AppCompatActivity {
     }
   }
 
-  /**
-   * Copy the given file from the app's assets folder to the app's cache directory.
-   *
-   * @param fileName as String
-   */
-  private void copyFileFromAssetsToCache(String fileName) {
-    AssetManager assetManager = getApplicationContext().getAssets();
-    File file = new File(getCacheDir() + File.separator + fileName);
-    if (!file.exists()) {
-      try {
-        InputStream in = assetManager.open(fileName);
-        OutputStream out = new FileOutputStream(getCacheDir() + File.separator + fileName);
-        byte[] buffer = new byte[1024];
-        int read = in.read(buffer);
-        while (read != -1) {
-          out.write(buffer, 0, read);
-          read = in.read(buffer);
-        }
-        Log.i(TAG, fileName + " copied to cache.");
-      } catch (Exception e) {
-        Log.e(TAG, "Error writing " + fileName + " to cache. " + e.getMessage());
-      }
-    } else {
-      Log.i(TAG, fileName + " already in cache.");
-    }
-  }
-
   @Override
   protected void onPause() {
     mSceneView.pause();
     mMapView.pause();
-    mTimer.cancel();
     super.onPause();
   }
 
@@ -471,6 +508,7 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    mMissionLoader.shutdown();
     super.onDestroy();
     mSceneView.resume();
     mMapView.dispose();
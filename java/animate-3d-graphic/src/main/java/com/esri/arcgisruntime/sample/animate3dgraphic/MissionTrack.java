@@ -0,0 +1,346 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.animate3dgraphic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Columnar, primitive store of the key frames of a mission. Each key frame is spread across parallel arrays of
+ * position (x, y, z) and attitude (heading, pitch, roll), so a mission of any length costs six arrays rather than one
+ * map and four boxed objects per key frame.
+ *
+ * A track is parsed from the mission .csv once and persisted as a binary sidecar file which later launches memory map
+ * and copy straight into the column arrays without any text parsing. The sidecar records a stamp of the source it was
+ * parsed from, such as the time the app was last updated, and is rebuilt once the stamp changes. The class has no Android dependencies so that it
+ * can be loaded and measured on the JVM.
+ */
+final class MissionTrack {
+
+  // "MTRK" in ASCII, followed by the format version
+  private static final int MAGIC = 0x4D54524B;
+  private static final int VERSION = 2;
+  // magic, version, key frame count, one reserved int to keep the columns 8 byte aligned and the source stamp
+  private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+
+  /**
+   * Track with no key frames, used when a mission can't be loaded.
+   */
+  static final MissionTrack EMPTY = new MissionTrack(0, new double[0], new double[0], new double[0], new float[0],
+      new float[0], new float[0]);
+
+  private final int mSize;
+  private final double[] mX;
+  private final double[] mY;
+  private final double[] mZ;
+  private final float[] mHeading;
+  private final float[] mPitch;
+  private final float[] mRoll;
+
+  private MissionTrack(int size, double[] x, double[] y, double[] z, float[] heading, float[] pitch, float[] roll) {
+    mSize = size;
+    mX = x;
+    mY = y;
+    mZ = z;
+    mHeading = heading;
+    mPitch = pitch;
+    mRoll = roll;
+  }
+
+  /**
+   * Loads a track from its binary sidecar if one exists, otherwise parses the mission .csv and writes the sidecar for
+   * the next launch. A sidecar which can't be read, or was parsed from another version of the source, is discarded and
+   * rebuilt. Reads files, so shouldn't be called on the main thread.
+   *
+   * @param csv         opens the mission .csv, only called when the sidecar is missing, unreadable or stale
+   * @param sidecar     binary file caching the parsed track
+   * @param sourceStamp changes whenever the mission .csv may have changed
+   * @return the mission track
+   * @throws IOException if the mission .csv can't be read
+   */
+  static MissionTrack load(CsvSource csv, File sidecar, long sourceStamp) throws IOException {
+    if (sidecar.isFile()) {
+      try {
+        return map(sidecar, sourceStamp);
+      } catch (IOException e) {
+        // fall through and rebuild the sidecar from the source data
+        sidecar.delete();
+      }
+    }
+    MissionTrack track;
+    try (InputStream in = csv.open()) {
+      track = parseCsv(in);
+    }
+    try {
+      track.write(sidecar, sourceStamp);
+    } catch (IOException e) {
+      // the sidecar is only an optimization, the parsed track is still valid
+      sidecar.delete();
+    }
+    return track;
+  }
+
+  /**
+   * Parses mission data in the form x,y,z,heading,pitch,roll with one key frame per line. Lines may be terminated by
+   * \n, \r or \r\n. The text is scanned byte by byte rather than split into a string array per line.
+   *
+   * @param in stream of the mission .csv
+   * @return the parsed track
+   * @throws IOException if the stream can't be read or a line doesn't hold six values
+   */
+  static MissionTrack parseCsv(InputStream in) throws IOException {
+    int capacity = 1024;
+    double[] x = new double[capacity];
+    double[] y = new double[capacity];
+    double[] z = new double[capacity];
+    float[] heading = new float[capacity];
+    float[] pitch = new float[capacity];
+    float[] roll = new float[capacity];
+    double[] values = new double[6];
+
+    NumberScanner scanner = new NumberScanner(in);
+    int size = 0;
+    while (scanner.nextLine(values)) {
+      if (size == capacity) {
+        capacity *= 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        heading = Arrays.copyOf(heading, capacity);
+        pitch = Arrays.copyOf(pitch, capacity);
+        roll = Arrays.copyOf(roll, capacity);
+      }
+      x[size] = values[0];
+      y[size] = values[1];
+      z[size] = values[2];
+      heading[size] = (float) values[3];
+      pitch[size] = (float) values[4];
+      roll[size] = (float) values[5];
+      size++;
+    }
+    return new MissionTrack(size, Arrays.copyOf(x, size), Arrays.copyOf(y, size), Arrays.copyOf(z, size),
+        Arrays.copyOf(heading, size), Arrays.copyOf(pitch, size), Arrays.copyOf(roll, size));
+  }
+
+  /**
+   * Memory maps a sidecar file written by {@link #write(File, long)} and bulk copies each column into its array.
+   *
+   * @param sidecar     binary track file
+   * @param sourceStamp stamp of the source the track must have been parsed from
+   * @return the mapped track
+   * @throws IOException if the file can't be mapped, is not a valid track file or is stale
+   */
+  static MissionTrack map(File sidecar, long sourceStamp) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(sidecar, "r"); FileChannel channel = file.getChannel()) {
+      long length = channel.size();
+      if (length < HEADER_BYTES) {
+        throw new IOException("Truncated mission track: " + sidecar);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      buffer.order(ByteOrder.nativeOrder());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Unrecognized mission track: " + sidecar);
+      }
+      int size = buffer.getInt();
+      buffer.getInt();
+      if (buffer.getLong() != sourceStamp) {
+        throw new IOException("Stale mission track: " + sidecar);
+      }
+      if (size < 0 || length != byteSize(size)) {
+        throw new IOException("Truncated mission track: " + sidecar);
+      }
+      double[] x = new double[size];
+      double[] y = new double[size];
+      double[] z = new double[size];
+      float[] heading = new float[size];
+      float[] pitch = new float[size];
+      float[] roll = new float[size];
+      buffer.asDoubleBuffer().get(x);
+      buffer.position(buffer.position() + size * Double.BYTES);
+      buffer.asDoubleBuffer().get(y);
+      buffer.position(buffer.position() + size * Double.BYTES);
+      buffer.asDoubleBuffer().get(z);
+      buffer.position(buffer.position() + size * Double.BYTES);
+      buffer.asFloatBuffer().get(heading);
+      buffer.position(buffer.position() + size * Float.BYTES);
+      buffer.asFloatBuffer().get(pitch);
+      buffer.position(buffer.position() + size * Float.BYTES);
+      buffer.asFloatBuffer().get(roll);
+      return new MissionTrack(size, x, y, z, heading, pitch, roll);
+    }
+  }
+
+  /**
+   * Writes the track to a binary file in native byte order. The file is written under a temporary name and renamed
+   * once complete so a partially written file is never mistaken for a valid track.
+   *
+   * @param sidecar     destination file
+   * @param sourceStamp stamp of the source the track was parsed from
+   * @throws IOException if the file can't be written
+   */
+  void write(File sidecar, long sourceStamp) throws IOException {
+    File temp = new File(sidecar.getPath() + ".tmp");
+    ByteBuffer buffer = ByteBuffer.allocate((int) byteSize(mSize)).order(ByteOrder.nativeOrder());
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(mSize).putInt(0).putLong(sourceStamp);
+    buffer.asDoubleBuffer().put(mX);
+    buffer.position(buffer.position() + mSize * Double.BYTES);
+    buffer.asDoubleBuffer().put(mY);
+    buffer.position(buffer.position() + mSize * Double.BYTES);
+    buffer.asDoubleBuffer().put(mZ);
+    buffer.position(buffer.position() + mSize * Double.BYTES);
+    buffer.asFloatBuffer().put(mHeading);
+    buffer.position(buffer.position() + mSize * Float.BYTES);
+    buffer.asFloatBuffer().put(mPitch);
+    buffer.position(buffer.position() + mSize * Float.BYTES);
+    buffer.asFloatBuffer().put(mRoll);
+    buffer.rewind();
+    try (RandomAccessFile file = new RandomAccessFile(temp, "rw"); FileChannel channel = file.getChannel()) {
+      channel.truncate(0);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+    if (!temp.renameTo(sidecar)) {
+      temp.delete();
+      throw new IOException("Unable to write mission track: " + sidecar);
+    }
+  }
+
+  private static long byteSize(int size) {
+    return HEADER_BYTES + (long) size * (3 * Double.BYTES + 3 * Float.BYTES);
+  }
+
+  /**
+   * @return the number of key frames in the track
+   */
+  int size() {
+    return mSize;
+  }
+
+  double getX(int keyFrame) {
+    return mX[keyFrame];
+  }
+
+  double getY(int keyFrame) {
+    return mY[keyFrame];
+  }
+
+  double getZ(int keyFrame) {
+    return mZ[keyFrame];
+  }
+
+  float getHeading(int keyFrame) {
+    return mHeading[keyFrame];
+  }
+
+  float getPitch(int keyFrame) {
+    return mPitch[keyFrame];
+  }
+
+  float getRoll(int keyFrame) {
+    return mRoll[keyFrame];
+  }
+
+  /**
+   * Opens the mission .csv on demand, so the source is only read when no valid sidecar exists.
+   */
+  interface CsvSource {
+    InputStream open() throws IOException;
+  }
+
+  /**
+   * Reads comma separated decimal numbers directly from a byte stream.
+   */
+  private static final class NumberScanner {
+
+    private final InputStream mIn;
+    private final byte[] mBuffer = new byte[64 * 1024];
+    private final StringBuilder mToken = new StringBuilder(32);
+    private int mLength;
+    private int mPosition;
+
+    NumberScanner(InputStream in) {
+      mIn = in;
+    }
+
+    /**
+     * Reads the next non-empty line into the given array.
+     *
+     * @return false when the end of the stream is reached before any value
+     */
+    boolean nextLine(double[] values) throws IOException {
+      int count = 0;
+      mToken.setLength(0);
+      int b;
+      while ((b = read()) != -1) {
+        if (b == ',') {
+          count = store(values, count);
+        } else if (b == '\n' || b == '\r') {
+          if (count > 0 || mToken.length() > 0) {
+            count = store(values, count);
+            break;
+          }
+        } else if (b != ' ') {
+          mToken.append((char) b);
+        }
+      }
+      if (b == -1 && mToken.length() > 0) {
+        count = store(values, count);
+      }
+      if (count == 0) {
+        return false;
+      }
+      if (count != values.length) {
+        throw new IOException("Expected " + values.length + " values per key frame but found " + count);
+      }
+      return true;
+    }
+
+    private int store(double[] values, int count) throws IOException {
+      if (count >= values.length) {
+        throw new IOException("Too many values in key frame");
+      }
+      try {
+        values[count] = Double.parseDouble(mToken.toString());
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid mission value: " + mToken, e);
+      }
+      mToken.setLength(0);
+      return count + 1;
+    }
+
+    private int read() throws IOException {
+      if (mPosition == mLength) {
+        mLength = mIn.read(mBuffer, 0, mBuffer.length);
+        mPosition = 0;
+        if (mLength <= 0) {
+          mLength = 0;
+          return -1;
+        }
+      }
+      return mBuffer[mPosition++];
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.choosecameracontroller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+
+/**
+ * Extracts files from the app's assets folder into the cache directory off the main thread, so that runtime classes
+ * such as ModelSceneSymbol can open them by path.
+ *
+ * Files are copied in parallel through NIO channels with a large buffer. Each file is written under a temporary name
+ * and renamed into place only once complete, so a copy interrupted by the process being killed is never mistaken for a
+ * valid file. A manifest records the size and SHA-256 hash of every staged file along with the time the app was last
+ * updated, so staged files whose contents still match are reused across launches and extracted again after an update.
+ * Staging into the same directory is serialized, so concurrent stagers don't overwrite each other's manifest entries.
+ */
+final class AssetStager {
+
+  private static final String TAG = AssetStager.class.getSimpleName();
+
+  private static final String MANIFEST = ".asset-manifest";
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  // one lock per staging directory, keyed by canonical path
+  private static final Map<String, Object> sDirectoryLocks = new HashMap<>();
+
+  private final AssetManager mAssetManager;
+  private final File mDirectory;
+  private final long mAppUpdateTime;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+  AssetStager(Context context) {
+    mAssetManager = context.getApplicationContext().getAssets();
+    mDirectory = context.getCacheDir();
+    long updateTime;
+    try {
+      updateTime = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+      // can't tell if the app was updated, so don't trust anything staged by a previous launch
+      updateTime = System.currentTimeMillis();
+    }
+    mAppUpdateTime = updateTime;
+  }
+
+  /**
+   * Stages the given asset files in the background. Done listeners added to the returned future are called on the
+   * main thread.
+   *
+   * @param fileNames names of files in the assets folder
+   * @return a future of the staged files, keyed by asset file name
+   */
+  ListenableFuture<Map<String, File>> stage(String... fileNames) {
+    StagingFuture future = new StagingFuture(() -> stageAll(fileNames));
+    Thread thread = new Thread(future, TAG);
+    thread.start();
+    return future;
+  }
+
+  private Map<String, File> stageAll(String... fileNames) throws Exception {
+    // stagers sharing a directory share its manifest and temporary files, so only one may stage at a time
+    synchronized (lockFor(mDirectory)) {
+      long start = SystemClock.elapsedRealtime();
+      Map<String, ManifestEntry> manifest = readManifest();
+      Map<String, File> staged = new HashMap<>();
+      int extracted = 0;
+      int threads = Math.max(1, Math.min(fileNames.length, Runtime.getRuntime().availableProcessors()));
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<ManifestEntry>> results = new ArrayList<>();
+        for (String fileName : fileNames) {
+          ManifestEntry entry = manifest.get(fileName);
+          results.add(executor.submit(() -> isStaged(fileName, entry) ? entry : copy(fileName)));
+        }
+        for (int i = 0; i < fileNames.length; i++) {
+          ManifestEntry entry = results.get(i).get();
+          if (entry != manifest.get(fileNames[i])) {
+            manifest.put(fileNames[i], entry);
+            extracted++;
+          }
+          staged.put(fileNames[i], new File(mDirectory, fileNames[i]));
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      if (extracted > 0) {
+        writeManifest(manifest);
+      }
+      Log.i(TAG, String.format("Staged %d assets (%d extracted) in %d ms", fileNames.length, extracted,
+          SystemClock.elapsedRealtime() - start));
+      return staged;
+    }
+  }
+
+  private static Object lockFor(File directory) throws IOException {
+    String path = directory.getCanonicalPath();
+    synchronized (sDirectoryLocks) {
+      Object lock = sDirectoryLocks.get(path);
+      if (lock == null) {
+        lock = new Object();
+        sDirectoryLocks.put(path, lock);
+      }
+      return lock;
+    }
+  }
+
+  /**
+   * Checks a previously staged file against its manifest entry, so a file which has been truncated or corrupted
+   * since it was staged is extracted again.
+   */
+  private boolean isStaged(String fileName, ManifestEntry entry) throws IOException, NoSuchAlgorithmException {
+    File file = new File(mDirectory, fileName);
+    if (entry == null || !file.isFile() || file.length() != entry.mSize) {
+      return false;
+    }
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    try (FileInputStream in = new FileInputStream(file);
+         FileChannel source = in.getChannel()) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    }
+    if (!toHex(digest.digest()).equals(entry.mHash)) {
+      Log.w(TAG, "Staged asset " + fileName + " doesn't match its manifest, extracting it again");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Copies one asset to a temporary file and renames it into place, hashing it on the way through.
+   */
+  private ManifestEntry copy(String fileName) throws IOException, NoSuchAlgorithmException {
+    File file = new File(mDirectory, fileName);
+    File temp = new File(mDirectory, fileName + ".part");
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    long size = 0;
+    try (InputStream in = new DigestInputStream(mAssetManager.open(fileName, AssetManager.ACCESS_STREAMING), digest);
+         ReadableByteChannel source = Channels.newChannel(in);
+         FileOutputStream out = new FileOutputStream(temp);
+         FileChannel destination = out.getChannel()) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          size += destination.write(buffer);
+        }
+        buffer.clear();
+      }
+      destination.force(false);
+    }
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("Unable to stage " + fileName);
+    }
+    return new ManifestEntry(size, toHex(digest.digest()));
+  }
+
+  private Map<String, ManifestEntry> readManifest() {
+    Map<String, ManifestEntry> manifest = new HashMap<>();
+    File file = new File(mDirectory, MANIFEST);
+    if (!file.isFile()) {
+      return manifest;
+    }
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String header = reader.readLine();
+      if (header == null || Long.parseLong(header) != mAppUpdateTime) {
+        // the app has been updated since the files were staged, so the assets may have changed
+        return manifest;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // size, hash and then the file name, which may itself contain tabs
+        String[] fields = line.split("\t", 3);
+        if (fields.length == 3) {
+          manifest.put(fields[2], new ManifestEntry(Long.parseLong(fields[0]), fields[1]));
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      Log.w(TAG, "Ignoring unreadable asset manifest: " + e.getMessage());
+      manifest.clear();
+    }
+    return manifest;
+  }
+
+  private void writeManifest(Map<String, ManifestEntry> manifest) throws IOException {
+    File file = new File(mDirectory, MANIFEST);
+    File temp = new File(mDirectory, MANIFEST + ".part");
+    try (PrintWriter writer = new PrintWriter(temp)) {
+      writer.println(mAppUpdateTime);
+      for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+        writer.println(entry.getValue().mSize + "\t" + entry.getValue().mHash + "\t" + entry.getKey());
+      }
+    }
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      throw new IOException("Unable to write asset manifest");
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.toString();
+  }
+
+  private static final class ManifestEntry {
+    private final long mSize;
+    private final String mHash;
+
+    ManifestEntry(long size, String hash) {
+      mSize = size;
+      mHash = hash;
+    }
+  }
+
+  /**
+   * Future which calls its done listeners on the main thread, in the same way as the runtime's own futures.
+   */
+  private final class StagingFuture extends FutureTask<Map<String, File>>
+      implements ListenableFuture<Map<String, File>> {
+
+    private final List<Runnable> mDoneListeners = new ArrayList<>();
+
+    StagingFuture(Callable<Map<String, File>> callable) {
+      super(callable);
+    }
+
+    @Override
+    public void addDoneListener(Runnable listener) {
+      synchronized (mDoneListeners) {
+        if (!isDone()) {
+          mDoneListeners.add(listener);
+          return;
+        }
+      }
+      mMainHandler.post(listener);
+    }
+
+    @Override
+    public boolean removeDoneListener(Runnable listener) {
+      synchronized (mDoneListeners) {
+        return mDoneListeners.remove(listener);
+      }
+    }
+
+    @Override
+    protected void done() {
+      synchronized (mDoneListeners) {
+        for (Runnable listener : mDoneListeners) {
+          mMainHandler.post(listener);
+        }
+        mDoneListeners.clear();
+      }
+      try {
+        get();
+      } catch (ExecutionException e) {
+        Log.e(TAG, "Error staging assets: " + e.getCause().getMessage());
+      } catch (Exception e) {
+        // cancelled or interrupted, nothing was staged
+      }
+    }
+  }
+}
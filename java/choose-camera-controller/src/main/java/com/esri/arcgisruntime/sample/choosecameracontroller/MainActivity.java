@@ -16,12 +16,10 @@
 
 package com.esri.arcgisruntime.sample.choosecameracontroller;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
-import android.content.res.AssetManager;
 import android.os.Bundle;
 import androidx.core.content.ContextCompat;
 import androidx.appcompat.app.AppCompatActivity;
@@ -29,7 +27,9 @@ import androidx.appcompat.widget.Toolbar;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.Toast;
 
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.mapping.ArcGISScene;
@@ -61,9 +61,9 @@ public class MainActivity extends AppCompatActivity {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    // load plane model from assets into cache directory
-    copyFileFromAssetsToCache(getString(R.string.bristol_model));
-    copyFileFromAssetsToCache(getString(R.string.bristol_skin));
+    // stage plane model from assets into the cache directory in the background
+    ListenableFuture<Map<String, File>> stagedModel = new AssetStager(this)
+        .stage(getString(R.string.bristol_model), getString(R.string.bristol_skin));
 
     setupToolbar();
 
@@ -94,11 +94,19 @@ public class MainActivity extends AppCompatActivity {
     mOrbitLocationCameraController.setCameraPitchOffset(3);
     mOrbitLocationCameraController.setCameraHeadingOffset(150);
 
-    loadModel().addDoneLoadingListener(() -> {
-      // instantiate a new camera controller which orbits the plane at a set distance
-      mOrbitPlaneCameraController = new OrbitGeoElementCameraController(mPlane3D, 100.0);
-      mOrbitPlaneCameraController.setCameraPitchOffset(30);
-      mOrbitPlaneCameraController.setCameraHeadingOffset(150);
+    stagedModel.addDoneListener(() -> {
+      try {
+        loadModel(stagedModel.get().get(getString(R.string.bristol_model))).addDoneLoadingListener(() -> {
+          // instantiate a new camera controller which orbits the plane at a set distance
+          mOrbitPlaneCameraController = new OrbitGeoElementCameraController(mPlane3D, 100.0);
+          mOrbitPlaneCameraController.setCameraPitchOffset(30);
+          mOrbitPlaneCameraController.setCameraHeadingOffset(150);
+        });
+      } catch (InterruptedException | ExecutionException e) {
+        String error = "Error staging plane model: " + e.getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
     });
   }
 
@@ -116,7 +124,9 @@ public class MainActivity extends AppCompatActivity {
   @Override public boolean onOptionsItemSelected(MenuItem item) {
     int itemid = item.getItemId();
     if (itemid == R.id.action_camera_controller_plane) {
-      mSceneView.setCameraController(mOrbitPlaneCameraController);
+      if (mOrbitPlaneCameraController != null) {
+        mSceneView.setCameraController(mOrbitPlaneCameraController);
+      }
       return true;
     } else if (itemid == R.id.action_camera_controller_crater) {
       mSceneView.setCameraController(mOrbitLocationCameraController);
@@ -130,47 +140,18 @@ public class MainActivity extends AppCompatActivity {
 
   /**
    * Load the plane model from the cache, use to construct a Model Scene Symbol and add it to the scene's graphic overlay.
+   *
+   * @param model staged plane model file
    */
-  private ModelSceneSymbol loadModel() {
+  private ModelSceneSymbol loadModel(File model) {
     // create a graphic with a ModelSceneSymbol of a plane to add to the scene
-    String pathToModel = getCacheDir() + File.separator + getString(R.string.bristol_model);
-    ModelSceneSymbol plane3DSymbol = new ModelSceneSymbol(pathToModel, 1.0);
+    ModelSceneSymbol plane3DSymbol = new ModelSceneSymbol(model.getPath(), 1.0);
     plane3DSymbol.setHeading(45);
     mPlane3D = new Graphic(new Point(-109.937516, 38.456714, 5000, SpatialReferences.getWgs84()), plane3DSymbol);
     mSceneOverlay.getGraphics().add(mPlane3D);
     return plane3DSymbol;
   }
 
-  /**
-   * Copy the given file from the app's assets folder to the app's cache directory.
-   *
-   * @param fileName as String
-   */
-  private void copyFileFromAssetsToCache(String fileName) {
-    AssetManager assetManager = getApplicationContext().getAssets();
-    File file = new File(getCacheDir() + File.separator + fileName);
-    if (!file.exists()) {
-      try {
-        BufferedInputStream bis = new BufferedInputStream(assetManager.open(fileName));
-        BufferedOutputStream bos = new BufferedOutputStream(
-            new FileOutputStream(getCacheDir() + File.separator + fileName));
-        byte[] buffer = new byte[bis.available()];
-        int read = bis.read(buffer);
-        while (read != -1) {
-          bos.write(buffer, 0, read);
-          read = bis.read(buffer);
-        }
-        bos.close();
-        bis.close();
-        Log.i(TAG, fileName + " copied to cache.");
-      } catch (Exception e) {
-        Log.e(TAG, "Error writing " + fileName + " to cache. " + e.getMessage());
-      }
-    } else {
-      Log.i(TAG, fileName + " already in cache.");
-    }
-  }
-
   @Override
   protected void onResume() {
     super.onResume();
@@ -16,10 +16,12 @@
 
 package com.esri.arcgisruntime.samples.deletefeaturesfeatureservice;
 
-import java.util.List;
+import java.io.File;
 import java.util.concurrent.ExecutionException;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -31,12 +33,12 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.FeatureEditResult;
 import com.esri.arcgisruntime.data.FeatureQueryResult;
 import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.GeoElement;
@@ -50,6 +52,17 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // features deleted are sent to the server once this many are waiting, or after a delay
+  private static final int EDIT_BATCH_SIZE = 10;
+  private static final long EDIT_BATCH_DELAY_MILLIS = 5000;
+  private static final long EDIT_RETRY_MILLIS = 1000;
+  private static final long EDIT_MAX_RETRY_MILLIS = 60000;
+
+  // the edits belong to the process rather than the activity, so a batch being applied when the activity is
+  // recreated isn't restored to the new activity's table and applied again
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+  private static EditQueue sEditQueue;
+
   private MapView mMapView;
 
   private ServiceFeatureTable mFeatureTable;
@@ -72,6 +85,37 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
     // create service feature table from URL
     mFeatureTable = new ServiceFeatureTable(getString(R.string.feature_layer_url));
 
+    // queue the features deleted, and send them to the server in batches
+    if (sEditQueue == null) {
+      sEditQueue = new EditQueue(new File(getFilesDir(), "edits.journal"), (task, delayMillis) -> {
+        sMainHandler.postDelayed(task, delayMillis);
+        return () -> sMainHandler.removeCallbacks(task);
+      }, EDIT_BATCH_SIZE, EDIT_BATCH_DELAY_MILLIS, EDIT_RETRY_MILLIS, EDIT_MAX_RETRY_MILLIS);
+    }
+
+    // once the table has loaded, delete the features again which hadn't been deleted on the server when the app was
+    // last closed
+    mFeatureTable.addDoneLoadingListener(() -> {
+      if (mFeatureTable.getLoadStatus() == LoadStatus.LOADED) {
+        sEditQueue.attach(EditQueue.serviceEditService(mFeatureTable),
+            (edits, onDone) -> EditQueue.restore(mFeatureTable, edits, onDone), new EditQueue.Listener() {
+          @Override public void onBatchApplied(int editCount, int failedCount, Exception firstError) {
+            if (failedCount == 0) {
+              logToUser(false, getResources().getQuantityString(R.plurals.success_features_deleted, editCount,
+                  editCount));
+            } else {
+              logToUser(true, getString(R.string.error_applying_edits, firstError.getMessage()));
+            }
+          }
+
+          @Override public void onBatchFailed(Exception e, long retryMillis) {
+            String message = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            logToUser(true, getString(R.string.error_applying_edits_retrying, message, retryMillis / 1000));
+          }
+        });
+      }
+    });
+
     // create a feature layer from table
     mFeatureLayer = new FeatureLayer(mFeatureTable);
 
@@ -161,7 +205,7 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
           // attempt to get first feature from result as it should be the only feature
           Feature foundFeature = featureQueryResult.get().iterator().next();
           // delete found features
-          deleteFeature(foundFeature, mFeatureTable, () -> applyEdits(mFeatureTable));
+          deleteFeature(foundFeature, mFeatureTable, () -> sEditQueue.delete(Long.parseLong(featureId)));
         }
       } catch (InterruptedException | ExecutionException e) {
         logToUser(true, getString(R.string.error_feature_deletion, e.getCause().getMessage()));
@@ -170,8 +214,7 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
   }
 
   /**
-   * Deletes a feature from a {@link ServiceFeatureTable} and applies the changes to the
-   * server.
+   * Deletes a feature from a {@link ServiceFeatureTable}.
    *
    * @param feature                     {@link Feature} to delete
    * @param featureTable                {@link ServiceFeatureTable} to delete {@link Feature} from
@@ -182,33 +225,6 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
     featureTable.deleteFeatureAsync(feature).addDoneListener(onDeleteFeatureDoneListener);
   }
 
-  /**
-   * Sends any edits on the {@link ServiceFeatureTable} to the server.
-   *
-   * @param featureTable {@link ServiceFeatureTable} to apply edits to
-   */
-  private void applyEdits(ServiceFeatureTable featureTable) {
-    // apply the changes to the server
-    ListenableFuture<List<FeatureEditResult>> featureEditsFuture = featureTable.applyEditsAsync();
-    featureEditsFuture.addDoneListener(() -> {
-      try {
-        // check result has an edit
-        if (featureEditsFuture.get().iterator().hasNext()) {
-          // attempt to get first edit from result as it should be the only edit
-          FeatureEditResult edit = featureEditsFuture.get().iterator().next();
-          // check if the server edit was successful
-          if (!edit.hasCompletedWithErrors()) {
-            logToUser(false, getString(R.string.success_feature_deleted));
-          } else {
-            throw edit.getError();
-          }
-        }
-      } catch (InterruptedException | ExecutionException e) {
-        logToUser(true, getString(R.string.error_applying_edits, e.getCause().getMessage()));
-      }
-    });
-  }
-
   /**
    * Shows a Toast to user and logs to logcat.
    *
@@ -229,11 +245,15 @@ public class MainActivity extends AppCompatActivity implements ConfirmDeleteFeat
   }
 
   @Override protected void onPause() {
+    // send the deletes waiting for the next batch while the app is still in the foreground
+    sEditQueue.flush();
+    Log.i(TAG, "Edit queue: " + sEditQueue);
     mMapView.pause();
     super.onPause();
   }
 
   @Override protected void onDestroy() {
+    sEditQueue.detach();
     mMapView.dispose();
     super.onDestroy();
   }
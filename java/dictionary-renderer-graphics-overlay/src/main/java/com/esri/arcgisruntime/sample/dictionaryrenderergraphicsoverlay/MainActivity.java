@@ -16,29 +16,14 @@
 
 package com.esri.arcgisruntime.sample.dictionaryrenderergraphicsoverlay;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
-
 import android.os.Bundle;
 import android.util.Log;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
-import com.esri.arcgisruntime.geometry.Multipoint;
-import com.esri.arcgisruntime.geometry.Point;
-import com.esri.arcgisruntime.geometry.PointCollection;
-import com.esri.arcgisruntime.geometry.SpatialReference;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
-import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
 import com.esri.arcgisruntime.symbology.DictionaryRenderer;
@@ -48,7 +33,11 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // number of graphics added to the graphics overlay at a time while messages are ingested
+  private static final int CHUNK_SIZE = 1000;
+
   private MapView mMapView;
+  private MessageIngestion mMessageIngestion;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -64,10 +53,6 @@ public class MainActivity extends AppCompatActivity {
     ArcGISMap map = new ArcGISMap(BasemapStyle.ARCGIS_TOPOGRAPHIC);
     mMapView.setMap(map);
 
-    // once graphics overlay had loaded with a valid spatial reference, set the viewpoint to the graphics overlay extent
-    mMapView.addSpatialReferenceChangedListener(spatialReferenceChangedEvent -> mMapView
-        .setViewpointGeometryAsync(mMapView.getGraphicsOverlays().get(0).getExtent()));
-
     GraphicsOverlay graphicsOverlay = new GraphicsOverlay();
     // graphics no longer show after zooming passed this scale
     graphicsOverlay.setMinScale(1000000);
@@ -81,74 +66,26 @@ public class MainActivity extends AppCompatActivity {
     DictionaryRenderer renderer = new DictionaryRenderer(symbolDictionary);
     graphicsOverlay.setRenderer(renderer);
 
-    // parse graphic attributes from a XML file
-    List<Map<String, Object>> messages = parseMessages();
-
-    // create graphics with attributes and add to graphics overlay
-    for (Map<String, Object> attributes : messages) {
-      graphicsOverlay.getGraphics().add(createGraphic(attributes));
-    }
-  }
+    // parse graphic attributes from a XML file in the background and add graphics to the overlay in chunks
+    mMessageIngestion = new MessageIngestion(this, graphicsOverlay, CHUNK_SIZE);
+    mMessageIngestion.start(getString(R.string.mil2525dmessages_xml_file), new MessageIngestion.Listener() {
+      @Override public void onChunkAdded(int total) {
+        Log.d(TAG, total + " messages added");
+      }
 
-  /**
-   * Parses a XML file and creates a message for each block of attributes found.
-   */
-  private List<Map<String, Object>> parseMessages() {
-    final List<Map<String, Object>> messages = new ArrayList<>();
-    try {
-      // create an XML pull parser
-      XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
-      // load the XML file from the assets folder
-      try (InputStream inputStream = getAssets().open(getString(R.string.mil2525dmessages_xml_file))) {
-        parser.setInput(inputStream, null);
-        // get the current event type from the parser
-        int eventType = parser.getEventType();
-        Map<String, Object> attributes = null;
-        while (eventType != XmlPullParser.END_DOCUMENT) {
-          if (eventType == XmlPullParser.START_TAG) {
-            String name = parser.getName();
-            // create a new attribute map for new message
-            if (name.equals("message")) {
-              attributes = new HashMap<>();
-              messages.add(attributes);
-            } else if (attributes != null) {
-              attributes.put(name, parser.nextText());
-            }
-          }
-          eventType = parser.next();
+      @Override public void onComplete(int total, long elapsedMillis) {
+        // once all graphics have been added, set the viewpoint to the graphics overlay extent
+        if (graphicsOverlay.getExtent() != null) {
+          mMapView.setViewpointGeometryAsync(graphicsOverlay.getExtent());
         }
       }
-    } catch (XmlPullParserException | IOException e) {
-      Log.e(TAG, "Error reading XML file: " + e.getMessage());
-    }
-    return messages;
-  }
 
-  /**
-   * Creates a graphic using a symbol dictionary and the attributes that were passed.
-   *
-   * @param attributes tells symbol dictionary what symbol to apply to graphic
-   */
-  private static Graphic createGraphic(Map<String, Object> attributes) {
-    // get spatial reference
-    int wkid = Integer.parseInt((String) attributes.get("_wkid"));
-    SpatialReference spatialReference = SpatialReference.create(wkid);
-
-    // get points from coordinates' string
-    PointCollection points = new PointCollection(spatialReference);
-    String[] coordinates = ((String) attributes.get("_control_points")).split(";");
-    if (coordinates.length > 0) {
-      for (String ordinate : coordinates) {
-        String[] pointCoordinate = ordinate.split(",");
-        if (pointCoordinate.length > 0) {
-          Point point = new Point(Double.valueOf(pointCoordinate[0]), Double.valueOf(pointCoordinate[1]),
-              spatialReference);
-          points.add(point);
-        }
+      @Override public void onError(Exception e) {
+        String error = "Error reading XML file: " + e.getMessage();
+        Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
       }
-    }
-    // return a graphic with multipoint geometry
-    return new Graphic(new Multipoint(points), attributes);
+    });
   }
 
   @Override
@@ -165,6 +102,7 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    mMessageIngestion.cancel();
     mMapView.dispose();
     super.onDestroy();
   }
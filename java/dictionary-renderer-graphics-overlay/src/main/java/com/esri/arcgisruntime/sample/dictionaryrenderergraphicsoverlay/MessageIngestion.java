@@ -0,0 +1,510 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.dictionaryrenderergraphicsoverlay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.esri.arcgisruntime.geometry.Multipoint;
+import com.esri.arcgisruntime.geometry.PointCollection;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+import com.esri.arcgisruntime.mapping.view.Graphic;
+import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
+
+/**
+ * Streams MIL-STD-2525D messages into a graphics overlay without blocking the main thread.
+ *
+ * Messages are parsed on a background thread, either from the XML message feed or, on later launches, from a binary
+ * cache of the parsed messages. Control points are parsed straight into primitive arrays and attribute names and
+ * repeated values are interned, so large feeds don't hold a copy of the same strings per message. Graphics are built
+ * in the background as each message is read and added to the overlay in chunks, one chunk per main thread message, so
+ * the first graphics appear without waiting for the whole feed and the map stays interactive while it loads.
+ */
+final class MessageIngestion {
+
+  private static final String TAG = MessageIngestion.class.getSimpleName();
+
+  private static final int CACHE_MAGIC = 0x4D494C32;
+  private static final int CACHE_VERSION = 2;
+  // values longer than this are unlikely to repeat between messages, so aren't interned
+  private static final int MAX_INTERNED_LENGTH = 32;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+  /**
+   * Called on the main thread as the ingestion progresses.
+   */
+  interface Listener {
+    /**
+     * @param total number of graphics added to the overlay so far
+     */
+    void onChunkAdded(int total);
+
+    /**
+     * @param total          number of graphics added to the overlay
+     * @param elapsedMillis time from starting the ingestion to the last graphic being added
+     */
+    void onComplete(int total, long elapsedMillis);
+
+    void onError(Exception e);
+  }
+
+  private final Context mContext;
+  private final GraphicsOverlay mGraphicsOverlay;
+  private final int mChunkSize;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+  private final Map<String, String> mStrings = new HashMap<>();
+  private volatile boolean mCancelled;
+
+  /**
+   * @param context         used to open the message feed and locate the cache directory
+   * @param graphicsOverlay overlay to add the message graphics to
+   * @param chunkSize       number of graphics added to the overlay at a time
+   */
+  MessageIngestion(Context context, GraphicsOverlay graphicsOverlay, int chunkSize) {
+    mContext = context.getApplicationContext();
+    mGraphicsOverlay = graphicsOverlay;
+    mChunkSize = chunkSize;
+  }
+
+  /**
+   * Starts ingesting the messages in an XML file from the app's assets folder.
+   *
+   * @param assetName name of the XML message feed
+   * @param listener  notified of progress on the main thread
+   */
+  void start(String assetName, Listener listener) {
+    mExecutor.execute(() -> {
+      long start = SystemClock.elapsedRealtime();
+      try {
+        Chunker chunker = new Chunker(listener);
+        readMessages(assetName, chunker);
+        if (mCancelled) {
+          return;
+        }
+        chunker.flush();
+        int count = chunker.mTotal;
+        long firstChunk = (chunker.mFirstPosted == 0 ? SystemClock.elapsedRealtime() : chunker.mFirstPosted) - start;
+        mMainHandler.post(() -> {
+          if (!mCancelled) {
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            Log.i(TAG, String.format("Ingested %d messages in %d ms (first chunk after %d ms)", count, elapsed,
+                firstChunk));
+            listener.onComplete(count, elapsed);
+          }
+        });
+      } catch (IOException | XmlPullParserException | RuntimeException e) {
+        mMainHandler.post(() -> listener.onError(e));
+      }
+    });
+  }
+
+  /**
+   * Stops ingesting. Chunks which haven't been added to the overlay yet are discarded.
+   */
+  void cancel() {
+    mCancelled = true;
+    mExecutor.shutdownNow();
+  }
+
+  private void post(List<Graphic> chunk, int total, Listener listener) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    // each chunk is a separate main thread message, so input and drawing are handled between chunks
+    mMainHandler.post(() -> {
+      if (!mCancelled) {
+        mGraphicsOverlay.getGraphics().addAll(chunk);
+        listener.onChunkAdded(total);
+      }
+    });
+  }
+
+  /**
+   * Reads the parsed messages from the binary cache if it is current, otherwise parses the XML feed and writes the
+   * cache for the next launch. Each message is handed to the chunker as soon as it has been read.
+   */
+  private void readMessages(String assetName, Chunker chunker) throws IOException, XmlPullParserException {
+    File cache = new File(mContext.getCacheDir(), assetName + ".messages");
+    long appUpdateTime = getAppUpdateTime();
+    if (cache.isFile()) {
+      try {
+        if (readCache(cache, appUpdateTime, chunker)) {
+          return;
+        }
+      } catch (IOException e) {
+        // some messages may already be on the map, so fail rather than adding them again from the feed
+        cache.delete();
+        throw e;
+      }
+    }
+    CacheWriter cacheWriter = new CacheWriter(cache, appUpdateTime);
+    try (InputStream in = mContext.getAssets().open(assetName)) {
+      parseXml(in, chunker, cacheWriter);
+    } catch (IOException | XmlPullParserException | RuntimeException e) {
+      cacheWriter.abort();
+      throw e;
+    }
+    if (mCancelled) {
+      // don't cache a partially parsed feed
+      cacheWriter.abort();
+      return;
+    }
+    cacheWriter.commit();
+  }
+
+  private long getAppUpdateTime() {
+    try {
+      return mContext.getPackageManager().getPackageInfo(mContext.getPackageName(), 0).lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+      // can't tell if the feed changed, so don't trust a cache written by a previous launch
+      return System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Parses a message feed in which each message element holds one child element per attribute.
+   */
+  private void parseXml(InputStream in, Chunker chunker, CacheWriter cacheWriter)
+      throws IOException, XmlPullParserException {
+    XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+    parser.setInput(in, null);
+    int eventType = parser.getEventType();
+    Message message = null;
+    // the previous message's attribute count is a good estimate of the next one's
+    int schemaSize = 16;
+    while (eventType != XmlPullParser.END_DOCUMENT) {
+      if (mCancelled) {
+        break;
+      }
+      if (eventType == XmlPullParser.START_TAG) {
+        String name = parser.getName();
+        if (name.equals("message")) {
+          message = new Message(schemaSize);
+        } else if (message != null) {
+          String text = parser.nextText();
+          switch (name) {
+            case "_wkid":
+              message.mWkid = Integer.parseInt(text.trim());
+              break;
+            case "_control_points":
+              message.setControlPoints(text);
+              break;
+            default:
+              break;
+          }
+          message.mAttributes.put(intern(name), intern(text));
+        }
+      } else if (eventType == XmlPullParser.END_TAG && message != null && parser.getName().equals("message")) {
+        schemaSize = Math.max(schemaSize, message.mAttributes.size());
+        cacheWriter.write(message);
+        chunker.add(message);
+        message = null;
+      }
+      eventType = parser.next();
+    }
+  }
+
+  private String intern(String value) {
+    if (value.length() > MAX_INTERNED_LENGTH) {
+      return value;
+    }
+    String interned = mStrings.get(value);
+    if (interned == null) {
+      mStrings.put(value, value);
+      interned = value;
+    }
+    return interned;
+  }
+
+  /**
+   * Hands each message in the cache to the chunker.
+   *
+   * @return false if the cache was written for a different version of the feed, in which case nothing was read
+   */
+  private boolean readCache(File cache, long appUpdateTime, Chunker chunker) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache), 64 * 1024))) {
+      if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION || in.readLong() != appUpdateTime) {
+        Log.i(TAG, "Ignoring stale message cache");
+        return false;
+      }
+      // each message starts with its attribute count, and the cache ends with a negative count
+      int attributeCount;
+      while ((attributeCount = in.readShort()) >= 0) {
+        if (mCancelled) {
+          return true;
+        }
+        Message message = new Message(attributeCount);
+        message.mWkid = in.readInt();
+        message.mPointCount = in.readInt();
+        message.mCoordinates = new double[message.mPointCount * 2];
+        for (int j = 0; j < message.mCoordinates.length; j++) {
+          message.mCoordinates[j] = in.readDouble();
+        }
+        for (int j = 0; j < attributeCount; j++) {
+          message.mAttributes.put(intern(in.readUTF()), intern(in.readUTF()));
+        }
+        chunker.add(message);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Parses a decimal number from part of a string without creating a substring. With at most 15 significant digits
+   * both the mantissa and the power of ten are exact doubles, so a single division gives the correctly rounded
+   * result. Longer numbers and exponents fall back to {@link Double#parseDouble(String)}.
+   */
+  static double parseDouble(String text, int start, int end) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+      negative = text.charAt(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    for (; i < end; i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++digits > 15) {
+          return Double.parseDouble(text.substring(start, end));
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (fraction) {
+          scale++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        // exponents and anything unexpected are left to the platform parser
+        return Double.parseDouble(text.substring(start, end));
+      }
+    }
+    if (digits == 0) {
+      throw new NumberFormatException("Invalid number: " + text.substring(start, end));
+    }
+    double value = mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  /**
+   * Builds graphics from messages as they are read and posts them to the overlay each time a chunk fills.
+   */
+  private final class Chunker {
+
+    private final Listener mListener;
+    private List<Graphic> mChunk = new ArrayList<>(mChunkSize);
+    private int mTotal;
+    private long mFirstPosted;
+
+    Chunker(Listener listener) {
+      mListener = listener;
+    }
+
+    void add(Message message) {
+      mChunk.add(message.toGraphic());
+      if (mChunk.size() == mChunkSize) {
+        flush();
+      }
+    }
+
+    void flush() {
+      if (mChunk.isEmpty() || mCancelled) {
+        return;
+      }
+      mTotal += mChunk.size();
+      if (mFirstPosted == 0) {
+        mFirstPosted = SystemClock.elapsedRealtime();
+      }
+      post(mChunk, mTotal, mListener);
+      mChunk = new ArrayList<>(mChunkSize);
+    }
+  }
+
+  /**
+   * Writes messages to a temporary file as they are parsed, which replaces the cache once the whole feed has been
+   * written. A write failure only disables the cache, since it is just an optimization for the next launch.
+   */
+  private static final class CacheWriter {
+
+    private final File mCache;
+    private final File mTemp;
+    private DataOutputStream mOut;
+
+    CacheWriter(File cache, long appUpdateTime) {
+      mCache = cache;
+      mTemp = new File(cache.getPath() + ".part");
+      try {
+        mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mTemp), 64 * 1024));
+        mOut.writeInt(CACHE_MAGIC);
+        mOut.writeInt(CACHE_VERSION);
+        mOut.writeLong(appUpdateTime);
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    void write(Message message) {
+      if (mOut == null) {
+        return;
+      }
+      try {
+        mOut.writeShort(message.mAttributes.size());
+        mOut.writeInt(message.mWkid);
+        mOut.writeInt(message.mPointCount);
+        for (int j = 0; j < message.mPointCount * 2; j++) {
+          mOut.writeDouble(message.mCoordinates[j]);
+        }
+        for (Map.Entry<String, Object> attribute : message.mAttributes.entrySet()) {
+          mOut.writeUTF(attribute.getKey());
+          mOut.writeUTF((String) attribute.getValue());
+        }
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    void commit() {
+      if (mOut == null) {
+        return;
+      }
+      try {
+        mOut.writeShort(-1);
+        mOut.close();
+        mOut = null;
+        if (!mTemp.renameTo(mCache)) {
+          throw new IOException("Unable to write " + mCache);
+        }
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    void abort() {
+      if (mOut != null) {
+        close();
+        mTemp.delete();
+      }
+    }
+
+    private void fail(IOException e) {
+      Log.w(TAG, "Unable to write message cache: " + e.getMessage());
+      close();
+      mTemp.delete();
+      mCache.delete();
+    }
+
+    private void close() {
+      if (mOut != null) {
+        try {
+          mOut.close();
+        } catch (IOException ignored) {
+          // the partial cache is deleted anyway
+        }
+        mOut = null;
+      }
+    }
+  }
+
+  /**
+   * A parsed message, with its control points held as interleaved x and y values.
+   */
+  private static final class Message {
+
+    private final Map<String, Object> mAttributes;
+    private int mWkid;
+    private double[] mCoordinates = new double[0];
+    private int mPointCount;
+
+    Message(int expectedAttributes) {
+      mAttributes = new HashMap<>(expectedAttributes * 4 / 3 + 1);
+    }
+
+    /**
+     * Parses control points in the form x,y;x,y;... into the coordinate array.
+     */
+    void setControlPoints(String text) {
+      double[] coordinates = new double[16];
+      int count = 0;
+      int length = text.length();
+      int start = 0;
+      while (start < length) {
+        int end = start;
+        while (end < length && text.charAt(end) != ',' && text.charAt(end) != ';') {
+          end++;
+        }
+        // skip empty values, such as a trailing separator
+        int from = start;
+        int to = end;
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+          from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+          to--;
+        }
+        if (to > from) {
+          if (count == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, count * 2);
+          }
+          coordinates[count++] = parseDouble(text, from, to);
+        }
+        start = end + 1;
+      }
+      mPointCount = count / 2;
+      mCoordinates = Arrays.copyOf(coordinates, mPointCount * 2);
+    }
+
+    Graphic toGraphic() {
+      SpatialReference spatialReference = SpatialReference.create(mWkid);
+      PointCollection points = new PointCollection(spatialReference);
+      for (int i = 0; i < mPointCount; i++) {
+        points.add(mCoordinates[i * 2], mCoordinates[i * 2 + 1]);
+      }
+      // return a graphic with multipoint geometry
+      return new Graphic(new Multipoint(points), mAttributes);
+    }
+  }
+}
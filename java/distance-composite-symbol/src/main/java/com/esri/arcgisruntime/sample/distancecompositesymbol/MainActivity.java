@@ -17,16 +17,16 @@
 package com.esri.arcgisruntime.sample.distancecompositesymbol;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
-import android.content.res.AssetManager;
 import android.graphics.Color;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 import android.util.Log;
+import android.widget.Toast;
 
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.mapping.ArcGISScene;
@@ -55,10 +55,9 @@ public class MainActivity extends AppCompatActivity {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    // get plane model from assets
-    copyFileFromAssetsToCache(getString(R.string.bristol_dae));
-    copyFileFromAssetsToCache(getString(R.string.bristol_png));
-    copyFileFromAssetsToCache(getString(R.string.logo_jpg));
+    // stage plane model from assets into the cache directory in the background
+    ListenableFuture<Map<String, File>> stagedModel = new AssetStager(this)
+        .stage(getString(R.string.bristol_dae), getString(R.string.bristol_png), getString(R.string.logo_jpg));
 
     mSceneView = findViewById(R.id.sceneView);
 
@@ -82,16 +81,26 @@ public class MainActivity extends AppCompatActivity {
     SimpleMarkerSceneSymbol coneSymbol = SimpleMarkerSceneSymbol.createCone(Color.RED, 3, 10);
     coneSymbol.setPitch(-90);
     coneSymbol.setAnchorPosition(SceneSymbol.AnchorPosition.CENTER);
-    String modelURI = getCacheDir() + File.separator + getString(R.string.bristol_dae);
-    ModelSceneSymbol modelSymbol = new ModelSceneSymbol(modelURI, 1.0);
-    modelSymbol.loadAsync();
 
     // set up the distance composite symbol
     DistanceCompositeSceneSymbol compositeSymbol = new DistanceCompositeSceneSymbol();
-    compositeSymbol.getRangeCollection().add(new DistanceCompositeSceneSymbol.Range(modelSymbol, 0, 100));
     compositeSymbol.getRangeCollection().add(new DistanceCompositeSceneSymbol.Range(coneSymbol, 100, 500));
     compositeSymbol.getRangeCollection().add(new DistanceCompositeSceneSymbol.Range(circleSymbol, 500, 0));
 
+    // add the closest range once the plane model has been staged
+    stagedModel.addDoneListener(() -> {
+      try {
+        File model = stagedModel.get().get(getString(R.string.bristol_dae));
+        ModelSceneSymbol modelSymbol = new ModelSceneSymbol(model.getPath(), 1.0);
+        modelSymbol.loadAsync();
+        compositeSymbol.getRangeCollection().add(0, new DistanceCompositeSceneSymbol.Range(modelSymbol, 0, 100));
+      } catch (InterruptedException | ExecutionException e) {
+        String error = "Error staging plane model: " + e.getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
+    });
+
     // create graphic
     Point aircraftPosition = new Point(-2.708471, 56.096575, 5000, SpatialReferences.getWgs84());
     Graphic aircraftGraphic = new Graphic(aircraftPosition, compositeSymbol);
@@ -122,33 +131,4 @@ public class MainActivity extends AppCompatActivity {
     mSceneView.dispose();
     super.onDestroy();
   }
-
-  /**
-   * Copy the given file from the app's assets folder to the app's cache directory.
-   *
-   * @param fileName as String
-   */
-  private void copyFileFromAssetsToCache(String fileName) {
-    AssetManager assetManager = getApplicationContext().getAssets();
-
-    File file = new File(getCacheDir() + File.separator + fileName);
-
-    if (!file.exists()) {
-      try {
-        InputStream in = assetManager.open(fileName);
-        OutputStream out = new FileOutputStream(getCacheDir() + File.separator + fileName);
-        byte[] buffer = new byte[1024];
-        int read = in.read(buffer);
-        while (read != -1) {
-          out.write(buffer, 0, read);
-          read = in.read(buffer);
-        }
-        Log.i(TAG, fileName + " copied to cache.");
-      } catch (Exception e) {
-        Log.e(TAG, "Error writing " + fileName + " to cache. " + e.getMessage());
-      }
-    } else {
-      Log.i(TAG, fileName + " already in cache.");
-    }
-  }
 }
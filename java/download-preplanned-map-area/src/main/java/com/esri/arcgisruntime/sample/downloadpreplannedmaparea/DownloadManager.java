@@ -0,0 +1,466 @@
+/*
+ *  Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.esri.arcgisruntime.sample.downloadpreplannedmaparea;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Downloads a queue of map areas, running up to a limit of downloads at a time.
+ *
+ * An area is only started once there is room on disk for it, after the space still needed by the downloads already
+ * running and a margin to leave free. A download which fails is retried after a delay which doubles with each
+ * attempt, up to a limit of attempts, after which it can be retried by hand.
+ *
+ * Each area's size is estimated up front, so the bytes downloaded are estimated from the progress of its download.
+ * These give the throughput of all the downloads together and an estimated time remaining for each one running.
+ *
+ * Downloads are started by a {@link DownloadFactory}, such as a {@link PreplannedDownloadFactory}, and retries are
+ * scheduled by a {@link Scheduler}. Must be used from the thread downloads call back on.
+ *
+ * @param <R> type of the result of a download
+ */
+final class DownloadManager<R> {
+
+  enum State {QUEUED, RUNNING, RETRY_WAIT, SUCCEEDED, FAILED, CANCELLED}
+
+  /**
+   * A map area to download, and the state of its download.
+   */
+  static final class Area<R> {
+    private final String mId;
+    private final String mName;
+    private final long mEstimatedBytes;
+    private State mState = State.QUEUED;
+    private int mProgress;
+    private int mAttempts;
+    private long mStartMillis;
+    private Exception mError;
+    private R mResult;
+    private Download mDownload;
+
+    private Area(String id, String name, long estimatedBytes) {
+      mId = id;
+      mName = name;
+      mEstimatedBytes = estimatedBytes;
+    }
+
+    String getId() {
+      return mId;
+    }
+
+    String getName() {
+      return mName;
+    }
+
+    /**
+     * @return the estimated size of the area, or 0 if it isn't known
+     */
+    long getEstimatedBytes() {
+      return mEstimatedBytes;
+    }
+
+    State getState() {
+      return mState;
+    }
+
+    /**
+     * @return the progress of the current attempt at downloading the area, in percent
+     */
+    int getProgress() {
+      return mProgress;
+    }
+
+    int getAttempts() {
+      return mAttempts;
+    }
+
+    /**
+     * @return the error of the last attempt which failed, or null
+     */
+    Exception getError() {
+      return mError;
+    }
+
+    /**
+     * @return the result of the download once it has succeeded, or null
+     */
+    R getResult() {
+      return mResult;
+    }
+
+    private long getBytesDone() {
+      return mEstimatedBytes * mProgress / 100;
+    }
+  }
+
+  /**
+   * An attempt at downloading an area.
+   */
+  interface Download {
+    void cancel();
+  }
+
+  /**
+   * Starts the download of areas.
+   */
+  interface DownloadFactory<R> {
+    /**
+     * Starts an attempt at downloading an area, replacing anything left by an earlier attempt which failed.
+     */
+    Download start(String areaId, Callback<R> callback);
+  }
+
+  /**
+   * Receives the progress and outcome of a download.
+   */
+  interface Callback<R> {
+    void onProgress(int percent);
+
+    void onSucceeded(R result);
+
+    void onFailed(Exception e);
+  }
+
+  /**
+   * Schedules delayed tasks, and tells the time.
+   */
+  interface Scheduler {
+    /**
+     * @return a task which cancels the scheduled task
+     */
+    Runnable schedule(Runnable task, long delayMillis);
+
+    long nowMillis();
+  }
+
+  /**
+   * Tells the bytes free on the disk the areas are downloaded to.
+   */
+  interface SpaceProvider {
+    long getUsableBytes();
+  }
+
+  /**
+   * Is told of changes to the state or progress of an area's download.
+   */
+  interface Listener<R> {
+    void onAreaChanged(Area<R> area);
+  }
+
+  private final DownloadFactory<R> mFactory;
+  private final Scheduler mScheduler;
+  private final SpaceProvider mSpaceProvider;
+  private final int mMaxConcurrent;
+  private final long mMinFreeBytes;
+  private final int mMaxAttempts;
+  private final long mRetryMillis;
+  private Listener<R> mListener;
+
+  private final Map<String, Area<R>> mAreas = new LinkedHashMap<>();
+  private final Deque<Area<R>> mQueue = new ArrayDeque<>();
+  private final Map<Area<R>, Runnable> mRetries = new LinkedHashMap<>();
+  private int mRunning;
+
+  private long mBytesCompleted;
+  private long mActiveMillis;
+  private long mActiveSinceMillis;
+  private int mSucceeded;
+  private int mFailedAttempts;
+  private int mWaitsForSpace;
+
+  /**
+   * @param factory       starts the downloads
+   * @param scheduler     schedules retries and tells the time
+   * @param spaceProvider tells the bytes free on disk
+   * @param maxConcurrent number of downloads to run at a time
+   * @param minFreeBytes  bytes to leave free on disk once all the running downloads have finished
+   * @param maxAttempts   number of attempts at downloading an area before leaving it failed
+   * @param retryMillis   delay before the first retry, doubled with each later one
+   */
+  DownloadManager(DownloadFactory<R> factory, Scheduler scheduler, SpaceProvider spaceProvider, int maxConcurrent,
+      long minFreeBytes, int maxAttempts, long retryMillis) {
+    mFactory = factory;
+    mScheduler = scheduler;
+    mSpaceProvider = spaceProvider;
+    mMaxConcurrent = maxConcurrent;
+    mMinFreeBytes = minFreeBytes;
+    mMaxAttempts = maxAttempts;
+    mRetryMillis = retryMillis;
+  }
+
+  void setListener(Listener<R> listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Queues an area to be downloaded, unless it is already queued, downloading or downloaded.
+   *
+   * @param id             the area's ID
+   * @param name           the area's name, to show
+   * @param estimatedBytes the estimated size of the area, or 0 if it isn't known
+   * @return the area
+   */
+  Area<R> enqueue(String id, String name, long estimatedBytes) {
+    Area<R> area = mAreas.get(id);
+    if (area != null) {
+      if (area.mState == State.FAILED || area.mState == State.CANCELLED) {
+        retry(id);
+      }
+      return area;
+    }
+    area = new Area<>(id, name, estimatedBytes);
+    mAreas.put(id, area);
+    mQueue.add(area);
+    changed(area);
+    startNext();
+    return area;
+  }
+
+  /**
+   * Queues an area again whose download failed or was cancelled, with a full set of attempts.
+   */
+  void retry(String id) {
+    Area<R> area = mAreas.get(id);
+    if (area == null || (area.mState != State.FAILED && area.mState != State.CANCELLED)) {
+      return;
+    }
+    area.mAttempts = 0;
+    area.mState = State.QUEUED;
+    mQueue.add(area);
+    changed(area);
+    startNext();
+  }
+
+  /**
+   * Cancels the download of an area, whether it is running, queued or waiting to be retried.
+   */
+  void cancel(String id) {
+    Area<R> area = mAreas.get(id);
+    if (area == null) {
+      return;
+    }
+    switch (area.mState) {
+      case RUNNING:
+        Download download = area.mDownload;
+        finishAttempt(area);
+        download.cancel();
+        break;
+      case QUEUED:
+        mQueue.remove(area);
+        break;
+      case RETRY_WAIT:
+        mRetries.remove(area).run();
+        break;
+      default:
+        return;
+    }
+    area.mState = State.CANCELLED;
+    changed(area);
+    startNext();
+  }
+
+  /**
+   * @return the areas in the order they were queued
+   */
+  List<Area<R>> getAreas() {
+    return new ArrayList<>(mAreas.values());
+  }
+
+  Area<R> getArea(String id) {
+    return mAreas.get(id);
+  }
+
+  /**
+   * @return the estimated bytes downloaded per second by all the downloads together, while any have been running
+   */
+  double getBytesPerSecond() {
+    long activeMillis = mActiveMillis + (mRunning > 0 ? mScheduler.nowMillis() - mActiveSinceMillis : 0);
+    if (activeMillis <= 0) {
+      return 0;
+    }
+    long bytes = mBytesCompleted;
+    for (Area<R> area : mAreas.values()) {
+      if (area.mState == State.RUNNING) {
+        bytes += area.getBytesDone();
+      }
+    }
+    return bytes * 1000.0 / activeMillis;
+  }
+
+  /**
+   * @return the estimated time until an area's download finishes, from the progress of its attempt so far, or -1 if
+   * it isn't running or hasn't made progress yet
+   */
+  long getEtaMillis(Area<R> area) {
+    if (area.mState != State.RUNNING || area.mProgress <= 0) {
+      return -1;
+    }
+    long elapsed = mScheduler.nowMillis() - area.mStartMillis;
+    return elapsed * (100 - area.mProgress) / area.mProgress;
+  }
+
+  /**
+   * Starts queued areas while there are free download slots and room on disk for them.
+   */
+  private void startNext() {
+    while (mRunning < mMaxConcurrent && !mQueue.isEmpty()) {
+      Area<R> area = mQueue.peek();
+      if (!hasRoomFor(area)) {
+        if (mRunning > 0) {
+          // wait for the running downloads to finish, when the space they still need is known
+          mWaitsForSpace++;
+          return;
+        }
+        mQueue.poll();
+        area.mError = new IOException("Not enough space to download " + area.mName);
+        area.mState = State.FAILED;
+        changed(area);
+        continue;
+      }
+      mQueue.poll();
+      start(area);
+    }
+  }
+
+  private boolean hasRoomFor(Area<R> area) {
+    long needed = area.mEstimatedBytes + mMinFreeBytes;
+    for (Area<R> running : mAreas.values()) {
+      if (running.mState == State.RUNNING) {
+        needed += running.mEstimatedBytes - running.getBytesDone();
+      }
+    }
+    return mSpaceProvider.getUsableBytes() >= needed;
+  }
+
+  private void start(Area<R> area) {
+    if (mRunning++ == 0) {
+      mActiveSinceMillis = mScheduler.nowMillis();
+    }
+    area.mState = State.RUNNING;
+    area.mAttempts++;
+    area.mProgress = 0;
+    area.mStartMillis = mScheduler.nowMillis();
+    changed(area);
+    // set once the download has been started, so callbacks of an earlier attempt, or made while starting, can be told
+    // apart from those of this one
+    final Download[] download = new Download[1];
+    Callback<R> callback = new Callback<R>() {
+      @Override public void onProgress(int percent) {
+        if (area.mDownload == download[0] && area.mState == State.RUNNING) {
+          area.mProgress = percent;
+          changed(area);
+        }
+      }
+
+      @Override public void onSucceeded(R result) {
+        if (area.mDownload == download[0] && area.mState == State.RUNNING) {
+          onAttemptSucceeded(area, result);
+        }
+      }
+
+      @Override public void onFailed(Exception e) {
+        if (area.mDownload == download[0] && area.mState == State.RUNNING) {
+          onAttemptFailed(area, e);
+        }
+      }
+    };
+    area.mDownload = null;
+    try {
+      download[0] = mFactory.start(area.mId, callback);
+    } catch (RuntimeException e) {
+      callback.onFailed(e);
+      return;
+    }
+    if (area.mState == State.RUNNING) {
+      area.mDownload = download[0];
+    }
+  }
+
+  private void onAttemptSucceeded(Area<R> area, R result) {
+    finishAttempt(area);
+    area.mProgress = 100;
+    area.mResult = result;
+    area.mError = null;
+    area.mState = State.SUCCEEDED;
+    mBytesCompleted += area.mEstimatedBytes;
+    mSucceeded++;
+    changed(area);
+    startNext();
+  }
+
+  private void onAttemptFailed(Area<R> area, Exception e) {
+    finishAttempt(area);
+    mFailedAttempts++;
+    area.mError = e;
+    if (area.mAttempts < mMaxAttempts) {
+      area.mState = State.RETRY_WAIT;
+      long delay = mRetryMillis << Math.min(area.mAttempts - 1, 16);
+      mRetries.put(area, mScheduler.schedule(() -> {
+        mRetries.remove(area);
+        area.mState = State.QUEUED;
+        // a retry goes ahead of areas which haven't been tried yet
+        mQueue.addFirst(area);
+        changed(area);
+        startNext();
+      }, delay));
+    } else {
+      area.mState = State.FAILED;
+    }
+    changed(area);
+    startNext();
+  }
+
+  /**
+   * Frees the download slot of an area whose attempt has finished.
+   */
+  private void finishAttempt(Area<R> area) {
+    area.mDownload = null;
+    if (--mRunning == 0) {
+      mActiveMillis += mScheduler.nowMillis() - mActiveSinceMillis;
+    }
+  }
+
+  private void changed(Area<R> area) {
+    if (mListener != null) {
+      mListener.onAreaChanged(area);
+    }
+  }
+
+  /**
+   * @return the number of areas in each state, the throughput, failed attempts and waits for space
+   */
+  @Override
+  public String toString() {
+    int[] counts = new int[State.values().length];
+    for (Area<R> area : mAreas.values()) {
+      counts[area.mState.ordinal()]++;
+    }
+    return String.format(Locale.US,
+        "%d queued, %d running, %d waiting to retry, %d succeeded, %d failed, %d cancelled, %.2f MB/s, "
+            + "%d failed attempts, %d waits for space",
+        counts[State.QUEUED.ordinal()], counts[State.RUNNING.ordinal()], counts[State.RETRY_WAIT.ordinal()],
+        counts[State.SUCCEEDED.ordinal()], counts[State.FAILED.ordinal()], counts[State.CANCELLED.ordinal()],
+        getBytesPerSecond() / (1024 * 1024), mFailedAttempts, mWaitsForSpace);
+  }
+}
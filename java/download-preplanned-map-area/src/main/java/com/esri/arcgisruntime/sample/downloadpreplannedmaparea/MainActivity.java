@@ -18,26 +18,29 @@ package com.esri.arcgisruntime.sample.downloadpreplannedmaparea;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import androidx.appcompat.app.AppCompatActivity;
 import android.util.Log;
+import android.util.SparseBooleanArray;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ListView;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import com.esri.arcgisruntime.ArcGISRuntimeException;
-import com.esri.arcgisruntime.concurrent.Job;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
-import com.esri.arcgisruntime.data.FeatureTable;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.GeometryEngine;
-import com.esri.arcgisruntime.layers.Layer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.Viewpoint;
@@ -50,17 +53,25 @@ import com.esri.arcgisruntime.security.AuthenticationManager;
 import com.esri.arcgisruntime.security.DefaultAuthenticationChallengeHandler;
 import com.esri.arcgisruntime.symbology.SimpleLineSymbol;
 import com.esri.arcgisruntime.symbology.SimpleRenderer;
-import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapJob;
-import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapParameters;
-import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapResult;
 import com.esri.arcgisruntime.tasks.offlinemap.OfflineMapTask;
 import com.esri.arcgisruntime.tasks.offlinemap.PreplannedMapArea;
-import com.esri.arcgisruntime.tasks.offlinemap.PreplannedUpdateMode;
 
-public class MainActivity extends AppCompatActivity implements ProgressDialogFragment.OnProgressDialogDismissListener {
+public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+  private static final long MIN_FREE_BYTES = 50L * 1024 * 1024;
+  private static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+  private static final long DOWNLOAD_RETRY_MILLIS = 5000;
+  private static final long OFFLINE_CONTENT_QUOTA_BYTES = 1024L * 1024 * 1024;
+
+  // the downloads belong to the process rather than the activity, so they keep running while the activity is gone
+  // and are shown again when it is recreated
+  private static DownloadManager<ArcGISMap> sDownloadManager;
+  private static OfflineContentStore sOfflineContentStore;
+  private static final Map<String, PreplannedMapArea> sPreplannedMapAreasById = new HashMap<>();
+
   private File mOfflineMapDirectory;
 
   private ListView mPreplannedAreasListView;
@@ -69,25 +80,19 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
   private ListView mDownloadedMapAreasListView;
   private List<String> mDownloadedMapAreaNames;
   private ArrayAdapter<String> mDownloadedMapAreasAdapter;
-  private List<ArcGISMap> mDownloadedMapAreas = new ArrayList<>();
+  private List<DownloadManager.Area<ArcGISMap>> mDownloadedMapAreas = new ArrayList<>();
   private Button mDownloadButton;
 
-  private PreplannedMapArea mSelectedPreplannedMapArea;
   private List<PreplannedMapArea> mPreplannedMapAreas;
-  private DownloadPreplannedOfflineMapJob mDownloadPreplannedOfflineMapJob;
   private MapView mMapView;
   private GraphicsOverlay mAreasOfInterestGraphicsOverlay;
-  private OfflineMapTask mOfflineMapTask;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
-    
-    // delete any previous instances of downloaded maps
-    deleteDirectory(getCacheDir());
 
-    // create up a temporary directory in the app's cache for saving downloaded preplanned maps
+    // create up a directory in the app's cache for saving downloaded preplanned maps
     mOfflineMapDirectory = new File(getCacheDir() + getString(R.string.preplanned_offline_map_dir));
     if (mOfflineMapDirectory.mkdirs()) {
       Log.i(TAG, "Created directory for offline map in " + mOfflineMapDirectory.getPath());
@@ -106,8 +111,6 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
     Portal portal = new Portal(getString(R.string.arcgis_online_url));
     // create a portal item using the portal and the item id of a map service
     PortalItem portalItem = new PortalItem(portal, getString(R.string.naperville_water_network_url));
-    // create an offline map task from the portal item
-    mOfflineMapTask = new OfflineMapTask(portalItem);
     // create a map with the portal item
     ArcGISMap onlineMap = new ArcGISMap(portalItem);
     // show the map
@@ -117,6 +120,12 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
     // create an offline map task for the portal item
     OfflineMapTask offlineMapTask = new OfflineMapTask(portalItem);
 
+    if (sDownloadManager == null) {
+      // keep the areas downloaded earlier, so they can be opened again without downloading them
+      sOfflineContentStore = new OfflineContentStore(mOfflineMapDirectory, OFFLINE_CONTENT_QUOTA_BYTES);
+      sDownloadManager = createDownloadManager(offlineMapTask, sOfflineContentStore, mOfflineMapDirectory);
+    }
+
     // create a graphics overlay to show the preplanned map areas extents (areas of interest)
     mAreasOfInterestGraphicsOverlay = new GraphicsOverlay();
     mMapView.getGraphicsOverlays().add(mAreasOfInterestGraphicsOverlay);
@@ -133,89 +142,53 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
     // create download button
     mDownloadButton = findViewById(R.id.downloadButton);
     mDownloadButton.setEnabled(false);
-    mDownloadButton.setOnClickListener(view -> downloadPreplannedArea());
+    mDownloadButton.setOnClickListener(view -> downloadPreplannedAreas());
+
+    // show the downloads as they progress, including any which ran while the activity was gone
+    sDownloadManager.setListener(area -> updateDownloads());
+    updateDownloads();
   }
 
   /**
-   * Download the selected preplanned map area from the list view to a temporary directory. The download job is tracked in another list view.
+   * Creates a download manager which downloads preplanned map areas of the given task to the offline map directory.
+   * Its retries are scheduled on the main thread, which the runtime calls back on. Static, so that the manager
+   * doesn't hold on to the activity.
    */
-  private void downloadPreplannedArea() {
-    if (mSelectedPreplannedMapArea != null) {
-      // create default download parameters from the offline map task
-      ListenableFuture<DownloadPreplannedOfflineMapParameters> offlineMapParametersFuture = mOfflineMapTask
-          .createDefaultDownloadPreplannedOfflineMapParametersAsync(mSelectedPreplannedMapArea);
-      offlineMapParametersFuture.addDoneListener(() -> {
-        try {
-          // get the offline map parameters
-          DownloadPreplannedOfflineMapParameters offlineMapParameters = offlineMapParametersFuture.get();
-          // set the update mode to not receive updates
-          offlineMapParameters.setUpdateMode(PreplannedUpdateMode.NO_UPDATES);
-          // create a job to download the preplanned offline map to a temporary directory
-          mDownloadPreplannedOfflineMapJob = mOfflineMapTask.downloadPreplannedOfflineMap(offlineMapParameters,
-              mOfflineMapDirectory.getPath() + File.separator + mSelectedPreplannedMapArea.getPortalItem().getTitle());
-          // start the job
-          mDownloadPreplannedOfflineMapJob.start();
-
-          // show progress dialog for download, includes tracking progress
-          showProgressDialog();
-
-          // when the job finishes
-          mDownloadPreplannedOfflineMapJob.addJobDoneListener(() -> {
-            dismissDialog();
-            // if there's a result from the download preplanned offline map job
-            if (mDownloadPreplannedOfflineMapJob.getStatus() == Job.Status.SUCCEEDED) {
-              DownloadPreplannedOfflineMapResult downloadPreplannedOfflineMapResult = mDownloadPreplannedOfflineMapJob
-                  .getResult();
-              if (mDownloadPreplannedOfflineMapJob != null && !downloadPreplannedOfflineMapResult.hasErrors()) {
-                // get the offline map
-                ArcGISMap offlineMap = downloadPreplannedOfflineMapResult.getOfflineMap();
-                // add it to the map view
-                mMapView.setMap(offlineMap);
-                // add the map name to the list view of downloaded map areas
-                mDownloadedMapAreaNames.add(offlineMap.getItem().getTitle());
-                // select the downloaded map area
-                mDownloadedMapAreasListView.setItemChecked(mDownloadedMapAreaNames.size() - 1, true);
-                mDownloadedMapAreasAdapter.notifyDataSetChanged();
-                // de-select the area in the preplanned areas list view
-                mPreplannedAreasListView.clearChoices();
-                mPreplannedMapAreasAdapter.notifyDataSetChanged();
-                // add the offline map to a list of downloaded map areas
-                mDownloadedMapAreas.add(offlineMap);
-                // hide the area of interest graphics
-                mAreasOfInterestGraphicsOverlay.setVisible(false);
-                // disable the download button
-                mDownloadButton.setEnabled(false);
-              } else {
-                // collect the layer and table errors into a single alert message
-                StringBuilder stringBuilder = new StringBuilder("Errors: ");
-                Map<Layer, ArcGISRuntimeException> layerErrors = downloadPreplannedOfflineMapResult.getLayerErrors();
-                for (Map.Entry<Layer, ArcGISRuntimeException> layer : layerErrors.entrySet()) {
-                  stringBuilder.append("Layer: ").append(layer.getKey().getName()).append(". Exception: ")
-                      .append(layer.getValue().getMessage()).append(". ");
-                }
-                Map<FeatureTable, ArcGISRuntimeException> tableErrors = downloadPreplannedOfflineMapResult
-                    .getTableErrors();
-                for (Map.Entry<FeatureTable, ArcGISRuntimeException> table : tableErrors.entrySet()) {
-                  stringBuilder.append("Table: ").append(table.getKey().getTableName()).append(". Exception: ")
-                      .append(table.getValue().getMessage()).append(". ");
-                }
-                String error = "One or more errors occurred with the Offline Map Result: " + stringBuilder;
-                Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-                Log.e(TAG, error);
-              }
-            } else {
-              String error = "Job finished with an error: " + mDownloadPreplannedOfflineMapJob.getError();
-              Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-              Log.e(TAG, error);
-            }
-          });
-        } catch (InterruptedException | ExecutionException e) {
-          String error = "Failed to generate default parameters for the download job: " + e.getCause().getMessage();
-          Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-          Log.e(TAG, error);
-        }
-      });
+  private static DownloadManager<ArcGISMap> createDownloadManager(OfflineMapTask offlineMapTask,
+      OfflineContentStore offlineContentStore, File offlineMapDirectory) {
+    Handler mainHandler = new Handler(Looper.getMainLooper());
+    DownloadManager.Scheduler scheduler = new DownloadManager.Scheduler() {
+      @Override public Runnable schedule(Runnable task, long delayMillis) {
+        mainHandler.postDelayed(task, delayMillis);
+        return () -> mainHandler.removeCallbacks(task);
+      }
+
+      @Override public long nowMillis() {
+        return SystemClock.elapsedRealtime();
+      }
+    };
+    return new DownloadManager<>(
+        new PreplannedDownloadFactory(offlineMapTask, sPreplannedMapAreasById, offlineContentStore),
+        scheduler, offlineMapDirectory::getUsableSpace, MAX_CONCURRENT_DOWNLOADS, MIN_FREE_BYTES,
+        MAX_DOWNLOAD_ATTEMPTS, DOWNLOAD_RETRY_MILLIS);
+  }
+
+  /**
+   * Queue the preplanned map areas checked in the list view for download. The downloads are tracked in another list
+   * view.
+   */
+  private void downloadPreplannedAreas() {
+    SparseBooleanArray checkedPositions = mPreplannedAreasListView.getCheckedItemPositions();
+    for (int i = 0; i < mPreplannedMapAreas.size(); i++) {
+      if (checkedPositions.get(i)) {
+        PortalItem areaPortalItem = mPreplannedMapAreas.get(i).getPortalItem();
+        sDownloadManager.enqueue(areaPortalItem.getItemId(), areaPortalItem.getTitle(), areaPortalItem.getSize());
+      }
     }
+    // de-select the areas in the preplanned areas list view
+    mPreplannedAreasListView.clearChoices();
+    mPreplannedMapAreasAdapter.notifyDataSetChanged();
+    mDownloadButton.setEnabled(false);
   }
 
   private void createPreplannedAreasListView(ArcGISMap onlineMap, OfflineMapTask offlineMapTask) {
@@ -233,8 +206,19 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
         mPreplannedMapAreas = preplannedMapAreasFuture.get();
         for (PreplannedMapArea preplannedMapArea : mPreplannedMapAreas) {
           mPreplannedMapAreaNames.add(preplannedMapArea.getPortalItem().getTitle());
+          // keep the areas which running downloads were started with
+          if (!sPreplannedMapAreasById.containsKey(preplannedMapArea.getPortalItem().getItemId())) {
+            sPreplannedMapAreasById.put(preplannedMapArea.getPortalItem().getItemId(), preplannedMapArea);
+          }
         }
         mPreplannedMapAreasAdapter.notifyDataSetChanged();
+        // show the areas downloaded earlier, opening them from the offline content store
+        for (OfflineContentStore.Entry entry : sOfflineContentStore.getInventory()) {
+          PreplannedMapArea storedArea = sPreplannedMapAreasById.get(entry.getKey());
+          if (storedArea != null) {
+            sDownloadManager.enqueue(entry.getKey(), storedArea.getPortalItem().getTitle(), 0);
+          }
+        }
         // load each area and show a red border around their area of interest
         for (PreplannedMapArea preplannedMapArea : mPreplannedMapAreas) {
           preplannedMapArea.loadAsync();
@@ -250,30 +234,21 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
         }
         // on list view click
         mPreplannedAreasListView.setOnItemClickListener((adapterView, view, i, l) -> {
-          mSelectedPreplannedMapArea = mPreplannedMapAreas.get(i);
-          if (mSelectedPreplannedMapArea != null) {
-            // show graphics overlay which highlights available preplanned map areas
-            mAreasOfInterestGraphicsOverlay.setVisible(true);
-            // clear the download jobs list view selection
-            mDownloadedMapAreasListView.clearChoices();
-            mDownloadedMapAreasAdapter.notifyDataSetChanged();
-            // show the online map with the areas of interest
-            mMapView.setMap(onlineMap);
-            mAreasOfInterestGraphicsOverlay.setVisible(true);
+          PreplannedMapArea selectedPreplannedMapArea = mPreplannedMapAreas.get(i);
+          // clear the download jobs list view selection
+          mDownloadedMapAreasListView.clearChoices();
+          mDownloadedMapAreasAdapter.notifyDataSetChanged();
+          // show the online map with the areas of interest
+          mMapView.setMap(onlineMap);
+          mAreasOfInterestGraphicsOverlay.setVisible(true);
+          if (mPreplannedAreasListView.isItemChecked(i)) {
             // set the viewpoint to the preplanned map area's area of interest
-            Envelope areaOfInterest = GeometryEngine.buffer(mSelectedPreplannedMapArea.getAreaOfInterest(), 50)
+            Envelope areaOfInterest = GeometryEngine.buffer(selectedPreplannedMapArea.getAreaOfInterest(), 50)
                 .getExtent();
             mMapView.setViewpointAsync(new Viewpoint(areaOfInterest), 1.5f);
-            // enable download button only for those map areas which have not been downloaded already
-            if (new File(getCacheDir() + getString(R.string.preplanned_offline_map_dir) + File.separator
-                + mSelectedPreplannedMapArea.getPortalItem().getTitle()).exists()) {
-              mDownloadButton.setEnabled(false);
-            } else {
-              mDownloadButton.setEnabled(true);
-            }
-          } else {
-            mDownloadButton.setEnabled(false);
           }
+          // enable download button while any map area is checked
+          mDownloadButton.setEnabled(mPreplannedAreasListView.getCheckedItemCount() > 0);
         });
       } catch (InterruptedException | ExecutionException e) {
         String error = "Failed to get the Preplanned Map Areas from the Offline Map Task.";
@@ -284,99 +259,89 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
   }
 
   private void createDownloadAreasListView() {
-    // create a list view which holds downloaded map areas
+    // create a list view which holds the downloads and their progress
     mDownloadedMapAreasListView = findViewById(R.id.downloadedMapAreasListView);
     mDownloadedMapAreaNames = new ArrayList<>();
     mDownloadedMapAreasAdapter = new ArrayAdapter<>(this, R.layout.item_map_area, mDownloadedMapAreaNames);
     mDownloadedMapAreasListView.setAdapter(mDownloadedMapAreasAdapter);
     mDownloadedMapAreasListView.setOnItemClickListener((adapterView, view, i, l) -> {
-      // set the downloaded map to the map view
-      mMapView.setMap(mDownloadedMapAreas.get(i));
-      // disable the download button
-      mDownloadButton.setEnabled(false);
-      // clear the available map areas list view selection
-      mPreplannedAreasListView.clearChoices();
-      mPreplannedMapAreasAdapter.notifyDataSetChanged();
-
-      // hide the graphics overlays
-      mAreasOfInterestGraphicsOverlay.setVisible(false);
+      DownloadManager.Area<ArcGISMap> area = mDownloadedMapAreas.get(i);
+      switch (area.getState()) {
+        case SUCCEEDED:
+          // set the downloaded map to the map view
+          mMapView.setMap(area.getResult());
+          // clear the available map areas list view selection
+          mPreplannedAreasListView.clearChoices();
+          mPreplannedMapAreasAdapter.notifyDataSetChanged();
+          mDownloadButton.setEnabled(false);
+          // hide the graphics overlays
+          mAreasOfInterestGraphicsOverlay.setVisible(false);
+          break;
+        case FAILED:
+        case CANCELLED:
+          // queue the area again
+          sDownloadManager.retry(area.getId());
+          mDownloadedMapAreasListView.clearChoices();
+          break;
+        default:
+          mDownloadedMapAreasListView.clearChoices();
+          Toast.makeText(this, R.string.long_press_to_cancel, Toast.LENGTH_SHORT).show();
+      }
+    });
+    // cancel a download on long press
+    mDownloadedMapAreasListView.setOnItemLongClickListener((adapterView, view, i, l) -> {
+      sDownloadManager.cancel(mDownloadedMapAreas.get(i).getId());
+      return true;
     });
   }
 
   /**
-   * Dismiss the dialog.
-   */
-  private void dismissDialog() {
-    // dismiss progress dialog
-    if (findProgressDialogFragment() != null) {
-      findProgressDialogFragment().dismiss();
-    }
-  }
-
-  /**
-   * Show dialog and track progress.
-   */
-  private void showProgressDialog() {
-    // show progress of the download preplanned offline map job in a dialog
-    if (findProgressDialogFragment() == null) {
-      ProgressDialogFragment progressDialogFragment = ProgressDialogFragment
-          .newInstance("Download preplanned offline map job", "Downloading the requested preplanned map area...",
-              "Cancel");
-      progressDialogFragment.show(getSupportFragmentManager(), ProgressDialogFragment.class.getSimpleName());
-
-      // track progress
-      mDownloadPreplannedOfflineMapJob.addProgressChangedListener(() -> {
-        if (findProgressDialogFragment() != null) {
-          findProgressDialogFragment().setProgress(mDownloadPreplannedOfflineMapJob.getProgress());
-        }
-      });
-    }
-  }
-
-  /**
-   * Find and return the progress dialog fragment.
-   *
-   * @return the progress dialog fragment.
-   */
-  private ProgressDialogFragment findProgressDialogFragment() {
-    return (ProgressDialogFragment) getSupportFragmentManager()
-        .findFragmentByTag(ProgressDialogFragment.class.getSimpleName());
-  }
-
-  /**
-   * Callback to cancel the download preplanned offline map job on progress dialog cancel button click.
+   * Show the state of each download in the downloads list view, with the throughput of all of them in its heading.
    */
-  @Override public void onProgressDialogDismiss() {
-    if (mDownloadPreplannedOfflineMapJob != null) {
-      mDownloadPreplannedOfflineMapJob.cancel();
+  private void updateDownloads() {
+    mDownloadedMapAreas.clear();
+    mDownloadedMapAreas.addAll(sDownloadManager.getAreas());
+    mDownloadedMapAreaNames.clear();
+    for (DownloadManager.Area<ArcGISMap> area : mDownloadedMapAreas) {
+      mDownloadedMapAreaNames.add(getString(R.string.download_item, area.getName(), describe(area)));
     }
+    mDownloadedMapAreasAdapter.notifyDataSetChanged();
+    ((TextView) findViewById(R.id.downloadedAreasTextView)).setText(
+        getString(R.string.downloads_throughput, sDownloadManager.getBytesPerSecond() / (1024 * 1024)));
   }
 
   /**
-   * Recursively deletes all files in the given directory.
-   *
-   * @param dir to delete
+   * @return the state of an area's download, with its progress and time remaining while it runs
    */
-  private static boolean deleteDirectory(File dir) {
-    if (dir != null && dir.isDirectory()) {
-      String[] children = dir.list();
-      for (String child : children) {
-        boolean success = deleteDirectory(new File(dir, child));
-        if (!success) {
-          return false;
+  private String describe(DownloadManager.Area<ArcGISMap> area) {
+    switch (area.getState()) {
+      case QUEUED:
+        return getString(R.string.download_queued);
+      case RUNNING:
+        long etaMillis = sDownloadManager.getEtaMillis(area);
+        if (etaMillis < 0) {
+          return getString(R.string.download_running, area.getProgress());
         }
-      }
-      return dir.delete();
-    } else if (dir != null && dir.isFile()) {
-      return dir.delete();
-    } else {
-      return false;
+        long etaSeconds = etaMillis / 1000;
+        return getString(R.string.download_running_eta, area.getProgress(),
+            String.format(Locale.US, "%d:%02d", etaSeconds / 60, etaSeconds % 60));
+      case RETRY_WAIT:
+        return getString(R.string.download_retrying, area.getAttempts());
+      case SUCCEEDED:
+        return getString(R.string.download_succeeded);
+      case FAILED:
+        return getString(R.string.download_failed,
+            area.getError() != null ? area.getError().getMessage() : "");
+      default:
+        return getString(R.string.download_cancelled);
     }
   }
 
   @Override
   protected void onPause() {
     mMapView.pause();
+    Log.i(TAG, "Downloads: " + sDownloadManager);
+    Log.i(TAG, "Offline content: " + sOfflineContentStore);
     super.onPause();
   }
 
@@ -388,6 +353,8 @@ public class MainActivity extends AppCompatActivity implements ProgressDialogFra
 
   @Override
   protected void onDestroy() {
+    // the downloads carry on without the activity
+    sDownloadManager.setListener(null);
     mMapView.dispose();
     super.onDestroy();
   }
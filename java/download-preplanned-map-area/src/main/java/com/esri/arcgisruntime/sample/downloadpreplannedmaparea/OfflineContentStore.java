@@ -0,0 +1,423 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.downloadpreplannedmaparea;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.util.Log;
+
+/**
+ * Keeps offline content, such as offline maps, mobile map packages and geodatabases, in a directory under a quota.
+ *
+ * Content is stored under a key describing what was taken offline, so it can be found and reused rather than taken
+ * offline again. The size and last access time of each piece of content are kept in an index file. Once the content
+ * stored exceeds the quota, the least recently used content is evicted, other than content which is pinned because it
+ * is in use.
+ *
+ * Content is retired by renaming it into a trash directory, which is quick whatever its size, and is then deleted on
+ * a background thread. Anything left in the trash, or left by a job which didn't finish, is deleted when the store
+ * is opened. Must be used from a single thread.
+ */
+final class OfflineContentStore {
+
+  private static final String TAG = OfflineContentStore.class.getSimpleName();
+
+  private static final String INDEX_FILE = "index";
+  private static final String TRASH_DIRECTORY = ".trash";
+  private static final String PART_SUFFIX = ".part";
+
+  enum Kind {OFFLINE_MAP, MOBILE_MAP_PACKAGE, GEODATABASE}
+
+  /**
+   * A piece of stored content.
+   */
+  static final class Entry {
+    private final String mKey;
+    private final Kind mKind;
+    private final File mFile;
+    private final long mSizeBytes;
+    private long mLastAccessMillis;
+
+    private Entry(String key, Kind kind, File file, long sizeBytes, long lastAccessMillis) {
+      mKey = key;
+      mKind = kind;
+      mFile = file;
+      mSizeBytes = sizeBytes;
+      mLastAccessMillis = lastAccessMillis;
+    }
+
+    String getKey() {
+      return mKey;
+    }
+
+    Kind getKind() {
+      return mKind;
+    }
+
+    /**
+     * @return the file or directory of the content
+     */
+    File getFile() {
+      return mFile;
+    }
+
+    long getSizeBytes() {
+      return mSizeBytes;
+    }
+
+    long getLastAccessMillis() {
+      return mLastAccessMillis;
+    }
+  }
+
+  private final File mDirectory;
+  private final File mTrashDirectory;
+  private final long mQuotaBytes;
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+  private final Map<String, Entry> mEntries = new HashMap<>();
+  // content being written by a job, by key
+  private final Map<String, Kind> mReserved = new HashMap<>();
+  // content in use, by key, which isn't evicted
+  private final Set<String> mPinned = new HashSet<>();
+  private long mTotalBytes;
+  private long mLastAccessMillis;
+
+  private int mReuses;
+  private int mEvictions;
+  private long mEvictedBytes;
+  private int mPendingDeletes;
+
+  /**
+   * Opens the store in the given directory, deleting anything in it which isn't in the index.
+   *
+   * @param directory  directory the content is stored in
+   * @param quotaBytes bytes of content to keep before evicting the least recently used
+   */
+  OfflineContentStore(File directory, long quotaBytes) {
+    mDirectory = directory;
+    mTrashDirectory = new File(directory, TRASH_DIRECTORY);
+    mQuotaBytes = quotaBytes;
+    if (!mTrashDirectory.isDirectory() && !mTrashDirectory.mkdirs()) {
+      Log.e(TAG, "Could not create " + mTrashDirectory);
+    }
+    readIndex();
+    // retire the output of jobs which didn't finish, and empty the trash
+    Set<String> names = new HashSet<>();
+    for (Entry entry : mEntries.values()) {
+      names.add(entry.mFile.getName());
+    }
+    File[] files = mDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!names.contains(name) && !name.equals(INDEX_FILE) && !name.equals(TRASH_DIRECTORY)) {
+          trash(file);
+        }
+      }
+    }
+    File[] trashed = mTrashDirectory.listFiles();
+    if (trashed != null) {
+      for (File file : trashed) {
+        deleteInBackground(file);
+      }
+    }
+  }
+
+  /**
+   * Gets the content stored under a key and marks it as used.
+   *
+   * @return the file or directory of the content, or null if none is stored
+   */
+  File open(String key) {
+    Entry entry = mEntries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    entry.mLastAccessMillis = nextAccessMillis();
+    mReuses++;
+    writeIndex();
+    return entry.mFile;
+  }
+
+  /**
+   * Reserves a path for content to be written to under a key, retiring any content already stored under it. The path
+   * doesn't exist, as jobs taking content offline require.
+   *
+   * @param key  describes the content, without tabs or line breaks
+   * @param kind of content
+   * @return the path to write the content to
+   */
+  File reserve(String key, Kind kind) {
+    if (key.indexOf('\t') >= 0 || key.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("Key must not contain tabs or line breaks: " + key);
+    }
+    remove(key);
+    File file = fileFor(key);
+    if (file.exists()) {
+      trash(file);
+    }
+    mReserved.put(key, kind);
+    return file;
+  }
+
+  /**
+   * Adds the content written to a reserved path to the store, then evicts the least recently used content, other than
+   * this, until the content stored fits the quota.
+   *
+   * @return the stored content
+   */
+  Entry commit(String key) {
+    Kind kind = mReserved.remove(key);
+    if (kind == null) {
+      throw new IllegalStateException("No content reserved for " + key);
+    }
+    File file = fileFor(key);
+    Entry entry = new Entry(key, kind, file, sizeOf(file), nextAccessMillis());
+    mEntries.put(key, entry);
+    mTotalBytes += entry.mSizeBytes;
+    evict(entry);
+    writeIndex();
+    return entry;
+  }
+
+  /**
+   * Retires the content stored or reserved under a key.
+   */
+  void remove(String key) {
+    if (mReserved.remove(key) != null) {
+      trash(fileFor(key));
+      return;
+    }
+    Entry entry = mEntries.remove(key);
+    if (entry != null) {
+      mTotalBytes -= entry.mSizeBytes;
+      trash(entry.mFile);
+      writeIndex();
+    }
+  }
+
+  /**
+   * Keeps the content stored under a key from being evicted while it is in use, such as while a map opened from it is
+   * held. Pinned content can still be replaced or removed.
+   */
+  void pin(String key) {
+    mPinned.add(key);
+  }
+
+  /**
+   * Lets the content stored under a key be evicted again once it is no longer in use.
+   */
+  void unpin(String key) {
+    mPinned.remove(key);
+  }
+
+  /**
+   * @return the content stored under a key, or null
+   */
+  Entry get(String key) {
+    return mEntries.get(key);
+  }
+
+  /**
+   * @return all the stored content, most recently used first
+   */
+  List<Entry> getInventory() {
+    List<Entry> inventory = new ArrayList<>(mEntries.values());
+    Collections.sort(inventory, (a, b) -> Long.compare(b.mLastAccessMillis, a.mLastAccessMillis));
+    return inventory;
+  }
+
+  long getTotalBytes() {
+    return mTotalBytes;
+  }
+
+  /**
+   * Stops the background thread once the content being deleted has been. Content retired after this is left to be
+   * deleted when the store is next opened.
+   */
+  void shutdown() {
+    mExecutor.shutdown();
+  }
+
+  private void evict(Entry keep) {
+    while (mTotalBytes > mQuotaBytes) {
+      Entry leastRecentlyUsed = null;
+      for (Entry entry : mEntries.values()) {
+        if (entry != keep && !mPinned.contains(entry.mKey)
+            && (leastRecentlyUsed == null || entry.mLastAccessMillis < leastRecentlyUsed.mLastAccessMillis)) {
+          leastRecentlyUsed = entry;
+        }
+      }
+      if (leastRecentlyUsed == null) {
+        Log.w(TAG, "Over quota with all content in use, " + mTotalBytes + " bytes");
+        return;
+      }
+      Log.i(TAG, "Evicting " + leastRecentlyUsed.mKey + ", " + leastRecentlyUsed.mSizeBytes + " bytes");
+      mEntries.remove(leastRecentlyUsed.mKey);
+      mTotalBytes -= leastRecentlyUsed.mSizeBytes;
+      mEvictions++;
+      mEvictedBytes += leastRecentlyUsed.mSizeBytes;
+      trash(leastRecentlyUsed.mFile);
+    }
+  }
+
+  /**
+   * @return a time after the last access recorded, so the order of accesses is kept even within a millisecond
+   */
+  private long nextAccessMillis() {
+    mLastAccessMillis = Math.max(System.currentTimeMillis(), mLastAccessMillis + 1);
+    return mLastAccessMillis;
+  }
+
+  /**
+   * @return a file name unique to a key, readable where the key allows
+   */
+  private File fileFor(String key) {
+    String readable = key.replaceAll("[^A-Za-z0-9_-]", "_");
+    if (readable.length() > 64) {
+      readable = readable.substring(0, 64);
+    }
+    return new File(mDirectory, readable + "-" + Integer.toHexString(key.hashCode()));
+  }
+
+  /**
+   * Moves a file or directory into the trash, and deletes it from there in the background.
+   */
+  private void trash(File file) {
+    File trashed = new File(mTrashDirectory, file.getName() + "-" + System.nanoTime());
+    if (file.renameTo(trashed)) {
+      deleteInBackground(trashed);
+    } else if (file.exists()) {
+      // fall back on deleting it in place
+      Log.w(TAG, "Could not move " + file + " to the trash");
+      deleteInBackground(file);
+    }
+  }
+
+  private void deleteInBackground(File file) {
+    if (mExecutor.isShutdown()) {
+      // left to be deleted when the store is next opened
+      return;
+    }
+    mPendingDeletes++;
+    mExecutor.execute(() -> deleteRecursively(file));
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    if (!file.delete() && file.exists()) {
+      Log.w(TAG, "Could not delete " + file);
+    }
+  }
+
+  private static long sizeOf(File file) {
+    File[] children = file.listFiles();
+    if (children == null) {
+      return file.length();
+    }
+    long size = 0;
+    for (File child : children) {
+      size += sizeOf(child);
+    }
+    return size;
+  }
+
+  /**
+   * Reads the index, dropping entries whose content is missing.
+   */
+  private void readIndex() {
+    File indexFile = new File(mDirectory, INDEX_FILE);
+    if (!indexFile.exists()) {
+      return;
+    }
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t");
+        if (fields.length != 5) {
+          continue;
+        }
+        File file = new File(mDirectory, fields[2]);
+        if (!file.exists()) {
+          continue;
+        }
+        Entry entry = new Entry(fields[0], Kind.valueOf(fields[1]), file, Long.parseLong(fields[3]),
+            Long.parseLong(fields[4]));
+        mEntries.put(entry.mKey, entry);
+        mTotalBytes += entry.mSizeBytes;
+        mLastAccessMillis = Math.max(mLastAccessMillis, entry.mLastAccessMillis);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      Log.e(TAG, "Could not read " + indexFile, e);
+    }
+  }
+
+  /**
+   * Writes the index to a part file, then renames it over the index so the index is never left half written.
+   */
+  private void writeIndex() {
+    File partFile = new File(mDirectory, INDEX_FILE + PART_SUFFIX);
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(partFile), StandardCharsets.UTF_8)) {
+      for (Entry entry : mEntries.values()) {
+        writer.write(entry.mKey + "\t" + entry.mKind + "\t" + entry.mFile.getName() + "\t" + entry.mSizeBytes + "\t"
+            + entry.mLastAccessMillis + "\n");
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Could not write " + partFile, e);
+      return;
+    }
+    if (!partFile.renameTo(new File(mDirectory, INDEX_FILE))) {
+      Log.e(TAG, "Could not replace the index in " + mDirectory);
+    }
+  }
+
+  /**
+   * @return the content stored against the quota, reuses, evictions and deletions
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.US,
+        "%d entries, %.1f of %.1f MB, %d reused, %d evicted (%.1f MB), %d deleted in the background",
+        mEntries.size(), mTotalBytes / (1024.0 * 1024), mQuotaBytes / (1024.0 * 1024), mReuses, mEvictions,
+        mEvictedBytes / (1024.0 * 1024), mPendingDeletes);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.esri.arcgisruntime.sample.downloadpreplannedmaparea;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import android.util.Log;
+
+import com.esri.arcgisruntime.ArcGISRuntimeException;
+import com.esri.arcgisruntime.concurrent.Job;
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.FeatureTable;
+import com.esri.arcgisruntime.layers.Layer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
+import com.esri.arcgisruntime.mapping.ArcGISMap;
+import com.esri.arcgisruntime.mapping.MobileMapPackage;
+import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapJob;
+import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapParameters;
+import com.esri.arcgisruntime.tasks.offlinemap.DownloadPreplannedOfflineMapResult;
+import com.esri.arcgisruntime.tasks.offlinemap.OfflineMapTask;
+import com.esri.arcgisruntime.tasks.offlinemap.PreplannedMapArea;
+import com.esri.arcgisruntime.tasks.offlinemap.PreplannedUpdateMode;
+
+/**
+ * Downloads preplanned map areas through an {@link OfflineMapTask}, without updates, into an offline content store
+ * under their IDs. An area already in the store is opened from it rather than downloaded again. The areas opened are
+ * pinned in the store, as their maps are held by the download manager, and may be shown, for as long as the process
+ * runs.
+ */
+final class PreplannedDownloadFactory implements DownloadManager.DownloadFactory<ArcGISMap> {
+
+  private static final String TAG = PreplannedDownloadFactory.class.getSimpleName();
+
+  private final OfflineMapTask mOfflineMapTask;
+  private final Map<String, PreplannedMapArea> mAreas;
+  private final OfflineContentStore mOfflineContentStore;
+
+  /**
+   * @param offlineMapTask      the task the areas belong to
+   * @param areas               the areas which can be downloaded, by ID
+   * @param offlineContentStore store the areas are downloaded into
+   */
+  PreplannedDownloadFactory(OfflineMapTask offlineMapTask, Map<String, PreplannedMapArea> areas,
+      OfflineContentStore offlineContentStore) {
+    mOfflineMapTask = offlineMapTask;
+    mAreas = areas;
+    mOfflineContentStore = offlineContentStore;
+  }
+
+  @Override
+  public DownloadManager.Download start(String areaId, DownloadManager.Callback<ArcGISMap> callback) {
+    // set to cancel the download, before or after its job has been created
+    final DownloadPreplannedOfflineMapJob[] job = new DownloadPreplannedOfflineMapJob[1];
+    final boolean[] cancelled = new boolean[1];
+    final boolean[] reserved = new boolean[1];
+    Runnable download = () -> {
+      // a directory which doesn't exist, as the job needs, with any earlier attempt moved aside to be deleted in the
+      // background
+      File areaDirectory = mOfflineContentStore.reserve(areaId, OfflineContentStore.Kind.OFFLINE_MAP);
+      reserved[0] = true;
+      ListenableFuture<DownloadPreplannedOfflineMapParameters> offlineMapParametersFuture = mOfflineMapTask
+          .createDefaultDownloadPreplannedOfflineMapParametersAsync(mAreas.get(areaId));
+      offlineMapParametersFuture.addDoneListener(() -> {
+        if (cancelled[0]) {
+          return;
+        }
+        DownloadPreplannedOfflineMapParameters offlineMapParameters;
+        try {
+          offlineMapParameters = offlineMapParametersFuture.get();
+        } catch (Exception e) {
+          mOfflineContentStore.remove(areaId);
+          callback.onFailed(e);
+          return;
+        }
+        // set the update mode to not receive updates
+        offlineMapParameters.setUpdateMode(PreplannedUpdateMode.NO_UPDATES);
+        job[0] = mOfflineMapTask.downloadPreplannedOfflineMap(offlineMapParameters, areaDirectory.getPath());
+        job[0].addProgressChangedListener(() -> callback.onProgress(job[0].getProgress()));
+        job[0].addJobDoneListener(() -> {
+          // a later attempt at the area may have reserved it in the store since
+          if (cancelled[0]) {
+            return;
+          }
+          if (job[0].getStatus() != Job.Status.SUCCEEDED) {
+            mOfflineContentStore.remove(areaId);
+            callback.onFailed(job[0].getError());
+            return;
+          }
+          DownloadPreplannedOfflineMapResult result = job[0].getResult();
+          if (result.hasErrors()) {
+            mOfflineContentStore.remove(areaId);
+            callback.onFailed(new IOException(errorsOf(result)));
+          } else {
+            mOfflineContentStore.pin(areaId);
+            mOfflineContentStore.commit(areaId);
+            callback.onSucceeded(result.getOfflineMap());
+          }
+        });
+        job[0].start();
+      });
+    };
+    File storedDirectory = mOfflineContentStore.open(areaId);
+    if (storedDirectory == null) {
+      download.run();
+    } else {
+      // open the area downloaded earlier, downloading it again if it can't be opened
+      MobileMapPackage offlineMapPackage = new MobileMapPackage(storedDirectory.getPath());
+      offlineMapPackage.loadAsync();
+      offlineMapPackage.addDoneLoadingListener(() -> {
+        if (cancelled[0]) {
+          return;
+        }
+        if (offlineMapPackage.getLoadStatus() == LoadStatus.LOADED && !offlineMapPackage.getMaps().isEmpty()) {
+          mOfflineContentStore.pin(areaId);
+          callback.onSucceeded(offlineMapPackage.getMaps().get(0));
+        } else {
+          Log.w(TAG, "Could not open stored area, downloading it again: " + areaId);
+          download.run();
+        }
+      });
+    }
+    return () -> {
+      cancelled[0] = true;
+      if (job[0] != null) {
+        job[0].cancel();
+      }
+      if (reserved[0]) {
+        // retire what the download has written so far
+        mOfflineContentStore.remove(areaId);
+      }
+    };
+  }
+
+  /**
+   * Collects the layer and table errors of a result into a single message.
+   */
+  private static String errorsOf(DownloadPreplannedOfflineMapResult result) {
+    StringBuilder stringBuilder = new StringBuilder("Errors: ");
+    for (Map.Entry<Layer, ArcGISRuntimeException> layer : result.getLayerErrors().entrySet()) {
+      stringBuilder.append("Layer: ").append(layer.getKey().getName()).append(". Exception: ")
+          .append(layer.getValue().getMessage()).append(". ");
+    }
+    for (Map.Entry<FeatureTable, ArcGISRuntimeException> table : result.getTableErrors().entrySet()) {
+      stringBuilder.append("Table: ").append(table.getKey().getTableName()).append(". Exception: ")
+          .append(table.getValue().getMessage()).append(". ");
+    }
+    return stringBuilder.toString();
+  }
+}
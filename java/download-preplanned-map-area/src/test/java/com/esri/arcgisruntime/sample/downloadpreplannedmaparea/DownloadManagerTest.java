@@ -0,0 +1,351 @@
+/*
+ *  Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.esri.arcgisruntime.sample.downloadpreplannedmaparea;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esri.arcgisruntime.sample.downloadpreplannedmaparea.DownloadManager.State;
+
+public class DownloadManagerTest {
+
+  private static final long MB = 1024 * 1024;
+  private static final long RETRY_MILLIS = 1000;
+
+  private FakeScheduler mScheduler;
+  private FakeDownloadFactory mFactory;
+  private long mUsableBytes;
+  private DownloadManager<String> mManager;
+
+  @Before
+  public void setUp() {
+    mScheduler = new FakeScheduler();
+    mFactory = new FakeDownloadFactory();
+    mUsableBytes = 1000 * MB;
+    mManager = new DownloadManager<>(mFactory, mScheduler, () -> mUsableBytes, 2, 10 * MB, 3, RETRY_MILLIS);
+  }
+
+  @Test
+  public void runsUpToMaxConcurrentDownloads() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mManager.enqueue("b", "B", 10 * MB);
+    mManager.enqueue("c", "C", 10 * MB);
+
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(State.RUNNING, mManager.getArea("b").getState());
+    assertEquals(State.QUEUED, mManager.getArea("c").getState());
+    assertEquals(2, mFactory.running());
+
+    mFactory.latest("a").succeed("map a");
+
+    assertEquals(State.SUCCEEDED, mManager.getArea("a").getState());
+    assertEquals("map a", mManager.getArea("a").getResult());
+    assertEquals(State.RUNNING, mManager.getArea("c").getState());
+    assertEquals(2, mFactory.running());
+  }
+
+  @Test
+  public void retriesAfterDoublingDelaysThenFails() {
+    mManager.enqueue("a", "A", 10 * MB);
+
+    mFactory.latest("a").fail(new IOException("first"));
+    assertEquals(State.RETRY_WAIT, mManager.getArea("a").getState());
+    mScheduler.advance(RETRY_MILLIS - 1);
+    assertEquals(State.RETRY_WAIT, mManager.getArea("a").getState());
+    mScheduler.advance(1);
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(2, mManager.getArea("a").getAttempts());
+
+    mFactory.latest("a").fail(new IOException("second"));
+    mScheduler.advance(2 * RETRY_MILLIS - 1);
+    assertEquals(State.RETRY_WAIT, mManager.getArea("a").getState());
+    mScheduler.advance(1);
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+
+    mFactory.latest("a").fail(new IOException("third"));
+    assertEquals(State.FAILED, mManager.getArea("a").getState());
+    assertEquals("third", mManager.getArea("a").getError().getMessage());
+    assertEquals(3, mFactory.started("a"));
+    assertEquals(0, mScheduler.pending());
+
+    // a retry by hand gets a full set of attempts
+    mManager.retry("a");
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(1, mManager.getArea("a").getAttempts());
+  }
+
+  @Test
+  public void retryGoesAheadOfQueuedAreas() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mManager.enqueue("b", "B", 10 * MB);
+    mManager.enqueue("c", "C", 10 * MB);
+    mManager.enqueue("d", "D", 10 * MB);
+
+    mFactory.latest("a").fail(new IOException());
+    // the freed slot goes to the next queued area while the failed one waits
+    assertEquals(State.RUNNING, mManager.getArea("c").getState());
+    mScheduler.advance(RETRY_MILLIS);
+    assertEquals(State.QUEUED, mManager.getArea("a").getState());
+
+    mFactory.latest("b").succeed("map b");
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(State.QUEUED, mManager.getArea("d").getState());
+  }
+
+  @Test
+  public void ignoresCallbacksOfEarlierAttempts() {
+    mManager.enqueue("a", "A", 10 * MB);
+    FakeDownload first = mFactory.latest("a");
+    first.fail(new IOException());
+    mScheduler.advance(RETRY_MILLIS);
+
+    first.mCallback.onProgress(50);
+    first.mCallback.onSucceeded("stale");
+
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(0, mManager.getArea("a").getProgress());
+    assertNull(mManager.getArea("a").getResult());
+  }
+
+  @Test
+  public void waitsForSpaceWhileDownloadsAreRunning() {
+    mUsableBytes = 100 * MB;
+    mManager.enqueue("a", "A", 50 * MB);
+    // needs its own 45 MB, the 50 MB still to come for the first area and the 10 MB margin
+    mManager.enqueue("b", "B", 45 * MB);
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(State.QUEUED, mManager.getArea("b").getState());
+
+    mFactory.latest("a").succeed("map a");
+
+    assertEquals(State.RUNNING, mManager.getArea("b").getState());
+  }
+
+  @Test
+  public void failsAreaWithoutRoomWhenNothingIsRunning() {
+    mUsableBytes = 100 * MB;
+    mManager.enqueue("a", "A", 95 * MB);
+    mManager.enqueue("b", "B", 20 * MB);
+
+    assertEquals(State.FAILED, mManager.getArea("a").getState());
+    assertTrue(mManager.getArea("a").getError() instanceof IOException);
+    assertEquals(0, mFactory.started("a"));
+    assertEquals(State.RUNNING, mManager.getArea("b").getState());
+  }
+
+  @Test
+  public void cancelsRunningDownload() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mManager.enqueue("b", "B", 10 * MB);
+    mManager.enqueue("c", "C", 10 * MB);
+    FakeDownload download = mFactory.latest("a");
+
+    mManager.cancel("a");
+
+    assertTrue(download.mCancelled);
+    assertEquals(State.CANCELLED, mManager.getArea("a").getState());
+    assertEquals(State.RUNNING, mManager.getArea("c").getState());
+    // the cancelled download may still call back
+    download.mCallback.onSucceeded("late");
+    assertEquals(State.CANCELLED, mManager.getArea("a").getState());
+    assertNull(mManager.getArea("a").getResult());
+  }
+
+  @Test
+  public void cancelsQueuedArea() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mManager.enqueue("b", "B", 10 * MB);
+    mManager.enqueue("c", "C", 10 * MB);
+
+    mManager.cancel("c");
+    mFactory.latest("a").succeed("map a");
+
+    assertEquals(State.CANCELLED, mManager.getArea("c").getState());
+    assertEquals(0, mFactory.started("c"));
+  }
+
+  @Test
+  public void cancelsAreaWaitingToRetry() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mFactory.latest("a").fail(new IOException());
+    assertEquals(1, mScheduler.pending());
+
+    mManager.cancel("a");
+
+    assertEquals(State.CANCELLED, mManager.getArea("a").getState());
+    assertEquals(0, mScheduler.pending());
+    mScheduler.advance(RETRY_MILLIS);
+    assertEquals(1, mFactory.started("a"));
+  }
+
+  @Test
+  public void enqueuesCancelledAreaAgain() {
+    mManager.enqueue("a", "A", 10 * MB);
+    mManager.cancel("a");
+
+    mManager.enqueue("a", "A", 10 * MB);
+
+    assertEquals(State.RUNNING, mManager.getArea("a").getState());
+    assertEquals(2, mFactory.started("a"));
+    assertEquals(1, mManager.getAreas().size());
+  }
+
+  @Test
+  public void estimatesThroughputAndTimeRemaining() {
+    mManager.enqueue("a", "A", 100 * MB);
+    mScheduler.advance(10_000);
+    mFactory.latest("a").progress(25);
+
+    assertEquals(2.5 * MB, mManager.getBytesPerSecond(), 1);
+    assertEquals(30_000, mManager.getEtaMillis(mManager.getArea("a")));
+  }
+
+  /**
+   * A download which is finished by the test, through the callback it was started with.
+   */
+  private static final class FakeDownload implements DownloadManager.Download {
+    private final String mAreaId;
+    private final DownloadManager.Callback<String> mCallback;
+    private boolean mCancelled;
+    private boolean mFinished;
+
+    private FakeDownload(String areaId, DownloadManager.Callback<String> callback) {
+      mAreaId = areaId;
+      mCallback = callback;
+    }
+
+    @Override public void cancel() {
+      mCancelled = true;
+    }
+
+    void progress(int percent) {
+      mCallback.onProgress(percent);
+    }
+
+    void succeed(String result) {
+      mFinished = true;
+      mCallback.onSucceeded(result);
+    }
+
+    void fail(Exception e) {
+      mFinished = true;
+      mCallback.onFailed(e);
+    }
+  }
+
+  private static final class FakeDownloadFactory implements DownloadManager.DownloadFactory<String> {
+    private final List<FakeDownload> mDownloads = new ArrayList<>();
+
+    @Override public DownloadManager.Download start(String areaId, DownloadManager.Callback<String> callback) {
+      FakeDownload download = new FakeDownload(areaId, callback);
+      mDownloads.add(download);
+      return download;
+    }
+
+    FakeDownload latest(String areaId) {
+      for (int i = mDownloads.size() - 1; i >= 0; i--) {
+        if (mDownloads.get(i).mAreaId.equals(areaId)) {
+          return mDownloads.get(i);
+        }
+      }
+      throw new AssertionError("Not started: " + areaId);
+    }
+
+    int started(String areaId) {
+      int started = 0;
+      for (FakeDownload download : mDownloads) {
+        if (download.mAreaId.equals(areaId)) {
+          started++;
+        }
+      }
+      return started;
+    }
+
+    /**
+     * @return the number of downloads which have neither finished nor been cancelled
+     */
+    int running() {
+      int running = 0;
+      for (FakeDownload download : mDownloads) {
+        if (!download.mCancelled && !download.mFinished) {
+          running++;
+        }
+      }
+      return running;
+    }
+  }
+
+  /**
+   * Runs scheduled tasks when its clock is moved on past them.
+   */
+  private static final class FakeScheduler implements DownloadManager.Scheduler {
+    private final List<Task> mTasks = new ArrayList<>();
+    private long mNowMillis;
+
+    private static final class Task {
+      private final Runnable mRunnable;
+      private final long mDueMillis;
+
+      private Task(Runnable runnable, long dueMillis) {
+        mRunnable = runnable;
+        mDueMillis = dueMillis;
+      }
+    }
+
+    @Override public Runnable schedule(Runnable task, long delayMillis) {
+      Task scheduled = new Task(task, mNowMillis + delayMillis);
+      mTasks.add(scheduled);
+      return () -> mTasks.remove(scheduled);
+    }
+
+    @Override public long nowMillis() {
+      return mNowMillis;
+    }
+
+    /**
+     * Moves the clock on, running the tasks which fall due in the order they were scheduled.
+     */
+    void advance(long millis) {
+      mNowMillis += millis;
+      for (Task task = nextDue(); task != null; task = nextDue()) {
+        mTasks.remove(task);
+        task.mRunnable.run();
+      }
+    }
+
+    private Task nextDue() {
+      for (Task task : mTasks) {
+        if (task.mDueMillis <= mNowMillis) {
+          return task;
+        }
+      }
+      return null;
+    }
+
+    int pending() {
+      return mTasks.size();
+    }
+  }
+}
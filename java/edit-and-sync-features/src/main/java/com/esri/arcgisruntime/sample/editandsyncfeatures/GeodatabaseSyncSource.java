@@ -0,0 +1,156 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.editandsyncfeatures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.net.TrafficStats;
+import android.os.Process;
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.Job;
+import com.esri.arcgisruntime.data.FeatureEditResult;
+import com.esri.arcgisruntime.data.Geodatabase;
+import com.esri.arcgisruntime.data.GeodatabaseFeatureTable;
+import com.esri.arcgisruntime.tasks.geodatabase.GeodatabaseSyncTask;
+import com.esri.arcgisruntime.tasks.geodatabase.SyncGeodatabaseJob;
+import com.esri.arcgisruntime.tasks.geodatabase.SyncGeodatabaseParameters;
+import com.esri.arcgisruntime.tasks.geodatabase.SyncLayerOption;
+import com.esri.arcgisruntime.tasks.geodatabase.SyncLayerResult;
+
+/**
+ * Syncs a set of geodatabases generated from the same feature service through a {@link GeodatabaseSyncTask}, each in
+ * both directions for its tables with local edits and download only for the rest. The geodatabases are synced at the
+ * same time, and the sync only succeeds if every one of them does. The bytes of a sync are those sent and received by
+ * the app while it ran.
+ */
+final class GeodatabaseSyncSource implements SyncScheduler.SyncSource {
+
+  private static final String TAG = GeodatabaseSyncSource.class.getSimpleName();
+
+  private final GeodatabaseSyncTask mGeodatabaseSyncTask;
+  private final List<Geodatabase> mGeodatabases;
+
+  /**
+   * @param geodatabaseSyncTask the task of the feature service the geodatabases were generated from
+   * @param geodatabases        the loaded geodatabases to sync
+   */
+  GeodatabaseSyncSource(GeodatabaseSyncTask geodatabaseSyncTask, List<Geodatabase> geodatabases) {
+    mGeodatabaseSyncTask = geodatabaseSyncTask;
+    mGeodatabases = geodatabases;
+  }
+
+  @Override
+  public Set<Long> getLayerIdsWithLocalEdits() {
+    Set<Long> layerIds = new HashSet<>();
+    for (Geodatabase geodatabase : mGeodatabases) {
+      for (GeodatabaseFeatureTable geodatabaseFeatureTable : geodatabase.getGeodatabaseFeatureTables()) {
+        if (geodatabaseFeatureTable.hasLocalEdits()) {
+          layerIds.add(geodatabaseFeatureTable.getServiceLayerId());
+        }
+      }
+    }
+    return layerIds;
+  }
+
+  @Override
+  public SyncScheduler.Sync start(Collection<Long> uploadLayerIds, SyncScheduler.Callback callback) {
+    long startBytes = getAppBytes();
+    List<SyncGeodatabaseJob> syncGeodatabaseJobs = new ArrayList<>();
+    final int[] remaining = { mGeodatabases.size() };
+    final Exception[] error = new Exception[1];
+    for (Geodatabase geodatabase : mGeodatabases) {
+      SyncGeodatabaseJob syncGeodatabaseJob = mGeodatabaseSyncTask
+          .syncGeodatabase(createSyncGeodatabaseParameters(geodatabase, uploadLayerIds), geodatabase);
+      syncGeodatabaseJob.addJobDoneListener(() -> {
+        if (syncGeodatabaseJob.getStatus() == Job.Status.SUCCEEDED) {
+          logRejectedEdits(syncGeodatabaseJob);
+        } else if (error[0] == null) {
+          error[0] = syncGeodatabaseJob.getError() != null ? syncGeodatabaseJob.getError() :
+              new Exception("Unknown error syncing geodatabase");
+        }
+        if (--remaining[0] == 0) {
+          long bytes = getAppBytes() - startBytes;
+          if (error[0] == null) {
+            callback.onSucceeded(bytes);
+          } else {
+            callback.onFailed(error[0], bytes);
+          }
+        }
+      });
+      syncGeodatabaseJobs.add(syncGeodatabaseJob);
+    }
+    if (mGeodatabases.isEmpty()) {
+      callback.onSucceeded(0);
+    }
+    for (SyncGeodatabaseJob syncGeodatabaseJob : syncGeodatabaseJobs) {
+      syncGeodatabaseJob.start();
+    }
+    return () -> {
+      for (SyncGeodatabaseJob syncGeodatabaseJob : syncGeodatabaseJobs) {
+        syncGeodatabaseJob.cancel();
+      }
+    };
+  }
+
+  /**
+   * Creates the parameters to sync a geodatabase, uploading only the tables with local edits, and downloading changes
+   * to every table.
+   */
+  private static SyncGeodatabaseParameters createSyncGeodatabaseParameters(Geodatabase geodatabase,
+      Collection<Long> uploadLayerIds) {
+    SyncGeodatabaseParameters syncGeodatabaseParameters = new SyncGeodatabaseParameters();
+    syncGeodatabaseParameters.setSyncDirection(SyncGeodatabaseParameters.SyncDirection.BIDIRECTIONAL);
+    syncGeodatabaseParameters.setRollbackOnFailure(false);
+    for (GeodatabaseFeatureTable geodatabaseFeatureTable : geodatabase.getGeodatabaseFeatureTables()) {
+      long serviceLayerId = geodatabaseFeatureTable.getServiceLayerId();
+      SyncLayerOption syncLayerOption = new SyncLayerOption(serviceLayerId);
+      syncLayerOption.setSyncDirection(
+          uploadLayerIds.contains(serviceLayerId) && geodatabaseFeatureTable.hasLocalEdits() ?
+              SyncGeodatabaseParameters.SyncDirection.BIDIRECTIONAL :
+              SyncGeodatabaseParameters.SyncDirection.DOWNLOAD);
+      syncGeodatabaseParameters.getLayerOptions().add(syncLayerOption);
+    }
+    return syncGeodatabaseParameters;
+  }
+
+  /**
+   * Logs the edits the service rejected, which stay local to be uploaded again by the next sync.
+   */
+  private static void logRejectedEdits(SyncGeodatabaseJob syncGeodatabaseJob) {
+    for (SyncLayerResult syncLayerResult : syncGeodatabaseJob.getResult()) {
+      for (FeatureEditResult featureEditResult : syncLayerResult.getEditResults()) {
+        if (featureEditResult.hasCompletedWithErrors()) {
+          Log.w(TAG, "Edit to feature " + featureEditResult.getObjectId() + " of layer " + syncLayerResult
+              .getLayerId() + " was rejected: " + featureEditResult.getError().getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the bytes sent and received by the app since the device booted
+   */
+  private static long getAppBytes() {
+    int uid = Process.myUid();
+    return TrafficStats.getUidTxBytes(uid) + TrafficStats.getUidRxBytes(uid);
+  }
+}
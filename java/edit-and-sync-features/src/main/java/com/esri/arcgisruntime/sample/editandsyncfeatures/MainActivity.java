@@ -17,20 +17,31 @@
 package com.esri.arcgisruntime.sample.editandsyncfeatures;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import android.app.ProgressDialog;
+import android.content.Context;
 import android.graphics.Color;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.format.Formatter;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Button;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-import com.esri.arcgisruntime.concurrent.Job;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.Feature;
 import com.esri.arcgisruntime.data.FeatureQueryResult;
@@ -43,6 +54,7 @@ import com.esri.arcgisruntime.geometry.GeometryType;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.layers.ArcGISTiledLayer;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.layers.GroupLayer;
 import com.esri.arcgisruntime.layers.Layer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
@@ -52,24 +64,52 @@ import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
 import com.esri.arcgisruntime.symbology.SimpleLineSymbol;
-import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseJob;
-import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseParameters;
 import com.esri.arcgisruntime.tasks.geodatabase.GeodatabaseSyncTask;
-import com.esri.arcgisruntime.tasks.geodatabase.SyncGeodatabaseJob;
-import com.esri.arcgisruntime.tasks.geodatabase.SyncGeodatabaseParameters;
-import com.esri.arcgisruntime.tasks.geodatabase.SyncLayerOption;
 
 public class MainActivity extends AppCompatActivity {
 
   private final String TAG = MainActivity.class.getSimpleName();
 
+  // number of edits, or minutes since the last sync, which make a background sync due
+  private static final int SYNC_EDIT_THRESHOLD = 10;
+  private static final long SYNC_INTERVAL_MILLIS = 15 * 60 * 1000;
+  // time without edits to wait for before syncing, so syncs don't interrupt a burst of edits
+  private static final long SYNC_IDLE_MILLIS = 30 * 1000;
+  // delay before retrying a failed sync, doubled with each failure in a row up to the maximum
+  private static final long SYNC_RETRY_MILLIS = 30 * 1000;
+  private static final long SYNC_MAX_RETRY_MILLIS = 30 * 60 * 1000;
+  // cells across and down the extent to count features in, the most partitions to split it into, and the features
+  // below which a partition isn't split any further
+  private static final int PARTITION_GRID_SIZE = 4;
+  private static final int MAX_PARTITIONS = 8;
+  private static final long TARGET_FEATURES_PER_PARTITION = 1000;
+  // generate jobs to run at a time, and attempts at each partition before giving up on it
+  private static final int MAX_CONCURRENT_JOBS = 3;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_MILLIS = 5000;
+
   private Button mGeodatabaseButton;
+  private TextView mSyncStatusTextView;
 
   private MapView mMapView;
   private GraphicsOverlay mGraphicsOverlay;
   // objects that implement Loadable must be class fields to prevent being garbage collected before loading
   private GeodatabaseSyncTask mGeodatabaseSyncTask;
-  private Geodatabase mGeodatabase;
+  private final List<Geodatabase> mGeodatabases = new ArrayList<>();
+  // generated geodatabases which failed to load, to be loaded again on retry, with the indexes of their partitions
+  private final Map<Geodatabase, Integer> mUnloadedGeodatabases = new LinkedHashMap<>();
+
+  private PartitionedGeodatabaseGenerator<Geodatabase> mGeodatabaseGenerator;
+  // holds the feature layers of the points table in every partition's geodatabase
+  private GroupLayer mPointsGroupLayer;
+  // hides the points shown by more than one partition's layer in all but the first
+  private final PartitionLayerFilter mPartitionLayerFilter = new PartitionLayerFilter();
+  private ProgressDialog mProgressDialog;
+
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private ConnectivityManager mConnectivityManager;
+  private ConnectivityManager.NetworkCallback mNetworkCallback;
+  private SyncScheduler mSyncScheduler;
 
   private List<Feature> mSelectedFeatures;
   private MainActivity.EditState mCurrentEditState;
@@ -88,13 +128,17 @@ public class MainActivity extends AppCompatActivity {
     mGraphicsOverlay = new GraphicsOverlay();
     mMapView.getGraphicsOverlays().add(mGraphicsOverlay);
 
+    mSyncStatusTextView = findViewById(R.id.syncStatusTextView);
     // add listener to handle generate/sync geodatabase button
     mGeodatabaseButton = findViewById(R.id.geodatabaseButton);
     mGeodatabaseButton.setOnClickListener(v -> {
-      if (mCurrentEditState == EditState.NotReady) {
+      if (mCurrentEditState == EditState.NotReady && mGeodatabaseGenerator == null) {
         generateGeodatabase();
-      } else if (mCurrentEditState == EditState.Ready) {
-        syncGeodatabase();
+      } else if (mCurrentEditState == EditState.NotReady && mGeodatabaseGenerator.isFinished()) {
+        retryFailedPartitions();
+      } else if (mCurrentEditState == EditState.Ready && mSyncScheduler != null) {
+        // sync straight away rather than waiting for the background sync
+        mSyncScheduler.syncNow();
       }
     });
     // add listener to handle motion events, which only responds once a geodatabase is loaded
@@ -119,7 +163,7 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Generates a local geodatabase and sets it to the map.
+   * Generates local geodatabases for the partitions of the current extent, several at a time, and adds them to the map.
    */
   private void generateGeodatabase() {
     // define geodatabase sync task
@@ -131,109 +175,229 @@ public class MainActivity extends AppCompatActivity {
       final Envelope extent = mMapView.getVisibleArea().getExtent();
       Graphic boundary = new Graphic(extent, boundarySymbol);
       mGraphicsOverlay.getGraphics().add(boundary);
-      // create generate geodatabase parameters for the current extent
-      final ListenableFuture<GenerateGeodatabaseParameters> defaultParameters = mGeodatabaseSyncTask
-          .createDefaultGenerateGeodatabaseParametersAsync(extent);
-      defaultParameters.addDoneListener(() -> {
-        try {
-          // set parameters and don't include attachments
-          GenerateGeodatabaseParameters parameters = defaultParameters.get();
-          parameters.setReturnAttachments(false);
-          // define the local path where the geodatabase will be stored
-          final String localGeodatabasePath = getCacheDir() + "/wildfire.geodatabase";
-          // create and start the job
-          final GenerateGeodatabaseJob generateGeodatabaseJob = mGeodatabaseSyncTask
-              .generateGeodatabase(parameters, localGeodatabasePath);
-          generateGeodatabaseJob.start();
-          createProgressDialog(generateGeodatabaseJob);
-          // get geodatabase when done
-          generateGeodatabaseJob.addJobDoneListener(() -> {
-            if (generateGeodatabaseJob.getStatus() == Job.Status.SUCCEEDED) {
-              mGeodatabase = generateGeodatabaseJob.getResult();
-              mGeodatabase.loadAsync();
-              mGeodatabase.addDoneLoadingListener(() -> {
-                if (mGeodatabase.getLoadStatus() == LoadStatus.LOADED) {
-                  // get only the first table which, contains points
-                  GeodatabaseFeatureTable pointsGeodatabaseFeatureTable = mGeodatabase
-                      .getGeodatabaseFeatureTables().get(0);
-                  pointsGeodatabaseFeatureTable.loadAsync();
-                  FeatureLayer geodatabaseFeatureLayer = new FeatureLayer(pointsGeodatabaseFeatureTable);
-                  // add geodatabase layer to the map as a feature layer and make it selectable
-                  mMapView.getMap().getOperationalLayers().add(geodatabaseFeatureLayer);
-                  mGeodatabaseButton.setVisibility(View.GONE);
-                  Log.i(TAG, "Local geodatabase stored at: " + localGeodatabasePath);
-                } else {
-                  Log.e(TAG, "Error loading geodatabase: " + mGeodatabase.getLoadError().getMessage());
-                }
-              });
-              // set edit state to ready
-              mCurrentEditState = EditState.Ready;
-            } else if (generateGeodatabaseJob.getError() != null) {
-              Log.e(TAG, "Error generating geodatabase: " + generateGeodatabaseJob.getError().getMessage());
-              Toast.makeText(this,
-                  "Error generating geodatabase: " + generateGeodatabaseJob.getError().getMessage(),
-                  Toast.LENGTH_LONG).show();
-            } else {
-              Log.e(TAG, "Unknown Error generating geodatabase");
-              Toast.makeText(this, "Unknown Error generating geodatabase", Toast.LENGTH_LONG).show();
-            }
-          });
-        } catch (InterruptedException | ExecutionException e) {
-          Log.e(TAG, "Error generating geodatabase parameters : " + e.getMessage());
-          Toast.makeText(this, "Error generating geodatabase parameters: " + e.getMessage(),
-              Toast.LENGTH_LONG).show();
+      // generate a geodatabase for each partition of the extent, without attachments
+      PartitionedGeodatabaseGenerator.Scheduler scheduler = new PartitionedGeodatabaseGenerator.Scheduler() {
+        @Override public Runnable schedule(Runnable task, long delayMillis) {
+          mMainHandler.postDelayed(task, delayMillis);
+          return () -> mMainHandler.removeCallbacks(task);
+        }
+
+        @Override public long nowMillis() {
+          return SystemClock.elapsedRealtime();
+        }
+      };
+      mGeodatabaseGenerator = new PartitionedGeodatabaseGenerator<>(
+          PartitionedGeodatabaseGenerator.featureServiceCounter(mGeodatabaseSyncTask, extent.getSpatialReference()),
+          PartitionedGeodatabaseGenerator.geodatabaseGenerationFactory(mGeodatabaseSyncTask,
+              extent.getSpatialReference(), getCacheDir(), "wildfire"), scheduler, PARTITION_GRID_SIZE,
+          MAX_PARTITIONS, TARGET_FEATURES_PER_PARTITION, MAX_CONCURRENT_JOBS, MAX_ATTEMPTS, RETRY_MILLIS);
+      mProgressDialog = createProgressDialog();
+      mGeodatabaseGenerator.setListener(new PartitionedGeodatabaseGenerator.Listener<Geodatabase>() {
+        @Override public void onPartitioned(List<PartitionedGeodatabaseGenerator.Partition<Geodatabase>> partitions) {
+          if (mGeodatabaseGenerator.getCountError() != null) {
+            Log.w(TAG, "Could not count features, partitioned by area: "
+                + mGeodatabaseGenerator.getCountError().getMessage());
+          }
+          Log.i(TAG, "Generating " + partitions.size() + " partitions");
+        }
+
+        @Override public void onPartitionChanged(PartitionedGeodatabaseGenerator.Partition<Geodatabase> partition) {
+          mProgressDialog.setProgress(mGeodatabaseGenerator.getProgress());
+          if (partition.getState() == PartitionedGeodatabaseGenerator.State.SUCCEEDED) {
+            addGeodatabase(partition.getIndex(), partition.getResult());
+          } else if (partition.getState() == PartitionedGeodatabaseGenerator.State.RETRY_WAIT) {
+            Log.w(TAG, "Attempt " + partition.getAttempts() + " at partition " + partition.getIndex() + " failed: "
+                + partition.getError().getMessage());
+          } else if (partition.getState() == PartitionedGeodatabaseGenerator.State.FAILED) {
+            Log.e(TAG, "Error generating geodatabase: " + partition.getError().getMessage());
+            Toast.makeText(MainActivity.this, "Error generating geodatabase: " + partition.getError().getMessage(),
+                Toast.LENGTH_LONG).show();
+          }
+          if (mGeodatabaseGenerator.isFinished()) {
+            mProgressDialog.dismiss();
+            Log.i(TAG, "Generated geodatabases: " + mGeodatabaseGenerator);
+            onGeodatabasesSettled();
+          }
         }
       });
+      mGeodatabaseGenerator.generate(extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax());
     });
   }
 
   /**
-   * Syncs changes made on either the local or web service geodatabase with each other.
+   * Retries generating the geodatabases of the partitions which failed, and loading those which were generated but
+   * failed to load, keeping those already loaded.
    */
-  private void syncGeodatabase() {
-    // create parameters for the sync task
-    SyncGeodatabaseParameters syncGeodatabaseParameters = new SyncGeodatabaseParameters();
-    syncGeodatabaseParameters.setSyncDirection(SyncGeodatabaseParameters.SyncDirection.BIDIRECTIONAL);
-    syncGeodatabaseParameters.setRollbackOnFailure(false);
-    // get the layer ID for each feature table in the geodatabase, then add to the sync job
-    for (GeodatabaseFeatureTable geodatabaseFeatureTable : mGeodatabase.getGeodatabaseFeatureTables()) {
-      long serviceLayerId = geodatabaseFeatureTable.getServiceLayerId();
-      SyncLayerOption syncLayerOption = new SyncLayerOption(serviceLayerId);
-      syncGeodatabaseParameters.getLayerOptions().add(syncLayerOption);
+  private void retryFailedPartitions() {
+    mGeodatabaseButton.setVisibility(View.GONE);
+    Map<Geodatabase, Integer> unloadedGeodatabases = new LinkedHashMap<>(mUnloadedGeodatabases);
+    mUnloadedGeodatabases.clear();
+    for (Map.Entry<Geodatabase, Integer> unloadedGeodatabase : unloadedGeodatabases.entrySet()) {
+      addGeodatabase(unloadedGeodatabase.getValue(), new Geodatabase(unloadedGeodatabase.getKey().getPath()));
     }
+    if (hasFailedPartitions()) {
+      mProgressDialog = createProgressDialog();
+      mProgressDialog.setProgress(mGeodatabaseGenerator.getProgress());
+      mGeodatabaseGenerator.retryFailed();
+    }
+  }
 
-    final SyncGeodatabaseJob syncGeodatabaseJob = mGeodatabaseSyncTask
-        .syncGeodatabase(syncGeodatabaseParameters, mGeodatabase);
-
-    syncGeodatabaseJob.start();
-
-    createProgressDialog(syncGeodatabaseJob);
+  private boolean hasFailedPartitions() {
+    for (PartitionedGeodatabaseGenerator.Partition<Geodatabase> partition : mGeodatabaseGenerator.getPartitions()) {
+      if (partition.getState() == PartitionedGeodatabaseGenerator.State.FAILED) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    syncGeodatabaseJob.addJobDoneListener(() -> {
-      if (syncGeodatabaseJob.getStatus() == Job.Status.SUCCEEDED) {
-        Toast.makeText(this, "Sync complete", Toast.LENGTH_SHORT).show();
-        mGeodatabaseButton.setVisibility(View.INVISIBLE);
+  /**
+   * Loads the geodatabase of a partition and adds a feature layer of its points table to the points group layer, so the
+   * points show as a single layer however many partitions they're split across. Points which cross the border between
+   * partitions are only shown by the layer of the first partition they're in. A geodatabase which fails to load is
+   * kept aside to be loaded again on retry.
+   *
+   * @param partitionIndex index of the partition
+   * @param geodatabase    the generated geodatabase of the partition
+   */
+  private void addGeodatabase(int partitionIndex, Geodatabase geodatabase) {
+    geodatabase.loadAsync();
+    geodatabase.addDoneLoadingListener(() -> {
+      if (geodatabase.getLoadStatus() == LoadStatus.LOADED) {
+        mGeodatabases.add(geodatabase);
+        // get only the first table which, contains points
+        GeodatabaseFeatureTable pointsGeodatabaseFeatureTable = geodatabase.getGeodatabaseFeatureTables().get(0);
+        pointsGeodatabaseFeatureTable.loadAsync();
+        if (mPointsGroupLayer == null) {
+          mPointsGroupLayer = new GroupLayer();
+          mPointsGroupLayer.setName(pointsGeodatabaseFeatureTable.getTableName());
+          mMapView.getMap().getOperationalLayers().add(mPointsGroupLayer);
+        }
+        // add geodatabase layer to the map as a feature layer and make it selectable
+        FeatureLayer featureLayer = new FeatureLayer(pointsGeodatabaseFeatureTable);
+        mPointsGroupLayer.getLayers().add(featureLayer);
+        mPartitionLayerFilter.add(partitionIndex, featureLayer);
+        Log.i(TAG, "Local geodatabase stored at: " + geodatabase.getPath());
       } else {
-        Log.e(TAG, "Database did not sync correctly!");
-        Toast.makeText(this, "Database did not sync correctly!", Toast.LENGTH_LONG).show();
+        Log.e(TAG, "Error loading geodatabase: " + geodatabase.getLoadError().getMessage());
+        mUnloadedGeodatabases.put(geodatabase, partitionIndex);
       }
+      onGeodatabasesSettled();
     });
   }
 
   /**
-   * Create a progress dialog to show sync state
+   * Once every partition has been generated and its geodatabase has finished loading, lets features be edited and
+   * starts syncing edits in the background if every geodatabase loaded, or lets the user retry those which didn't.
    */
-  private void createProgressDialog(Job job) {
+  private void onGeodatabasesSettled() {
+    if (mSyncScheduler != null || !mGeodatabaseGenerator.isFinished()) {
+      return;
+    }
+    int partitions = mGeodatabaseGenerator.getPartitions().size();
+    int generated = 0;
+    for (PartitionedGeodatabaseGenerator.Partition<Geodatabase> partition : mGeodatabaseGenerator.getPartitions()) {
+      if (partition.getState() == PartitionedGeodatabaseGenerator.State.SUCCEEDED) {
+        generated++;
+      }
+    }
+    if (mGeodatabases.size() + mUnloadedGeodatabases.size() < generated) {
+      // wait for the rest to load
+      return;
+    }
+    if (mGeodatabases.size() < partitions) {
+      // let the user retry the partitions which failed to generate or load
+      mGeodatabaseButton.setText(R.string.retry_partitions_button_text);
+      mGeodatabaseButton.setVisibility(View.VISIBLE);
+      return;
+    }
+    mGeodatabaseButton.setVisibility(View.GONE);
+    // set edit state to ready
+    mCurrentEditState = EditState.Ready;
+    // sync edits in the background from now on
+    startSyncScheduler();
+  }
 
-    ProgressDialog syncProgressDialog = new ProgressDialog(this);
-    syncProgressDialog.setTitle("Sync geodatabase job");
-    syncProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
-    syncProgressDialog.setCanceledOnTouchOutside(false);
-    syncProgressDialog.show();
+  /**
+   * Starts syncing edits to the local geodatabases with the feature service in the background, once enough edits have
+   * been made or enough time has passed, whenever the device is connected and the user has stopped editing.
+   */
+  private void startSyncScheduler() {
+    mConnectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+    SyncScheduler.Scheduler scheduler = new SyncScheduler.Scheduler() {
+      @Override public Runnable schedule(Runnable task, long delayMillis) {
+        mMainHandler.postDelayed(task, delayMillis);
+        return () -> mMainHandler.removeCallbacks(task);
+      }
+
+      @Override public long nowMillis() {
+        return SystemClock.elapsedRealtime();
+      }
+    };
+    mSyncScheduler = new SyncScheduler(new GeodatabaseSyncSource(mGeodatabaseSyncTask, mGeodatabases),
+        scheduler, this::isConnected, SYNC_EDIT_THRESHOLD, SYNC_INTERVAL_MILLIS, SYNC_IDLE_MILLIS, SYNC_RETRY_MILLIS,
+        SYNC_MAX_RETRY_MILLIS);
+    mSyncScheduler.setListener(new SyncScheduler.Listener() {
+      @Override public void onSyncStarted(SyncScheduler.Trigger trigger) {
+        mSyncStatusTextView.setText(R.string.sync_status_syncing);
+      }
+
+      @Override public void onSyncFinished(SyncScheduler.SyncMetrics metrics) {
+        if (metrics.isSucceeded()) {
+          Log.i(TAG, metrics.toString());
+          mSyncStatusTextView.setText(getString(R.string.sync_status_synced, metrics.getEdits(),
+              Formatter.formatShortFileSize(MainActivity.this, metrics.getBytes()),
+              metrics.getDurationMillis() / 1000.0));
+          if (mSyncScheduler.getPendingEdits() == 0) {
+            mGeodatabaseButton.setVisibility(View.INVISIBLE);
+          }
+        } else {
+          Log.e(TAG, metrics + ", retrying in " + mSyncScheduler.getRetryDelayMillis() + " ms: "
+              + metrics.getError().getMessage());
+          mSyncStatusTextView.setText(getString(R.string.sync_status_failed, metrics.getError().getMessage()));
+        }
+      }
+    });
+    // check for a due sync whenever a network connects or disconnects
+    mNetworkCallback = new ConnectivityManager.NetworkCallback() {
+      @Override public void onAvailable(Network network) {
+        mMainHandler.post(() -> mSyncScheduler.onConnectivityChanged());
+      }
+
+      @Override public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+        mMainHandler.post(() -> mSyncScheduler.onConnectivityChanged());
+      }
+
+      @Override public void onLost(Network network) {
+        mMainHandler.post(() -> mSyncScheduler.onConnectivityChanged());
+      }
+    };
+    mConnectivityManager.registerNetworkCallback(
+        new NetworkRequest.Builder().addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET).build(),
+        mNetworkCallback);
+  }
+
+  /**
+   * @return true if the active network has been found to reach the internet
+   */
+  private boolean isConnected() {
+    NetworkCapabilities networkCapabilities = mConnectivityManager
+        .getNetworkCapabilities(mConnectivityManager.getActiveNetwork());
+    return networkCapabilities != null && networkCapabilities
+        .hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+  }
 
-    job.addProgressChangedListener(() -> syncProgressDialog.setProgress(job.getProgress()));
+  /**
+   * Create a progress dialog to show the progress of generating the geodatabases
+   */
+  private ProgressDialog createProgressDialog() {
 
-    job.addJobDoneListener(syncProgressDialog::dismiss);
+    ProgressDialog progressDialog = new ProgressDialog(this);
+    progressDialog.setTitle("Generate geodatabase jobs");
+    progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+    progressDialog.setCanceledOnTouchOutside(false);
+    progressDialog.show();
+    return progressDialog;
   }
 
   /**
@@ -252,7 +416,7 @@ public class MainActivity extends AppCompatActivity {
     query.setGeometry(envelope);
     mSelectedFeatures = new ArrayList<>();
     // select features within the envelope for all features on the map
-    for (Layer layer : mMapView.getMap().getOperationalLayers()) {
+    for (Layer layer : mPointsGroupLayer.getLayers()) {
       final FeatureLayer featureLayer = (FeatureLayer) layer;
       final ListenableFuture<FeatureQueryResult> featureQueryResultFuture = featureLayer
           .selectFeaturesAsync(query, FeatureLayer.SelectionMode.NEW);
@@ -287,7 +451,16 @@ public class MainActivity extends AppCompatActivity {
   private void moveSelectedFeatureTo(Point point) {
     for (Feature feature : mSelectedFeatures) {
       feature.setGeometry(point);
-      feature.getFeatureTable().updateFeatureAsync(feature);
+      ListenableFuture<Void> updateFeatureFuture = feature.getFeatureTable().updateFeatureAsync(feature);
+      // count the edit towards the next background sync
+      updateFeatureFuture.addDoneListener(() -> {
+        try {
+          updateFeatureFuture.get();
+          mSyncScheduler.onEdit();
+        } catch (InterruptedException | ExecutionException e) {
+          Log.e(TAG, "Error moving feature: " + e.getMessage());
+        }
+      });
     }
     mSelectedFeatures.clear();
     mCurrentEditState = MainActivity.EditState.Ready;
@@ -311,6 +484,9 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onPause() {
+    if (mSyncScheduler != null) {
+      Log.i(TAG, "Syncs: " + mSyncScheduler);
+    }
     mMapView.pause();
     super.onPause();
   }
@@ -322,6 +498,13 @@ public class MainActivity extends AppCompatActivity {
   }
 
   @Override protected void onDestroy() {
+    if (mGeodatabaseGenerator != null) {
+      mGeodatabaseGenerator.cancel();
+    }
+    if (mSyncScheduler != null) {
+      mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+      mSyncScheduler.shutdown();
+    }
     mMapView.dispose();
     super.onDestroy();
   }
@@ -0,0 +1,737 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.editandsyncfeatures;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.esri.arcgisruntime.arcgisservices.IdInfo;
+import com.esri.arcgisruntime.concurrent.Job;
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Geodatabase;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.data.ServiceFeatureTable;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseJob;
+import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseParameters;
+import com.esri.arcgisruntime.tasks.geodatabase.GeodatabaseSyncTask;
+
+/**
+ * Generates the geodatabase of a large extent as a set of smaller geodatabases, one for each partition of the extent,
+ * running several generate jobs at a time.
+ *
+ * The extent is first split into a grid of cells and the features in each are counted. The extent is then split in two
+ * along its longer side, at the grid line which best balances the features either side, and the partition with the
+ * most features is split again until each has no more than a target number of features, or there are as many
+ * partitions as allowed. An extent with few features is left as a single partition. If the features can't be counted,
+ * the extent is split by area into as many partitions as allowed.
+ *
+ * A partition which fails is retried on its own after a delay which doubles with each attempt, up to a limit of
+ * attempts, after which it can be retried by hand. The other partitions carry on regardless. Features which cross the
+ * border between partitions are in the geodatabase of each partition they cross.
+ *
+ * Must be used from the thread feature counts and generations call back on.
+ *
+ * @param <R> type of the result of generating a partition
+ */
+final class PartitionedGeodatabaseGenerator<R> {
+
+  enum State {QUEUED, RUNNING, RETRY_WAIT, SUCCEEDED, FAILED}
+
+  /**
+   * A rectangle of the extent, and the state of the generation of its geodatabase.
+   */
+  static final class Partition<R> {
+    private final int mIndex;
+    private final double mXMin;
+    private final double mYMin;
+    private final double mXMax;
+    private final double mYMax;
+    private final long mEstimatedFeatures;
+    private State mState = State.QUEUED;
+    private int mProgress;
+    private int mAttempts;
+    private long mStartMillis;
+    private long mDurationMillis;
+    private Exception mError;
+    private R mResult;
+    private Generation mGeneration;
+
+    private Partition(int index, double xMin, double yMin, double xMax, double yMax, long estimatedFeatures) {
+      mIndex = index;
+      mXMin = xMin;
+      mYMin = yMin;
+      mXMax = xMax;
+      mYMax = yMax;
+      mEstimatedFeatures = estimatedFeatures;
+    }
+
+    int getIndex() {
+      return mIndex;
+    }
+
+    double getXMin() {
+      return mXMin;
+    }
+
+    double getYMin() {
+      return mYMin;
+    }
+
+    double getXMax() {
+      return mXMax;
+    }
+
+    double getYMax() {
+      return mYMax;
+    }
+
+    /**
+     * @return the number of features counted in the partition, or 0 if they couldn't be counted
+     */
+    long getEstimatedFeatures() {
+      return mEstimatedFeatures;
+    }
+
+    State getState() {
+      return mState;
+    }
+
+    int getProgress() {
+      return mProgress;
+    }
+
+    int getAttempts() {
+      return mAttempts;
+    }
+
+    /**
+     * @return the time taken by the attempt which succeeded, or the last attempt to fail
+     */
+    long getDurationMillis() {
+      return mDurationMillis;
+    }
+
+    /**
+     * @return the error of the last attempt which failed
+     */
+    Exception getError() {
+      return mError;
+    }
+
+    /**
+     * @return the geodatabase of the partition, once it has succeeded
+     */
+    R getResult() {
+      return mResult;
+    }
+  }
+
+  /**
+   * Counts the features in a rectangle of the extent.
+   */
+  interface FeatureCounter {
+    void count(double xMin, double yMin, double xMax, double yMax, CountCallback callback);
+  }
+
+  /**
+   * Receives the outcome of a count.
+   */
+  interface CountCallback {
+    void onCount(long count);
+
+    void onFailed(Exception e);
+  }
+
+  /**
+   * An attempt at generating the geodatabase of a partition.
+   */
+  interface Generation {
+    void cancel();
+  }
+
+  /**
+   * Starts the generation of the geodatabases of partitions.
+   */
+  interface GenerationFactory<R> {
+    /**
+     * Starts an attempt at generating the geodatabase of a partition, replacing anything left by an earlier attempt
+     * which failed.
+     */
+    Generation start(Partition<R> partition, Callback<R> callback);
+  }
+
+  /**
+   * Receives the progress and outcome of a generation.
+   */
+  interface Callback<R> {
+    void onProgress(int percent);
+
+    void onSucceeded(R result);
+
+    void onFailed(Exception e);
+  }
+
+  /**
+   * Schedules delayed tasks, and tells the time.
+   */
+  interface Scheduler {
+    /**
+     * @return a task which cancels the scheduled task
+     */
+    Runnable schedule(Runnable task, long delayMillis);
+
+    long nowMillis();
+  }
+
+  /**
+   * Is told once the extent has been partitioned, and of changes to the state or progress of a partition.
+   */
+  interface Listener<R> {
+    void onPartitioned(List<Partition<R>> partitions);
+
+    void onPartitionChanged(Partition<R> partition);
+  }
+
+  private final FeatureCounter mCounter;
+  private final GenerationFactory<R> mFactory;
+  private final Scheduler mScheduler;
+  private final int mGridSize;
+  private final int mMaxPartitions;
+  private final long mTargetFeatures;
+  private final int mMaxConcurrent;
+  private final int mMaxAttempts;
+  private final long mRetryMillis;
+  private Listener<R> mListener;
+
+  private boolean mStarted;
+  private boolean mCancelled;
+  private final List<Partition<R>> mPartitions = new ArrayList<>();
+  private final List<Partition<R>> mQueue = new ArrayList<>();
+  private final Map<Partition<R>, Runnable> mRetries = new LinkedHashMap<>();
+  private int mRunning;
+
+  private long mStartMillis;
+  private long mCountMillis;
+  private long mFinishMillis;
+  private long mJobMillis;
+  private int mFailedAttempts;
+  private Exception mCountError;
+
+  /**
+   * @param counter        counts the features in the cells of the extent
+   * @param factory        starts the generation of partitions
+   * @param scheduler      schedules retries and tells the time
+   * @param gridSize       number of cells across and down the extent to count the features of
+   * @param maxPartitions  most partitions to split the extent into
+   * @param targetFeatures number of features below which a partition isn't split any further
+   * @param maxConcurrent  number of partitions to generate at a time
+   * @param maxAttempts    number of attempts at generating a partition before leaving it failed
+   * @param retryMillis    delay before the first retry of a partition, doubled with each later one
+   */
+  PartitionedGeodatabaseGenerator(FeatureCounter counter, GenerationFactory<R> factory, Scheduler scheduler,
+      int gridSize, int maxPartitions, long targetFeatures, int maxConcurrent, int maxAttempts, long retryMillis) {
+    mCounter = counter;
+    mFactory = factory;
+    mScheduler = scheduler;
+    mGridSize = gridSize;
+    mMaxPartitions = maxPartitions;
+    mTargetFeatures = targetFeatures;
+    mMaxConcurrent = maxConcurrent;
+    mMaxAttempts = maxAttempts;
+    mRetryMillis = retryMillis;
+  }
+
+  /**
+   * Creates a feature counter which counts the features of every layer of the feature service of a
+   * {@link GeodatabaseSyncTask}, which must be loaded.
+   *
+   * @param geodatabaseSyncTask the loaded task of the feature service
+   * @param spatialReference    spatial reference of the rectangles to count the features in
+   */
+  static FeatureCounter featureServiceCounter(GeodatabaseSyncTask geodatabaseSyncTask,
+      SpatialReference spatialReference) {
+    List<ServiceFeatureTable> serviceFeatureTables = new ArrayList<>();
+    for (IdInfo layerInfo : geodatabaseSyncTask.getFeatureServiceInfo().getLayerInfos()) {
+      serviceFeatureTables.add(new ServiceFeatureTable(geodatabaseSyncTask.getUri() + "/" + layerInfo.getId()));
+    }
+    return (xMin, yMin, xMax, yMax, callback) -> {
+      QueryParameters queryParameters = new QueryParameters();
+      queryParameters.setGeometry(new Envelope(xMin, yMin, xMax, yMax, spatialReference));
+      // sum the counts of every layer, failing if any of them fails
+      final long[] count = new long[1];
+      final int[] remaining = { serviceFeatureTables.size() };
+      final boolean[] failed = new boolean[1];
+      if (serviceFeatureTables.isEmpty()) {
+        callback.onCount(0);
+        return;
+      }
+      for (ServiceFeatureTable serviceFeatureTable : serviceFeatureTables) {
+        ListenableFuture<Long> countFuture = serviceFeatureTable.queryFeatureCountAsync(queryParameters);
+        countFuture.addDoneListener(() -> {
+          if (failed[0]) {
+            return;
+          }
+          try {
+            count[0] += countFuture.get();
+          } catch (Exception e) {
+            failed[0] = true;
+            callback.onFailed(e);
+            return;
+          }
+          if (--remaining[0] == 0) {
+            callback.onCount(count[0]);
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Creates a generation factory which generates the geodatabase of each partition through a
+   * {@link GeodatabaseSyncTask}, without attachments, into a file of its own.
+   *
+   * @param geodatabaseSyncTask the loaded task of the feature service
+   * @param spatialReference    spatial reference of the partitions
+   * @param directory           directory to generate the geodatabases in
+   * @param name                name of the geodatabases, to which the index of each partition is added
+   */
+  static GenerationFactory<Geodatabase> geodatabaseGenerationFactory(GeodatabaseSyncTask geodatabaseSyncTask,
+      SpatialReference spatialReference, File directory, String name) {
+    return (partition, callback) -> {
+      // set to cancel the generation, before or after its job has been created
+      final GenerateGeodatabaseJob[] job = new GenerateGeodatabaseJob[1];
+      final boolean[] cancelled = new boolean[1];
+      File geodatabaseFile = new File(directory, name + "-" + partition.getIndex() + ".geodatabase");
+      // the job won't replace a geodatabase left by an earlier attempt
+      if (geodatabaseFile.exists() && !geodatabaseFile.delete()) {
+        callback.onFailed(new IOException("Could not delete earlier geodatabase: " + geodatabaseFile.getPath()));
+        return () -> { };
+      }
+      Envelope extent = new Envelope(partition.getXMin(), partition.getYMin(), partition.getXMax(),
+          partition.getYMax(), spatialReference);
+      ListenableFuture<GenerateGeodatabaseParameters> defaultParameters = geodatabaseSyncTask
+          .createDefaultGenerateGeodatabaseParametersAsync(extent);
+      defaultParameters.addDoneListener(() -> {
+        if (cancelled[0]) {
+          return;
+        }
+        GenerateGeodatabaseParameters parameters;
+        try {
+          parameters = defaultParameters.get();
+        } catch (Exception e) {
+          callback.onFailed(e);
+          return;
+        }
+        // don't include attachments
+        parameters.setReturnAttachments(false);
+        job[0] = geodatabaseSyncTask.generateGeodatabase(parameters, geodatabaseFile.getPath());
+        job[0].addProgressChangedListener(() -> callback.onProgress(job[0].getProgress()));
+        job[0].addJobDoneListener(() -> {
+          if (cancelled[0]) {
+            return;
+          }
+          if (job[0].getStatus() == Job.Status.SUCCEEDED) {
+            callback.onSucceeded(job[0].getResult());
+          } else {
+            callback.onFailed(job[0].getError());
+          }
+        });
+        job[0].start();
+      });
+      return () -> {
+        cancelled[0] = true;
+        if (job[0] != null) {
+          job[0].cancel();
+        }
+      };
+    };
+  }
+
+  /**
+   * Splits a grid of cells into rectangles of whole cells, splitting the rectangle with the most features in two until
+   * each has no more than a target number of features, or there are as many as allowed.
+   *
+   * @param gridSize       number of cells across and down the grid
+   * @param cellCounts     features in each cell, row by row from the bottom left
+   * @param maxPartitions  most rectangles to split the grid into
+   * @param targetFeatures number of features below which a rectangle isn't split any further
+   * @return the first column, first row, and the column and row after the last, of each rectangle
+   */
+  static List<int[]> partition(int gridSize, long[] cellCounts, int maxPartitions, long targetFeatures) {
+    List<int[]> partitions = new ArrayList<>();
+    partitions.add(new int[] { 0, 0, gridSize, gridSize });
+    while (partitions.size() < maxPartitions) {
+      // the splittable rectangle with the most features
+      int largest = -1;
+      long largestCount = targetFeatures;
+      for (int i = 0; i < partitions.size(); i++) {
+        int[] cells = partitions.get(i);
+        long count = countCells(gridSize, cellCounts, cells);
+        if (count > largestCount && (cells[2] - cells[0] > 1 || cells[3] - cells[1] > 1)) {
+          largest = i;
+          largestCount = count;
+        }
+      }
+      if (largest < 0) {
+        break;
+      }
+      int[] cells = partitions.get(largest);
+      // split across the longer side, at the grid line which leaves the features either side closest to equal
+      boolean splitColumns = cells[2] - cells[0] >= cells[3] - cells[1];
+      int from = splitColumns ? cells[0] : cells[1];
+      int to = splitColumns ? cells[2] : cells[3];
+      int bestLine = from + 1;
+      long bestDifference = Long.MAX_VALUE;
+      for (int line = from + 1; line < to; line++) {
+        int[] before = splitColumns ? new int[] { cells[0], cells[1], line, cells[3] } :
+            new int[] { cells[0], cells[1], cells[2], line };
+        long difference = Math.abs(largestCount - 2 * countCells(gridSize, cellCounts, before));
+        if (difference < bestDifference) {
+          bestLine = line;
+          bestDifference = difference;
+        }
+      }
+      if (splitColumns) {
+        partitions.set(largest, new int[] { cells[0], cells[1], bestLine, cells[3] });
+        partitions.add(new int[] { bestLine, cells[1], cells[2], cells[3] });
+      } else {
+        partitions.set(largest, new int[] { cells[0], cells[1], cells[2], bestLine });
+        partitions.add(new int[] { cells[0], bestLine, cells[2], cells[3] });
+      }
+    }
+    return partitions;
+  }
+
+  private static long countCells(int gridSize, long[] cellCounts, int[] cells) {
+    long count = 0;
+    for (int row = cells[1]; row < cells[3]; row++) {
+      for (int column = cells[0]; column < cells[2]; column++) {
+        count += cellCounts[row * gridSize + column];
+      }
+    }
+    return count;
+  }
+
+  void setListener(Listener<R> listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Counts the features in the extent, partitions it and starts generating the partitions.
+   */
+  void generate(double xMin, double yMin, double xMax, double yMax) {
+    if (mStarted) {
+      throw new IllegalStateException("Generation has already been started");
+    }
+    mStarted = true;
+    mStartMillis = mScheduler.nowMillis();
+    long[] cellCounts = new long[mGridSize * mGridSize];
+    final int[] remaining = { cellCounts.length };
+    double cellWidth = (xMax - xMin) / mGridSize;
+    double cellHeight = (yMax - yMin) / mGridSize;
+    for (int row = 0; row < mGridSize; row++) {
+      for (int column = 0; column < mGridSize; column++) {
+        final int cell = row * mGridSize + column;
+        // a count which fails still finishes the counting, which then falls back to splitting by area
+        final boolean[] counted = new boolean[1];
+        CountCallback callback = new CountCallback() {
+          @Override public void onCount(long count) {
+            finish(count);
+          }
+
+          @Override public void onFailed(Exception e) {
+            if (mCountError == null) {
+              mCountError = e;
+            }
+            finish(0);
+          }
+
+          private void finish(long count) {
+            if (counted[0] || mCancelled) {
+              return;
+            }
+            counted[0] = true;
+            cellCounts[cell] = count;
+            if (--remaining[0] == 0) {
+              onCounted(xMin, yMin, cellWidth, cellHeight, cellCounts);
+            }
+          }
+        };
+        try {
+          mCounter.count(xMin + column * cellWidth, yMin + row * cellHeight,
+              column == mGridSize - 1 ? xMax : xMin + (column + 1) * cellWidth,
+              row == mGridSize - 1 ? yMax : yMin + (row + 1) * cellHeight, callback);
+        } catch (RuntimeException e) {
+          callback.onFailed(e);
+        }
+      }
+    }
+  }
+
+  private void onCounted(double xMin, double yMin, double cellWidth, double cellHeight, long[] cellCounts) {
+    mCountMillis = mScheduler.nowMillis() - mStartMillis;
+    List<int[]> partitionCells;
+    if (mCountError != null) {
+      // split by area instead, into as many partitions as allowed
+      long[] ones = new long[cellCounts.length];
+      Arrays.fill(ones, 1);
+      partitionCells = partition(mGridSize, ones, mMaxPartitions, 0);
+    } else {
+      partitionCells = partition(mGridSize, cellCounts, mMaxPartitions, mTargetFeatures);
+    }
+    for (int[] cells : partitionCells) {
+      mPartitions.add(new Partition<>(mPartitions.size(), xMin + cells[0] * cellWidth, yMin + cells[1] * cellHeight,
+          xMin + cells[2] * cellWidth, yMin + cells[3] * cellHeight,
+          mCountError != null ? 0 : countCells(mGridSize, cellCounts, cells)));
+    }
+    // start with the partitions with the most features, which are likely to take longest
+    mQueue.addAll(mPartitions);
+    Collections.sort(mQueue, (a, b) -> Long.compare(b.mEstimatedFeatures, a.mEstimatedFeatures));
+    if (mListener != null) {
+      mListener.onPartitioned(Collections.unmodifiableList(mPartitions));
+    }
+    startNext();
+  }
+
+  /**
+   * Retries the generation of a partition which has failed, or is waiting to be retried.
+   */
+  void retry(int index) {
+    Partition<R> partition = mPartitions.get(index);
+    if (partition.mState == State.FAILED || partition.mState == State.RETRY_WAIT) {
+      Runnable cancelRetry = mRetries.remove(partition);
+      if (cancelRetry != null) {
+        cancelRetry.run();
+      }
+      partition.mState = State.QUEUED;
+      partition.mAttempts = 0;
+      mQueue.add(0, partition);
+      changed(partition);
+      startNext();
+    }
+  }
+
+  /**
+   * Retries the generation of every partition which has failed.
+   */
+  void retryFailed() {
+    for (Partition<R> partition : mPartitions) {
+      if (partition.mState == State.FAILED) {
+        retry(partition.mIndex);
+      }
+    }
+  }
+
+  /**
+   * Stops counting and generating, cancelling the generations which are running.
+   */
+  void cancel() {
+    mCancelled = true;
+    mQueue.clear();
+    for (Runnable cancelRetry : mRetries.values()) {
+      cancelRetry.run();
+    }
+    mRetries.clear();
+    for (Partition<R> partition : mPartitions) {
+      if (partition.mGeneration != null) {
+        Generation generation = partition.mGeneration;
+        partition.mGeneration = null;
+        generation.cancel();
+      }
+    }
+  }
+
+  /**
+   * @return the error of the first count which failed, after which the extent was split by area, or null if every
+   * count succeeded
+   */
+  Exception getCountError() {
+    return mCountError;
+  }
+
+  /**
+   * @return the partitions of the extent, or an empty list until the features have been counted
+   */
+  List<Partition<R>> getPartitions() {
+    return Collections.unmodifiableList(mPartitions);
+  }
+
+  /**
+   * @return the progress of all the partitions together, weighted by their estimated features
+   */
+  int getProgress() {
+    long done = 0;
+    long total = 0;
+    for (Partition<R> partition : mPartitions) {
+      // one more, so partitions with no features still count
+      long weight = partition.mEstimatedFeatures + 1;
+      done += weight * (partition.mState == State.SUCCEEDED ? 100 : partition.mProgress);
+      total += weight * 100;
+    }
+    return total == 0 ? 0 : (int) (done * 100 / total);
+  }
+
+  /**
+   * @return true once every partition has either succeeded or failed for good
+   */
+  boolean isFinished() {
+    if (mPartitions.isEmpty()) {
+      return false;
+    }
+    for (Partition<R> partition : mPartitions) {
+      if (partition.mState != State.SUCCEEDED && partition.mState != State.FAILED) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts the queued partitions, up to the limit of generations at a time.
+   */
+  private void startNext() {
+    while (!mCancelled && mRunning < mMaxConcurrent && !mQueue.isEmpty()) {
+      start(mQueue.remove(0));
+    }
+  }
+
+  private void start(Partition<R> partition) {
+    mRunning++;
+    partition.mState = State.RUNNING;
+    partition.mAttempts++;
+    partition.mProgress = 0;
+    partition.mStartMillis = mScheduler.nowMillis();
+    changed(partition);
+    // the partition's generation is only replaced by this one once it has started, and a job of an earlier attempt
+    // at the partition may still report in, so callbacks are only taken while it is the partition's generation
+    final Generation[] generation = new Generation[1];
+    Callback<R> callback = new Callback<R>() {
+      @Override public void onProgress(int percent) {
+        if (partition.mGeneration == generation[0] && partition.mState == State.RUNNING) {
+          partition.mProgress = percent;
+          changed(partition);
+        }
+      }
+
+      @Override public void onSucceeded(R result) {
+        if (partition.mGeneration == generation[0] && partition.mState == State.RUNNING) {
+          onAttemptSucceeded(partition, result);
+        }
+      }
+
+      @Override public void onFailed(Exception e) {
+        if (partition.mGeneration == generation[0] && partition.mState == State.RUNNING) {
+          onAttemptFailed(partition, e != null ? e : new Exception("Unknown error generating geodatabase"));
+        }
+      }
+    };
+    partition.mGeneration = null;
+    try {
+      generation[0] = mFactory.start(partition, callback);
+    } catch (RuntimeException e) {
+      callback.onFailed(e);
+      return;
+    }
+    if (partition.mState == State.RUNNING) {
+      partition.mGeneration = generation[0];
+    }
+  }
+
+  private void onAttemptSucceeded(Partition<R> partition, R result) {
+    finishAttempt(partition);
+    partition.mProgress = 100;
+    partition.mResult = result;
+    partition.mError = null;
+    partition.mState = State.SUCCEEDED;
+    changed(partition);
+    startNext();
+  }
+
+  private void onAttemptFailed(Partition<R> partition, Exception e) {
+    finishAttempt(partition);
+    mFailedAttempts++;
+    partition.mError = e;
+    if (partition.mAttempts < mMaxAttempts) {
+      partition.mState = State.RETRY_WAIT;
+      // the attempts are bounded by the maximum, which keeps the doubled delay in range
+      long delay = mRetryMillis << (partition.mAttempts - 1);
+      mRetries.put(partition, mScheduler.schedule(() -> {
+        mRetries.remove(partition);
+        partition.mState = State.QUEUED;
+        // so a partition near the end of the grid isn't held back by every untried partition before it
+        mQueue.add(0, partition);
+        changed(partition);
+        startNext();
+      }, delay));
+    } else {
+      partition.mState = State.FAILED;
+    }
+    changed(partition);
+    startNext();
+  }
+
+  /**
+   * Frees the generation slot of a partition whose attempt has finished.
+   */
+  private void finishAttempt(Partition<R> partition) {
+    partition.mGeneration = null;
+    partition.mDurationMillis = mScheduler.nowMillis() - partition.mStartMillis;
+    mJobMillis += partition.mDurationMillis;
+    mRunning--;
+  }
+
+  private void changed(Partition<R> partition) {
+    if (isFinished()) {
+      mFinishMillis = mScheduler.nowMillis();
+    }
+    if (mListener != null) {
+      mListener.onPartitionChanged(partition);
+    }
+  }
+
+  /**
+   * @return the number of partitions in each state, the features counted, the time taken and how much of it the jobs
+   * running at the same time saved
+   */
+  @Override
+  public String toString() {
+    int[] counts = new int[State.values().length];
+    long features = 0;
+    for (Partition<R> partition : mPartitions) {
+      counts[partition.mState.ordinal()]++;
+      features += partition.mEstimatedFeatures;
+    }
+    long elapsedMillis = !mStarted ? 0 : (isFinished() ? mFinishMillis : mScheduler.nowMillis()) - mStartMillis;
+    long generateMillis = elapsedMillis - mCountMillis;
+    return String.format(Locale.US,
+        "%d partitions (%d queued, %d running, %d waiting to retry, %d succeeded, %d failed), %d features%s, "
+            + "%d failed attempts, %d ms counting, %d ms elapsed, %.1fx parallel speedup",
+        mPartitions.size(), counts[State.QUEUED.ordinal()], counts[State.RUNNING.ordinal()],
+        counts[State.RETRY_WAIT.ordinal()], counts[State.SUCCEEDED.ordinal()], counts[State.FAILED.ordinal()],
+        features, mCountError != null ? " (count failed)" : "", mFailedAttempts, mCountMillis, elapsedMillis,
+        generateMillis <= 0 ? 0 : (double) mJobMillis / generateMillis);
+  }
+}
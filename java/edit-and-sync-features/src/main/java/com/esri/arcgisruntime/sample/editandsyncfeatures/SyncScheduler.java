@@ -0,0 +1,415 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.editandsyncfeatures;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Syncs geodatabases with their feature service in the background, batching local edits into as few syncs as
+ * possible.
+ *
+ * A sync is started once the device is connected and there have been no edits for a while, if enough edits have been
+ * made or long enough has passed since the last sync. Only tables with local edits upload, the others only download. A
+ * sync which fails is retried after a delay which doubles with each failure in a row, up to a limit. Only one sync runs
+ * at a time, and one due while another is running is started once that has finished.
+ *
+ * Syncs are started by a {@link SyncSource}, such as a {@link GeodatabaseSyncSource}, and checks and retries are
+ * scheduled by a {@link Scheduler}. Must be used from a single thread, which syncs call back on.
+ */
+final class SyncScheduler {
+
+  enum Trigger {EDITS, ELAPSED_TIME, RETRY, MANUAL}
+
+  /**
+   * What a finished sync did.
+   */
+  static final class SyncMetrics {
+    private final Trigger mTrigger;
+    private final int mUploadTables;
+    private final int mEdits;
+    private final long mBytes;
+    private final long mDurationMillis;
+    private final Exception mError;
+
+    private SyncMetrics(Trigger trigger, int uploadTables, int edits, long bytes, long durationMillis,
+        Exception error) {
+      mTrigger = trigger;
+      mUploadTables = uploadTables;
+      mEdits = edits;
+      mBytes = bytes;
+      mDurationMillis = durationMillis;
+      mError = error;
+    }
+
+    Trigger getTrigger() {
+      return mTrigger;
+    }
+
+    /**
+     * @return the number of tables whose local edits were uploaded
+     */
+    int getUploadTables() {
+      return mUploadTables;
+    }
+
+    /**
+     * @return the number of edits made since the previous sync which were uploaded
+     */
+    int getEdits() {
+      return mEdits;
+    }
+
+    /**
+     * @return the bytes sent and received while the sync ran
+     */
+    long getBytes() {
+      return mBytes;
+    }
+
+    long getDurationMillis() {
+      return mDurationMillis;
+    }
+
+    boolean isSucceeded() {
+      return mError == null;
+    }
+
+    /**
+     * @return why the sync failed, or null if it succeeded
+     */
+    Exception getError() {
+      return mError;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s sync %s: %d edits in %d tables, %d bytes in %d ms", mTrigger,
+          isSucceeded() ? "succeeded" : "failed", mEdits, mUploadTables, mBytes, mDurationMillis);
+    }
+  }
+
+  /**
+   * A running sync.
+   */
+  interface Sync {
+    void cancel();
+  }
+
+  /**
+   * Tells which tables have local edits, and starts syncs.
+   */
+  interface SyncSource {
+    /**
+     * @return the service layer IDs of the tables with local edits
+     */
+    Set<Long> getLayerIdsWithLocalEdits();
+
+    /**
+     * Starts a sync which uploads the local edits of the given tables, and downloads the changes to all tables.
+     */
+    Sync start(Collection<Long> uploadLayerIds, Callback callback);
+  }
+
+  /**
+   * Receives the outcome of a sync, and the bytes sent and received while it ran.
+   */
+  interface Callback {
+    void onSucceeded(long bytes);
+
+    void onFailed(Exception e, long bytes);
+  }
+
+  /**
+   * Schedules delayed tasks, and tells the time.
+   */
+  interface Scheduler {
+    /**
+     * @return a task which cancels the scheduled task
+     */
+    Runnable schedule(Runnable task, long delayMillis);
+
+    long nowMillis();
+  }
+
+  /**
+   * Tells whether the device can reach the feature service.
+   */
+  interface ConnectivityProvider {
+    boolean isConnected();
+  }
+
+  /**
+   * Is told when syncs start and finish.
+   */
+  interface Listener {
+    void onSyncStarted(Trigger trigger);
+
+    void onSyncFinished(SyncMetrics metrics);
+  }
+
+  private final SyncSource mSource;
+  private final Scheduler mScheduler;
+  private final ConnectivityProvider mConnectivityProvider;
+  private final int mEditThreshold;
+  private final long mIntervalMillis;
+  private final long mIdleMillis;
+  private final long mRetryMillis;
+  private final long mMaxRetryMillis;
+  private Listener mListener;
+
+  private Sync mSync;
+  private Runnable mCancelCheck;
+  private boolean mShutdown;
+  private boolean mSyncRequested;
+  private int mPendingEdits;
+  private int mSyncingEdits;
+  private long mLastEditMillis;
+  private long mLastSyncMillis;
+  private int mFailuresInARow;
+  private long mRetryDelayMillis;
+  private long mRetryAtMillis;
+  private SyncMetrics mLastSync;
+
+  private int mSyncs;
+  private int mFailedSyncs;
+  private int mEditsUploaded;
+  private long mBytesTotal;
+  private long mSyncMillisTotal;
+  private long mLongestSyncMillis;
+
+  /**
+   * @param source               tells which tables have local edits and starts syncs
+   * @param scheduler            schedules checks and retries and tells the time
+   * @param connectivityProvider tells whether the device is connected
+   * @param editThreshold        number of edits which make a sync due
+   * @param intervalMillis       time since the last sync which makes a sync due, even without edits
+   * @param idleMillis           time without edits to wait for before starting a sync
+   * @param retryMillis          delay before retrying a failed sync, doubled with each failure in a row
+   * @param maxRetryMillis       longest delay before retrying a failed sync
+   */
+  SyncScheduler(SyncSource source, Scheduler scheduler, ConnectivityProvider connectivityProvider, int editThreshold,
+      long intervalMillis, long idleMillis, long retryMillis, long maxRetryMillis) {
+    mSource = source;
+    mScheduler = scheduler;
+    mConnectivityProvider = connectivityProvider;
+    mEditThreshold = editThreshold;
+    mIntervalMillis = intervalMillis;
+    mIdleMillis = idleMillis;
+    mRetryMillis = retryMillis;
+    mMaxRetryMillis = maxRetryMillis;
+    mLastSyncMillis = scheduler.nowMillis();
+    mLastEditMillis = mLastSyncMillis - idleMillis;
+    check();
+  }
+
+  void setListener(Listener listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Counts an edit towards the next sync, and puts off any sync until there have been no edits for a while.
+   */
+  void onEdit() {
+    mPendingEdits++;
+    mLastEditMillis = mScheduler.nowMillis();
+    check();
+  }
+
+  /**
+   * Starts a sync which is due, now that the device may have connected.
+   */
+  void onConnectivityChanged() {
+    check();
+  }
+
+  /**
+   * Starts a sync straight away, without waiting for edits to stop or a failed sync's retry, or once the device has
+   * connected or the running sync has finished.
+   */
+  void syncNow() {
+    mSyncRequested = true;
+    check();
+  }
+
+  boolean isSyncing() {
+    return mSync != null;
+  }
+
+  /**
+   * @return the number of edits made since the last sync which uploaded them
+   */
+  int getPendingEdits() {
+    return mPendingEdits + mSyncingEdits;
+  }
+
+  /**
+   * @return the delay before retrying the last sync, which failed, or 0 if the last sync succeeded
+   */
+  long getRetryDelayMillis() {
+    return mRetryDelayMillis;
+  }
+
+  /**
+   * @return the metrics of the last sync to finish, or null if none has
+   */
+  SyncMetrics getLastSync() {
+    return mLastSync;
+  }
+
+  /**
+   * Stops scheduling syncs, and cancels the running sync.
+   */
+  void shutdown() {
+    mShutdown = true;
+    cancelCheck();
+    if (mSync != null) {
+      Sync sync = mSync;
+      mSync = null;
+      sync.cancel();
+    }
+  }
+
+  /**
+   * Starts a sync if one is due, or schedules a check for when one next may be.
+   */
+  private void check() {
+    cancelCheck();
+    if (mShutdown || mSync != null || !mConnectivityProvider.isConnected()) {
+      // checked again once the sync finishes or the device connects
+      return;
+    }
+    if (mSyncRequested) {
+      start(Trigger.MANUAL);
+      return;
+    }
+    long now = mScheduler.nowMillis();
+    long dueMillis;
+    Trigger trigger;
+    if (mFailuresInARow > 0) {
+      dueMillis = mRetryAtMillis;
+      trigger = Trigger.RETRY;
+    } else if (mPendingEdits >= mEditThreshold) {
+      dueMillis = now;
+      trigger = Trigger.EDITS;
+    } else {
+      dueMillis = mLastSyncMillis + mIntervalMillis;
+      trigger = Trigger.ELAPSED_TIME;
+    }
+    // wait for the user to stop editing
+    dueMillis = Math.max(dueMillis, mLastEditMillis + mIdleMillis);
+    if (dueMillis <= now) {
+      start(trigger);
+    } else {
+      mCancelCheck = mScheduler.schedule(() -> {
+        mCancelCheck = null;
+        check();
+      }, dueMillis - now);
+    }
+  }
+
+  private void cancelCheck() {
+    if (mCancelCheck != null) {
+      mCancelCheck.run();
+      mCancelCheck = null;
+    }
+  }
+
+  private void start(Trigger trigger) {
+    mSyncRequested = false;
+    mSyncingEdits = mPendingEdits;
+    mPendingEdits = 0;
+    long startMillis = mScheduler.nowMillis();
+    Set<Long> uploadLayerIds = mSource.getLayerIdsWithLocalEdits();
+    if (mListener != null) {
+      mListener.onSyncStarted(trigger);
+    }
+    // a sync which was cancelled by shutdown() may still call back, as may this one before start() has returned
+    final Sync[] sync = new Sync[1];
+    final boolean[] finished = new boolean[1];
+    Callback callback = new Callback() {
+      @Override public void onSucceeded(long bytes) {
+        finish(bytes, null);
+      }
+
+      @Override public void onFailed(Exception e, long bytes) {
+        finish(bytes, e != null ? e : new Exception("Unknown error syncing geodatabase"));
+      }
+
+      private void finish(long bytes, Exception error) {
+        if (finished[0] || mShutdown || (sync[0] != null && mSync != sync[0])) {
+          return;
+        }
+        finished[0] = true;
+        mSync = null;
+        onSyncFinished(new SyncMetrics(trigger, uploadLayerIds.size(), mSyncingEdits, bytes,
+            mScheduler.nowMillis() - startMillis, error));
+      }
+    };
+    // marks a sync as running, so none overlaps this one while it's started
+    mSync = () -> {
+    };
+    try {
+      sync[0] = mSource.start(uploadLayerIds, callback);
+    } catch (RuntimeException e) {
+      callback.onFailed(e, 0);
+      return;
+    }
+    if (!finished[0]) {
+      mSync = sync[0];
+    }
+  }
+
+  private void onSyncFinished(SyncMetrics metrics) {
+    long now = mScheduler.nowMillis();
+    mSyncs++;
+    mBytesTotal += metrics.mBytes;
+    mSyncMillisTotal += metrics.mDurationMillis;
+    mLongestSyncMillis = Math.max(mLongestSyncMillis, metrics.mDurationMillis);
+    if (metrics.isSucceeded()) {
+      mEditsUploaded += mSyncingEdits;
+      mFailuresInARow = 0;
+      mRetryDelayMillis = 0;
+      mLastSyncMillis = now;
+    } else {
+      mFailedSyncs++;
+      // the edits are still local, so go towards the next sync
+      mPendingEdits += mSyncingEdits;
+      mFailuresInARow++;
+      mRetryDelayMillis = Math.min(mFailuresInARow == 1 ? mRetryMillis : mRetryDelayMillis * 2, mMaxRetryMillis);
+      mRetryAtMillis = now + mRetryDelayMillis;
+    }
+    mSyncingEdits = 0;
+    mLastSync = metrics;
+    if (mListener != null) {
+      mListener.onSyncFinished(metrics);
+    }
+    check();
+  }
+
+  /**
+   * @return the number of syncs and failures, edits uploaded, bytes transferred and time spent syncing
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.US,
+        "%d syncs, %d failed, %d edits uploaded, %d pending, %d bytes, %d ms average, %d ms longest",
+        mSyncs, mFailedSyncs, mEditsUploaded, getPendingEdits(), mBytesTotal,
+        mSyncs == 0 ? 0 : mSyncMillisTotal / mSyncs, mLongestSyncMillis);
+  }
+}
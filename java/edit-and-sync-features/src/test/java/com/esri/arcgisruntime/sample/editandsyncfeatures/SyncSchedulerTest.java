@@ -0,0 +1,301 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.editandsyncfeatures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esri.arcgisruntime.sample.editandsyncfeatures.SyncScheduler.Trigger;
+
+public class SyncSchedulerTest {
+
+  private static final int EDIT_THRESHOLD = 3;
+  private static final long INTERVAL_MILLIS = 60_000;
+  private static final long IDLE_MILLIS = 5_000;
+  private static final long RETRY_MILLIS = 1_000;
+  private static final long MAX_RETRY_MILLIS = 4_000;
+
+  private FakeScheduler mScheduler;
+  private FakeSyncSource mSource;
+  private boolean mConnected;
+  private Trigger mStartedTrigger;
+  private final List<SyncScheduler.SyncMetrics> mFinished = new ArrayList<>();
+  private SyncScheduler mSyncScheduler;
+
+  @Before
+  public void setUp() {
+    mScheduler = new FakeScheduler();
+    mSource = new FakeSyncSource();
+    mConnected = true;
+    mSyncScheduler = new SyncScheduler(mSource, mScheduler, () -> mConnected, EDIT_THRESHOLD, INTERVAL_MILLIS,
+        IDLE_MILLIS, RETRY_MILLIS, MAX_RETRY_MILLIS);
+    mSyncScheduler.setListener(new SyncScheduler.Listener() {
+      @Override public void onSyncStarted(Trigger trigger) {
+        mStartedTrigger = trigger;
+      }
+
+      @Override public void onSyncFinished(SyncScheduler.SyncMetrics metrics) {
+        mFinished.add(metrics);
+      }
+    });
+  }
+
+  @Test
+  public void syncsOnceEditsStopAfterReachingThreshold() {
+    mSource.mLayerIds.add(0L);
+    for (int i = 0; i < EDIT_THRESHOLD; i++) {
+      mSyncScheduler.onEdit();
+      mScheduler.advance(1_000);
+    }
+    assertFalse(mSyncScheduler.isSyncing());
+
+    mScheduler.advance(IDLE_MILLIS - 1_000 - 1);
+    assertFalse(mSyncScheduler.isSyncing());
+    mScheduler.advance(1);
+
+    assertTrue(mSyncScheduler.isSyncing());
+    assertEquals(Trigger.EDITS, mSource.latest().mTrigger);
+    assertEquals(Collections.singleton(0L), mSource.latest().mUploadLayerIds);
+    assertEquals(EDIT_THRESHOLD, mSyncScheduler.getPendingEdits());
+
+    mSource.latest().mCallback.onSucceeded(1234);
+
+    assertFalse(mSyncScheduler.isSyncing());
+    assertEquals(0, mSyncScheduler.getPendingEdits());
+    assertEquals(1, mFinished.size());
+    assertTrue(mFinished.get(0).isSucceeded());
+    assertEquals(EDIT_THRESHOLD, mFinished.get(0).getEdits());
+    assertEquals(1234, mFinished.get(0).getBytes());
+  }
+
+  @Test
+  public void syncsAfterIntervalWithoutEdits() {
+    mScheduler.advance(INTERVAL_MILLIS - 1);
+    assertEquals(0, mSource.mSyncs.size());
+
+    mScheduler.advance(1);
+
+    assertEquals(1, mSource.mSyncs.size());
+    assertEquals(Trigger.ELAPSED_TIME, mSource.latest().mTrigger);
+    assertTrue(mSource.latest().mUploadLayerIds.isEmpty());
+  }
+
+  @Test
+  public void waitsForConnection() {
+    mConnected = false;
+    mScheduler.advance(INTERVAL_MILLIS);
+    assertEquals(0, mSource.mSyncs.size());
+
+    mConnected = true;
+    mSyncScheduler.onConnectivityChanged();
+
+    assertEquals(1, mSource.mSyncs.size());
+  }
+
+  @Test
+  public void retriesAfterDoublingDelaysUpToLimit() {
+    mSyncScheduler.syncNow();
+    long[] expectedDelays = {RETRY_MILLIS, 2 * RETRY_MILLIS, 4 * RETRY_MILLIS, MAX_RETRY_MILLIS};
+    for (int i = 0; i < expectedDelays.length; i++) {
+      mSource.latest().mCallback.onFailed(new IOException("offline"), 0);
+      assertEquals(expectedDelays[i], mSyncScheduler.getRetryDelayMillis());
+      mScheduler.advance(expectedDelays[i] - 1);
+      assertEquals(i + 1, mSource.mSyncs.size());
+      mScheduler.advance(1);
+      assertEquals(i + 2, mSource.mSyncs.size());
+      assertEquals(Trigger.RETRY, mSource.latest().mTrigger);
+    }
+
+    mSource.latest().mCallback.onSucceeded(0);
+
+    assertEquals(0, mSyncScheduler.getRetryDelayMillis());
+    assertTrue(mSyncScheduler.getLastSync().isSucceeded());
+  }
+
+  @Test
+  public void keepsEditsOfFailedSyncForNextOne() {
+    mSyncScheduler.onEdit();
+    mSyncScheduler.onEdit();
+    mSyncScheduler.syncNow();
+    assertEquals(Trigger.MANUAL, mSource.latest().mTrigger);
+
+    mSyncScheduler.onEdit();
+    mSource.latest().mCallback.onFailed(new IOException("rejected"), 0);
+
+    assertEquals(3, mSyncScheduler.getPendingEdits());
+    assertEquals("rejected", mSyncScheduler.getLastSync().getError().getMessage());
+  }
+
+  @Test
+  public void startsRequestedSyncOnceRunningOneFinishes() {
+    mSyncScheduler.syncNow();
+    mSyncScheduler.syncNow();
+    assertEquals(1, mSource.mSyncs.size());
+
+    mSource.latest().mCallback.onSucceeded(0);
+
+    assertEquals(2, mSource.mSyncs.size());
+    assertEquals(Trigger.MANUAL, mSource.latest().mTrigger);
+  }
+
+  @Test
+  public void putsOffSyncWhileEditing() {
+    mScheduler.advance(INTERVAL_MILLIS - 1_000);
+    mSyncScheduler.onEdit();
+    mScheduler.advance(IDLE_MILLIS - 1);
+    assertEquals(0, mSource.mSyncs.size());
+
+    mScheduler.advance(1);
+
+    assertEquals(1, mSource.mSyncs.size());
+    assertEquals(Trigger.ELAPSED_TIME, mSource.latest().mTrigger);
+  }
+
+  @Test
+  public void ignoresCallbacksOfSyncCancelledByShutdown() {
+    mSyncScheduler.syncNow();
+    FakeSync sync = mSource.latest();
+
+    mSyncScheduler.shutdown();
+    sync.mCallback.onSucceeded(0);
+    mScheduler.advance(INTERVAL_MILLIS * 2);
+
+    assertTrue(sync.mCancelled);
+    assertFalse(mSyncScheduler.isSyncing());
+    assertNull(mSyncScheduler.getLastSync());
+    assertEquals(1, mSource.mSyncs.size());
+    assertEquals(0, mScheduler.pending());
+  }
+
+  @Test
+  public void finishesSyncWhichCallsBackWhileStarting() {
+    mSource.mSucceedOnStart = true;
+
+    mSyncScheduler.syncNow();
+
+    assertFalse(mSyncScheduler.isSyncing());
+    assertEquals(1, mFinished.size());
+  }
+
+  private static final class FakeSync implements SyncScheduler.Sync {
+    private final Trigger mTrigger;
+    private final Set<Long> mUploadLayerIds;
+    private final SyncScheduler.Callback mCallback;
+    private boolean mCancelled;
+
+    private FakeSync(Trigger trigger, Collection<Long> uploadLayerIds, SyncScheduler.Callback callback) {
+      mTrigger = trigger;
+      mUploadLayerIds = new HashSet<>(uploadLayerIds);
+      mCallback = callback;
+    }
+
+    @Override public void cancel() {
+      mCancelled = true;
+    }
+  }
+
+  /**
+   * Records the syncs started, to be finished by the test through their callbacks.
+   */
+  private final class FakeSyncSource implements SyncScheduler.SyncSource {
+    private final Set<Long> mLayerIds = new HashSet<>();
+    private final List<FakeSync> mSyncs = new ArrayList<>();
+    private boolean mSucceedOnStart;
+
+    @Override public Set<Long> getLayerIdsWithLocalEdits() {
+      return new HashSet<>(mLayerIds);
+    }
+
+    @Override public SyncScheduler.Sync start(Collection<Long> uploadLayerIds, SyncScheduler.Callback callback) {
+      FakeSync sync = new FakeSync(mStartedTrigger, uploadLayerIds, callback);
+      mSyncs.add(sync);
+      if (mSucceedOnStart) {
+        callback.onSucceeded(0);
+      }
+      return sync;
+    }
+
+    FakeSync latest() {
+      return mSyncs.get(mSyncs.size() - 1);
+    }
+  }
+
+  /**
+   * Runs scheduled tasks when its clock is moved on past them.
+   */
+  private static final class FakeScheduler implements SyncScheduler.Scheduler {
+    private final List<Task> mTasks = new ArrayList<>();
+    private long mNowMillis;
+
+    private static final class Task {
+      private final Runnable mRunnable;
+      private final long mDueMillis;
+
+      private Task(Runnable runnable, long dueMillis) {
+        mRunnable = runnable;
+        mDueMillis = dueMillis;
+      }
+    }
+
+    @Override public Runnable schedule(Runnable task, long delayMillis) {
+      Task scheduled = new Task(task, mNowMillis + delayMillis);
+      mTasks.add(scheduled);
+      return () -> mTasks.remove(scheduled);
+    }
+
+    @Override public long nowMillis() {
+      return mNowMillis;
+    }
+
+    /**
+     * Moves the clock on, running the tasks which fall due in the order they were scheduled.
+     */
+    void advance(long millis) {
+      mNowMillis += millis;
+      for (Task task = nextDue(); task != null; task = nextDue()) {
+        mTasks.remove(task);
+        task.mRunnable.run();
+      }
+    }
+
+    private Task nextDue() {
+      for (Task task : mTasks) {
+        if (task.mDueMillis <= mNowMillis) {
+          return task;
+        }
+      }
+      return null;
+    }
+
+    int pending() {
+      return mTasks.size();
+    }
+  }
+}
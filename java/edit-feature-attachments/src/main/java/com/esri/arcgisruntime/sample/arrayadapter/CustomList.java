@@ -23,6 +23,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
@@ -30,13 +31,28 @@ import com.esri.arcgisruntime.sample.editfeatureattachments.R;
 
 public class CustomList extends ArrayAdapter<String>{
 
+    /**
+     * Shows the thumbnail of an attachment in a list entry.
+     */
+    public interface ThumbnailBinder {
+        void bindThumbnail(int position, ImageView imageView);
+    }
+
     private final Activity context;
     private final ArrayList<String> attachmentName;
+    private final ThumbnailBinder thumbnailBinder;
     public CustomList(Activity context,
                       ArrayList<String> attachmentList) {
+        this(context, attachmentList, null);
+    }
+
+    public CustomList(Activity context,
+                      ArrayList<String> attachmentList,
+                      ThumbnailBinder thumbnailBinder) {
         super(context, R.layout.attachment_entry, attachmentList);
         this.context = context;
         attachmentName = attachmentList;
+        this.thumbnailBinder = thumbnailBinder;
     }
     @NonNull
     @Override
@@ -48,6 +64,7 @@ public class CustomList extends ArrayAdapter<String>{
 
             holder = new CustomList.ViewHolder();
             holder.textTitle = convertView.findViewById(R.id.AttachmentName);
+            holder.imageThumbnail = convertView.findViewById(R.id.AttachmentThumbnail);
 
             convertView.setTag(holder);
         } else {
@@ -55,11 +72,17 @@ public class CustomList extends ArrayAdapter<String>{
         }
 
         holder.textTitle.setText(attachmentName.get(position));
+        if (thumbnailBinder != null) {
+            thumbnailBinder.bindThumbnail(position, holder.imageThumbnail);
+        } else {
+            holder.imageThumbnail.setImageResource(android.R.drawable.ic_menu_gallery);
+        }
 
         return convertView;
     }
 
     private static class ViewHolder {
         TextView textTitle;
+        ImageView imageThumbnail;
     }
 }
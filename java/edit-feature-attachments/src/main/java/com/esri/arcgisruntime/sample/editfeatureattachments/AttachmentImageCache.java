@@ -0,0 +1,572 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.editfeatureattachments;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Attachment;
+
+/**
+ * Caches the data and thumbnails of attachments, keyed by feature ID and attachment ID.
+ *
+ * The data of an attachment is downloaded once into a disk cache. A square thumbnail is decoded from the centre of the
+ * downloaded image with a {@link BitmapRegionDecoder}, sampled down so the full resolution image is never decoded, and
+ * is kept in a memory cache and written to the disk cache. The full image is only read again when it is opened. Both
+ * caches are bounded in bytes and evict the least recently used entries.
+ *
+ * Downloading, decoding and disk access happen on a single background thread, and results are delivered on a callback
+ * executor.
+ */
+final class AttachmentImageCache {
+
+  private static final String TAG = AttachmentImageCache.class.getSimpleName();
+
+  private static final String DATA_SUFFIX = ".data";
+  private static final String THUMBNAIL_SUFFIX = ".thumb";
+  private static final String PART_SUFFIX = ".part";
+  private static final int DECODE_SAMPLES = 256;
+
+  /**
+   * Fetches the data of an attachment.
+   */
+  interface DataSource {
+    void fetch(DataCallback callback);
+  }
+
+  /**
+   * Receives the data of an attachment, on any thread.
+   */
+  interface DataCallback {
+    void onFetched(InputStream data);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Receives the thumbnail of an attachment.
+   */
+  interface ThumbnailCallback {
+    void onThumbnail(String key, Bitmap thumbnail);
+
+    void onError(String key, Exception e);
+  }
+
+  /**
+   * Receives the file holding the data of an attachment.
+   */
+  interface FileCallback {
+    void onFile(File file);
+
+    void onError(Exception e);
+  }
+
+  private final File mDirectory;
+  private final long mMaxDiskBytes;
+  private final long mMaxMemoryBytes;
+  private final int mThumbnailSize;
+  private final Executor mCallbackExecutor;
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+  // access ordered, so the eldest entries are the least recently used
+  private final LinkedHashMap<String, Bitmap> mMemory = new LinkedHashMap<>(16, 0.75f, true);
+  private long mMemoryBytes;
+  private long mPeakMemoryBytes;
+  // size of each file in the disk cache, only used on the background thread
+  private final LinkedHashMap<String, Long> mDisk = new LinkedHashMap<>(16, 0.75f, true);
+  private volatile long mDiskBytes;
+  // callbacks waiting for each thumbnail being loaded, and keys of attachments which aren't images
+  private final Map<String, List<ThumbnailCallback>> mLoading = new HashMap<>();
+  private final Set<String> mUndecodable = new HashSet<>();
+
+  private long mMemoryHits;
+  private long mDiskHits;
+  private long mFetches;
+  private long mMemoryEvictions;
+  private long mDiskEvictions;
+  // times of the most recent thumbnail decodes, overwritten in turn once full
+  private final long[] mDecodeNanos = new long[DECODE_SAMPLES];
+  private int mDecodeCount;
+
+  /**
+   * Creates a cache and starts reading the index of the disk cache in the background.
+   *
+   * @param directory        directory of the disk cache
+   * @param maxDiskBytes     bytes of data and thumbnails kept on disk
+   * @param maxMemoryBytes   bytes of thumbnail bitmaps kept in memory
+   * @param thumbnailSize    width and height of the thumbnails, in pixels
+   * @param callbackExecutor executor the callbacks are run on
+   */
+  AttachmentImageCache(File directory, long maxDiskBytes, long maxMemoryBytes, int thumbnailSize,
+      Executor callbackExecutor) {
+    mDirectory = directory;
+    mMaxDiskBytes = maxDiskBytes;
+    mMaxMemoryBytes = maxMemoryBytes;
+    mThumbnailSize = thumbnailSize;
+    mCallbackExecutor = callbackExecutor;
+    mExecutor.execute(this::readIndex);
+  }
+
+  /**
+   * @return the key of an attachment of a feature
+   */
+  static String keyOf(long featureId, long attachmentId) {
+    return featureId + "_" + attachmentId;
+  }
+
+  /**
+   * Creates a data source which fetches the data of an attachment from the feature service.
+   */
+  static DataSource attachmentSource(Attachment attachment) {
+    return callback -> {
+      final ListenableFuture<InputStream> fetchDataFuture = attachment.fetchDataAsync();
+      fetchDataFuture.addDoneListener(() -> {
+        try {
+          callback.onFetched(fetchDataFuture.get());
+        } catch (Exception e) {
+          callback.onError(e);
+        }
+      });
+    };
+  }
+
+  /**
+   * @return the thumbnail of an attachment if it is in the memory cache, or null if it has to be loaded
+   */
+  synchronized Bitmap getCachedThumbnail(String key) {
+    Bitmap thumbnail = mMemory.get(key);
+    if (thumbnail != null) {
+      mMemoryHits++;
+    }
+    return thumbnail;
+  }
+
+  /**
+   * Loads the thumbnail of an attachment from the memory cache, the disk cache, or by fetching its data from the data
+   * source. Requests for a thumbnail which is already being loaded wait for that load.
+   */
+  void loadThumbnail(String key, DataSource dataSource, ThumbnailCallback callback) {
+    synchronized (this) {
+      Bitmap thumbnail = mMemory.get(key);
+      if (thumbnail != null) {
+        mMemoryHits++;
+        mCallbackExecutor.execute(() -> callback.onThumbnail(key, thumbnail));
+        return;
+      }
+      if (mUndecodable.contains(key)) {
+        mCallbackExecutor.execute(() -> callback.onError(key, new IOException("Attachment is not an image")));
+        return;
+      }
+      List<ThumbnailCallback> waiting = mLoading.get(key);
+      if (waiting != null) {
+        waiting.add(callback);
+        return;
+      }
+      waiting = new ArrayList<>();
+      waiting.add(callback);
+      mLoading.put(key, waiting);
+    }
+    mExecutor.execute(() -> {
+      try {
+        File thumbnailFile = file(key, THUMBNAIL_SUFFIX);
+        if (mDisk.containsKey(thumbnailFile.getName())) {
+          Bitmap thumbnail = BitmapFactory.decodeFile(thumbnailFile.getPath());
+          if (thumbnail != null) {
+            touch(thumbnailFile);
+            synchronized (this) {
+              mDiskHits++;
+            }
+            onThumbnailLoaded(key, thumbnail, null);
+            return;
+          }
+        }
+        if (mDisk.containsKey(file(key, DATA_SUFFIX).getName())) {
+          synchronized (this) {
+            mDiskHits++;
+          }
+          decodeThumbnail(key);
+          return;
+        }
+      } catch (Exception e) {
+        onThumbnailLoaded(key, null, e);
+        return;
+      }
+      fetch(key, dataSource, new FileCallback() {
+        @Override public void onFile(File file) {
+          decodeThumbnail(key);
+        }
+
+        @Override public void onError(Exception e) {
+          onThumbnailLoaded(key, null, e);
+        }
+      });
+    });
+  }
+
+  /**
+   * Gets the file holding the data of an attachment, fetching it from the data source if it isn't in the disk cache.
+   * The file may be evicted once other attachments are loaded, so it should be used or copied straight away.
+   */
+  void loadFile(String key, DataSource dataSource, FileCallback callback) {
+    mExecutor.execute(() -> {
+      File dataFile = file(key, DATA_SUFFIX);
+      if (mDisk.containsKey(dataFile.getName())) {
+        touch(dataFile);
+        synchronized (this) {
+          mDiskHits++;
+        }
+        mCallbackExecutor.execute(() -> callback.onFile(dataFile));
+        return;
+      }
+      fetch(key, dataSource, new FileCallback() {
+        @Override public void onFile(File file) {
+          mCallbackExecutor.execute(() -> callback.onFile(file));
+        }
+
+        @Override public void onError(Exception e) {
+          mCallbackExecutor.execute(() -> callback.onError(e));
+        }
+      });
+    });
+  }
+
+  /**
+   * Removes the data and thumbnail of an attachment, once it has been deleted.
+   */
+  void remove(String key) {
+    synchronized (this) {
+      Bitmap thumbnail = mMemory.remove(key);
+      if (thumbnail != null) {
+        mMemoryBytes -= thumbnail.getAllocationByteCount();
+      }
+      mUndecodable.remove(key);
+    }
+    mExecutor.execute(() -> {
+      delete(file(key, DATA_SUFFIX));
+      delete(file(key, THUMBNAIL_SUFFIX));
+    });
+  }
+
+  /**
+   * Stops the background thread once the loads already started have finished.
+   */
+  void shutdown() {
+    mExecutor.shutdown();
+  }
+
+  /**
+   * Fetches the data of an attachment into the disk cache, calling back on the background thread.
+   */
+  private void fetch(String key, DataSource dataSource, FileCallback callback) {
+    synchronized (this) {
+      mFetches++;
+    }
+    DataCallback dataCallback = new DataCallback() {
+      @Override public void onFetched(InputStream data) {
+        // the data source may call back on the main thread, so the data is read on the background thread
+        mExecutor.execute(() -> {
+          File dataFile = file(key, DATA_SUFFIX);
+          File partFile = new File(mDirectory, dataFile.getName() + PART_SUFFIX);
+          try (InputStream in = data; OutputStream out = new FileOutputStream(partFile)) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+              out.write(buffer, 0, length);
+            }
+          } catch (IOException e) {
+            delete(partFile);
+            callback.onError(e);
+            return;
+          }
+          if (!partFile.renameTo(dataFile)) {
+            delete(partFile);
+            callback.onError(new IOException("Could not write " + dataFile));
+            return;
+          }
+          added(dataFile);
+          callback.onFile(dataFile);
+        });
+      }
+
+      @Override public void onError(Exception e) {
+        callback.onError(e);
+      }
+    };
+    try {
+      dataSource.fetch(dataCallback);
+    } catch (RuntimeException e) {
+      callback.onError(e);
+    }
+  }
+
+  /**
+   * Decodes a thumbnail from the data of an attachment in the disk cache, and writes it to the disk cache.
+   */
+  private void decodeThumbnail(String key) {
+    File dataFile = file(key, DATA_SUFFIX);
+    long start = System.nanoTime();
+    Bitmap thumbnail;
+    try {
+      thumbnail = decodeSquare(dataFile.getPath(), mThumbnailSize);
+    } catch (IOException e) {
+      thumbnail = null;
+    }
+    if (thumbnail == null) {
+      synchronized (this) {
+        mUndecodable.add(key);
+      }
+      onThumbnailLoaded(key, null, new IOException("Attachment is not an image"));
+      return;
+    }
+    synchronized (this) {
+      mDecodeNanos[mDecodeCount % DECODE_SAMPLES] = System.nanoTime() - start;
+      mDecodeCount++;
+    }
+    touch(dataFile);
+    File thumbnailFile = file(key, THUMBNAIL_SUFFIX);
+    try (OutputStream out = new FileOutputStream(thumbnailFile)) {
+      thumbnail.compress(Bitmap.CompressFormat.PNG, 90, out);
+    } catch (IOException e) {
+      Log.w(TAG, "Could not write thumbnail " + thumbnailFile, e);
+    }
+    if (thumbnailFile.exists()) {
+      added(thumbnailFile);
+    }
+    onThumbnailLoaded(key, thumbnail, null);
+  }
+
+  /**
+   * Decodes the largest square in the centre of an image, sampled down by the largest power of two which keeps it at
+   * least the given size.
+   *
+   * @return the decoded bitmap, or null if the file isn't an image
+   */
+  static Bitmap decodeSquare(String path, int size) throws IOException {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(path, options);
+    int width = options.outWidth;
+    int height = options.outHeight;
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+    int side = Math.min(width, height);
+    options.inJustDecodeBounds = false;
+    options.inSampleSize = sampleSize(side, size);
+    Rect region = new Rect((width - side) / 2, (height - side) / 2, (width + side) / 2, (height + side) / 2);
+    BitmapRegionDecoder decoder = null;
+    try {
+      decoder = BitmapRegionDecoder.newInstance(path, false);
+      Bitmap bitmap = decoder.decodeRegion(region, options);
+      if (bitmap != null) {
+        return bitmap;
+      }
+    } catch (IOException e) {
+      // formats such as GIF can't be decoded by region, so the whole image is decoded below
+    } finally {
+      if (decoder != null) {
+        decoder.recycle();
+      }
+    }
+    Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+    if (bitmap == null) {
+      return null;
+    }
+    int sampledSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+    Bitmap square = Bitmap.createBitmap(bitmap, (bitmap.getWidth() - sampledSide) / 2,
+        (bitmap.getHeight() - sampledSide) / 2, sampledSide, sampledSide);
+    // the crop is a new bitmap unless the image was already square, so the whole image is no longer needed
+    if (square != bitmap) {
+      bitmap.recycle();
+    }
+    return square;
+  }
+
+  /**
+   * @return the largest power of two which samples the length down to no less than the target length
+   */
+  static int sampleSize(int length, int targetLength) {
+    int sampleSize = 1;
+    while (length / (sampleSize * 2) >= targetLength) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  private void onThumbnailLoaded(String key, Bitmap thumbnail, Exception error) {
+    List<ThumbnailCallback> waiting;
+    synchronized (this) {
+      waiting = mLoading.remove(key);
+      if (thumbnail != null) {
+        putMemory(key, thumbnail);
+      }
+    }
+    if (waiting == null) {
+      return;
+    }
+    mCallbackExecutor.execute(() -> {
+      for (ThumbnailCallback callback : waiting) {
+        if (thumbnail != null) {
+          callback.onThumbnail(key, thumbnail);
+        } else {
+          callback.onError(key, error);
+        }
+      }
+    });
+  }
+
+  private void putMemory(String key, Bitmap thumbnail) {
+    Bitmap previous = mMemory.put(key, thumbnail);
+    if (previous != null) {
+      mMemoryBytes -= previous.getAllocationByteCount();
+    }
+    mMemoryBytes += thumbnail.getAllocationByteCount();
+    // evict the least recently used thumbnails, always keeping the one just added
+    Iterator<Map.Entry<String, Bitmap>> iterator = mMemory.entrySet().iterator();
+    while (mMemoryBytes > mMaxMemoryBytes && mMemory.size() > 1) {
+      Bitmap evicted = iterator.next().getValue();
+      iterator.remove();
+      mMemoryBytes -= evicted.getAllocationByteCount();
+      mMemoryEvictions++;
+    }
+    mPeakMemoryBytes = Math.max(mPeakMemoryBytes, mMemoryBytes);
+  }
+
+  private File file(String key, String suffix) {
+    return new File(mDirectory, key + suffix);
+  }
+
+  /**
+   * Reads the files in the disk cache, least recently used first, and removes any left from interrupted downloads.
+   */
+  private void readIndex() {
+    if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+      Log.e(TAG, "Could not create " + mDirectory);
+      return;
+    }
+    File[] files = mDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+    for (File file : files) {
+      if (file.getName().endsWith(PART_SUFFIX)) {
+        delete(file);
+      } else {
+        mDisk.put(file.getName(), file.length());
+        mDiskBytes += file.length();
+      }
+    }
+    trimDisk();
+  }
+
+  /**
+   * Marks a file as recently used, including across launches through its modification time.
+   */
+  private void touch(File file) {
+    if (mDisk.get(file.getName()) != null) {
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+    }
+  }
+
+  private void added(File file) {
+    Long previous = mDisk.put(file.getName(), file.length());
+    if (previous != null) {
+      mDiskBytes -= previous;
+    }
+    mDiskBytes += file.length();
+    trimDisk();
+  }
+
+  private void delete(File file) {
+    Long length = mDisk.remove(file.getName());
+    if (length != null) {
+      mDiskBytes -= length;
+    }
+    if (file.exists() && !file.delete()) {
+      Log.w(TAG, "Could not delete " + file);
+    }
+  }
+
+  /**
+   * Deletes the least recently used files until the disk cache is within its size, always keeping the latest file.
+   */
+  private void trimDisk() {
+    Iterator<Map.Entry<String, Long>> iterator = mDisk.entrySet().iterator();
+    while (mDiskBytes > mMaxDiskBytes && mDisk.size() > 1) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      iterator.remove();
+      mDiskBytes -= eldest.getValue();
+      File file = new File(mDirectory, eldest.getKey());
+      if (!file.delete()) {
+        Log.w(TAG, "Could not delete " + file);
+      }
+      synchronized (this) {
+        mDiskEvictions++;
+      }
+    }
+  }
+
+  /**
+   * @return the memory and disk use against their ceilings, hits, fetches, evictions and recent thumbnail decode times
+   */
+  @Override
+  public synchronized String toString() {
+    String decode = "no decodes";
+    if (mDecodeCount > 0) {
+      long[] sorted = Arrays.copyOf(mDecodeNanos, Math.min(mDecodeCount, DECODE_SAMPLES));
+      Arrays.sort(sorted);
+      decode = String.format(Locale.US, "%d decodes, p50 %d ms, p95 %d ms", mDecodeCount,
+          percentile(sorted, 50) / 1_000_000, percentile(sorted, 95) / 1_000_000);
+    }
+    return String.format(Locale.US,
+        "memory %d/%d KB (peak %d KB, %d thumbnails), disk %d/%d KB, %d memory hits, %d disk hits, %d fetches, "
+            + "%d memory evictions, %d disk evictions, %s",
+        mMemoryBytes / 1024, mMaxMemoryBytes / 1024, mPeakMemoryBytes / 1024, mMemory.size(), mDiskBytes / 1024,
+        mMaxDiskBytes / 1024, mMemoryHits, mDiskHits, mFetches, mMemoryEvictions, mDiskEvictions, decode);
+  }
+
+  private static long percentile(long[] sorted, double percentile) {
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+}
@@ -19,12 +19,13 @@ package com.esri.arcgisruntime.sample.editfeatureattachments;
 import android.app.ProgressDialog;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.Toast;
 
@@ -44,9 +45,11 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,6 +58,11 @@ public class EditAttachmentActivity extends AppCompatActivity {
   private static final String TAG = EditAttachmentActivity.class.getSimpleName();
 
   private static final int RESULT_LOAD_IMAGE = 1;
+  // bytes of attachment data and thumbnails kept on disk
+  private static final long MAX_DISK_CACHE_BYTES = 50 * 1024 * 1024;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private AttachmentImageCache mImageCache;
+  private long mFeatureId;
   private CustomList adapter;
   private List<Attachment> attachments;
   private ArcGISFeature mSelectedArcGISFeature;
@@ -73,6 +81,12 @@ public class EditAttachmentActivity extends AppCompatActivity {
     Bundle bundle = getIntent().getExtras();
     String s = bundle.getString(getString(R.string.attribute));
     int noOfAttachments = bundle.getInt(getApplication().getString(R.string.noOfAttachments));
+    mFeatureId = Long.parseLong(s);
+
+    // cache attachment thumbnails in an eighth of the memory available to the app, and attachment data on disk
+    mImageCache = new AttachmentImageCache(new File(getCacheDir(), "attachments"), MAX_DISK_CACHE_BYTES,
+        Runtime.getRuntime().maxMemory() / 8, getResources().getDimensionPixelSize(R.dimen.attachment_thumbnail_size),
+        mMainHandler::post);
 
     // Build a alert dialog with specified style
     builder = new AlertDialog.Builder(this, R.style.MyAlertDialogStyle);
@@ -99,7 +113,7 @@ public class EditAttachmentActivity extends AppCompatActivity {
     // get a reference to the list view
     listView = findViewById(R.id.listView);
     // create custom adapter
-    adapter = new CustomList(this, attachmentList);
+    adapter = new CustomList(this, attachmentList, this::bindThumbnail);
     // set custom adapter on the list
     listView.setAdapter(adapter);
     fetchAttachmentsFromServer(s);
@@ -122,50 +136,99 @@ public class EditAttachmentActivity extends AppCompatActivity {
     });
   }
 
+  /**
+   * Shows the thumbnail of an attachment in the list, from the cache if it has been loaded before.
+   *
+   * @param position  position of the attachment in the list view
+   * @param imageView view to show the thumbnail in
+   */
+  private void bindThumbnail(int position, ImageView imageView) {
+    if (attachments == null || position >= attachments.size()) {
+      imageView.setTag(null);
+      imageView.setImageResource(android.R.drawable.ic_menu_gallery);
+      return;
+    }
+    Attachment attachment = attachments.get(position);
+    String key = AttachmentImageCache.keyOf(mFeatureId, attachment.getId());
+    // the view may be reused for another attachment before the thumbnail loads
+    imageView.setTag(key);
+    Bitmap thumbnail = mImageCache.getCachedThumbnail(key);
+    if (thumbnail != null) {
+      imageView.setImageBitmap(thumbnail);
+      return;
+    }
+    imageView.setImageResource(android.R.drawable.ic_menu_gallery);
+    mImageCache.loadThumbnail(key, AttachmentImageCache.attachmentSource(attachment),
+        new AttachmentImageCache.ThumbnailCallback() {
+          @Override public void onThumbnail(String key, Bitmap thumbnail) {
+            if (key.equals(imageView.getTag())) {
+              imageView.setImageBitmap(thumbnail);
+            }
+          }
+
+          @Override public void onError(String key, Exception e) {
+            Log.d(TAG, "No thumbnail for attachment " + key + ": " + e.getMessage());
+          }
+        });
+  }
+
   private void fetchAttachmentAsync(final int position) {
 
     progressDialog.setTitle(getApplication().getString(R.string.downloading_attachments));
     progressDialog.setMessage(getApplication().getString(R.string.wait));
     progressDialog.show();
 
-    // create a listenableFuture to fetch the attachment asynchronously
-    final ListenableFuture<InputStream> fetchDataFuture = attachments.get(position).fetchDataAsync();
-    fetchDataFuture.addDoneListener(() -> {
-      try {
-        String fileName = attachmentList.get(position);
-        // create a drawable from InputStream
-        Drawable d = Drawable.createFromStream(fetchDataFuture.get(), fileName);
-        // create a bitmap from drawable
-        Bitmap bitmap = ((BitmapDrawable) d).getBitmap();
-        File fileDir = new File(getExternalFilesDir(null) + "/ArcGIS/Attachments");
-        // create folder /ArcGIS/Attachments in external storage
-        boolean isDirectoryCreated = fileDir.exists();
-        if (!isDirectoryCreated) {
-          isDirectoryCreated = fileDir.mkdirs();
-        }
-        File file = null;
-        if (isDirectoryCreated) {
-          file = new File(fileDir, fileName);
-          FileOutputStream fos = new FileOutputStream(file);
-          // compress the bitmap to PNG format
-          bitmap.compress(Bitmap.CompressFormat.PNG, 90, fos);
-          fos.flush();
-          fos.close();
-        }
+    // get the attachment's data from the disk cache, downloading it only if it hasn't been downloaded before
+    final Attachment attachment = attachments.get(position);
+    final String fileName = attachmentList.get(position);
+    String key = AttachmentImageCache.keyOf(mFeatureId, attachment.getId());
+    mImageCache.loadFile(key, AttachmentImageCache.attachmentSource(attachment),
+        new AttachmentImageCache.FileCallback() {
+          @Override public void onFile(File dataFile) {
+            try {
+              File fileDir = new File(getExternalFilesDir(null) + "/ArcGIS/Attachments");
+              // create folder /ArcGIS/Attachments in external storage
+              boolean isDirectoryCreated = fileDir.exists();
+              if (!isDirectoryCreated) {
+                isDirectoryCreated = fileDir.mkdirs();
+              }
+              File file = null;
+              if (isDirectoryCreated) {
+                // copy the attachment as it was downloaded, rather than decoding and encoding it again
+                file = new File(fileDir, fileName);
+                try (InputStream in = new FileInputStream(dataFile); OutputStream out = new FileOutputStream(file)) {
+                  byte[] buffer = new byte[8192];
+                  int len;
+                  while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                  }
+                }
+              }
 
-        if (progressDialog.isShowing()) {
-          progressDialog.dismiss();
-        }
-        // open the file in gallery
-        Intent i = new Intent();
-        i.setAction(Intent.ACTION_VIEW);
-        i.setDataAndType(Uri.fromFile(file), "image/png");
-        startActivity(i);
+              if (progressDialog.isShowing()) {
+                progressDialog.dismiss();
+              }
+              // open the file in gallery
+              String contentType = attachment.getContentType();
+              Intent i = new Intent();
+              i.setAction(Intent.ACTION_VIEW);
+              i.setDataAndType(Uri.fromFile(file), contentType != null ? contentType : "image/*");
+              startActivity(i);
+
+            } catch (Exception e) {
+              onError(e);
+            }
+          }
 
-      } catch (Exception e) {
-        Log.d(TAG, e.toString());
-      }
-    });
+          @Override public void onError(Exception e) {
+            if (progressDialog.isShowing()) {
+              progressDialog.dismiss();
+            }
+            String error = getString(R.string.error_opening_attachment, e.getMessage());
+            Log.e(TAG, error);
+            Toast.makeText(EditAttachmentActivity.this, error, Toast.LENGTH_LONG).show();
+          }
+        });
   }
 
   /**
@@ -178,7 +241,9 @@ public class EditAttachmentActivity extends AppCompatActivity {
     progressDialog.setMessage(getApplication().getString(R.string.wait));
     progressDialog.show();
 
-    ListenableFuture<Void> deleteResult = mSelectedArcGISFeature.deleteAttachmentAsync(attachments.get(pos));
+    Attachment attachment = attachments.remove(pos);
+    ListenableFuture<Void> deleteResult = mSelectedArcGISFeature.deleteAttachmentAsync(attachment);
+    mImageCache.remove(AttachmentImageCache.keyOf(mFeatureId, attachment.getId()));
     attachmentList.remove(pos);
     adapter.notifyDataSetChanged();
 
@@ -214,7 +279,8 @@ public class EditAttachmentActivity extends AppCompatActivity {
         final ListenableFuture<List<Attachment>> attachmentResults = mSelectedArcGISFeature.fetchAttachmentsAsync();
         attachmentResults.addDoneListener(() -> {
           try {
-            attachments = attachmentResults.get();
+            // copied so attachments can be removed as they are deleted, keeping it in step with the list view
+            attachments = new ArrayList<>(attachmentResults.get());
             // if selected feature has attachments, display them in a list fashion
             if (!attachments.isEmpty()) {
               for (Attachment attachment : attachments) {
@@ -224,7 +290,7 @@ public class EditAttachmentActivity extends AppCompatActivity {
                 if (progressDialog.isShowing()) {
                   progressDialog.dismiss();
                 }
-                adapter = new CustomList(this, attachmentList);
+                adapter = new CustomList(this, attachmentList, this::bindThumbnail);
                 listView.setAdapter(adapter);
                 adapter.notifyDataSetChanged();
               });
@@ -342,6 +408,13 @@ public class EditAttachmentActivity extends AppCompatActivity {
     }
   }
 
+  @Override
+  protected void onDestroy() {
+    Log.i(TAG, "Attachment image cache: " + mImageCache);
+    mImageCache.shutdown();
+    super.onDestroy();
+  }
+
   /**
    * Send the updated attachment count back to MainActivity and finish the current Activity
    */
@@ -13,7 +13,7 @@
 
 package com.esri.arcgisruntime.sample.featurelayerquery;
 
-import java.util.Iterator;
+import java.util.List;
 
 import android.app.SearchManager;
 import android.content.Context;
@@ -27,15 +27,14 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
-import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.FeatureQueryResult;
 import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.Basemap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
@@ -48,9 +47,13 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // number of features to fetch in each page of a query
+  private static final int PAGE_SIZE = 10;
+
   private MapView mMapView;
   private ServiceFeatureTable mServiceFeatureTable;
   private FeatureLayer mFeatureLayer;
+  private PagedFeatureQuery mPagedQuery;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -100,37 +103,55 @@ public class MainActivity extends AppCompatActivity {
   }
 
   private void searchForState(final String searchString) {
-    // clear any previous selections
+    // clear any previous selections and stop any previous search
     mFeatureLayer.clearSelection();
+    if (mPagedQuery != null) {
+      mPagedQuery.cancel();
+    }
     // create objects required to do a selection with a query
     QueryParameters query = new QueryParameters();
     // make search case insensitive
     query.setWhereClause("upper(STATE_NAME) LIKE '%" + searchString.toUpperCase() + "%'");
-    // call select features
-    final ListenableFuture<FeatureQueryResult> future = mServiceFeatureTable.queryFeaturesAsync(query);
-    // add done loading listener to fire when the selection returns
-    future.addDoneListener(() -> {
-      try {
-        // call get on the future to get the result
-        FeatureQueryResult result = future.get();
-        // check there are some results
-        Iterator<Feature> resultIterator = result.iterator();
-        if (resultIterator.hasNext()) {
-          // get the extent of the first feature in the result to zoom to
-          Feature feature = resultIterator.next();
-          Envelope envelope = feature.getGeometry().getExtent();
-          mMapView.setViewpointGeometryAsync(envelope, 10);
-          // select the feature
-          mFeatureLayer.selectFeature(feature);
-        } else {
-          Toast.makeText(this, "No states found with name: " + searchString, Toast.LENGTH_LONG).show();
-        }
-      } catch (Exception e) {
-        String error = "Feature search failed for: " + searchString + ". Error: " + e.getMessage();
+    // the table must be loaded to know its object ID field, which the pages are ordered by
+    mServiceFeatureTable.addDoneLoadingListener(() -> {
+      if (mServiceFeatureTable.getLoadStatus() != LoadStatus.LOADED) {
+        String error = "Feature search failed for: " + searchString + ". Error: "
+            + mServiceFeatureTable.getLoadError().getMessage();
         Toast.makeText(this, error, Toast.LENGTH_LONG).show();
         Log.e(TAG, error);
+        return;
       }
+      // only the first matching state is shown, so limit the query to one feature rather than downloading every match
+      final PagedFeatureQuery pagedQuery = PagedFeatureQuery.of(mServiceFeatureTable, query, PAGE_SIZE, 1);
+      mPagedQuery = pagedQuery;
+      pagedQuery.start(new PagedFeatureQuery.Listener() {
+        @Override public boolean onPage(List<Feature> page, int pageIndex) {
+          // check there are some results
+          if (!page.isEmpty()) {
+            // get the extent of the first feature in the result to zoom to
+            Feature feature = page.get(0);
+            Envelope envelope = feature.getGeometry().getExtent();
+            mMapView.setViewpointGeometryAsync(envelope, 10);
+            // select the feature
+            mFeatureLayer.selectFeature(feature);
+          } else {
+            Toast.makeText(MainActivity.this, "No states found with name: " + searchString, Toast.LENGTH_LONG).show();
+          }
+          return false;
+        }
+
+        @Override public void onComplete(int featureCount, boolean stopped) {
+          Log.i(TAG, "Paged query: " + pagedQuery);
+        }
+
+        @Override public void onError(Exception e) {
+          String error = "Feature search failed for: " + searchString + ". Error: " + e.getMessage();
+          Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+          Log.e(TAG, error);
+        }
+      });
     });
+    mServiceFeatureTable.loadAsync();
   }
 
   @Override
@@ -159,6 +180,9 @@ public class MainActivity extends AppCompatActivity {
   }
 
   @Override protected void onDestroy() {
+    if (mPagedQuery != null) {
+      mPagedQuery.cancel();
+    }
     mMapView.dispose();
     super.onDestroy();
   }
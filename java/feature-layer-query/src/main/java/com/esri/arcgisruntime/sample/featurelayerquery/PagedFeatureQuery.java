@@ -0,0 +1,193 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.featurelayerquery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.data.ServiceFeatureTable;
+
+/**
+ * Queries a feature table a page at a time, handing each page to a listener as soon as it arrives rather than waiting
+ * for every matching feature.
+ *
+ * Pages are requested with the result offset and maximum feature count of the query parameters, ordered by object ID
+ * so that pages don't overlap. The next page is requested as soon as a page arrives, before the listener processes it,
+ * so the service is fetching one page while the app works on another. A query can be limited to the number of
+ * features the app needs, in which case no page is requested beyond the limit and the last page only asks for the
+ * features still needed. The listener can also stop the query early, which cancels the page being prefetched.
+ */
+final class PagedFeatureQuery {
+
+  /**
+   * Fetches a single page of features.
+   */
+  interface PageSource {
+    /**
+     * @param query parameters with the result offset and maximum feature count of the page set
+     */
+    ListenableFuture<FeatureQueryResult> fetchPage(QueryParameters query);
+  }
+
+  /**
+   * Receives pages of features on the thread the page source calls its done listeners on.
+   */
+  interface Listener {
+    /**
+     * @param page      features in the page
+     * @param pageIndex index of the page, starting at 0
+     * @return true to carry on with the next page, false to stop the query
+     */
+    boolean onPage(List<Feature> page, int pageIndex);
+
+    /**
+     * @param featureCount number of features delivered
+     * @param stopped      whether the listener stopped the query before the last page
+     */
+    void onComplete(int featureCount, boolean stopped);
+
+    void onError(Exception e);
+  }
+
+  private final PageSource mPageSource;
+  private final QueryParameters mQuery;
+  private final int mPageSize;
+  private final int mMaxFeatures;
+
+  private Listener mListener;
+  private ListenableFuture<FeatureQueryResult> mInFlight;
+  private boolean mCancelled;
+  private int mFeatureCount;
+  private long mStartNanos;
+  private final List<Long> mPageLatencyNanos = new ArrayList<>();
+
+  /**
+   * @param pageSource fetches each page
+   * @param query      parameters of the query, without a result offset or maximum feature count
+   * @param pageSize    number of features per page, no more than the service's maximum record count
+   * @param maxFeatures maximum number of features to fetch, or {@link Integer#MAX_VALUE} for every match
+   */
+  PagedFeatureQuery(PageSource pageSource, QueryParameters query, int pageSize, int maxFeatures) {
+    mPageSource = pageSource;
+    mQuery = query;
+    mPageSize = pageSize;
+    mMaxFeatures = maxFeatures;
+  }
+
+  /**
+   * Creates a paged query of a service feature table. Pages are queried from the service with all fields loaded.
+   *
+   * @param table    a loaded service feature table
+   * @param query    parameters of the query, without a result offset or maximum feature count
+   * @param pageSize    number of features per page, no more than the service's maximum record count
+   * @param maxFeatures maximum number of features to fetch, or {@link Integer#MAX_VALUE} for every match
+   */
+  static PagedFeatureQuery of(ServiceFeatureTable table, QueryParameters query, int pageSize, int maxFeatures) {
+    if (query.getOrderByFields().isEmpty()) {
+      // a stable order, so each page follows on from the one before
+      query.getOrderByFields().add(new QueryParameters.OrderBy(table.getObjectIdField(),
+          QueryParameters.SortOrder.ASCENDING));
+    }
+    return new PagedFeatureQuery(
+        pageQuery -> table.queryFeaturesAsync(pageQuery, ServiceFeatureTable.QueryFeatureFields.LOAD_ALL), query,
+        pageSize, maxFeatures);
+  }
+
+  /**
+   * Starts the query. Must be called on the thread the page source calls its done listeners on.
+   *
+   * @param listener receives each page
+   */
+  void start(Listener listener) {
+    mListener = listener;
+    mStartNanos = System.nanoTime();
+    fetch(0);
+  }
+
+  /**
+   * Stops the query, cancelling the page being fetched. No more pages are delivered.
+   */
+  void cancel() {
+    mCancelled = true;
+    if (mInFlight != null) {
+      mInFlight.cancel(true);
+      mInFlight = null;
+    }
+  }
+
+  private void fetch(int pageIndex) {
+    // the source reads the parameters when the request is made, so they can be reused for the next page
+    int offset = pageIndex * mPageSize;
+    int pageSize = Math.min(mPageSize, mMaxFeatures - offset);
+    mQuery.setResultOffset(offset);
+    mQuery.setMaxFeatures(pageSize);
+    long requestNanos = System.nanoTime();
+    ListenableFuture<FeatureQueryResult> future = mPageSource.fetchPage(mQuery);
+    mInFlight = future;
+    future.addDoneListener(() -> onPageFetched(future, pageIndex, pageSize, requestNanos));
+  }
+
+  private void onPageFetched(ListenableFuture<FeatureQueryResult> future, int pageIndex, int pageSize,
+      long requestNanos) {
+    if (mCancelled || future != mInFlight) {
+      return;
+    }
+    mInFlight = null;
+    List<Feature> page = new ArrayList<>(pageSize);
+    try {
+      for (Feature feature : future.get()) {
+        page.add(feature);
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      mCancelled = true;
+      mListener.onError(e);
+      return;
+    }
+    mPageLatencyNanos.add(System.nanoTime() - requestNanos);
+    // a full page means there may be more, so prefetch the next one while this one is processed, unless the limit has
+    // been reached
+    boolean more = page.size() >= pageSize && mFeatureCount + page.size() < mMaxFeatures;
+    if (more) {
+      fetch(pageIndex + 1);
+    }
+    mFeatureCount += page.size();
+    if (!mListener.onPage(page, pageIndex)) {
+      cancel();
+      mListener.onComplete(mFeatureCount, more);
+      return;
+    }
+    if (!more) {
+      mListener.onComplete(mFeatureCount, false);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder latencies = new StringBuilder();
+    for (long latencyNanos : mPageLatencyNanos) {
+      latencies.append(latencies.length() == 0 ? "" : ", ").append(latencyNanos / 1_000_000);
+    }
+    return String.format(Locale.US, "%d features in %d pages of %d in %d ms, page latencies [%s] ms", mFeatureCount,
+        mPageLatencyNanos.size(), mPageSize, (System.nanoTime() - mStartNanos) / 1_000_000, latencies);
+  }
+}
@@ -0,0 +1,749 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.featurelayerupdateattributes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureEditResult;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.data.ServiceFeatureTable;
+import com.esri.arcgisruntime.geometry.Geometry;
+
+/**
+ * Queues the edits made to a feature table and applies them to the service in batches, instead of making a round trip
+ * to the service for every edit.
+ *
+ * Edits are merged by object ID while they wait: repeated updates of a feature become a single update, an update of a
+ * feature added in the same batch is folded into the add, a delete replaces any update of the feature, and a feature
+ * added and deleted before the add was applied is dropped altogether. A batch is applied once it holds a maximum number
+ * of edits, or a maximum delay after its first edit. Edits made while a batch is being applied wait for the next one,
+ * and are merged back into the batch if it fails. A batch which fails is retried with exponential backoff.
+ *
+ * The queue is written to a journal file after every edit, so the edits which haven't been applied survive the
+ * process being killed. There must only be one queue for a journal in a process, which outlives the activity making
+ * the edits: each activity {@link #attach(EditService, Restorer, Listener)}es the table it edits, and the edits the
+ * table doesn't hold are restored to it first, such as those read from the journal or left over by the table of an
+ * activity which has been recreated. A batch being applied when its table is detached carries on, and its edits are
+ * only restored to the table attached next if it fails. An added feature is only known by a key of the queue's until
+ * its add has been applied, so an update or delete of it made while its add is being applied can't be restored.
+ *
+ * Must be used from the thread the {@link EditService} calls back on.
+ */
+final class EditQueue {
+
+  private static final String TAG = EditQueue.class.getSimpleName();
+
+  private static final int MAGIC = 0x45445451; // "EDTQ"
+  private static final int VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte DATE = 5;
+  private static final byte SHORT = 6;
+  private static final byte FLOAT = 7;
+
+  enum Kind {
+    ADD, UPDATE, DELETE
+  }
+
+  /**
+   * A pending edit of one feature, with the edits of the feature made since the last batch merged into it. Edits are
+   * replaced rather than changed when they are merged, so the edits of a batch being applied are left as they were.
+   */
+  static final class Edit {
+    private final Kind mKind;
+    private final long mObjectId;
+    private final Map<String, Object> mAttributes;
+    private final String mGeometryJson;
+    // number of edits made which were merged into this one
+    private final int mEditCount;
+
+    /**
+     * @param objectId     object ID of the feature, or for an add, the key returned by {@link #add(Map, String)}
+     * @param attributes   attributes which were set, all of them for an add
+     * @param geometryJson JSON of the geometry which was set, or null if it wasn't
+     */
+    Edit(Kind kind, long objectId, Map<String, Object> attributes, String geometryJson) {
+      this(kind, objectId, attributes, geometryJson, 1);
+    }
+
+    private Edit(Kind kind, long objectId, Map<String, Object> attributes, String geometryJson, int editCount) {
+      mKind = kind;
+      mObjectId = objectId;
+      mAttributes = attributes;
+      mGeometryJson = geometryJson;
+      mEditCount = editCount;
+    }
+
+    Kind getKind() {
+      return mKind;
+    }
+
+    long getObjectId() {
+      return mObjectId;
+    }
+
+    Map<String, Object> getAttributes() {
+      return mAttributes;
+    }
+
+    String getGeometryJson() {
+      return mGeometryJson;
+    }
+  }
+
+  /**
+   * Applies a batch of edits to the service.
+   */
+  interface EditService {
+    /**
+     * @param edits    the edits in the batch
+     * @param callback receives the result on the queue's thread
+     */
+    void applyEdits(List<Edit> edits, Callback callback);
+  }
+
+  /**
+   * Receives the result of applying a batch.
+   */
+  interface Callback {
+    /**
+     * @param failedCount number of edits the service rejected, which are not retried
+     * @param firstError  the error of the first edit rejected, or null
+     */
+    void onApplied(int failedCount, Exception firstError);
+
+    /**
+     * The batch couldn't be applied, and will be retried.
+     */
+    void onError(Exception e);
+  }
+
+  /**
+   * Makes edits to the attached table again, so they can be applied with the table's next batch.
+   */
+  interface Restorer {
+    /**
+     * @param onDone called on the queue's thread once the edits have been made, including if any of them fail
+     */
+    void restore(List<Edit> edits, Runnable onDone);
+  }
+
+  /**
+   * Runs tasks after a delay on the queue's thread.
+   */
+  interface Scheduler {
+    /**
+     * @return cancels the task
+     */
+    Runnable schedule(Runnable task, long delayMillis);
+  }
+
+  /**
+   * Receives the outcome of each batch on the queue's thread.
+   */
+  interface Listener {
+    void onBatchApplied(int editCount, int failedCount, Exception firstError);
+
+    void onBatchFailed(Exception e, long retryMillis);
+  }
+
+  private final File mJournal;
+  private final Scheduler mScheduler;
+  private final int mBatchSize;
+  private final long mMaxDelayMillis;
+  private final long mInitialRetryMillis;
+  private final long mMaxRetryMillis;
+  private EditService mService;
+  private Restorer mRestorer;
+  private Listener mListener;
+  // whether edits are being restored to the attached table, which holds back the next batch
+  private boolean mRestoring;
+
+  private final LinkedHashMap<Long, Edit> mPending = new LinkedHashMap<>();
+  private long mNextAddKey = -1;
+  // the edits of the batch being applied, by object ID
+  private Map<Long, Edit> mInFlight;
+  // the service the batch being applied was sent to
+  private EditService mInFlightService;
+  private Runnable mCancelFlush;
+  private long mRetryMillis;
+
+  private long mEdits;
+  private long mMerged;
+  private long mDropped;
+  private long mRoundTrips;
+  private long mEditsSent;
+  private long mRetries;
+  private long mEditsApplied;
+  private long mEditsFailed;
+  private long mAppliedNanos;
+
+  /**
+   * @param journal        file the queue is kept in between runs
+   * @param scheduler      schedules batches and retries
+   * @param batchSize      number of edits which are applied at once, rather than waiting for more
+   * @param maxDelayMillis time an edit waits for more edits to be batched with it
+   * @param retryMillis    time before a failed batch is first retried, doubling for each retry up to the maximum
+   * @param maxRetryMillis maximum time between retries
+   */
+  EditQueue(File journal, Scheduler scheduler, int batchSize, long maxDelayMillis, long retryMillis,
+      long maxRetryMillis) {
+    mJournal = journal;
+    mScheduler = scheduler;
+    mBatchSize = batchSize;
+    mMaxDelayMillis = maxDelayMillis;
+    mInitialRetryMillis = retryMillis;
+    mRetryMillis = retryMillis;
+    mMaxRetryMillis = maxRetryMillis;
+    read();
+  }
+
+  /**
+   * Applies the queue's batches to a table from now on. The pending edits which aren't being applied are restored to
+   * the table first.
+   *
+   * @param service  applies each batch to the table
+   * @param restorer makes edits to the table again
+   * @param listener receives the outcome of each batch
+   */
+  void attach(EditService service, Restorer restorer, Listener listener) {
+    mService = service;
+    mRestorer = restorer;
+    mListener = listener;
+    List<Edit> edits = new ArrayList<>();
+    for (Edit edit : mPending.values()) {
+      if (!isInFlight(edit)) {
+        edits.add(edit);
+      }
+    }
+    restore(edits);
+  }
+
+  /**
+   * Stops applying batches to the attached table, such as when its activity is destroyed. The pending edits stay in
+   * the queue and the journal, and a batch being applied carries on.
+   */
+  void detach() {
+    cancel();
+    mService = null;
+    mRestorer = null;
+    mListener = null;
+    mRestoring = false;
+  }
+
+  private void restore(List<Edit> edits) {
+    if (edits.isEmpty()) {
+      flush();
+      return;
+    }
+    mRestoring = true;
+    Restorer restorer = mRestorer;
+    restorer.restore(edits, () -> {
+      // the table may have been detached while the edits were being restored
+      if (mRestorer == restorer) {
+        mRestoring = false;
+        if (mCancelFlush == null) {
+          flush();
+        }
+      }
+    });
+  }
+
+  /**
+   * Creates an edit service which applies the edits made to a service feature table, which already holds the edits
+   * of the batch.
+   */
+  static EditService serviceEditService(ServiceFeatureTable table) {
+    return (edits, callback) -> {
+      final ListenableFuture<List<FeatureEditResult>> future = table.applyEditsAsync();
+      future.addDoneListener(() -> {
+        try {
+          int failedCount = 0;
+          Exception firstError = null;
+          for (FeatureEditResult result : future.get()) {
+            if (result.hasCompletedWithErrors()) {
+              if (failedCount++ == 0) {
+                firstError = result.getError();
+              }
+            }
+          }
+          callback.onApplied(failedCount, firstError);
+        } catch (Exception e) {
+          callback.onError(e);
+        }
+      });
+    };
+  }
+
+  /**
+   * Makes edits of the queue to a loaded service feature table again, so they can be applied.
+   *
+   * @param table  the table the edits were made to
+   * @param edits  the edits to restore
+   * @param onDone called once the edits have been made, including if any of them fail
+   */
+  static void restore(ServiceFeatureTable table, List<Edit> edits, Runnable onDone) {
+    Map<Long, Edit> existing = new HashMap<>();
+    List<ListenableFuture<?>> futures = new ArrayList<>();
+    for (Edit edit : edits) {
+      if (edit.mKind == Kind.ADD) {
+        Geometry geometry = edit.mGeometryJson != null ? Geometry.fromJson(edit.mGeometryJson) : null;
+        futures.add(table.addFeatureAsync(table.createFeature(edit.mAttributes, geometry)));
+      } else if (edit.mObjectId >= 0) {
+        // a feature deleted while its add was being applied has no object ID to restore the delete by
+        existing.put(edit.mObjectId, edit);
+      }
+    }
+    if (existing.isEmpty()) {
+      whenDone(futures, onDone);
+      return;
+    }
+    QueryParameters queryParameters = new QueryParameters();
+    queryParameters.getObjectIds().addAll(existing.keySet());
+    final ListenableFuture<FeatureQueryResult> query = table.queryFeaturesAsync(queryParameters,
+        ServiceFeatureTable.QueryFeatureFields.LOAD_ALL);
+    query.addDoneListener(() -> {
+      try {
+        for (Feature feature : query.get()) {
+          Edit edit = existing.get(((Number) feature.getAttributes().get(table.getObjectIdField())).longValue());
+          if (edit == null) {
+            continue;
+          }
+          if (edit.mKind == Kind.DELETE) {
+            futures.add(table.deleteFeatureAsync(feature));
+          } else {
+            feature.getAttributes().putAll(edit.mAttributes);
+            if (edit.mGeometryJson != null) {
+              feature.setGeometry(Geometry.fromJson(edit.mGeometryJson));
+            }
+            futures.add(table.updateFeatureAsync(feature));
+          }
+        }
+      } catch (Exception e) {
+        Log.e(TAG, "Unable to restore edits: " + e.getMessage());
+      }
+      whenDone(futures, onDone);
+    });
+  }
+
+  private static void whenDone(List<ListenableFuture<?>> futures, Runnable onDone) {
+    if (futures.isEmpty()) {
+      onDone.run();
+      return;
+    }
+    int[] remaining = { futures.size() };
+    for (ListenableFuture<?> future : futures) {
+      future.addDoneListener(() -> {
+        if (--remaining[0] == 0) {
+          onDone.run();
+        }
+      });
+    }
+  }
+
+  /**
+   * @return the edits which haven't been applied yet, including any restored from the journal
+   */
+  List<Edit> getPending() {
+    return new ArrayList<>(mPending.values());
+  }
+
+  /**
+   * Queues the add of a feature, which has been added to the table.
+   *
+   * @param attributes   the feature's attributes
+   * @param geometryJson JSON of the feature's geometry
+   * @return a key which updates and deletes of the feature can be queued by until the add has been applied
+   */
+  long add(Map<String, Object> attributes, String geometryJson) {
+    long key = mNextAddKey--;
+    mPending.put(key, new Edit(Kind.ADD, key, new HashMap<>(attributes), geometryJson));
+    onEdited();
+    return key;
+  }
+
+  /**
+   * Queues the update of a feature, which has been updated in the table.
+   *
+   * @param objectId     the feature's object ID
+   * @param attributes   the attributes which were changed
+   * @param geometryJson JSON of the feature's new geometry, or null if it wasn't changed
+   */
+  void update(long objectId, Map<String, Object> attributes, String geometryJson) {
+    queue(new Edit(Kind.UPDATE, objectId, new HashMap<>(attributes), geometryJson));
+  }
+
+  /**
+   * Queues the delete of a feature, which has been deleted from the table.
+   *
+   * @param objectId the feature's object ID
+   */
+  void delete(long objectId) {
+    queue(new Edit(Kind.DELETE, objectId, new HashMap<>(), null));
+  }
+
+  private void queue(Edit edit) {
+    Edit pending = mPending.get(edit.mObjectId);
+    if (pending == null || isInFlight(pending)) {
+      // an edit of a feature in the batch being applied waits for the next batch
+      mPending.put(edit.mObjectId, edit);
+    } else {
+      mMerged++;
+      putMerged(pending, edit);
+    }
+    onEdited();
+  }
+
+  private void putMerged(Edit earlier, Edit later) {
+    Edit merged = merge(earlier, later);
+    if (merged != null) {
+      mPending.put(merged.mObjectId, merged);
+    } else {
+      mPending.remove(later.mObjectId);
+      mDropped++;
+    }
+  }
+
+  /**
+   * @return a single edit with the effect of two edits of the same feature, or null if they cancel each other out
+   */
+  private static Edit merge(Edit earlier, Edit later) {
+    if (later.mKind == Kind.DELETE) {
+      // the service never needs to know about a feature added and deleted in the same batch
+      return earlier.mKind == Kind.ADD ? null : later;
+    }
+    if (earlier.mKind == Kind.DELETE) {
+      return later;
+    }
+    // later attribute values replace earlier ones
+    Map<String, Object> attributes = new HashMap<>(earlier.mAttributes);
+    attributes.putAll(later.mAttributes);
+    return new Edit(earlier.mKind, later.mObjectId, attributes,
+        later.mGeometryJson != null ? later.mGeometryJson : earlier.mGeometryJson,
+        earlier.mEditCount + later.mEditCount);
+  }
+
+  /**
+   * Applies the pending edits now, rather than waiting for the batch to fill. Does nothing while no table is attached
+   * or edits are being restored to it.
+   */
+  void flush() {
+    if (mCancelFlush != null) {
+      mCancelFlush.run();
+      mCancelFlush = null;
+    }
+    if (mService == null || mRestoring || mInFlight != null || mPending.isEmpty()) {
+      return;
+    }
+    mInFlight = new HashMap<>(mPending);
+    mInFlightService = mService;
+    List<Edit> batch = getPending();
+    long start = System.nanoTime();
+    mRoundTrips++;
+    Callback callback = new Callback() {
+      @Override public void onApplied(int failedCount, Exception firstError) {
+        onBatchApplied(batch, failedCount, firstError, start);
+      }
+
+      @Override public void onError(Exception e) {
+        onBatchFailed(e);
+      }
+    };
+    try {
+      mInFlightService.applyEdits(batch, callback);
+    } catch (RuntimeException e) {
+      callback.onError(e);
+    }
+  }
+
+  /**
+   * Stops any scheduled batch. The pending edits stay in the journal.
+   */
+  private void cancel() {
+    if (mCancelFlush != null) {
+      mCancelFlush.run();
+      mCancelFlush = null;
+    }
+  }
+
+  private void onEdited() {
+    mEdits++;
+    write();
+    if (mPending.size() >= mBatchSize) {
+      flush();
+    } else if (mCancelFlush == null && mInFlight == null && mService != null) {
+      mCancelFlush = mScheduler.schedule(this::flushScheduled, mMaxDelayMillis);
+    }
+  }
+
+  private void flushScheduled() {
+    mCancelFlush = null;
+    flush();
+  }
+
+  private boolean isInFlight(Edit edit) {
+    return mInFlight != null && mInFlight.get(edit.mObjectId) == edit;
+  }
+
+  private void onBatchApplied(List<Edit> batch, int failedCount, Exception firstError, long start) {
+    mAppliedNanos += System.nanoTime() - start;
+    mEditsApplied += batch.size() - failedCount;
+    mEditsFailed += failedCount;
+    for (Edit edit : batch) {
+      mEditsSent += edit.mEditCount;
+    }
+    // keep the edits made while the batch was being applied
+    for (Edit edit : mInFlight.values()) {
+      if (mPending.get(edit.mObjectId) == edit) {
+        mPending.remove(edit.mObjectId);
+      }
+    }
+    mInFlight = null;
+    mInFlightService = null;
+    mRetryMillis = mInitialRetryMillis;
+    write();
+    if (mListener != null) {
+      mListener.onBatchApplied(batch.size(), failedCount, firstError);
+    }
+    scheduleNext();
+  }
+
+  private void onBatchFailed(Exception e) {
+    // the edits of the batch are only held by the table it was sent to, unless that's still attached
+    boolean detached = mInFlightService != mService;
+    // merge the edits made while the batch was being applied back into it
+    for (Edit edit : mInFlight.values()) {
+      Edit later = mPending.get(edit.mObjectId);
+      if (later != edit) {
+        if (later != null) {
+          putMerged(edit, later);
+        } else {
+          mPending.put(edit.mObjectId, edit);
+        }
+      }
+    }
+    List<Edit> unrestored = new ArrayList<>();
+    for (Edit edit : mInFlight.values()) {
+      Edit pending = mPending.get(edit.mObjectId);
+      if (pending != null) {
+        unrestored.add(pending);
+      }
+    }
+    mInFlight = null;
+    mInFlightService = null;
+    write();
+    long retryMillis = mRetryMillis;
+    mRetryMillis = Math.min(mRetryMillis * 2, mMaxRetryMillis);
+    mRetries++;
+    if (mService == null) {
+      // the edits are restored to the next table attached
+      return;
+    }
+    if (mListener != null) {
+      mListener.onBatchFailed(e, retryMillis);
+    }
+    if (mCancelFlush != null) {
+      mCancelFlush.run();
+    }
+    mCancelFlush = mScheduler.schedule(this::flushScheduled, retryMillis);
+    if (detached) {
+      restore(unrestored);
+    }
+  }
+
+  private void scheduleNext() {
+    if (mPending.size() >= mBatchSize) {
+      flush();
+    } else if (!mPending.isEmpty() && mCancelFlush == null && mService != null) {
+      mCancelFlush = mScheduler.schedule(this::flushScheduled, mMaxDelayMillis);
+    }
+  }
+
+  private void read() {
+    if (!mJournal.exists()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mJournal)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unknown journal format");
+      }
+      mNextAddKey = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        Kind kind = Kind.values()[in.readByte()];
+        long objectId = in.readLong();
+        String geometryJson = in.readBoolean() ? readString(in) : null;
+        int attributeCount = in.readInt();
+        Map<String, Object> attributes = new HashMap<>();
+        for (int j = 0; j < attributeCount; j++) {
+          attributes.put(in.readUTF(), readValue(in));
+        }
+        mPending.put(objectId, new Edit(kind, objectId, attributes, geometryJson));
+      }
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Ignoring unreadable journal: " + e.getMessage());
+      mPending.clear();
+    }
+  }
+
+  /**
+   * Writes the pending edits to a temporary file which replaces the journal, so a kill while writing leaves the last
+   * journal in place. The journal only holds edits which haven't been applied, so it stays small.
+   */
+  private void write() {
+    if (mPending.isEmpty()) {
+      if (mJournal.exists() && !mJournal.delete()) {
+        Log.w(TAG, "Unable to delete journal");
+      }
+      return;
+    }
+    File temp = new File(mJournal.getPath() + ".part");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(mNextAddKey);
+      out.writeInt(mPending.size());
+      for (Edit edit : mPending.values()) {
+        out.writeByte(edit.mKind.ordinal());
+        out.writeLong(edit.mObjectId);
+        out.writeBoolean(edit.mGeometryJson != null);
+        if (edit.mGeometryJson != null) {
+          writeString(out, edit.mGeometryJson);
+        }
+        out.writeInt(edit.mAttributes.size());
+        for (Map.Entry<String, Object> attribute : edit.mAttributes.entrySet()) {
+          out.writeUTF(attribute.getKey());
+          writeValue(out, attribute.getValue());
+        }
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to write journal: " + e.getMessage());
+      temp.delete();
+      return;
+    }
+    if (!temp.renameTo(mJournal)) {
+      temp.delete();
+      Log.w(TAG, "Unable to write journal");
+    }
+  }
+
+  /**
+   * Writes a string which may be longer than {@link DataOutputStream#writeUTF(String)} allows, such as geometry JSON.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Calendar) {
+      out.writeByte(DATE);
+      out.writeLong(((Calendar) value).getTimeInMillis());
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case DATE:
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(in.readLong());
+        return calendar;
+      case SHORT:
+        return in.readShort();
+      case FLOAT:
+        return in.readFloat();
+      case STRING:
+        return readString(in);
+      default:
+        throw new IOException("Unknown attribute type " + type);
+    }
+  }
+
+  /**
+   * @return the number of edits made, merged and applied, the round trips made and the round trips saved against
+   *         sending each edit applied on its own, and the rate edits were applied at while batches were in flight
+   */
+  @Override
+  public String toString() {
+    double seconds = mAppliedNanos / 1e9;
+    return String.format(Locale.US,
+        "%d edits, %d merged, %d dropped, %d pending, %d applied, %d rejected, %d round trips (%d saved), %d retries, "
+            + "%.1f edits/s", mEdits, mMerged, mDropped, mPending.size(), mEditsApplied, mEditsFailed, mRoundTrips,
+        Math.max(0, mEditsSent - mRoundTrips), mRetries, seconds > 0 ? mEditsApplied / seconds : 0);
+  }
+}
@@ -16,12 +16,16 @@
 
 package com.esri.arcgisruntime.sample.featurelayerupdateattributes;
 
+import java.io.File;
+import java.util.Collections;
 import java.util.List;
 
 import android.app.ProgressDialog;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
@@ -35,7 +39,6 @@ import androidx.core.content.ContextCompat;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.ArcGISFeature;
-import com.esri.arcgisruntime.data.FeatureEditResult;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.layers.FeatureLayer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
@@ -53,6 +56,17 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // attribute updates are sent to the server once this many are waiting, or after a delay
+  private static final int EDIT_BATCH_SIZE = 10;
+  private static final long EDIT_BATCH_DELAY_MILLIS = 5000;
+  private static final long EDIT_RETRY_MILLIS = 1000;
+  private static final long EDIT_MAX_RETRY_MILLIS = 60000;
+
+  // the edits belong to the process rather than the activity, so a batch being applied when the activity is
+  // recreated isn't restored to the new activity's table and applied again
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+  private static EditQueue sEditQueue;
+
   private Callout mCallout;
   private ServiceFeatureTable mServiceFeatureTable;
   private FeatureLayer mFeatureLayer;
@@ -101,6 +115,38 @@ public class MainActivity extends AppCompatActivity {
     mServiceFeatureTable = new ServiceFeatureTable(getResources().getString(R.string.sample_service_url));
     mFeatureLayer = new FeatureLayer(mServiceFeatureTable);
 
+    // queue the attribute updates, and send them to the server in batches
+    if (sEditQueue == null) {
+      sEditQueue = new EditQueue(new File(getFilesDir(), "edits.journal"), (task, delayMillis) -> {
+        sMainHandler.postDelayed(task, delayMillis);
+        return () -> sMainHandler.removeCallbacks(task);
+      }, EDIT_BATCH_SIZE, EDIT_BATCH_DELAY_MILLIS, EDIT_RETRY_MILLIS, EDIT_MAX_RETRY_MILLIS);
+    }
+
+    // once the table has loaded, update the features again which hadn't been updated on the server when the app was
+    // last closed
+    mServiceFeatureTable.addDoneLoadingListener(() -> {
+      if (mServiceFeatureTable.getLoadStatus() == LoadStatus.LOADED) {
+        sEditQueue.attach(EditQueue.serviceEditService(mServiceFeatureTable),
+            (edits, onDone) -> EditQueue.restore(mServiceFeatureTable, edits, onDone), new EditQueue.Listener() {
+          @Override public void onBatchApplied(int editCount, int failedCount, Exception firstError) {
+            mFeatureUpdated = failedCount == 0;
+            if (mFeatureUpdated) {
+              Log.d(TAG, editCount + " feature updates applied");
+              mSnackbarSuccess.show();
+            } else {
+              Log.e(TAG, "The attribute type was not changed: " + firstError.getMessage());
+              mSnackbarFailure.show();
+            }
+          }
+
+          @Override public void onBatchFailed(Exception e, long retryMillis) {
+            Log.e(TAG, "applying changes to the server failed, retrying in " + retryMillis + " ms: " + e.getMessage());
+          }
+        });
+      }
+    });
+
     // add the layer to the map
     map.getOperationalLayers().add(mFeatureLayer);
 
@@ -178,7 +224,7 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Applies changes to the feature, Service Feature Table, and server.
+   * Applies changes to the feature and Service Feature Table, and queues them to be applied to the server.
    */
   private boolean updateAttributes(final String typeDamage) {
 
@@ -202,37 +248,21 @@ public class MainActivity extends AppCompatActivity {
           mapViewResult.addDoneListener(new Runnable() {
             @Override
             public void run() {
-              // apply change to the server
-              final ListenableFuture<List<FeatureEditResult>> serverResult = mServiceFeatureTable.applyEditsAsync();
-
-              serverResult.addDoneListener(new Runnable() {
-                @Override
-                public void run() {
-                  try {
-
-                    // check if server result successful
-                    List<FeatureEditResult> edits = serverResult.get();
-                    if (!edits.isEmpty()) {
-                      if (!edits.get(0).hasCompletedWithErrors()) {
-                        Log.e(TAG, "Feature successfully updated");
-                        mSnackbarSuccess.show();
-                        mFeatureUpdated = true;
-                      }
-                    } else {
-                      Log.e(TAG, "The attribute type was not changed");
-                      mSnackbarFailure.show();
-                      mFeatureUpdated = false;
-                    }
-                    if (mProgressDialog.isShowing()) {
-                      mProgressDialog.dismiss();
-                      // display the callout with the updated value
-                      showCallout((String) mSelectedArcGISFeature.getAttributes().get("typdamage"));
-                    }
-                  } catch (Exception e) {
-                    Log.e(TAG, "applying changes to the server failed: " + e.getMessage());
-                  }
-                }
-              });
+              try {
+                mapViewResult.get();
+                // queue the change to be sent to the server with the next batch
+                long objectId = ((Number) mSelectedArcGISFeature.getAttributes()
+                    .get(mServiceFeatureTable.getObjectIdField())).longValue();
+                sEditQueue.update(objectId, Collections.<String, Object>singletonMap("typdamage", typeDamage), null);
+              } catch (Exception e) {
+                Log.e(TAG, "updating feature in the feature table failed: " + e.getMessage());
+                mSnackbarFailure.show();
+              }
+              if (mProgressDialog.isShowing()) {
+                mProgressDialog.dismiss();
+                // display the callout with the updated value
+                showCallout((String) mSelectedArcGISFeature.getAttributes().get("typdamage"));
+              }
             }
           });
         } catch (Exception e) {
@@ -282,6 +312,9 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onPause() {
+    // send the updates waiting for the next batch while the app is still in the foreground
+    sEditQueue.flush();
+    Log.i(TAG, "Edit queue: " + sEditQueue);
     mMapView.pause();
     super.onPause();
   }
@@ -294,6 +327,7 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    sEditQueue.detach();
     mMapView.dispose();
     super.onDestroy();
   }
@@ -35,7 +35,10 @@ import androidx.core.content.ContextCompat;
 import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.GeometryEngine;
 import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
@@ -57,12 +60,18 @@ public class MainActivity extends AppCompatActivity {
   private final String TAG = MainActivity.class.getSimpleName();
   private final String COLUMN_NAME_ADDRESS = "address";
   private final String[] mColumnNames = { BaseColumns._ID, COLUMN_NAME_ADDRESS };
+  // time the user must stop typing for before suggestions are requested
+  private static final long SUGGEST_DEBOUNCE_MILLIS = 250;
+  // distance from a pin within which a tap selects it
+  private static final int IDENTIFY_TOLERANCE_DP = 10;
   private SearchView mAddressSearchView;
 
   private MapView mMapView;
   private LocatorTask mLocatorTask;
   private GraphicsOverlay mGraphicsOverlay;
+  private GraphicIndex mGraphicIndex;
   private GeocodeParameters mAddressGeocodeParameters;
+  private SuggestionPipeline<SuggestResult> mAddressSuggestions;
   private PictureMarkerSymbol mPinSourceSymbol;
   private Callout mCallout;
 
@@ -114,8 +123,9 @@ public class MainActivity extends AppCompatActivity {
       }
     });
 
-    // define the graphics overlay
+    // define the graphics overlay, and index its graphics to resolve taps on the device
     mGraphicsOverlay = new GraphicsOverlay();
+    mGraphicIndex = new GraphicIndex(mGraphicsOverlay, SpatialReferences.getWebMercator());
 
     setupAddressSearchView();
   }
@@ -131,10 +141,54 @@ public class MainActivity extends AppCompatActivity {
     mAddressGeocodeParameters.getResultAttributeNames().add("StAddr");
     // return only the closest result
     mAddressGeocodeParameters.setMaxResults(1);
+    // use a single adapter and swap its cursor as new suggestions arrive
+    String[] cols = new String[] { COLUMN_NAME_ADDRESS };
+    int[] to = new int[] { R.id.suggestion_address };
+    final SimpleCursorAdapter suggestionAdapter = new SimpleCursorAdapter(MainActivity.this, R.layout.suggestion, null,
+        cols, to, 0);
+    mAddressSearchView.setSuggestionsAdapter(suggestionAdapter);
+    // handle an address suggestion being chosen
+    mAddressSearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+      @Override public boolean onSuggestionSelect(int position) {
+        return false;
+      }
+
+      @Override public boolean onSuggestionClick(int position) {
+        // get the selected row
+        MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
+        // get the row's index
+        int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
+        // get the string from the row at index
+        String address = selectedRow.getString(selectedCursorIndex);
+        // use clicked suggestion as query
+        mAddressSearchView.setQuery(address, true);
+        return true;
+      }
+    });
+    // get suggestions from the locatorTask once the user pauses typing
+    mAddressSuggestions = new SuggestionPipeline<>(mLocatorTask::suggestAsync, SuggestionPipeline.mainThread(),
+        SUGGEST_DEBOUNCE_MILLIS, new SuggestionPipeline.Listener<SuggestResult>() {
+      @Override public void onSuggestions(String query, List<SuggestResult> suggestResults) {
+        MatrixCursor suggestionsCursor = new MatrixCursor(mColumnNames, suggestResults.size());
+        int key = 0;
+        // add each address suggestion to a new row
+        for (SuggestResult result : suggestResults) {
+          suggestionsCursor.addRow(new Object[] { key++, result.getLabel() });
+        }
+        // closes the previous cursor
+        suggestionAdapter.changeCursor(suggestionsCursor);
+      }
+
+      @Override public void onError(String query, Exception e) {
+        Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
+      }
+    });
     mAddressSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
 
       @Override
       public boolean onQueryTextSubmit(String address) {
+        // no need for suggestions once the search has been submitted
+        mAddressSuggestions.cancel();
         // geocode typed address
         geoCodeTypedAddress(address);
         // clear focus from search views
@@ -144,58 +198,15 @@ public class MainActivity extends AppCompatActivity {
 
       @Override
       public boolean onQueryTextChange(String newText) {
-        // as long as newText isn't empty, get suggestions from the locatorTask
-        if (!newText.equals("")) {
-          final ListenableFuture<List<SuggestResult>> suggestionsFuture = mLocatorTask.suggestAsync(newText);
-          suggestionsFuture.addDoneListener(new Runnable() {
-
-            @Override public void run() {
-              try {
-                // get the results of the async operation
-                List<SuggestResult> suggestResults = suggestionsFuture.get();
-                MatrixCursor suggestionsCursor = new MatrixCursor(mColumnNames);
-                int key = 0;
-                // add each address suggestion to a new row
-                for (SuggestResult result : suggestResults) {
-                  suggestionsCursor.addRow(new Object[] { key++, result.getLabel() });
-                }
-                // define SimpleCursorAdapter
-                String[] cols = new String[] { COLUMN_NAME_ADDRESS };
-                int[] to = new int[] { R.id.suggestion_address };
-                final SimpleCursorAdapter suggestionAdapter = new SimpleCursorAdapter(MainActivity.this,
-                    R.layout.suggestion, suggestionsCursor, cols, to, 0);
-                mAddressSearchView.setSuggestionsAdapter(suggestionAdapter);
-                // handle an address suggestion being chosen
-                mAddressSearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
-                  @Override public boolean onSuggestionSelect(int position) {
-                    return false;
-                  }
-
-                  @Override public boolean onSuggestionClick(int position) {
-                    // get the selected row
-                    MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
-                    // get the row's index
-                    int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
-                    // get the string from the row at index
-                    String address = selectedRow.getString(selectedCursorIndex);
-                    // use clicked suggestion as query
-                    mAddressSearchView.setQuery(address, true);
-                    return true;
-                  }
-                });
-              } catch (Exception e) {
-                Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
-              }
-            }
-          });
-        }
+        // request suggestions for newText, or drop any pending request if it is empty
+        mAddressSuggestions.setQuery(newText);
         return true;
       }
     });
   }
 
   /**
-   * Identifies the Graphic at the tapped point.
+   * Finds the Graphic at the tapped point from the index of the graphics, identifying it only where pins overlap.
    *
    * @param motionEvent containing a tapped screen point
    */
@@ -203,9 +214,32 @@ public class MainActivity extends AppCompatActivity {
     // get the screen point
     android.graphics.Point screenPoint = new android.graphics.Point(Math.round(motionEvent.getX()),
         Math.round(motionEvent.getY()));
-    // from the graphics overlay, get graphics near the tapped location
+    Point mapPoint = mMapView.screenToLocation(screenPoint);
+    if (mapPoint == null) {
+      return;
+    }
+    // bring a tap on a wrapped around copy of the world back to the graphics
+    mapPoint = (Point) GeometryEngine.normalizeCentralMeridian(mapPoint);
+    // find the pins whose symbol is under the tap from the index of the graphics
+    double unitsPerDp = mMapView.getUnitsPerDensityIndependentPixel();
+    double halfWidth = (mPinSourceSymbol.getWidth() / 2 + IDENTIFY_TOLERANCE_DP) * unitsPerDp;
+    double halfHeight = (mPinSourceSymbol.getHeight() / 2 + IDENTIFY_TOLERANCE_DP) * unitsPerDp;
+    List<Graphic> graphics = mGraphicIndex.query(new Envelope(mapPoint.getX() - halfWidth,
+        mapPoint.getY() - halfHeight, mapPoint.getX() + halfWidth, mapPoint.getY() + halfHeight,
+        mapPoint.getSpatialReference()));
+    if (graphics.size() == 1) {
+      showCallout(graphics.get(0));
+      return;
+    } else if (graphics.isEmpty()) {
+      // if no graphic identified
+      if (mCallout != null) {
+        mCallout.dismiss();
+      }
+      return;
+    }
+    // where pins overlap, only an identify knows which is drawn on top
     final ListenableFuture<IdentifyGraphicsOverlayResult> identifyResultsFuture = mMapView
-        .identifyGraphicsOverlayAsync(mGraphicsOverlay, screenPoint, 10, false);
+        .identifyGraphicsOverlayAsync(mGraphicsOverlay, screenPoint, IDENTIFY_TOLERANCE_DP, false);
     identifyResultsFuture.addDoneListener(new Runnable() {
       @Override public void run() {
         try {
@@ -325,6 +359,7 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onPause() {
     super.onPause();
+    Log.i(TAG, "Address suggestions: " + mAddressSuggestions);
     mMapView.pause();
   }
 
@@ -337,6 +372,8 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    mAddressSuggestions.cancel();
+    mGraphicIndex.dispose();
     mMapView.dispose();
   }
 }
@@ -0,0 +1,543 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.findplace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.Geometry;
+import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+import com.esri.arcgisruntime.tasks.geocode.GeocodeParameters;
+import com.esri.arcgisruntime.tasks.geocode.GeocodeResult;
+import com.esri.arcgisruntime.tasks.geocode.LocatorTask;
+import com.esri.arcgisruntime.tasks.geocode.SuggestParameters;
+import com.esri.arcgisruntime.tasks.geocode.SuggestResult;
+
+/**
+ * Caches the results of suggest and geocode requests made through a {@link LocatorTask}.
+ *
+ * Results depend on the text, the parameters and where the search is focused. Searches are cached against the
+ * normalized text, the categories and other parameters, and the cell of a grid which the search area and preferred
+ * search location fall in, so a search repeated after panning the map a little is answered from the cache. The grid
+ * cell for a search area is about a quarter of the area's size, so the cache key only changes once the area has moved
+ * or been resized appreciably.
+ *
+ * Entries expire after a time to live, and the least recently used entries are evicted once the cache is full. The
+ * cache can be saved to a file and is read back from it when created, so repeated searches are answered without a
+ * network connection across launches.
+ *
+ * The cache keeps only the parts of results which can be saved: the label of each suggestion, and the label, location
+ * and attributes of each geocoded place.
+ */
+final class LocatorCache {
+
+  private static final String TAG = LocatorCache.class.getSimpleName();
+
+  private static final int MAGIC = 0x4c4f4343; // "LOCC"
+  private static final int VERSION = 1;
+
+  private static final char SUGGEST = 's';
+  private static final char GEOCODE = 'g';
+
+  // grid cell size for point locations, in the units of their spatial reference
+  private static final double POINT_CELL_PROJECTED = 1000;
+  private static final double POINT_CELL_GEOGRAPHIC = 0.01;
+
+  private final LocatorTask mLocatorTask;
+  private final int mMaxEntries;
+  private final long mTimeToLiveMillis;
+  private final File mFile;
+  private final Map<String, Entry> mEntries;
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+  private long mHits;
+  private long mMisses;
+
+  /**
+   * Creates a cache and starts reading any previously saved entries in the background.
+   *
+   * @param locatorTask      sends requests which miss the cache
+   * @param maxEntries       number of searches to keep
+   * @param timeToLiveMillis time after which a cached search is made again
+   * @param file             file the cache is saved to, or null to keep it in memory only
+   */
+  LocatorCache(LocatorTask locatorTask, int maxEntries, long timeToLiveMillis, File file) {
+    mLocatorTask = locatorTask;
+    mMaxEntries = maxEntries;
+    mTimeToLiveMillis = timeToLiveMillis;
+    mFile = file;
+    // access ordered, so the eldest entry is the least recently used
+    mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > mMaxEntries;
+      }
+    };
+    if (mFile != null) {
+      mExecutor.execute(this::read);
+    }
+  }
+
+  /**
+   * Gets suggestions for the text, from the cache if the same search has been made recently.
+   *
+   * @return a future of the suggestion labels
+   */
+  ListenableFuture<List<String>> suggestAsync(String text, SuggestParameters parameters) {
+    String key = SUGGEST + normalize(text) + '|' + join(parameters.getCategories()) + '|' + parameters.getMaxResults()
+        + '|' + cellOf(parameters.getSearchArea()) + '|' + cellOf(parameters.getPreferredSearchLocation());
+    List<String> cached = get(key);
+    if (cached != null) {
+      return new CacheFuture<>(cached);
+    }
+    ListenableFuture<List<SuggestResult>> future = mLocatorTask.suggestAsync(text, parameters);
+    return new CacheFuture<>(future, key, suggestResults -> {
+      List<String> labels = new ArrayList<>(suggestResults.size());
+      for (SuggestResult suggestResult : suggestResults) {
+        labels.add(suggestResult.getLabel());
+      }
+      return labels;
+    });
+  }
+
+  /**
+   * Geocodes the text, from the cache if the same search has been made recently.
+   *
+   * @return a future of the places found
+   */
+  ListenableFuture<List<Place>> geocodeAsync(String text, GeocodeParameters parameters) {
+    String key = GEOCODE + normalize(text) + '|' + join(parameters.getCategories()) + '|' + parameters.getMaxResults()
+        + '|' + join(parameters.getResultAttributeNames()) + '|' + cellOf(parameters.getSearchArea()) + '|'
+        + cellOf(parameters.getPreferredSearchLocation());
+    List<Place> cached = get(key);
+    if (cached != null) {
+      return new CacheFuture<>(cached);
+    }
+    ListenableFuture<List<GeocodeResult>> future = mLocatorTask.geocodeAsync(text, parameters);
+    return new CacheFuture<>(future, key, geocodeResults -> {
+      List<Place> places = new ArrayList<>(geocodeResults.size());
+      for (GeocodeResult geocodeResult : geocodeResults) {
+        places.add(new Place(geocodeResult.getLabel(), geocodeResult.getDisplayLocation(),
+            geocodeResult.getAttributes()));
+      }
+      return places;
+    });
+  }
+
+  /**
+   * @return the number of searches answered from the cache
+   */
+  synchronized long getHitCount() {
+    return mHits;
+  }
+
+  /**
+   * @return the number of searches sent to the locator
+   */
+  synchronized long getMissCount() {
+    return mMisses;
+  }
+
+  /**
+   * Saves the cache to its file in the background.
+   */
+  void save() {
+    if (mFile == null || mExecutor.isShutdown()) {
+      return;
+    }
+    Map<String, Entry> snapshot;
+    synchronized (this) {
+      snapshot = new LinkedHashMap<>(mEntries);
+    }
+    mExecutor.execute(() -> write(snapshot));
+  }
+
+  /**
+   * Stops the background thread once the cache being saved has been written. The cache isn't saved after this.
+   */
+  void shutdown() {
+    mExecutor.shutdown();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(Locale.US, "%d entries, %d hits, %d misses", mEntries.size(), mHits, mMisses);
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized <T> List<T> get(String key) {
+    Entry entry = mEntries.get(key);
+    if (entry != null && System.currentTimeMillis() - entry.mTime < mTimeToLiveMillis) {
+      mHits++;
+      return (List<T>) entry.mValue;
+    }
+    if (entry != null) {
+      mEntries.remove(key);
+    }
+    mMisses++;
+    return null;
+  }
+
+  private synchronized void put(String key, List<?> value) {
+    mEntries.put(key, new Entry(System.currentTimeMillis(), Collections.unmodifiableList(value)));
+  }
+
+  /**
+   * Trims and lower cases the text and collapses runs of whitespace, so that trivially different text shares entries.
+   */
+  static String normalize(String text) {
+    return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  private static String join(List<String> values) {
+    // sorted, so the order categories were added in doesn't matter
+    return String.join(",", new TreeSet<>(values));
+  }
+
+  /**
+   * Gets the grid cell a search area or location falls in. Points are snapped to a fixed grid, and other geometries to
+   * a grid with cells a quarter of the size of their extent, rounded up to a power of two.
+   */
+  static String cellOf(Geometry geometry) {
+    if (geometry == null || geometry.isEmpty()) {
+      return "-";
+    }
+    SpatialReference spatialReference = geometry.getSpatialReference();
+    Envelope extent = geometry.getExtent();
+    double size = Math.max(extent.getWidth(), extent.getHeight());
+    double cellSize;
+    String level;
+    if (size == 0) {
+      cellSize = spatialReference != null && spatialReference.isGeographic() ? POINT_CELL_GEOGRAPHIC
+          : POINT_CELL_PROJECTED;
+      level = "p";
+    } else {
+      int exponent = Math.getExponent(size);
+      // round up to the next power of two
+      if (size > Math.scalb(1.0, exponent)) {
+        exponent++;
+      }
+      cellSize = Math.scalb(1.0, exponent - 2);
+      level = Integer.toString(exponent);
+    }
+    Point center = extent.getCenter();
+    long column = (long) Math.floor(center.getX() / cellSize);
+    long row = (long) Math.floor(center.getY() / cellSize);
+    int wkid = spatialReference != null ? spatialReference.getWkid() : 0;
+    return wkid + ":" + level + ":" + column + ":" + row;
+  }
+
+  private void read() {
+    if (!mFile.isFile()) {
+      return;
+    }
+    long start = System.nanoTime();
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return;
+      }
+      int count = in.readInt();
+      long now = System.currentTimeMillis();
+      for (int i = 0; i < count; i++) {
+        String key = in.readUTF();
+        long time = in.readLong();
+        int size = in.readInt();
+        List<Object> value = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          value.add(key.charAt(0) == SUGGEST ? in.readUTF() : Place.read(in));
+        }
+        if (now - time < mTimeToLiveMillis) {
+          entries.put(key, new Entry(time, Collections.unmodifiableList(value)));
+        }
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Ignoring unreadable locator cache: " + e.getMessage());
+      return;
+    }
+    synchronized (this) {
+      // anything cached since the cache was created is more recent
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        if (!mEntries.containsKey(entry.getKey())) {
+          mEntries.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    Log.i(TAG, String.format(Locale.US, "Read %d cached searches in %.1f ms", entries.size(),
+        (System.nanoTime() - start) / 1e6));
+  }
+
+  private void write(Map<String, Entry> entries) {
+    File temp = new File(mFile.getPath() + ".part");
+    long now = System.currentTimeMillis();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      List<Map.Entry<String, Entry>> live = new ArrayList<>();
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        if (now - entry.getValue().mTime < mTimeToLiveMillis) {
+          live.add(entry);
+        }
+      }
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(live.size());
+      // least recently used first, so reading entries back in order keeps their order
+      for (Map.Entry<String, Entry> entry : live) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue().mTime);
+        out.writeInt(entry.getValue().mValue.size());
+        for (Object item : entry.getValue().mValue) {
+          if (item instanceof Place) {
+            ((Place) item).write(out);
+          } else {
+            out.writeUTF((String) item);
+          }
+        }
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to save locator cache: " + e.getMessage());
+      temp.delete();
+      return;
+    }
+    if (!temp.renameTo(mFile)) {
+      temp.delete();
+      Log.w(TAG, "Unable to save locator cache");
+    }
+  }
+
+  private static final class Entry {
+    private final long mTime;
+    private final List<?> mValue;
+
+    Entry(long time, List<?> value) {
+      mTime = time;
+      mValue = value;
+    }
+  }
+
+  /**
+   * A geocoded place, with the parts of a {@link GeocodeResult} which are kept in the cache.
+   */
+  static final class Place {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+
+    private final String mLabel;
+    private final Point mDisplayLocation;
+    private final Map<String, Object> mAttributes;
+
+    Place(String label, Point displayLocation, Map<String, Object> attributes) {
+      mLabel = label;
+      mDisplayLocation = displayLocation;
+      mAttributes = attributes;
+    }
+
+    String getLabel() {
+      return mLabel;
+    }
+
+    Point getDisplayLocation() {
+      return mDisplayLocation;
+    }
+
+    Map<String, Object> getAttributes() {
+      return mAttributes;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeUTF(mLabel);
+      out.writeDouble(mDisplayLocation.getX());
+      out.writeDouble(mDisplayLocation.getY());
+      SpatialReference spatialReference = mDisplayLocation.getSpatialReference();
+      out.writeInt(spatialReference != null ? spatialReference.getWkid() : 0);
+      out.writeInt(mAttributes.size());
+      for (Map.Entry<String, Object> attribute : mAttributes.entrySet()) {
+        out.writeUTF(attribute.getKey());
+        Object value = attribute.getValue();
+        if (value == null) {
+          out.writeByte(NULL);
+        } else if (value instanceof Integer || value instanceof Short) {
+          out.writeByte(INTEGER);
+          out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+          out.writeByte(LONG);
+          out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+          out.writeByte(DOUBLE);
+          out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+          out.writeByte(BOOLEAN);
+          out.writeBoolean((Boolean) value);
+        } else {
+          out.writeByte(STRING);
+          out.writeUTF(value.toString());
+        }
+      }
+    }
+
+    static Place read(DataInputStream in) throws IOException {
+      String label = in.readUTF();
+      double x = in.readDouble();
+      double y = in.readDouble();
+      int wkid = in.readInt();
+      Point displayLocation = wkid != 0 ? new Point(x, y, SpatialReference.create(wkid)) : new Point(x, y);
+      int count = in.readInt();
+      Map<String, Object> attributes = new LinkedHashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        String name = in.readUTF();
+        byte type = in.readByte();
+        switch (type) {
+          case NULL:
+            attributes.put(name, null);
+            break;
+          case INTEGER:
+            attributes.put(name, in.readInt());
+            break;
+          case LONG:
+            attributes.put(name, in.readLong());
+            break;
+          case DOUBLE:
+            attributes.put(name, in.readDouble());
+            break;
+          case BOOLEAN:
+            attributes.put(name, in.readBoolean());
+            break;
+          case STRING:
+            attributes.put(name, in.readUTF());
+            break;
+          default:
+            throw new IOException("Unknown attribute type " + type);
+        }
+      }
+      return new Place(label, displayLocation, attributes);
+    }
+  }
+
+  /**
+   * Converts the results of a locator request to what the cache keeps.
+   */
+  private interface Converter<S, T> {
+    List<T> convert(List<S> results);
+  }
+
+  /**
+   * Future of a search, either already answered from the cache or waiting for the locator. Done listeners are called
+   * on the thread which completes the future, which for the runtime's own futures is the main thread, or straight away
+   * if the future is already done.
+   */
+  private final class CacheFuture<T> extends FutureTask<List<T>> implements ListenableFuture<List<T>> {
+
+    private final List<Runnable> mDoneListeners = new ArrayList<>();
+    private final ListenableFuture<?> mSource;
+
+    /**
+     * Creates a future answered from the cache.
+     */
+    CacheFuture(List<T> cached) {
+      super(() -> cached);
+      mSource = null;
+      run();
+    }
+
+    /**
+     * Creates a future which converts the results of a locator request and adds them to the cache.
+     */
+    <S> CacheFuture(ListenableFuture<List<S>> source, String key, Converter<S, T> converter) {
+      super(() -> {
+        throw new IllegalStateException("Completed by the locator");
+      });
+      mSource = source;
+      source.addDoneListener(() -> {
+        try {
+          List<T> value = converter.convert(source.get());
+          put(key, value);
+          set(value);
+        } catch (CancellationException e) {
+          super.cancel(false);
+        } catch (ExecutionException e) {
+          setException(e.getCause());
+        } catch (InterruptedException e) {
+          setException(e);
+        }
+      });
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (mSource != null) {
+        mSource.cancel(mayInterruptIfRunning);
+      }
+      return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public void addDoneListener(Runnable listener) {
+      synchronized (mDoneListeners) {
+        if (!isDone()) {
+          mDoneListeners.add(listener);
+          return;
+        }
+      }
+      listener.run();
+    }
+
+    @Override
+    public boolean removeDoneListener(Runnable listener) {
+      synchronized (mDoneListeners) {
+        return mDoneListeners.remove(listener);
+      }
+    }
+
+    @Override
+    protected void done() {
+      List<Runnable> listeners;
+      synchronized (mDoneListeners) {
+        listeners = new ArrayList<>(mDoneListeners);
+        mDoneListeners.clear();
+      }
+      for (Runnable listener : listeners) {
+        listener.run();
+      }
+    }
+  }
+}
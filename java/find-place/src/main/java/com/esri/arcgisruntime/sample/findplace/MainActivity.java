@@ -16,9 +16,11 @@
 
 package com.esri.arcgisruntime.sample.findplace;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
@@ -43,8 +45,10 @@ import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.Geometry;
+import com.esri.arcgisruntime.geometry.GeometryEngine;
 import com.esri.arcgisruntime.geometry.Multipoint;
 import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
@@ -59,10 +63,8 @@ import com.esri.arcgisruntime.mapping.view.MapView;
 import com.esri.arcgisruntime.mapping.view.WrapAroundMode;
 import com.esri.arcgisruntime.symbology.PictureMarkerSymbol;
 import com.esri.arcgisruntime.tasks.geocode.GeocodeParameters;
-import com.esri.arcgisruntime.tasks.geocode.GeocodeResult;
 import com.esri.arcgisruntime.tasks.geocode.LocatorTask;
 import com.esri.arcgisruntime.tasks.geocode.SuggestParameters;
-import com.esri.arcgisruntime.tasks.geocode.SuggestResult;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -72,6 +74,13 @@ public class MainActivity extends AppCompatActivity {
       Manifest.permission.ACCESS_COARSE_LOCATION };
 
   private static final String COLUMN_NAME_ADDRESS = "address";
+  // time the user must stop typing for before suggestions are requested
+  private static final long SUGGEST_DEBOUNCE_MILLIS = 250;
+  // number of searches to cache and how long to keep them
+  private static final int LOCATOR_CACHE_SIZE = 500;
+  private static final long LOCATOR_CACHE_TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(1);
+  // distance from a pin within which a tap selects it
+  private static final int IDENTIFY_TOLERANCE_DP = 10;
   private final String[] mColumnNames = { BaseColumns._ID, COLUMN_NAME_ADDRESS };
 
   private SearchView mPoiSearchView;
@@ -84,11 +93,15 @@ public class MainActivity extends AppCompatActivity {
   private MapView mMapView;
   private LocationDisplay mLocationDisplay;
   private LocatorTask mLocatorTask;
+  private LocatorCache mLocatorCache;
   private GraphicsOverlay mGraphicsOverlay;
+  private GraphicIndex mGraphicIndex;
   private SuggestParameters mPoiSuggestParameters;
   private GeocodeParameters mPoiGeocodeParameters;
   private SuggestParameters mProximitySuggestParameters;
   private GeocodeParameters mProximityGeocodeParameters;
+  private SuggestionPipeline<String> mPoiSuggestions;
+  private SuggestionPipeline<String> mProximitySuggestions;
   private PictureMarkerSymbol mPinSourceSymbol;
   private Geometry mCurrentExtentGeometry;
   private Callout mCallout;
@@ -142,6 +155,9 @@ public class MainActivity extends AppCompatActivity {
 
     // create a LocatorTask from an online service
     mLocatorTask = new LocatorTask(getString(R.string.world_geocode_service));
+    // answer repeated searches from a cache, which is kept across launches
+    mLocatorCache = new LocatorCache(mLocatorTask, LOCATOR_CACHE_SIZE, LOCATOR_CACHE_TIME_TO_LIVE_MILLIS,
+        new File(getCacheDir(), "locator.cache"));
 
     // inflate MapView from layout
     mMapView = findViewById(R.id.mapView);
@@ -177,8 +193,9 @@ public class MainActivity extends AppCompatActivity {
         mPreferredSearchProximity = mLocationDisplay.getMapLocation();
       }
     });
-    // define the graphics overlay
+    // define the graphics overlay, and index its graphics to resolve taps on the device
     mGraphicsOverlay = new GraphicsOverlay();
+    mGraphicIndex = new GraphicIndex(mGraphicsOverlay, SpatialReferences.getWebMercator());
 
     setupPoi();
     setupProximity();
@@ -195,14 +212,54 @@ public class MainActivity extends AppCompatActivity {
     mPoiGeocodeParameters = new GeocodeParameters();
     // get all attributes
     mPoiGeocodeParameters.getResultAttributeNames().add("*");
+    // use a single adapter and swap its cursor as new suggestions arrive
+    final SimpleCursorAdapter suggestionAdapter = createSuggestionAdapter();
+    mPoiSearchView.setSuggestionsAdapter(suggestionAdapter);
+    // handle a poi_suggestion being chosen
+    mPoiSearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+      @Override public boolean onSuggestionSelect(int position) {
+        return false;
+      }
+
+      @Override public boolean onSuggestionClick(int position) {
+        // get the selected row
+        MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
+        // get the row's index
+        int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
+        // get the string from the row at index
+        mPoiAddress = selectedRow.getString(selectedCursorIndex);
+        mPoiSearchView.setQuery(mPoiAddress, true);
+        return true;
+      }
+    });
+    // get suggestions from the locatorTask once the user pauses typing, searching the current map extent
+    mPoiSuggestions = new SuggestionPipeline<>(query -> {
+      mPoiSuggestParameters.setSearchArea(mCurrentExtentGeometry);
+      return mLocatorCache.suggestAsync(query, mPoiSuggestParameters);
+    }, SuggestionPipeline.mainThread(), SUGGEST_DEBOUNCE_MILLIS, new SuggestionPipeline.Listener<String>() {
+      @Override public void onSuggestions(String query, List<String> suggestions) {
+        if (!suggestions.isEmpty()) {
+          suggestionAdapter.changeCursor(createSuggestionsCursor(suggestions));
+        } else {
+          mPoiAddress = query;
+        }
+      }
+
+      @Override public void onError(String query, Exception e) {
+        Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
+      }
+    });
     mPoiSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
 
       @Override
       public boolean onQueryTextSubmit(String address) {
+        // no need for suggestions once the search has been submitted
+        mPoiSuggestions.cancel();
         // if proximity SearchView text box is empty, use the device location
         if (mProximitySearchViewEmpty) {
           mPreferredSearchProximity = mLocationDisplay.getMapLocation();
           mProximitySearchView.setQuery("Using current location...", false);
+          mProximitySuggestions.cancel();
         }
         // keep track of typed address
         mPoiAddress = address;
@@ -216,57 +273,8 @@ public class MainActivity extends AppCompatActivity {
 
       @Override
       public boolean onQueryTextChange(final String newText) {
-        // as long as newText isn't empty, get suggestions from the locatorTask
-        if (!newText.equals("")) {
-          mPoiSuggestParameters.setSearchArea(mCurrentExtentGeometry);
-          final ListenableFuture<List<SuggestResult>> suggestionsFuture = mLocatorTask
-              .suggestAsync(newText, mPoiSuggestParameters);
-          suggestionsFuture.addDoneListener(new Runnable() {
-
-            @Override public void run() {
-              try {
-                // get the results of the async operation
-                List<SuggestResult> suggestResults = suggestionsFuture.get();
-
-                if (!suggestResults.isEmpty()) {
-                  MatrixCursor suggestionsCursor = new MatrixCursor(mColumnNames);
-                  int key = 0;
-                  // add each poi_suggestion result to a new row
-                  for (SuggestResult result : suggestResults) {
-                    suggestionsCursor.addRow(new Object[] { key++, result.getLabel() });
-                  }
-                  // define SimpleCursorAdapter
-                  String[] cols = { COLUMN_NAME_ADDRESS };
-                  int[] to = { R.id.suggestion_address };
-                  final SimpleCursorAdapter suggestionAdapter = new SimpleCursorAdapter(MainActivity.this,
-                      R.layout.suggestion, suggestionsCursor, cols, to, 0);
-                  mPoiSearchView.setSuggestionsAdapter(suggestionAdapter);
-                  // handle a poi_suggestion being chosen
-                  mPoiSearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
-                    @Override public boolean onSuggestionSelect(int position) {
-                      return false;
-                    }
-
-                    @Override public boolean onSuggestionClick(int position) {
-                      // get the selected row
-                      MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
-                      // get the row's index
-                      int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
-                      // get the string from the row at index
-                      mPoiAddress = selectedRow.getString(selectedCursorIndex);
-                      mPoiSearchView.setQuery(mPoiAddress, true);
-                      return true;
-                    }
-                  });
-                } else {
-                  mPoiAddress = newText;
-                }
-              } catch (Exception e) {
-                Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
-              }
-            }
-          });
-        }
+        // request suggestions for newText, or drop any pending request if it is empty
+        mPoiSuggestions.setQuery(newText);
         return true;
       }
     });
@@ -282,8 +290,74 @@ public class MainActivity extends AppCompatActivity {
     mProximityGeocodeParameters = new GeocodeParameters();
     // get all attributes
     mProximityGeocodeParameters.getResultAttributeNames().add("*");
+    // use a single adapter and swap its cursor as new suggestions arrive
+    final SimpleCursorAdapter suggestionAdapter = createSuggestionAdapter();
+    mProximitySearchView.setSuggestionsAdapter(suggestionAdapter);
+    mProximitySearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+      @Override public boolean onSuggestionSelect(int position) {
+        return false;
+      }
+
+      @Override public boolean onSuggestionClick(int position) {
+        // get the selected row
+        MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
+        // get the row's index
+        int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
+        // get the string from the row at index
+        final String address = selectedRow.getString(selectedCursorIndex);
+        mLocatorTask.addDoneLoadingListener(() -> {
+          if (mLocatorTask.getLoadStatus() == LoadStatus.LOADED) {
+            // geocode the selected address to get location of address
+            final ListenableFuture<List<LocatorCache.Place>> geocodeFuture = mLocatorCache
+                .geocodeAsync(address, mProximityGeocodeParameters);
+            geocodeFuture.addDoneListener(() -> {
+              try {
+                // Get the results of the async operation
+                List<LocatorCache.Place> geocodeResults = geocodeFuture.get();
+                if (!geocodeResults.isEmpty()) {
+                  // use geocodeResult to focus search area
+                  LocatorCache.Place geocodeResult = geocodeResults.get(0);
+                  // update preferred search area to the geocode result
+                  mPreferredSearchProximity = geocodeResult.getDisplayLocation();
+                  mPoiGeocodeParameters.setSearchArea(mPreferredSearchProximity);
+                  // set the address string to the SearchView, but don't submit as a query
+                  mProximitySearchView.setQuery(address, false);
+                  mProximitySuggestions.cancel();
+                  // call POI search query
+                  mPoiSearchView.setQuery(mPoiAddress, true);
+                  // clear focus from search views
+                  mProximitySearchView.clearFocus();
+                  mPoiSearchView.clearFocus();
+                } else {
+                  Toast.makeText(getApplicationContext(),
+                      getString(R.string.location_not_found) + address, Toast.LENGTH_LONG).show();
+                }
+              } catch (InterruptedException | ExecutionException e) {
+                Log.e(TAG, "Geocode error: " + e.getMessage());
+                Toast.makeText(getApplicationContext(), getString(R.string.geo_locate_error),
+                    Toast.LENGTH_LONG).show();
+              }
+            });
+          }
+        });
+        return true;
+      }
+    });
+    // get suggestions from the locatorTask once the user pauses typing
+    mProximitySuggestions = new SuggestionPipeline<>(
+        query -> mLocatorCache.suggestAsync(query, mProximitySuggestParameters), SuggestionPipeline.mainThread(),
+        SUGGEST_DEBOUNCE_MILLIS, new SuggestionPipeline.Listener<String>() {
+      @Override public void onSuggestions(String query, List<String> suggestions) {
+        suggestionAdapter.changeCursor(createSuggestionsCursor(suggestions));
+      }
+
+      @Override public void onError(String query, Exception e) {
+        Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
+      }
+    });
     mProximitySearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
       @Override public boolean onQueryTextSubmit(String address) {
+        mProximitySuggestions.cancel();
         geoCodeTypedAddress(address);
         // clear focus from search views
         mPoiSearchView.clearFocus();
@@ -292,89 +366,36 @@ public class MainActivity extends AppCompatActivity {
       }
 
       @Override public boolean onQueryTextChange(String newText) {
-        // as long as newText isn't empty, get suggestions from the locatorTask
-        if (!newText.equals("")) {
-          mProximitySearchViewEmpty = false;
-          final ListenableFuture<List<SuggestResult>> suggestionsFuture = mLocatorTask
-              .suggestAsync(newText, mProximitySuggestParameters);
-          suggestionsFuture.addDoneListener(() -> {
-            try {
-              // get the list of suggestions
-              List<SuggestResult> suggestResults = suggestionsFuture.get();
-              MatrixCursor suggestionsCursor = new MatrixCursor(mColumnNames);
-              int key = 0;
-              // add each SuggestResult to a new row
-              for (SuggestResult result : suggestResults) {
-                suggestionsCursor.addRow(new Object[] { key++, result.getLabel() });
-              }
-              // define SimpleCursorAdapter
-              String[] cols = { COLUMN_NAME_ADDRESS };
-              int[] to = { R.id.suggestion_address };
-              final SimpleCursorAdapter suggestionAdapter = new SimpleCursorAdapter(MainActivity.this,
-                  R.layout.suggestion, suggestionsCursor, cols, to, 0);
-              mProximitySearchView.setSuggestionsAdapter(suggestionAdapter);
-              mProximitySearchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
-                @Override public boolean onSuggestionSelect(int position) {
-                  return false;
-                }
-
-                @Override public boolean onSuggestionClick(int position) {
-                  // get the selected row
-                  MatrixCursor selectedRow = (MatrixCursor) suggestionAdapter.getItem(position);
-                  // get the row's index
-                  int selectedCursorIndex = selectedRow.getColumnIndex(COLUMN_NAME_ADDRESS);
-                  // get the string from the row at index
-                  final String address = selectedRow.getString(selectedCursorIndex);
-                  mLocatorTask.addDoneLoadingListener(() -> {
-                    if (mLocatorTask.getLoadStatus() == LoadStatus.LOADED) {
-                      // geocode the selected address to get location of address
-                      final ListenableFuture<List<GeocodeResult>> geocodeFuture = mLocatorTask
-                          .geocodeAsync(address, mProximityGeocodeParameters);
-                      geocodeFuture.addDoneListener(() -> {
-                        try {
-                          // Get the results of the async operation
-                          List<GeocodeResult> geocodeResults = geocodeFuture.get();
-                          if (!geocodeResults.isEmpty()) {
-                            // use geocodeResult to focus search area
-                            GeocodeResult geocodeResult = geocodeResults.get(0);
-                            // update preferred search area to the geocode result
-                            mPreferredSearchProximity = geocodeResult.getDisplayLocation();
-                            mPoiGeocodeParameters.setSearchArea(mPreferredSearchProximity);
-                            // set the address string to the SearchView, but don't submit as a query
-                            mProximitySearchView.setQuery(address, false);
-                            // call POI search query
-                            mPoiSearchView.setQuery(mPoiAddress, true);
-                            // clear focus from search views
-                            mProximitySearchView.clearFocus();
-                            mPoiSearchView.clearFocus();
-                          } else {
-                            Toast.makeText(getApplicationContext(),
-                                getString(R.string.location_not_found) + address, Toast.LENGTH_LONG).show();
-                          }
-                        } catch (InterruptedException | ExecutionException e) {
-                          Log.e(TAG, "Geocode error: " + e.getMessage());
-                          Toast.makeText(getApplicationContext(), getString(R.string.geo_locate_error),
-                              Toast.LENGTH_LONG).show();
-                        }
-                      });
-                    }
-                  });
-                  return true;
-                }
-              });
-            } catch (Exception e) {
-              Log.e(TAG, "Geocode suggestion error: " + e.getMessage());
-            }
-          });
-          // if search view is empty, set flag
-        } else {
-          mProximitySearchViewEmpty = true;
-        }
+        // request suggestions for newText, or drop any pending request if it is empty
+        mProximitySuggestions.setQuery(newText);
+        // if search view is empty, set flag
+        mProximitySearchViewEmpty = newText.isEmpty();
         return true;
       }
     });
   }
 
+  /**
+   * Creates an adapter which shows the address column of a suggestions cursor.
+   */
+  private SimpleCursorAdapter createSuggestionAdapter() {
+    String[] cols = { COLUMN_NAME_ADDRESS };
+    int[] to = { R.id.suggestion_address };
+    return new SimpleCursorAdapter(this, R.layout.suggestion, null, cols, to, 0);
+  }
+
+  /**
+   * Adds each suggestion to a new row of a cursor.
+   */
+  private MatrixCursor createSuggestionsCursor(List<String> suggestions) {
+    MatrixCursor suggestionsCursor = new MatrixCursor(mColumnNames, suggestions.size());
+    int key = 0;
+    for (String label : suggestions) {
+      suggestionsCursor.addRow(new Object[] { key++, label });
+    }
+    return suggestionsCursor;
+  }
+
   /**
    * Performs a search for the POI listed in the SearchView, using the MapView's current extent to inform the search.
    */
@@ -383,13 +404,14 @@ public class MainActivity extends AppCompatActivity {
     mPreferredSearchProximity = mCurrentExtentGeometry.getExtent().getCenter();
     mPoiGeocodeParameters.setSearchArea(mCurrentExtentGeometry);
     mProximitySearchView.setQuery(getString(R.string.searching_by_area), false);
+    mProximitySuggestions.cancel();
     // use most recent POI address
     geoCodeTypedAddress(mPoiAddress);
   }
 
   /**
-   * Identifies the Graphic at the tapped point. Gets attribute of that Graphic and assigns it to a Callout, which is
-   * then displayed.
+   * Finds the Graphic at the tapped point from the index of the graphics, identifying it only where pins overlap. Gets
+   * attribute of that Graphic and assigns it to a Callout, which is then displayed.
    *
    * @param motionEvent from onSingleTapConfirmed
    */
@@ -399,39 +421,63 @@ public class MainActivity extends AppCompatActivity {
         Math.round(motionEvent.getY()));
     // convert to map point
     final Point mapPoint = mMapView.screenToLocation(screenPoint);
-    // from the graphics overlay, get graphics near the tapped location
+    if (mapPoint == null) {
+      return;
+    }
+    // bring a tap on a wrapped around copy of the world back to the graphics
+    Point tapPoint = (Point) GeometryEngine.normalizeCentralMeridian(mapPoint);
+    // find the pins whose symbol is under the tap from the index of the graphics
+    double unitsPerDp = mMapView.getUnitsPerDensityIndependentPixel();
+    double halfWidth = (mPinSourceSymbol.getWidth() / 2 + IDENTIFY_TOLERANCE_DP) * unitsPerDp;
+    double halfHeight = (mPinSourceSymbol.getHeight() / 2 + IDENTIFY_TOLERANCE_DP) * unitsPerDp;
+    List<Graphic> graphics = mGraphicIndex.query(new Envelope(tapPoint.getX() - halfWidth,
+        tapPoint.getY() - halfHeight, tapPoint.getX() + halfWidth, tapPoint.getY() + halfHeight,
+        tapPoint.getSpatialReference()));
+    if (graphics.size() <= 1) {
+      showCallout(graphics.isEmpty() ? null : graphics.get(0), mapPoint);
+      return;
+    }
+    // where pins overlap, only an identify knows which is drawn on top
     final ListenableFuture<IdentifyGraphicsOverlayResult> identifyResultsFuture = mMapView
-        .identifyGraphicsOverlayAsync(mGraphicsOverlay, screenPoint, 10, false);
+        .identifyGraphicsOverlayAsync(mGraphicsOverlay, screenPoint, IDENTIFY_TOLERANCE_DP, false);
     identifyResultsFuture.addDoneListener(() -> {
       try {
         IdentifyGraphicsOverlayResult identifyGraphicsOverlayResult = identifyResultsFuture.get();
-        List<Graphic> graphics = identifyGraphicsOverlayResult.getGraphics();
-        // if a graphic has been identified
-        if (!graphics.isEmpty()) {
-          //get the first graphic identified
-          Graphic identifiedGraphic = graphics.get(0);
-          // create a TextView for the Callout
-          TextView calloutContent = new TextView(getApplicationContext());
-          calloutContent.setTextColor(Color.BLACK);
-          // set the text of the Callout to graphic's attributes
-          calloutContent.setText(identifiedGraphic.getAttributes().get("PlaceName") + "\n"
-              + identifiedGraphic.getAttributes().get("StAddr"));
-          // get Callout and set its options: animateCallout: true, recenterMap: false, animateRecenter: false
-          mCallout = mMapView.getCallout();
-          mCallout.setShowOptions(new Callout.ShowOptions(true, false, false));
-          // set the leader position and show the callout
-          mCallout.setLocation(identifiedGraphic.computeCalloutLocation(mapPoint, mMapView));
-          mCallout.setContent(calloutContent);
-          mCallout.show();
-        } else {
-          mCallout.dismiss();
-        }
+        List<Graphic> identifiedGraphics = identifyGraphicsOverlayResult.getGraphics();
+        showCallout(identifiedGraphics.isEmpty() ? null : identifiedGraphics.get(0), mapPoint);
       } catch (Exception e) {
         Log.e(TAG, "Identify error: " + e.getMessage());
       }
     });
   }
 
+  /**
+   * Shows a Callout with the attributes of a Graphic.
+   *
+   * @param identifiedGraphic the tapped Graphic, or null to dismiss the Callout
+   * @param mapPoint          the tapped location
+   */
+  private void showCallout(Graphic identifiedGraphic, Point mapPoint) {
+    // if a graphic has been identified
+    if (identifiedGraphic != null) {
+      // create a TextView for the Callout
+      TextView calloutContent = new TextView(getApplicationContext());
+      calloutContent.setTextColor(Color.BLACK);
+      // set the text of the Callout to graphic's attributes
+      calloutContent.setText(identifiedGraphic.getAttributes().get("PlaceName") + "\n"
+          + identifiedGraphic.getAttributes().get("StAddr"));
+      // get Callout and set its options: animateCallout: true, recenterMap: false, animateRecenter: false
+      mCallout = mMapView.getCallout();
+      mCallout.setShowOptions(new Callout.ShowOptions(true, false, false));
+      // set the leader position and show the callout
+      mCallout.setLocation(identifiedGraphic.computeCalloutLocation(mapPoint, mMapView));
+      mCallout.setContent(calloutContent);
+      mCallout.show();
+    } else if (mCallout != null) {
+      mCallout.dismiss();
+    }
+  }
+
   /**
    * Geocode an address passed in by the user.
    *
@@ -447,12 +493,12 @@ public class MainActivity extends AppCompatActivity {
       mLocatorTask.addDoneLoadingListener(() -> {
         if (mLocatorTask.getLoadStatus() == LoadStatus.LOADED) {
           // Call geocodeAsync passing in an address
-          final ListenableFuture<List<GeocodeResult>> geocodeResultListenableFuture = mLocatorTask
+          final ListenableFuture<List<LocatorCache.Place>> geocodeResultListenableFuture = mLocatorCache
               .geocodeAsync(address, mPoiGeocodeParameters);
           geocodeResultListenableFuture.addDoneListener(() -> {
             try {
               // Get the results of the async operation
-              List<GeocodeResult> geocodeResults = geocodeResultListenableFuture.get();
+              List<LocatorCache.Place> geocodeResults = geocodeResultListenableFuture.get();
               if (!geocodeResults.isEmpty()) {
                 displaySearchResult(geocodeResults);
               } else {
@@ -475,12 +521,12 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Turns a list of GeocodeResults into Points and adds them to a GraphicOverlay which is then drawn on the map. The
+   * Turns a list of geocoded places into Points and adds them to a GraphicOverlay which is then drawn on the map. The
    * points are added to a multipoint used to calculate a viewpoint.
    *
    * @param geocodeResults as a list
    */
-  private void displaySearchResult(List<GeocodeResult> geocodeResults) {
+  private void displaySearchResult(List<LocatorCache.Place> geocodeResults) {
     // dismiss any callout
     if (mMapView.getCallout() != null && mMapView.getCallout().isShowing()) {
       mMapView.getCallout().dismiss();
@@ -490,7 +536,7 @@ public class MainActivity extends AppCompatActivity {
     mGraphicsOverlay.getGraphics().clear();
     // create a list of points from the geocode results
     List<Point> resultPoints = new ArrayList<>();
-    for (GeocodeResult result : geocodeResults) {
+    for (LocatorCache.Place result : geocodeResults) {
       // create graphic object for resulting location
       Point resultPoint = result.getDisplayLocation();
       Graphic resultLocGraphic = new Graphic(resultPoint, result.getAttributes(), mPinSourceSymbol);
@@ -525,6 +571,10 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onPause() {
     super.onPause();
+    Log.i(TAG, "POI suggestions: " + mPoiSuggestions);
+    Log.i(TAG, "Proximity suggestions: " + mProximitySuggestions);
+    Log.i(TAG, "Locator cache: " + mLocatorCache);
+    mLocatorCache.save();
     mMapView.pause();
   }
 
@@ -537,6 +587,10 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    mPoiSuggestions.cancel();
+    mProximitySuggestions.cancel();
+    mGraphicIndex.dispose();
+    mLocatorCache.shutdown();
     mMapView.dispose();
   }
 }
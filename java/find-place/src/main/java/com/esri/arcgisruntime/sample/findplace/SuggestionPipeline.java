@@ -0,0 +1,240 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.findplace;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+
+/**
+ * Requests suggestions as the user types, without sending a request for every keystroke.
+ *
+ * A request is only sent once the query has stopped changing for the debounce window. Sending a new request cancels
+ * the one before it, and only the results of the latest request are delivered, so suggestions for an old query can't
+ * replace those for the current one when responses arrive out of order.
+ *
+ * The pipeline is not thread safe. Queries must be set from the thread the scheduler runs tasks on, and done listeners
+ * of the suggester's futures must be called on that same thread, as they are for the runtime's own tasks.
+ *
+ * @param <T> type of a single suggestion
+ */
+final class SuggestionPipeline<T> {
+
+  /**
+   * Sends a suggest request, such as {@link com.esri.arcgisruntime.tasks.geocode.LocatorTask#suggestAsync(String)}.
+   */
+  interface Suggester<T> {
+    ListenableFuture<List<T>> suggest(String query);
+  }
+
+  /**
+   * Runs the debounced requests. {@link #mainThread()} runs them on the main thread.
+   */
+  interface Scheduler {
+    void postDelayed(Runnable task, long delayMillis);
+
+    void cancel(Runnable task);
+  }
+
+  /**
+   * Receives the results of the latest request.
+   */
+  interface Listener<T> {
+    void onSuggestions(String query, List<T> suggestions);
+
+    void onError(String query, Exception e);
+  }
+
+  private static final int LATENCY_SAMPLES = 256;
+
+  private final Suggester<T> mSuggester;
+  private final Scheduler mScheduler;
+  private final long mDebounceMillis;
+  private final Listener<T> mListener;
+  private final Runnable mSendRequest = this::sendRequest;
+
+  private String mQuery;
+  private long mQueryTimeNanos;
+  private boolean mPending;
+  private ListenableFuture<List<T>> mInFlight;
+  private long mGeneration;
+
+  private long mIssued;
+  private long mSuppressed;
+  private long mCancelled;
+  private final long[] mLatencyNanos = new long[LATENCY_SAMPLES];
+  private int mLatencyCount;
+
+  /**
+   * @param suggester      sends each request
+   * @param scheduler      runs requests once the debounce window has passed
+   * @param debounceMillis time the query must stay unchanged before a request is sent, 0 to send one immediately
+   * @param listener       receives the results of the latest request
+   */
+  SuggestionPipeline(Suggester<T> suggester, Scheduler scheduler, long debounceMillis, Listener<T> listener) {
+    mSuggester = suggester;
+    mScheduler = scheduler;
+    mDebounceMillis = debounceMillis;
+    mListener = listener;
+  }
+
+  /**
+   * @return a scheduler which runs tasks on the main thread
+   */
+  static Scheduler mainThread() {
+    Handler handler = new Handler(Looper.getMainLooper());
+    return new Scheduler() {
+      @Override public void postDelayed(Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+      }
+
+      @Override public void cancel(Runnable task) {
+        handler.removeCallbacks(task);
+      }
+    };
+  }
+
+  /**
+   * Sets the text typed by the user. A request is sent once the text stops changing for the debounce window.
+   *
+   * @param query the current text, suggestions are cleared if this is empty
+   */
+  void setQuery(String query) {
+    if (mPending) {
+      // the previous query was never sent
+      mSuppressed++;
+      mScheduler.cancel(mSendRequest);
+      mPending = false;
+    }
+    if (query == null || query.isEmpty()) {
+      cancel();
+      return;
+    }
+    mQuery = query;
+    mQueryTimeNanos = System.nanoTime();
+    mPending = true;
+    mScheduler.postDelayed(mSendRequest, mDebounceMillis);
+  }
+
+  /**
+   * Drops any query waiting to be sent and cancels the request in flight, for example once the user submits a search.
+   */
+  void cancel() {
+    if (mPending) {
+      mScheduler.cancel(mSendRequest);
+      mPending = false;
+    }
+    cancelInFlight();
+    mGeneration++;
+  }
+
+  private void sendRequest() {
+    mPending = false;
+    cancelInFlight();
+    long generation = ++mGeneration;
+    String query = mQuery;
+    long queryTimeNanos = mQueryTimeNanos;
+    ListenableFuture<List<T>> future = mSuggester.suggest(query);
+    mInFlight = future;
+    mIssued++;
+    future.addDoneListener(() -> {
+      if (generation != mGeneration) {
+        // superseded by a later request
+        return;
+      }
+      mInFlight = null;
+      try {
+        List<T> suggestions = future.get();
+        recordLatency(System.nanoTime() - queryTimeNanos);
+        mListener.onSuggestions(query, suggestions);
+      } catch (CancellationException e) {
+        // cancelled by the suggester, nothing to deliver
+      } catch (InterruptedException | ExecutionException e) {
+        mListener.onError(query, e);
+      }
+    });
+  }
+
+  private void cancelInFlight() {
+    if (mInFlight != null) {
+      if (!mInFlight.isDone()) {
+        mInFlight.cancel(true);
+        mCancelled++;
+      }
+      mInFlight = null;
+    }
+  }
+
+  private void recordLatency(long nanos) {
+    mLatencyNanos[mLatencyCount % LATENCY_SAMPLES] = nanos;
+    mLatencyCount++;
+  }
+
+  /**
+   * @return the number of requests sent
+   */
+  long getIssuedCount() {
+    return mIssued;
+  }
+
+  /**
+   * @return the number of queries replaced by a later query before their request was sent
+   */
+  long getSuppressedCount() {
+    return mSuppressed;
+  }
+
+  /**
+   * @return the number of requests cancelled by a later request before they completed
+   */
+  long getCancelledCount() {
+    return mCancelled;
+  }
+
+  /**
+   * Gets a percentile of the time from the user typing a query to its suggestions being delivered, over the most
+   * recent requests.
+   *
+   * @param percentile between 0 and 100
+   * @return the latency in milliseconds, or 0 if no suggestions have been delivered
+   */
+  long getLatencyPercentileMillis(double percentile) {
+    int count = Math.min(mLatencyCount, LATENCY_SAMPLES);
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(mLatencyNanos, count);
+    Arrays.sort(sorted);
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(count, rank) - 1)]);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%d requests, %d suppressed, %d cancelled, latency p50 %d ms, p95 %d ms", mIssued,
+        mSuppressed, mCancelled, getLatencyPercentileMillis(50), getLatencyPercentileMillis(95));
+  }
+}
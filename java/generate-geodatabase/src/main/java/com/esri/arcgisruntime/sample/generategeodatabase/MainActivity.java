@@ -16,11 +16,16 @@
 
 package com.esri.arcgisruntime.sample.generategeodatabase;
 
-import java.io.File;
-import java.util.concurrent.ExecutionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -30,7 +35,6 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-import com.esri.arcgisruntime.concurrent.Job;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.Geodatabase;
 import com.esri.arcgisruntime.data.GeodatabaseFeatureTable;
@@ -38,6 +42,7 @@ import com.esri.arcgisruntime.data.TileCache;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.layers.ArcGISTiledLayer;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.layers.GroupLayer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.Basemap;
@@ -45,14 +50,22 @@ import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
 import com.esri.arcgisruntime.symbology.SimpleLineSymbol;
-import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseJob;
-import com.esri.arcgisruntime.tasks.geodatabase.GenerateGeodatabaseParameters;
 import com.esri.arcgisruntime.tasks.geodatabase.GeodatabaseSyncTask;
 
 public class MainActivity extends AppCompatActivity {
 
   private final String TAG = MainActivity.class.getSimpleName();
 
+  // cells across and down the extent to count features in, and the most partitions to split it into
+  private static final int PARTITION_GRID_SIZE = 4;
+  private static final int MAX_PARTITIONS = 8;
+  // features below which a partition isn't split any further
+  private static final long TARGET_FEATURES_PER_PARTITION = 1000;
+  // generate jobs to run at a time, and attempts at each partition before giving up on it
+  private static final int MAX_CONCURRENT_JOBS = 3;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_MILLIS = 5000;
+
   private MapView mMapView;
 
   private TextView mProgressTextView;
@@ -60,7 +73,13 @@ public class MainActivity extends AppCompatActivity {
   
   // objects that implement Loadable must be class fields to prevent being garbage collected before loading
   private GeodatabaseSyncTask mGeodatabaseSyncTask;
-  private Geodatabase mGeodatabase;
+  private final List<Geodatabase> mGeodatabases = new ArrayList<>();
+
+  private PartitionedGeodatabaseGenerator<Geodatabase> mGeodatabaseGenerator;
+  // a layer for each table, holding the feature layers of the table in every partition's geodatabase
+  private final Map<String, GroupLayer> mGroupLayersByTableName = new HashMap<>();
+  // hides the features shown by more than one partition's layer in all but the first
+  private final PartitionLayerFilter mPartitionLayerFilter = new PartitionLayerFilter();
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -98,83 +117,131 @@ public class MainActivity extends AppCompatActivity {
         // show the progress layout
         progressBar.setProgress(0);
         mProgressLayout.setVisibility(View.VISIBLE);
+        genGeodatabaseButton.setVisibility(View.INVISIBLE);
 
-        // clear any previous operational layers and graphics if button clicked more than once
-        map.getOperationalLayers().clear();
-        graphicsOverlay.getGraphics().clear();
+        // retry only the partitions which failed, keeping those already generated
+        if (mGeodatabaseGenerator != null) {
+          mGeodatabaseGenerator.retryFailed();
+          return;
+        }
 
         // show the extent used as a graphic
         Envelope extent = mMapView.getVisibleArea().getExtent();
         Graphic boundary = new Graphic(extent, boundarySymbol);
         graphicsOverlay.getGraphics().add(boundary);
 
-        // create generate geodatabase parameters for the current extent
-        final ListenableFuture<GenerateGeodatabaseParameters> defaultParameters = mGeodatabaseSyncTask
-            .createDefaultGenerateGeodatabaseParametersAsync(extent);
-        defaultParameters.addDoneListener(() -> {
-          try {
-            // set parameters and don't include attachments
-            GenerateGeodatabaseParameters parameters = defaultParameters.get();
-            parameters.setReturnAttachments(false);
-
-            // define the local path where the geodatabase will be stored
-            final String localGeodatabasePath =
-                getCacheDir() + File.separator + getString(R.string.wildfire_geodatabase);
-
-            // create and start the job
-            final GenerateGeodatabaseJob generateGeodatabaseJob = mGeodatabaseSyncTask
-                .generateGeodatabase(parameters, localGeodatabasePath);
-            generateGeodatabaseJob.start();
-            mProgressTextView.setText(getString(R.string.progress_started));
-
-            // update progress
-            generateGeodatabaseJob.addProgressChangedListener(() -> {
-              progressBar.setProgress(generateGeodatabaseJob.getProgress());
-              mProgressTextView.setText(getString(R.string.progress_fetching));
-            });
-
-            // get geodatabase when done
-            generateGeodatabaseJob.addJobDoneListener(() -> {
+        // generate a geodatabase for each partition of the extent, several at a time
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        PartitionedGeodatabaseGenerator.Scheduler scheduler = new PartitionedGeodatabaseGenerator.Scheduler() {
+          @Override public Runnable schedule(Runnable task, long delayMillis) {
+            mainHandler.postDelayed(task, delayMillis);
+            return () -> mainHandler.removeCallbacks(task);
+          }
+
+          @Override public long nowMillis() {
+            return SystemClock.elapsedRealtime();
+          }
+        };
+        mGeodatabaseGenerator = new PartitionedGeodatabaseGenerator<>(
+            PartitionedGeodatabaseGenerator.featureServiceCounter(mGeodatabaseSyncTask, extent.getSpatialReference()),
+            PartitionedGeodatabaseGenerator.geodatabaseGenerationFactory(mGeodatabaseSyncTask,
+                extent.getSpatialReference(), getCacheDir(), getString(R.string.wildfire_geodatabase_name)),
+            scheduler, PARTITION_GRID_SIZE, MAX_PARTITIONS, TARGET_FEATURES_PER_PARTITION, MAX_CONCURRENT_JOBS,
+            MAX_ATTEMPTS, RETRY_MILLIS);
+        mGeodatabaseGenerator.setListener(new PartitionedGeodatabaseGenerator.Listener<Geodatabase>() {
+          @Override public void onPartitioned(List<PartitionedGeodatabaseGenerator.Partition<Geodatabase>> partitions) {
+            if (mGeodatabaseGenerator.getCountError() != null) {
+              Log.w(TAG, "Could not count features, partitioned by area: "
+                  + mGeodatabaseGenerator.getCountError().getMessage());
+            }
+            // outline each partition within the extent
+            SimpleLineSymbol partitionSymbol = new SimpleLineSymbol(SimpleLineSymbol.Style.DASH, Color.RED, 1);
+            for (PartitionedGeodatabaseGenerator.Partition<Geodatabase> partition : partitions) {
+              graphicsOverlay.getGraphics().add(new Graphic(new Envelope(partition.getXMin(), partition.getYMin(),
+                  partition.getXMax(), partition.getYMax(), extent.getSpatialReference()), partitionSymbol));
+            }
+            mProgressTextView.setText(getString(R.string.progress_started, partitions.size()));
+          }
+
+          @Override public void onPartitionChanged(PartitionedGeodatabaseGenerator.Partition<Geodatabase> partition) {
+            progressBar.setProgress(mGeodatabaseGenerator.getProgress());
+            if (partition.getState() == PartitionedGeodatabaseGenerator.State.SUCCEEDED) {
+              addGeodatabase(partition.getIndex(), partition.getResult());
+            } else if (partition.getState() == PartitionedGeodatabaseGenerator.State.RETRY_WAIT
+                || partition.getState() == PartitionedGeodatabaseGenerator.State.FAILED) {
+              Log.w(TAG, "Attempt " + partition.getAttempts() + " at partition " + partition.getIndex() + " failed: "
+                  + partition.getError().getMessage());
+            }
+            int succeeded = 0;
+            for (PartitionedGeodatabaseGenerator.Partition<Geodatabase> each : mGeodatabaseGenerator
+                .getPartitions()) {
+              if (each.getState() == PartitionedGeodatabaseGenerator.State.SUCCEEDED) {
+                succeeded++;
+              }
+            }
+            int partitions = mGeodatabaseGenerator.getPartitions().size();
+            mProgressTextView.setText(getString(R.string.progress_fetching, succeeded, partitions));
+            if (mGeodatabaseGenerator.isFinished()) {
               mProgressLayout.setVisibility(View.INVISIBLE);
-              if (generateGeodatabaseJob.getStatus() == Job.Status.SUCCEEDED) {
-                mGeodatabase = generateGeodatabaseJob.getResult();
-                mGeodatabase.loadAsync();
-                mGeodatabase.addDoneLoadingListener(() -> {
-                  if (mGeodatabase.getLoadStatus() == LoadStatus.LOADED) {
-                    mProgressTextView.setText(getString(R.string.progress_done));
-                    for (GeodatabaseFeatureTable geodatabaseFeatureTable : mGeodatabase
-                        .getGeodatabaseFeatureTables()) {
-                      geodatabaseFeatureTable.loadAsync();
-                      map.getOperationalLayers().add(new FeatureLayer(geodatabaseFeatureTable));
-                    }
-                    genGeodatabaseButton.setVisibility(View.GONE);
-                    Log.i(TAG, "Local geodatabase stored at: " + localGeodatabasePath);
-                  } else {
-                    Log.e(TAG, "Error loading geodatabase: " + mGeodatabase.getLoadError().getMessage());
-                  }
-                });
-                // unregister since we're not syncing
-                ListenableFuture unregisterGeodatabase = mGeodatabaseSyncTask.unregisterGeodatabaseAsync(mGeodatabase);
-                unregisterGeodatabase.addDoneListener(() -> {
-                  Log.i(TAG, "Geodatabase unregistered since we wont be editing it in this sample.");
-                  Toast.makeText(MainActivity.this,
-                      "Geodatabase unregistered since we wont be editing it in this sample.",
-                      Toast.LENGTH_LONG).show();
-                });
-              } else if (generateGeodatabaseJob.getError() != null) {
-                Log.e(TAG, "Error generating geodatabase: " + generateGeodatabaseJob.getError().getMessage());
+              Log.i(TAG, "Generated geodatabases: " + mGeodatabaseGenerator);
+              if (succeeded < partitions) {
+                // let the user retry the partitions which failed
+                Toast.makeText(MainActivity.this, getString(R.string.partitions_failed, partitions - succeeded),
+                    Toast.LENGTH_LONG).show();
+                genGeodatabaseButton.setText(R.string.retry_partitions_button_text);
+                genGeodatabaseButton.setVisibility(View.VISIBLE);
               } else {
-                Log.e(TAG, "Unknown Error generating geodatabase");
+                mProgressTextView.setText(getString(R.string.progress_done));
+                Toast.makeText(MainActivity.this,
+                    "Geodatabases unregistered since we wont be editing them in this sample.",
+                    Toast.LENGTH_LONG).show();
               }
-            });
-          } catch (InterruptedException | ExecutionException e) {
-            Log.e(TAG, "Error generating geodatabase parameters : " + e.getMessage());
+            }
           }
         });
+        mProgressTextView.setText(getString(R.string.progress_counting));
+        mGeodatabaseGenerator.generate(extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax());
       });
     });
   }
 
+  /**
+   * Loads the geodatabase of a partition and adds the feature layers of its tables to the group layers of the tables,
+   * so each table shows as a single layer however many partitions it's split across. Features which cross the border
+   * between partitions are only shown by the layer of the first partition they're in.
+   *
+   * @param partitionIndex index of the partition
+   * @param geodatabase    the generated geodatabase of the partition
+   */
+  private void addGeodatabase(int partitionIndex, Geodatabase geodatabase) {
+    mGeodatabases.add(geodatabase);
+    geodatabase.loadAsync();
+    geodatabase.addDoneLoadingListener(() -> {
+      if (geodatabase.getLoadStatus() == LoadStatus.LOADED) {
+        for (GeodatabaseFeatureTable geodatabaseFeatureTable : geodatabase.getGeodatabaseFeatureTables()) {
+          geodatabaseFeatureTable.loadAsync();
+          GroupLayer groupLayer = mGroupLayersByTableName.get(geodatabaseFeatureTable.getTableName());
+          if (groupLayer == null) {
+            groupLayer = new GroupLayer();
+            groupLayer.setName(geodatabaseFeatureTable.getTableName());
+            mGroupLayersByTableName.put(geodatabaseFeatureTable.getTableName(), groupLayer);
+            mMapView.getMap().getOperationalLayers().add(groupLayer);
+          }
+          FeatureLayer featureLayer = new FeatureLayer(geodatabaseFeatureTable);
+          groupLayer.getLayers().add(featureLayer);
+          mPartitionLayerFilter.add(partitionIndex, featureLayer);
+        }
+        Log.i(TAG, "Local geodatabase stored at: " + geodatabase.getPath());
+      } else {
+        Log.e(TAG, "Error loading geodatabase: " + geodatabase.getLoadError().getMessage());
+      }
+    });
+    // unregister since we're not syncing
+    ListenableFuture unregisterGeodatabase = mGeodatabaseSyncTask.unregisterGeodatabaseAsync(geodatabase);
+    unregisterGeodatabase.addDoneListener(
+        () -> Log.i(TAG, "Geodatabase unregistered since we wont be editing it in this sample."));
+  }
+
   @Override
   protected void onPause() {
     super.onPause();
@@ -189,6 +256,10 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    if (mGeodatabaseGenerator != null) {
+      Log.i(TAG, "Generated geodatabases: " + mGeodatabaseGenerator);
+      mGeodatabaseGenerator.cancel();
+    }
     super.onDestroy();
     mMapView.dispose();
   }
@@ -0,0 +1,123 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.generategeodatabase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import android.util.Log;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.GeodatabaseFeatureTable;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
+
+/**
+ * Hides the features of a partition's layer which the layer of the same table in an earlier partition already shows,
+ * so a feature crossing the border between partitions is drawn, and can be selected, once. Features are matched by
+ * ObjectID, which the geodatabases generated from the same feature service share. They are only hidden by the
+ * definition expressions of the layers, and stay in each geodatabase.
+ */
+final class PartitionLayerFilter {
+
+  private static final String TAG = PartitionLayerFilter.class.getSimpleName();
+
+  /**
+   * A partition's layer of a table, and the ObjectIDs in it.
+   */
+  private static final class PartitionLayer {
+    private final FeatureLayer mFeatureLayer;
+    private final String mObjectIdField;
+    private final Set<Long> mObjectIds;
+
+    private PartitionLayer(FeatureLayer featureLayer, String objectIdField, Set<Long> objectIds) {
+      mFeatureLayer = featureLayer;
+      mObjectIdField = objectIdField;
+      mObjectIds = objectIds;
+    }
+  }
+
+  // the layers of each table, by table name and partition index
+  private final Map<String, SortedMap<Integer, PartitionLayer>> mLayersByTableName = new HashMap<>();
+
+  /**
+   * Reads the ObjectIDs of a partition's layer once its table has loaded, then hides the features of the layer shown by
+   * earlier partitions, and those of later partitions' layers which this one shows. A layer whose ObjectIDs can't be
+   * read shows all its features.
+   *
+   * @param partitionIndex index of the partition, which orders the partitions
+   * @param featureLayer   layer of a table of the partition's geodatabase
+   */
+  void add(int partitionIndex, FeatureLayer featureLayer) {
+    GeodatabaseFeatureTable geodatabaseFeatureTable = (GeodatabaseFeatureTable) featureLayer.getFeatureTable();
+    geodatabaseFeatureTable.addDoneLoadingListener(() -> {
+      if (geodatabaseFeatureTable.getLoadStatus() != LoadStatus.LOADED) {
+        return;
+      }
+      String objectIdField = geodatabaseFeatureTable.getObjectIdField();
+      QueryParameters queryParameters = new QueryParameters();
+      queryParameters.setWhereClause("1=1");
+      queryParameters.setReturnGeometry(false);
+      ListenableFuture<FeatureQueryResult> queryResultFuture = geodatabaseFeatureTable
+          .queryFeaturesAsync(queryParameters);
+      queryResultFuture.addDoneListener(() -> {
+        Set<Long> objectIds = new HashSet<>();
+        try {
+          for (Feature feature : queryResultFuture.get()) {
+            objectIds.add(((Number) feature.getAttributes().get(objectIdField)).longValue());
+          }
+        } catch (Exception e) {
+          Log.e(TAG, "Could not read the ObjectIDs of " + geodatabaseFeatureTable.getTableName() + " in partition "
+              + partitionIndex + ": " + e.getMessage());
+          return;
+        }
+        SortedMap<Integer, PartitionLayer> layers = mLayersByTableName.get(geodatabaseFeatureTable.getTableName());
+        if (layers == null) {
+          layers = new TreeMap<>();
+          mLayersByTableName.put(geodatabaseFeatureTable.getTableName(), layers);
+        }
+        layers.put(partitionIndex, new PartitionLayer(featureLayer, objectIdField, objectIds));
+        updateDefinitionExpressions(layers);
+      });
+    });
+  }
+
+  /**
+   * Hides the features of each layer which are in the layer of an earlier partition.
+   */
+  private static void updateDefinitionExpressions(SortedMap<Integer, PartitionLayer> layers) {
+    Set<Long> shown = new HashSet<>();
+    for (PartitionLayer layer : layers.values()) {
+      StringBuilder hidden = new StringBuilder();
+      for (long objectId : layer.mObjectIds) {
+        if (shown.contains(objectId)) {
+          hidden.append(hidden.length() == 0 ? "" : ",").append(objectId);
+        }
+      }
+      layer.mFeatureLayer.setDefinitionExpression(
+          hidden.length() == 0 ? "" : layer.mObjectIdField + " NOT IN (" + hidden + ")");
+      shown.addAll(layer.mObjectIds);
+    }
+  }
+}
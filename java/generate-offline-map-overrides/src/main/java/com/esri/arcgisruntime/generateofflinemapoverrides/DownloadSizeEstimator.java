@@ -0,0 +1,498 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.generateofflinemapoverrides;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Estimates the size of an offline map before it is generated, from the basemap levels and area of interest of its
+ * export tile cache parameters and the layer options of its generate geodatabase parameters.
+ *
+ * The tiles of each level which intersect the area of interest, buffered by a distance, are counted from the
+ * basemap's tiling scheme. These are multiplied by the average size of a few tiles of the level, sampled from the
+ * basemap's service. The features of each layer which match its where clause, within the area of interest if the
+ * layer is cropped to it, are counted and multiplied by an estimated size per feature. Only the basemap's area of
+ * interest is buffered, as in the parameter overrides.
+ *
+ * Tile sizes and feature counts come from a {@link TileSizeSampler} and a {@link FeatureCounter}, and are cached, so
+ * the estimate can be updated on every change to the parameters. An estimate is given straight away from what is
+ * known, with a default tile size for levels not yet sampled, and again as samples and counts arrive. Must be used
+ * from a single thread, which the sampler and counter call back on.
+ */
+final class DownloadSizeEstimator {
+
+  // time to wait for a sampled tile to connect and to read, so a stalled request doesn't hold up the samples behind it
+  private static final int TILE_TIMEOUT_MILLIS = 10_000;
+
+  /**
+   * The origin, tile size and resolution of each level of a tiled layer.
+   */
+  static final class TilingScheme {
+    private final double mOriginX;
+    private final double mOriginY;
+    private final int mTileWidth;
+    private final int mTileHeight;
+    private final Map<Integer, Double> mResolutions;
+
+    /**
+     * @param originX     x of the top left corner of the tiling scheme, in map units
+     * @param originY     y of the top left corner of the tiling scheme, in map units
+     * @param tileWidth   width of a tile in pixels
+     * @param tileHeight  height of a tile in pixels
+     * @param resolutions map units per pixel of each level, by level ID
+     */
+    TilingScheme(double originX, double originY, int tileWidth, int tileHeight, Map<Integer, Double> resolutions) {
+      mOriginX = originX;
+      mOriginY = originY;
+      mTileWidth = tileWidth;
+      mTileHeight = tileHeight;
+      mResolutions = new HashMap<>(resolutions);
+    }
+  }
+
+  /**
+   * A layer to be taken offline.
+   */
+  static final class LayerRequest {
+    private final String mName;
+    private final String mWhereClause;
+    private final boolean mCropToArea;
+    private final long mBytesPerFeature;
+
+    /**
+     * @param name            of the layer
+     * @param whereClause     features of the layer to take offline
+     * @param cropToArea      whether only features within the area of interest are taken offline
+     * @param bytesPerFeature estimated size of a feature of the layer once offline
+     */
+    LayerRequest(String name, String whereClause, boolean cropToArea, long bytesPerFeature) {
+      mName = name;
+      mWhereClause = whereClause;
+      mCropToArea = cropToArea;
+      mBytesPerFeature = bytesPerFeature;
+    }
+
+    String getName() {
+      return mName;
+    }
+
+    String getWhereClause() {
+      return mWhereClause;
+    }
+
+    boolean isCropToArea() {
+      return mCropToArea;
+    }
+  }
+
+  /**
+   * An estimate of the size of an offline map.
+   */
+  static final class Estimate {
+    private final long mTileCount;
+    private final long mTileBytes;
+    private final long mFeatureCount;
+    private final long mFeatureBytes;
+    private final boolean mComplete;
+
+    private Estimate(long tileCount, long tileBytes, long featureCount, long featureBytes, boolean complete) {
+      mTileCount = tileCount;
+      mTileBytes = tileBytes;
+      mFeatureCount = featureCount;
+      mFeatureBytes = featureBytes;
+      mComplete = complete;
+    }
+
+    long getTileCount() {
+      return mTileCount;
+    }
+
+    long getFeatureCount() {
+      return mFeatureCount;
+    }
+
+    long getTotalBytes() {
+      return mTileBytes + mFeatureBytes;
+    }
+
+    /**
+     * @return false while tile sizes or feature counts the estimate depends on are still being fetched
+     */
+    boolean isComplete() {
+      return mComplete;
+    }
+  }
+
+  /**
+   * Fetches a tile of the basemap to find its size.
+   */
+  interface TileSizeSampler {
+    void sample(int level, long row, long column, SizeCallback callback);
+  }
+
+  /**
+   * Receives the size of a tile, or 0 if the tile doesn't exist.
+   */
+  interface SizeCallback {
+    void onSize(long bytes);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Counts the features of a layer matching its where clause, within an area if the layer is cropped to it.
+   */
+  interface FeatureCounter {
+    void count(LayerRequest layer, double xMin, double yMin, double xMax, double yMax, CountCallback callback);
+  }
+
+  /**
+   * Receives a count of features.
+   */
+  interface CountCallback {
+    void onCount(long count);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Is given each estimate.
+   */
+  interface Listener {
+    void onEstimate(Estimate estimate);
+  }
+
+  private final TilingScheme mTilingScheme;
+  private final TileSizeSampler mTileSizeSampler;
+  private final FeatureCounter mFeatureCounter;
+  private final long mDefaultTileBytes;
+  private final int mSamplesPerLevel;
+  private Listener mListener;
+
+  // the parameters last estimated
+  private double mXMin;
+  private double mYMin;
+  private double mXMax;
+  private double mYMax;
+  private double mBuffer;
+  private int mMinLevel;
+  private int mMaxLevel;
+  private List<LayerRequest> mLayers;
+
+  private final Map<Integer, Long> mAverageTileBytes = new HashMap<>();
+  private final Set<Integer> mLevelsSampling = new HashSet<>();
+  private final Map<String, Long> mFeatureCounts = new HashMap<>();
+  // the count being made of each layer, by layer name
+  private final Map<String, String> mCountsInFlight = new HashMap<>();
+  private boolean mUpdating;
+  private boolean mUpdatePending;
+
+  private int mEstimates;
+  private int mTilesSampled;
+  private int mCountsMade;
+  private int mCountHits;
+
+  /**
+   * @param tilingScheme     of the basemap
+   * @param tileSizeSampler  fetches tiles of the basemap
+   * @param featureCounter   counts features of the layers
+   * @param defaultTileBytes size of a tile of a level which hasn't been sampled
+   * @param samplesPerLevel  number of tiles to sample at each level
+   */
+  DownloadSizeEstimator(TilingScheme tilingScheme, TileSizeSampler tileSizeSampler, FeatureCounter featureCounter,
+      long defaultTileBytes, int samplesPerLevel) {
+    mTilingScheme = tilingScheme;
+    mTileSizeSampler = tileSizeSampler;
+    mFeatureCounter = featureCounter;
+    mDefaultTileBytes = defaultTileBytes;
+    mSamplesPerLevel = samplesPerLevel;
+  }
+
+  /**
+   * Creates a sampler which fetches tiles from an ArcGIS tiled map service over HTTP, on a background executor, and
+   * calls back on a callback executor. A tile which doesn't arrive within a timeout is reported as an error.
+   *
+   * @param serviceUrl       of the map service
+   * @param executor         executor the tiles are fetched on
+   * @param callbackExecutor executor the callbacks are run on
+   */
+  static TileSizeSampler mapServiceTileSizeSampler(String serviceUrl, Executor executor, Executor callbackExecutor) {
+    return (level, row, column, callback) -> executor.execute(() -> {
+      HttpURLConnection connection = null;
+      try {
+        connection = (HttpURLConnection) new URL(serviceUrl + "/tile/" + level + "/" + row + "/" + column)
+            .openConnection();
+        connection.setConnectTimeout(TILE_TIMEOUT_MILLIS);
+        connection.setReadTimeout(TILE_TIMEOUT_MILLIS);
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          // tiles without data aren't exported
+          callbackExecutor.execute(() -> callback.onSize(0));
+          return;
+        }
+        long bytes = 0;
+        try (InputStream inputStream = connection.getInputStream()) {
+          byte[] buffer = new byte[8192];
+          int read;
+          while ((read = inputStream.read(buffer)) != -1) {
+            bytes += read;
+          }
+        }
+        long size = bytes;
+        callbackExecutor.execute(() -> callback.onSize(size));
+      } catch (IOException e) {
+        callbackExecutor.execute(() -> callback.onError(e));
+      } finally {
+        if (connection != null) {
+          connection.disconnect();
+        }
+      }
+    });
+  }
+
+  void setListener(Listener listener) {
+    mListener = listener;
+  }
+
+  /**
+   * Estimates the size of an offline map, giving the estimate to the listener straight away and again as tile sizes
+   * and feature counts it depends on arrive.
+   *
+   * @param xMin     of the area of interest, before buffering
+   * @param yMin     of the area of interest, before buffering
+   * @param xMax     of the area of interest, before buffering
+   * @param yMax     of the area of interest, before buffering
+   * @param buffer   distance the basemap's area of interest is buffered by, in map units
+   * @param minLevel first level ID of the basemap to take offline
+   * @param maxLevel level ID after the last to take offline
+   * @param layers   the layers to take offline
+   */
+  void estimate(double xMin, double yMin, double xMax, double yMax, double buffer, int minLevel, int maxLevel,
+      List<LayerRequest> layers) {
+    mXMin = xMin;
+    mYMin = yMin;
+    mXMax = xMax;
+    mYMax = yMax;
+    mBuffer = buffer;
+    mMinLevel = minLevel;
+    mMaxLevel = maxLevel;
+    mLayers = new ArrayList<>(layers);
+    update();
+  }
+
+  /**
+   * Counts the tiles of a level which intersect an area buffered by a distance. A tile intersects the buffered area
+   * when its distance from the area is no more than the buffer, so the corners of the buffered area are rounded, as
+   * those of a geometry buffered by GeometryEngine are.
+   *
+   * @return the number of tiles, or 0 if the tiling scheme has no such level
+   */
+  static long countTiles(TilingScheme tilingScheme, int level, double xMin, double yMin, double xMax, double yMax,
+      double buffer) {
+    Double resolution = tilingScheme.mResolutions.get(level);
+    if (resolution == null || xMax < xMin || yMax < yMin) {
+      return 0;
+    }
+    double tileWidth = resolution * tilingScheme.mTileWidth;
+    double tileHeight = resolution * tilingScheme.mTileHeight;
+    // rows count down from the origin
+    long firstRow = (long) Math.floor((tilingScheme.mOriginY - (yMax + buffer)) / tileHeight);
+    long lastRow = (long) Math.floor((tilingScheme.mOriginY - (yMin - buffer)) / tileHeight);
+    long count = 0;
+    for (long row = firstRow; row <= lastRow; row++) {
+      double tileTop = tilingScheme.mOriginY - row * tileHeight;
+      double tileBottom = tileTop - tileHeight;
+      double dy = Math.max(0, Math.max(yMin - tileTop, tileBottom - yMax));
+      if (dy > buffer) {
+        continue;
+      }
+      double dx = Math.sqrt(buffer * buffer - dy * dy);
+      long firstColumn = (long) Math.floor((xMin - dx - tilingScheme.mOriginX) / tileWidth);
+      long lastColumn = (long) Math.floor((xMax + dx - tilingScheme.mOriginX) / tileWidth);
+      count += lastColumn - firstColumn + 1;
+    }
+    return count;
+  }
+
+  /**
+   * Estimates the size again, once any estimate being made has been, for samples and counts which arrive while the
+   * estimate is being made.
+   */
+  private void update() {
+    if (mLayers == null) {
+      return;
+    }
+    if (mUpdating) {
+      mUpdatePending = true;
+      return;
+    }
+    mUpdating = true;
+    try {
+      do {
+        mUpdatePending = false;
+        estimateFromKnown();
+      } while (mUpdatePending);
+    } finally {
+      mUpdating = false;
+    }
+  }
+
+  /**
+   * Estimates the size from the tile sizes and feature counts known, and starts fetching those which are missing.
+   */
+  private void estimateFromKnown() {
+    boolean complete = true;
+    long tileCount = 0;
+    long tileBytes = 0;
+    for (int level = mMinLevel; level < mMaxLevel; level++) {
+      long levelTiles = countTiles(mTilingScheme, level, mXMin, mYMin, mXMax, mYMax, mBuffer);
+      if (levelTiles == 0) {
+        continue;
+      }
+      Long averageTileBytes = mAverageTileBytes.get(level);
+      if (averageTileBytes == null) {
+        complete = false;
+        averageTileBytes = mDefaultTileBytes;
+        sampleLevel(level);
+      }
+      tileCount += levelTiles;
+      tileBytes += levelTiles * averageTileBytes;
+    }
+    long featureCount = 0;
+    long featureBytes = 0;
+    for (LayerRequest layer : mLayers) {
+      String key = countKey(layer);
+      Long count = mFeatureCounts.get(key);
+      if (count == null) {
+        complete = false;
+        countFeatures(layer, key);
+      } else {
+        mCountHits++;
+        featureCount += count;
+        featureBytes += count * layer.mBytesPerFeature;
+      }
+    }
+    mEstimates++;
+    if (mListener != null) {
+      mListener.onEstimate(new Estimate(tileCount, tileBytes, featureCount, featureBytes, complete));
+    }
+  }
+
+  /**
+   * Samples tiles spread across the area of interest at a level, and records their average size.
+   */
+  private void sampleLevel(int level) {
+    if (!mLevelsSampling.add(level)) {
+      return;
+    }
+    Double resolution = mTilingScheme.mResolutions.get(level);
+    double tileWidth = resolution * mTilingScheme.mTileWidth;
+    double tileHeight = resolution * mTilingScheme.mTileHeight;
+    // the tiles at points along the diagonal of the area, starting from its centre
+    Set<List<Long>> tiles = new LinkedHashSet<>();
+    for (int i = 0; i < mSamplesPerLevel; i++) {
+      double fraction = 0.5 + (i % 2 == 0 ? 1 : -1) * ((i + 1) / 2) / (2.0 * mSamplesPerLevel);
+      double x = mXMin + (mXMax - mXMin) * fraction;
+      double y = mYMin + (mYMax - mYMin) * fraction;
+      long row = (long) Math.floor((mTilingScheme.mOriginY - y) / tileHeight);
+      long column = (long) Math.floor((x - mTilingScheme.mOriginX) / tileWidth);
+      List<Long> tile = new ArrayList<>();
+      tile.add(row);
+      tile.add(column);
+      tiles.add(tile);
+    }
+    final long[] totalBytes = new long[1];
+    final int[] sampled = new int[1];
+    final int[] remaining = { tiles.size() };
+    for (List<Long> tile : tiles) {
+      mTileSizeSampler.sample(level, tile.get(0), tile.get(1), new SizeCallback() {
+        @Override public void onSize(long bytes) {
+          mTilesSampled++;
+          totalBytes[0] += bytes;
+          sampled[0]++;
+          onSampleDone();
+        }
+
+        @Override public void onError(Exception e) {
+          onSampleDone();
+        }
+
+        private void onSampleDone() {
+          if (--remaining[0] > 0) {
+            return;
+          }
+          // keep the default for a level whose tiles couldn't be fetched, rather than fetching them again
+          mAverageTileBytes.put(level, sampled[0] > 0 ? totalBytes[0] / sampled[0] : mDefaultTileBytes);
+          mLevelsSampling.remove(level);
+          update();
+        }
+      });
+    }
+  }
+
+  /**
+   * Counts the features of a layer for the parameters estimated, unless a count of the layer is already being made,
+   * in which case the latest parameters are counted once it is done.
+   */
+  private void countFeatures(LayerRequest layer, String key) {
+    if (mCountsInFlight.containsKey(layer.mName)) {
+      return;
+    }
+    mCountsInFlight.put(layer.mName, key);
+    mCountsMade++;
+    mFeatureCounter.count(layer, mXMin, mYMin, mXMax, mYMax, new CountCallback() {
+      @Override public void onCount(long count) {
+        mCountsInFlight.remove(layer.mName);
+        mFeatureCounts.put(key, count);
+        update();
+      }
+
+      @Override public void onError(Exception e) {
+        mCountsInFlight.remove(layer.mName);
+        // count the layer as empty rather than counting it again
+        mFeatureCounts.put(key, 0L);
+        update();
+      }
+    });
+  }
+
+  private String countKey(LayerRequest layer) {
+    String area = layer.mCropToArea ? String
+        .format(Locale.US, "%.0f %.0f %.0f %.0f", mXMin, mYMin, mXMax, mYMax) : "all";
+    return layer.mName + "\t" + layer.mWhereClause + "\t" + area;
+  }
+
+  /**
+   * @return the estimates made, tiles sampled, and feature counts made and reused
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%d estimates, %d tiles sampled over %d levels, %d feature counts made, %d reused",
+        mEstimates, mTilesSampled, mAverageTileBytes.size(), mCountsMade, mCountHits);
+  }
+}
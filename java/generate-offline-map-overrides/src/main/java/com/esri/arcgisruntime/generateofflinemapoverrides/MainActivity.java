@@ -17,9 +17,15 @@
 package com.esri.arcgisruntime.generateofflinemapoverrides;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import android.Manifest;
 import android.app.AlertDialog;
@@ -28,10 +34,13 @@ import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.appcompat.app.AppCompatActivity;
+import android.text.format.Formatter;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -42,15 +51,20 @@ import android.widget.Toast;
 
 import com.esri.arcgisruntime.concurrent.Job;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.arcgisservices.LevelOfDetail;
+import com.esri.arcgisruntime.arcgisservices.TileInfo;
+import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.GeometryEngine;
 import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.layers.ArcGISTiledLayer;
 import com.esri.arcgisruntime.layers.FeatureLayer;
 import com.esri.arcgisruntime.layers.Layer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.LayerList;
+import com.esri.arcgisruntime.mapping.MobileMapPackage;
 import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
@@ -73,11 +87,30 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  private static final long OFFLINE_CONTENT_QUOTA_BYTES = 1024L * 1024 * 1024;
+
+  // size of a basemap tile until tiles of its level have been sampled, and the number to sample
+  private static final long DEFAULT_TILE_BYTES = 20 * 1024;
+  private static final int TILE_SAMPLES_PER_LEVEL = 3;
+  // rough sizes of a feature in a mobile geodatabase, with its attributes and index entries
+  private static final long POINT_FEATURE_BYTES = 300;
+  private static final long POLYLINE_FEATURE_BYTES = 1000;
+  private static final long POLYGON_FEATURE_BYTES = 2000;
+
+  // the store belongs to the process rather than the activity, so a job still writing to it when the activity is
+  // recreated keeps its reservation, and the index has a single writer
+  private static OfflineContentStore sOfflineContentStore;
+
   private Button mGenerateOfflineMapOverridesButton;
   private MapView mMapView;
   private GraphicsOverlay mGraphicsOverlay;
   private Graphic mDownloadArea;
   private GenerateOfflineMapParameterOverrides mParameterOverrides;
+  // key of the stored offline map shown, which is pinned in the store while it is
+  private String mShownKey;
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private ExecutorService mTileSampleExecutor;
+  private DownloadSizeEstimator mDownloadSizeEstimator;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -87,6 +120,12 @@ public class MainActivity extends AppCompatActivity {
     // access MapView from layout
     mMapView = findViewById(R.id.mapView);
 
+    // keep offline maps taken earlier, so they can be opened again without generating them
+    if (sOfflineContentStore == null) {
+      sOfflineContentStore = new OfflineContentStore(new File(getCacheDir(), "offlineMaps"),
+          OFFLINE_CONTENT_QUOTA_BYTES);
+    }
+
     // access button to take the map offline and disable it until map is loaded
     mGenerateOfflineMapOverridesButton = findViewById(R.id.generateOfflineMapOverridesButton);
     mGenerateOfflineMapOverridesButton.setEnabled(false);
@@ -173,10 +212,13 @@ public class MainActivity extends AppCompatActivity {
     TextView currMinScaleTextView = overrideParametersView.findViewById(R.id.currMinScaleTextView);
     TextView currMaxScaleTextView = overrideParametersView.findViewById(R.id.currMaxScaleTextview);
 
+    // update the estimated download size whenever a parameter changes
+    Runnable estimateDownloadSize = () -> estimateDownloadSize(overrideParametersView);
+
     SeekBar minScaleSeekBar = buildSeekBar(overrideParametersView.findViewById(R.id.minScaleSeekBar),
-        currMinScaleTextView, 22, 15);
+        currMinScaleTextView, 22, 15, estimateDownloadSize);
     SeekBar maxScaleSeekBar = buildSeekBar(overrideParametersView.findViewById(R.id.maxScaleSeekBar),
-        currMaxScaleTextView, 23, 20);
+        currMaxScaleTextView, 23, 20, estimateDownloadSize);
     minScaleSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
       @Override public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
         currMinScaleTextView.setText(String.valueOf(progress));
@@ -185,6 +227,7 @@ public class MainActivity extends AppCompatActivity {
           currMaxScaleTextView.setText(String.valueOf(progress + 1));
           maxScaleSeekBar.setProgress(progress + 1);
         }
+        estimateDownloadSize.run();
       }
 
       @Override public void onStartTrackingTouch(SeekBar seekBar) {
@@ -201,6 +244,7 @@ public class MainActivity extends AppCompatActivity {
           currMinScaleTextView.setText(String.valueOf(progress - 1));
           minScaleSeekBar.setProgress(progress - 1);
         }
+        estimateDownloadSize.run();
       }
 
       @Override public void onStartTrackingTouch(SeekBar seekBar) {
@@ -213,19 +257,22 @@ public class MainActivity extends AppCompatActivity {
     // extent buffer seek bar
     SeekBar extentBufferDistanceSeekBar = buildSeekBar(
         overrideParametersView.findViewById(R.id.extentBufferDistanceSeekBar),
-        overrideParametersView.findViewById(R.id.currExtentBufferDistanceTextView), 500, 300);
+        overrideParametersView.findViewById(R.id.currExtentBufferDistanceTextView), 500, 300, estimateDownloadSize);
 
     // include layers checkboxes
     CheckBox systemValves = overrideParametersView.findViewById(R.id.systemValvesCheckBox);
     CheckBox serviceConnections = overrideParametersView.findViewById(R.id.serviceConnectionsCheckBox);
+    systemValves.setOnCheckedChangeListener((buttonView, isChecked) -> estimateDownloadSize.run());
+    serviceConnections.setOnCheckedChangeListener((buttonView, isChecked) -> estimateDownloadSize.run());
 
     // min hydrant flow rate seek bar
     SeekBar minHydrantFlowRateSeekBar = buildSeekBar(
         overrideParametersView.findViewById(R.id.minHydrantFlowRateSeekBar),
-        overrideParametersView.findViewById(R.id.currMinHydrantFlowRateTextView), 2000, 500);
+        overrideParametersView.findViewById(R.id.currMinHydrantFlowRateTextView), 2000, 500, estimateDownloadSize);
 
     // crop layer to extent checkbox
     CheckBox waterPipes = overrideParametersView.findViewById(R.id.waterPipesCheckBox);
+    waterPipes.setOnCheckedChangeListener((buttonView, isChecked) -> estimateDownloadSize.run());
 
     // setup dialog
     AlertDialog.Builder overrideParametersDialogBuilder = new AlertDialog.Builder(this);
@@ -238,16 +285,181 @@ public class MainActivity extends AppCompatActivity {
             (dialog, which) -> {
               // re-create download area geometry in case user hasn't changed the Viewpoint
               mDownloadArea.setGeometry(createDownloadAreaGeometry());
-              defineParameters(minScaleSeekBar.getProgress(), maxScaleSeekBar.getProgress(),
+              takeMapOffline(minScaleSeekBar.getProgress(), maxScaleSeekBar.getProgress(),
                   extentBufferDistanceSeekBar.getProgress(), systemValves.isChecked(), serviceConnections.isChecked(),
                   minHydrantFlowRateSeekBar.getProgress(), waterPipes.isChecked());
             })
         .show();
+
+    estimateDownloadSize.run();
+  }
+
+  /**
+   * Estimates the size of the offline map with the parameters in the override parameters dialog, and shows it in the
+   * dialog, updating it as tile sizes and feature counts arrive.
+   *
+   * @param overrideParametersView the content of the override parameters dialog
+   */
+  private void estimateDownloadSize(View overrideParametersView) {
+    TextView downloadSizeTextView = overrideParametersView.findViewById(R.id.downloadSizeEstimateTextView);
+    DownloadSizeEstimator downloadSizeEstimator = getDownloadSizeEstimator();
+    Envelope downloadArea = createDownloadAreaGeometry();
+    if (downloadSizeEstimator == null || downloadArea == null) {
+      downloadSizeTextView.setText(R.string.download_size_unavailable);
+      return;
+    }
+    downloadSizeEstimator.setListener(estimate -> downloadSizeTextView.setText(
+        getString(estimate.isComplete() ? R.string.download_size_estimate : R.string.download_size_estimating,
+            Formatter.formatShortFileSize(this, estimate.getTotalBytes()), estimate.getTileCount(),
+            estimate.getFeatureCount())));
+    downloadSizeEstimator.estimate(downloadArea.getXMin(), downloadArea.getYMin(), downloadArea.getXMax(),
+        downloadArea.getYMax(),
+        ((SeekBar) overrideParametersView.findViewById(R.id.extentBufferDistanceSeekBar)).getProgress(),
+        ((SeekBar) overrideParametersView.findViewById(R.id.minScaleSeekBar)).getProgress(),
+        ((SeekBar) overrideParametersView.findViewById(R.id.maxScaleSeekBar)).getProgress(),
+        createLayerRequests(((CheckBox) overrideParametersView.findViewById(R.id.systemValvesCheckBox)).isChecked(),
+            ((CheckBox) overrideParametersView.findViewById(R.id.serviceConnectionsCheckBox)).isChecked(),
+            ((SeekBar) overrideParametersView.findViewById(R.id.minHydrantFlowRateSeekBar)).getProgress(),
+            ((CheckBox) overrideParametersView.findViewById(R.id.waterPipesCheckBox)).isChecked()));
+  }
+
+  /**
+   * Creates the download size estimator for the basemap's tiling scheme, once the basemap has loaded.
+   *
+   * @return the estimator, or null if the basemap isn't a loaded tiled map service layer
+   */
+  private DownloadSizeEstimator getDownloadSizeEstimator() {
+    if (mDownloadSizeEstimator == null) {
+      Layer baseLayer = mMapView.getMap().getBasemap().getBaseLayers().get(0);
+      if (!(baseLayer instanceof ArcGISTiledLayer) || ((ArcGISTiledLayer) baseLayer).getTileInfo() == null) {
+        return null;
+      }
+      ArcGISTiledLayer tiledLayer = (ArcGISTiledLayer) baseLayer;
+      TileInfo tileInfo = tiledLayer.getTileInfo();
+      Map<Integer, Double> resolutions = new HashMap<>();
+      for (LevelOfDetail levelOfDetail : tileInfo.getLevelsOfDetail()) {
+        resolutions.put(levelOfDetail.getLevel(), levelOfDetail.getResolution());
+      }
+      DownloadSizeEstimator.TilingScheme tilingScheme = new DownloadSizeEstimator.TilingScheme(
+          tileInfo.getOrigin().getX(), tileInfo.getOrigin().getY(), tileInfo.getTileWidth(), tileInfo.getTileHeight(),
+          resolutions);
+      mTileSampleExecutor = Executors.newSingleThreadExecutor();
+      mDownloadSizeEstimator = new DownloadSizeEstimator(tilingScheme,
+          DownloadSizeEstimator.mapServiceTileSizeSampler(tiledLayer.getUri(), mTileSampleExecutor, mMainHandler::post),
+          this::countFeatures, DEFAULT_TILE_BYTES, TILE_SAMPLES_PER_LEVEL);
+    }
+    return mDownloadSizeEstimator;
+  }
+
+  /**
+   * Describes the feature layers the parameter overrides take offline, as they are set in defineParameters(...).
+   */
+  private List<DownloadSizeEstimator.LayerRequest> createLayerRequests(boolean includeSystemValves,
+      boolean includeServiceConnections, int flowRate, boolean cropWaterPipes) {
+    List<DownloadSizeEstimator.LayerRequest> layerRequests = new ArrayList<>();
+    for (Layer layer : mMapView.getMap().getOperationalLayers()) {
+      if (!(layer instanceof FeatureLayer)) {
+        continue;
+      }
+      String layerName = layer.getName();
+      if ((!includeSystemValves && layerName.equals("System Valve")) || (!includeServiceConnections && layerName
+          .equals("Service Connection"))) {
+        continue;
+      }
+      String whereClause = layerName.equals("Hydrant") ? createHydrantWhereClause(flowRate) : "1=1";
+      boolean cropToArea = !layerName.equals("Main") || cropWaterPipes;
+      long bytesPerFeature;
+      switch (((FeatureLayer) layer).getFeatureTable().getGeometryType()) {
+        case POINT:
+        case MULTIPOINT:
+          bytesPerFeature = POINT_FEATURE_BYTES;
+          break;
+        case POLYLINE:
+          bytesPerFeature = POLYLINE_FEATURE_BYTES;
+          break;
+        default:
+          bytesPerFeature = POLYGON_FEATURE_BYTES;
+      }
+      layerRequests.add(new DownloadSizeEstimator.LayerRequest(layerName, whereClause, cropToArea, bytesPerFeature));
+    }
+    return layerRequests;
+  }
+
+  /**
+   * Counts the features of a layer the parameter overrides would take offline.
+   */
+  private void countFeatures(DownloadSizeEstimator.LayerRequest layerRequest, double xMin, double yMin, double xMax,
+      double yMax, DownloadSizeEstimator.CountCallback callback) {
+    FeatureLayer featureLayer = getFeatureLayerByName(layerRequest.getName());
+    if (featureLayer == null) {
+      callback.onCount(0);
+      return;
+    }
+    QueryParameters queryParameters = new QueryParameters();
+    queryParameters.setWhereClause(layerRequest.getWhereClause());
+    if (layerRequest.isCropToArea()) {
+      queryParameters.setGeometry(new Envelope(xMin, yMin, xMax, yMax, mMapView.getSpatialReference()));
+    }
+    ListenableFuture<Long> featureCountFuture = featureLayer.getFeatureTable().queryFeatureCountAsync(queryParameters);
+    featureCountFuture.addDoneListener(() -> {
+      try {
+        callback.onCount(featureCountFuture.get());
+      } catch (InterruptedException | ExecutionException e) {
+        Log.w(TAG, "Could not count features of " + layerRequest.getName() + ": " + e.getMessage());
+        callback.onError(e);
+      }
+    });
+  }
+
+  /**
+   * @return the where clause limiting hydrants to those with at least the given flow rate
+   */
+  private static String createHydrantWhereClause(int flowRate) {
+    return "FLOW >= " + flowRate;
+  }
+
+  /**
+   * Opens the offline map taken earlier with the same download area and parameters, or generates it if there isn't
+   * one.
+   *
+   * @param minScale                  levelId
+   * @param maxScale                  levelId
+   * @param bufferDistance            around the given area of interest
+   * @param includeSystemValves       whether to include System Valves layer
+   * @param includeServiceConnections whether to include the Service Connections layer
+   * @param flowRate                  to limit hydrants in a where clause
+   * @param cropWaterPipes            whether to crop the pipes layer
+   */
+  private void takeMapOffline(int minScale, int maxScale, int bufferDistance, boolean includeSystemValves,
+      boolean includeServiceConnections, int flowRate, boolean cropWaterPipes) {
+    Envelope extent = mDownloadArea.getGeometry().getExtent();
+    String key = String.format(Locale.US, "%s %.0f %.0f %.0f %.0f %d %d %d %b %b %d %b", getString(R.string.item_id),
+        extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax(), minScale, maxScale, bufferDistance,
+        includeSystemValves, includeServiceConnections, flowRate, cropWaterPipes);
+    File offlineMapDirectory = sOfflineContentStore.open(key);
+    if (offlineMapDirectory == null) {
+      defineParameters(key, minScale, maxScale, bufferDistance, includeSystemValves, includeServiceConnections,
+          flowRate, cropWaterPipes);
+      return;
+    }
+    MobileMapPackage offlineMapPackage = new MobileMapPackage(offlineMapDirectory.getPath());
+    offlineMapPackage.loadAsync();
+    offlineMapPackage.addDoneLoadingListener(() -> {
+      if (offlineMapPackage.getLoadStatus() == LoadStatus.LOADED && !offlineMapPackage.getMaps().isEmpty()) {
+        showOfflineMap(key, offlineMapPackage.getMaps().get(0));
+      } else {
+        Log.w(TAG, "Could not open stored offline map, generating it again: " + key);
+        defineParameters(key, minScale, maxScale, bufferDistance, includeSystemValves, includeServiceConnections,
+            flowRate, cropWaterPipes);
+      }
+    });
   }
 
   /**
    * Use parameters from the override parameters dialog to define parameter overrides.
    *
+   * @param key                       to store the offline map under
+   *
    * @param minScale                  levelId
    * @param maxScale                  levelId
    * @param bufferDistance            around the given area of interest
@@ -256,7 +468,7 @@ public class MainActivity extends AppCompatActivity {
    * @param flowRate                  to limit hydrants in a where clause
    * @param cropWaterPipes            whether to crop the pipes layer
    */
-  private void defineParameters(int minScale, int maxScale, int bufferDistance, boolean includeSystemValves,
+  private void defineParameters(String key, int minScale, int maxScale, int bufferDistance, boolean includeSystemValves,
       boolean includeServiceConnections, int flowRate, boolean cropWaterPipes) {
     // create an offline map offlineMapTask with the map
     OfflineMapTask offlineMapTask = new OfflineMapTask(mMapView.getMap());
@@ -285,22 +497,20 @@ public class MainActivity extends AppCompatActivity {
             if (!includeServiceConnections) {
               excludeLayerFromDownload("Service Connection");
             }
-            // crop pipes layer
-            if (cropWaterPipes) {
-              for (GenerateLayerOption generateLayerOption : getGenerateGeodatabaseParametersLayerOptions("Main")) {
-                generateLayerOption.setUseGeometry(true);
-              }
+            // crop pipes layer, or take all of it offline
+            for (GenerateLayerOption generateLayerOption : getGenerateGeodatabaseParametersLayerOptions("Main")) {
+              generateLayerOption.setUseGeometry(cropWaterPipes);
             }
             // set flow rate where clause on the hydrant layer
             for (GenerateLayerOption generateLayerOption : getGenerateGeodatabaseParametersLayerOptions("Hydrant")) {
               if (generateLayerOption.getLayerId() == getServiceLayerId(Objects
                   .requireNonNull(getFeatureLayerByName("Hydrant")))) {
-                generateLayerOption.setWhereClause("FLOW >= " + flowRate);
+                generateLayerOption.setWhereClause(createHydrantWhereClause(flowRate));
                 generateLayerOption.setQueryOption(GenerateLayerOption.QueryOption.USE_FILTER);
               }
             }
             // start a an offline map job from the task and parameters
-            generateOfflineMap(offlineMapTask, generateOfflineMapParameters);
+            generateOfflineMap(key, offlineMapTask, generateOfflineMapParameters);
           } catch (InterruptedException | ExecutionException e) {
             String error = "Error creating parameter overrides: " + e.getCause().getMessage();
             Toast.makeText(this, error, Toast.LENGTH_LONG).show();
@@ -318,25 +528,24 @@ public class MainActivity extends AppCompatActivity {
   /**
    * Use the generate offline map job to generate an offline map.
    */
-  private void generateOfflineMap(OfflineMapTask offlineMapTask,
+  private void generateOfflineMap(String key, OfflineMapTask offlineMapTask,
       GenerateOfflineMapParameters generateOfflineMapParameters) {
-    // delete any offline map already in the cache
-    String tempDirectoryPath = getCacheDir() + File.separator + "offlineMap";
-    deleteDirectory(new File(tempDirectoryPath));
+    // reserve a directory for the offline map, moving aside any earlier offline map with the same parameters to be
+    // deleted in the background
+    File offlineMapDirectory = sOfflineContentStore.reserve(key, OfflineContentStore.Kind.OFFLINE_MAP);
     // create an offline map job with the download directory path and parameters and start the job
     GenerateOfflineMapJob job = offlineMapTask
-        .generateOfflineMap(generateOfflineMapParameters, tempDirectoryPath, mParameterOverrides);
+        .generateOfflineMap(generateOfflineMapParameters, offlineMapDirectory.getPath(), mParameterOverrides);
     // show the job's progress in a progress dialog
     showProgressDialog(job);
     // replace the current map with the result offline map when the job finishes
     job.addJobDoneListener(() -> {
       if (job.getStatus() == Job.Status.SUCCEEDED) {
+        sOfflineContentStore.commit(key);
         GenerateOfflineMapResult result = job.getResult();
-        mMapView.setMap(result.getOfflineMap());
-        mGraphicsOverlay.getGraphics().clear();
-        mGenerateOfflineMapOverridesButton.setEnabled(false);
-        Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
+        showOfflineMap(key, result.getOfflineMap());
       } else {
+        sOfflineContentStore.remove(key);
         String error = "Error in generate offline map job: " + job.getError().getAdditionalMessage();
         Toast.makeText(this, error, Toast.LENGTH_LONG).show();
         Log.e(TAG, error);
@@ -346,6 +555,20 @@ public class MainActivity extends AppCompatActivity {
     job.start();
   }
 
+  private void showOfflineMap(String key, ArcGISMap offlineMap) {
+    if (isDestroyed()) {
+      // the job finished after the activity was recreated, which can open the offline map from the store
+      return;
+    }
+    // keep the offline map from being evicted while it is shown
+    sOfflineContentStore.pin(key);
+    mShownKey = key;
+    mMapView.setMap(offlineMap);
+    mGraphicsOverlay.getGraphics().clear();
+    mGenerateOfflineMapOverridesButton.setEnabled(false);
+    Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
+  }
+
   /**
    * Set basemap scale and area of interest using the given values
    *
@@ -508,6 +731,14 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    Log.i(TAG, "Offline content: " + sOfflineContentStore);
+    if (mShownKey != null) {
+      sOfflineContentStore.unpin(mShownKey);
+    }
+    if (mTileSampleExecutor != null) {
+      Log.i(TAG, "Download size estimates: " + mDownloadSizeEstimator);
+      mTileSampleExecutor.shutdownNow();
+    }
     mMapView.dispose();
     super.onDestroy();
   }
@@ -519,15 +750,18 @@ public class MainActivity extends AppCompatActivity {
    * @param currSeekBarTextView to be updated when the seek bar progress changes
    * @param max                 max value for the seek bar
    * @param progress            initial progress position of the seek bar
+   * @param onProgressChanged   run when the seek bar progress changes
    * @return the built seek bar
    */
-  private static SeekBar buildSeekBar(SeekBar seekBar, TextView currSeekBarTextView, int max, int progress) {
+  private static SeekBar buildSeekBar(SeekBar seekBar, TextView currSeekBarTextView, int max, int progress,
+      Runnable onProgressChanged) {
     seekBar.setMax(max);
     seekBar.setProgress(progress);
     currSeekBarTextView.setText(String.valueOf(seekBar.getProgress()));
     seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
       @Override public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
         currSeekBarTextView.setText(String.valueOf(progress));
+        onProgressChanged.run();
       }
 
       @Override public void onStartTrackingTouch(SeekBar seekBar) {
@@ -538,20 +772,4 @@ public class MainActivity extends AppCompatActivity {
     });
     return seekBar;
   }
-
-  /**
-   * Recursively deletes all files in the given directory.
-   *
-   * @param file to delete
-   */
-  private static void deleteDirectory(File file) {
-    if (file.isDirectory())
-      for (File subFile : file.listFiles()) {
-        deleteDirectory(subFile);
-      }
-    if (!file.delete()) {
-      Log.e(TAG, "Failed to delete file: " + file.getPath());
-    }
-  }
 }
-
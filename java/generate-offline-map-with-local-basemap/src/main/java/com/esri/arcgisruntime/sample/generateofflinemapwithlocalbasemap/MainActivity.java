@@ -18,6 +18,7 @@
 package com.esri.arcgisruntime.sample.generateofflinemapwithlocalbasemap;
 
 import java.io.File;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 
 import android.graphics.Color;
@@ -33,6 +34,7 @@ import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
+import com.esri.arcgisruntime.mapping.MobileMapPackage;
 import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
@@ -51,6 +53,12 @@ public class MainActivity extends AppCompatActivity
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  private static final long OFFLINE_CONTENT_QUOTA_BYTES = 1024L * 1024 * 1024;
+
+  // the store belongs to the process rather than the activity, so a job still writing to it when the activity is
+  // recreated keeps its reservation, and the index has a single writer
+  private static OfflineContentStore sOfflineContentStore;
+
   private MapView mMapView;
   private Button mTakeMapOfflineButton;
   private GraphicsOverlay mGraphicsOverlay;
@@ -60,6 +68,8 @@ public class MainActivity extends AppCompatActivity
   private GenerateOfflineMapParameters mGenerateOfflineMapParameters;
   private String mLocalBasemapDirectory;
   private OfflineMapTask mOfflineMapTask;
+  // key of the stored offline map shown, which is pinned in the store while it is
+  private String mShownKey;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -69,6 +79,12 @@ public class MainActivity extends AppCompatActivity
     // get a reference to the map view
     mMapView = findViewById(R.id.mapView);
 
+    // keep offline maps taken earlier, so they can be opened again without generating them
+    if (sOfflineContentStore == null) {
+      sOfflineContentStore = new OfflineContentStore(new File(getCacheDir(), "offlineMaps"),
+          OFFLINE_CONTENT_QUOTA_BYTES);
+    }
+
     // access button to take the map offline and disable it until a download area has been defined
     mTakeMapOfflineButton = findViewById(R.id.takeMapOfflineButton);
     mTakeMapOfflineButton.setEnabled(false);
@@ -176,9 +192,38 @@ public class MainActivity extends AppCompatActivity
   }
 
   /**
-   * Use the generate offline map job to generate an offline map.
+   * Opens the offline map taken earlier with the same parameters, or uses the generate offline map job to generate
+   * one if there isn't one.
    */
   private void generateOfflineMap() {
+    Envelope extent = mGenerateOfflineMapParameters.getAreaOfInterest().getExtent();
+    String key = String.format(Locale.US, "%s %.0f %.0f %.0f %.0f %.0f %.0f %s", getString(R.string.item_id),
+        extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax(),
+        mGenerateOfflineMapParameters.getMinScale(), mGenerateOfflineMapParameters.getMaxScale(),
+        mGenerateOfflineMapParameters.getReferenceBasemapDirectory());
+    File offlineMapDirectory = sOfflineContentStore.open(key);
+    if (offlineMapDirectory == null) {
+      startGenerateOfflineMapJob(key);
+      return;
+    }
+    MobileMapPackage offlineMapPackage = new MobileMapPackage(offlineMapDirectory.getPath());
+    offlineMapPackage.loadAsync();
+    offlineMapPackage.addDoneLoadingListener(() -> {
+      if (offlineMapPackage.getLoadStatus() == LoadStatus.LOADED && !offlineMapPackage.getMaps().isEmpty()) {
+        showOfflineMap(key, offlineMapPackage.getMaps().get(0));
+      } else {
+        Log.w(TAG, "Could not open stored offline map, generating it again: " + key);
+        startGenerateOfflineMapJob(key);
+      }
+    });
+  }
+
+  /**
+   * Use the generate offline map job to generate an offline map into the offline content store.
+   *
+   * @param key to store the offline map under
+   */
+  private void startGenerateOfflineMapJob(String key) {
 
     // cancel previous job request
     if (mGenerateOfflineMapJob != null) {
@@ -187,23 +232,33 @@ public class MainActivity extends AppCompatActivity
 
     mTakeMapOfflineButton.setEnabled(false);
 
-    // delete any offline map already in the cache
-    String tempDirectoryPath = getCacheDir() + File.separator + "offlineMap";
-    deleteDirectory(new File(tempDirectoryPath));
+    // reserve a directory for the offline map, moving aside any earlier offline map with the same parameters to be
+    // deleted in the background
+    File offlineMapDirectory = sOfflineContentStore.reserve(key, OfflineContentStore.Kind.OFFLINE_MAP);
 
     // create an offline map job with the download directory path and parameters and start the job
-    mGenerateOfflineMapJob = mOfflineMapTask.generateOfflineMap(mGenerateOfflineMapParameters, tempDirectoryPath);
+    GenerateOfflineMapJob job = mOfflineMapTask
+        .generateOfflineMap(mGenerateOfflineMapParameters, offlineMapDirectory.getPath());
+    mGenerateOfflineMapJob = job;
 
     // replace the current map with the result offline map when the job finishes
-    mGenerateOfflineMapJob.addJobDoneListener(() -> {
-      if (mGenerateOfflineMapJob.getStatus() == Job.Status.SUCCEEDED) {
-        GenerateOfflineMapResult result = mGenerateOfflineMapJob.getResult();
-        mMapView.setMap(result.getOfflineMap());
-        mGraphicsOverlay.getGraphics().clear();
+    job.addJobDoneListener(() -> {
+      // a job which was cancelled for a later one leaves the store to the later one
+      if (job != mGenerateOfflineMapJob) {
+        return;
+      }
+      if (job.getStatus() == Job.Status.SUCCEEDED) {
+        sOfflineContentStore.commit(key);
+        GenerateOfflineMapResult result = job.getResult();
+        if (isDestroyed()) {
+          // the job finished after the activity was recreated, which can open the offline map from the store
+          return;
+        }
         findProgressDialogFragment().dismiss();
-        Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
+        showOfflineMap(key, result.getOfflineMap());
       } else {
-        String error = "Error in generate offline map job: " + mGenerateOfflineMapJob.getError().getAdditionalMessage();
+        sOfflineContentStore.remove(key);
+        String error = "Error in generate offline map job: " + job.getError().getAdditionalMessage();
         Toast.makeText(this, error, Toast.LENGTH_LONG).show();
         Log.e(TAG, error);
       }
@@ -229,6 +284,16 @@ public class MainActivity extends AppCompatActivity
     });
   }
 
+  private void showOfflineMap(String key, ArcGISMap offlineMap) {
+    // keep the offline map from being evicted while it is shown
+    sOfflineContentStore.pin(key);
+    mShownKey = key;
+    mMapView.setMap(offlineMap);
+    mGraphicsOverlay.getGraphics().clear();
+    mTakeMapOfflineButton.setEnabled(false);
+    Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
+  }
+
   /**
    * Creates an alert notifying the user that a local basemap has been found on the device and asks whether the user
    * wishes to use that basemap, rather than download one with the rest of the generate offline map job.
@@ -294,6 +359,10 @@ public class MainActivity extends AppCompatActivity
 
   @Override
   protected void onDestroy() {
+    Log.i(TAG, "Offline content: " + sOfflineContentStore);
+    if (mShownKey != null) {
+      sOfflineContentStore.unpin(mShownKey);
+    }
     mMapView.dispose();
     super.onDestroy();
   }
@@ -320,20 +389,4 @@ public class MainActivity extends AppCompatActivity
     }
     return null;
   }
-
-  /**
-   * Recursively deletes all files in the given directory.
-   *
-   * @param file to delete
-   */
-  private static void deleteDirectory(File file) {
-    if (file.isDirectory())
-      for (File subFile : file.listFiles()) {
-        deleteDirectory(subFile);
-      }
-    if (!file.delete()) {
-      Log.e(TAG, "Failed to delete file: " + file.getPath());
-    }
-  }
 }
-
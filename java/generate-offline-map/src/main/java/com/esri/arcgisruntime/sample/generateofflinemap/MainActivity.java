@@ -17,6 +17,7 @@
 package com.esri.arcgisruntime.sample.generateofflinemap;
 
 import java.io.File;
+import java.util.Locale;
 
 import android.app.ProgressDialog;
 import android.graphics.Color;
@@ -31,6 +32,7 @@ import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
+import com.esri.arcgisruntime.mapping.MobileMapPackage;
 import com.esri.arcgisruntime.mapping.view.Graphic;
 import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
 import com.esri.arcgisruntime.mapping.view.MapView;
@@ -48,10 +50,18 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  private static final long OFFLINE_CONTENT_QUOTA_BYTES = 1024L * 1024 * 1024;
+
+  // the store belongs to the process rather than the activity, so a job still writing to it when the activity is
+  // recreated keeps its reservation, and the index has a single writer
+  private static OfflineContentStore sOfflineContentStore;
+
   private MapView mMapView;
   private Button mTakeMapOfflineButton;
   private GraphicsOverlay mGraphicsOverlay;
   private Graphic mDownloadArea;
+  // key of the stored offline map shown, which is pinned in the store while it is
+  private String mShownKey;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -61,6 +71,12 @@ public class MainActivity extends AppCompatActivity {
     // get a reference to the map view
     mMapView = findViewById(R.id.mapView);
 
+    // keep offline maps taken earlier, so the same area can be opened again without generating it
+    if (sOfflineContentStore == null) {
+      sOfflineContentStore = new OfflineContentStore(new File(getExternalCacheDir(), "offlineMaps"),
+          OFFLINE_CONTENT_QUOTA_BYTES);
+    }
+
     // access button to take the map offline and disable it until map is loaded
     mTakeMapOfflineButton = findViewById(R.id.takeMapOfflineButton);
     mTakeMapOfflineButton.setEnabled(false);
@@ -128,14 +144,8 @@ public class MainActivity extends AppCompatActivity {
     progressDialog.setIndeterminate(false);
     progressDialog.setProgress(0);
 
-    // when the button is clicked, start the offline map task job
+    // when the button is clicked, take the area offline, or open it if it has been taken offline already
     mTakeMapOfflineButton.setOnClickListener(v -> {
-      progressDialog.show();
-
-      // delete any offline map already in the cache
-      String tempDirectoryPath = getExternalCacheDir() + File.separator + "offlineMap";
-      deleteDirectory(new File(tempDirectoryPath));
-
       // specify the extent, min scale, and max scale as parameters
       double minScale = mMapView.getMapScale();
       double maxScale = mMapView.getMap().getMaxScale();
@@ -143,40 +153,92 @@ public class MainActivity extends AppCompatActivity {
       if (minScale <= maxScale) {
         minScale = maxScale + 1;
       }
-      GenerateOfflineMapParameters generateOfflineMapParameters = new GenerateOfflineMapParameters(
-          mDownloadArea.getGeometry(), minScale, maxScale);
-      // set job to cancel on any errors
-      generateOfflineMapParameters.setContinueOnErrors(false);
-
-      // create an offline map offlineMapTask with the map
-      OfflineMapTask offlineMapTask = new OfflineMapTask(mMapView.getMap());
-
-      // create an offline map job with the download directory path and parameters and start the job
-      GenerateOfflineMapJob job = offlineMapTask.generateOfflineMap(generateOfflineMapParameters, tempDirectoryPath);
-
-      // replace the current map with the result offline map when the job finishes
-      job.addJobDoneListener(() -> {
-        if (job.getStatus() == Job.Status.SUCCEEDED) {
-          GenerateOfflineMapResult result = job.getResult();
-          mMapView.setMap(result.getOfflineMap());
-          mGraphicsOverlay.getGraphics().clear();
-          mTakeMapOfflineButton.setEnabled(false);
-          Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
-        } else {
-          String error = "Error in generate offline map job: " + job.getError().getAdditionalMessage();
-          Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-          Log.e(TAG, error);
-        }
-        progressDialog.dismiss();
-      });
+      Envelope extent = mDownloadArea.getGeometry().getExtent();
+      String key = String.format(Locale.US, "%s %.0f %.0f %.0f %.0f %.0f %.0f", portalItem.getItemId(),
+          extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax(), minScale, maxScale);
+      File offlineMapDirectory = sOfflineContentStore.open(key);
+      if (offlineMapDirectory != null) {
+        showStoredOfflineMap(key, offlineMapDirectory, progressDialog, minScale, maxScale);
+      } else {
+        generateOfflineMap(key, progressDialog, minScale, maxScale);
+      }
+    });
 
-      // show the job's progress with the progress dialog
-      job.addProgressChangedListener(() -> progressDialog.setProgress(job.getProgress()));
+  }
 
-      // start the job
-      job.start();
+  /**
+   * Generates an offline map of the download area into the offline content store, and shows it once generated.
+   */
+  private void generateOfflineMap(String key, ProgressDialog progressDialog, double minScale, double maxScale) {
+    progressDialog.show();
+
+    // reserve a directory for the offline map, moving aside any earlier offline map of the area to be deleted in the
+    // background
+    File offlineMapDirectory = sOfflineContentStore.reserve(key, OfflineContentStore.Kind.OFFLINE_MAP);
+
+    GenerateOfflineMapParameters generateOfflineMapParameters = new GenerateOfflineMapParameters(
+        mDownloadArea.getGeometry(), minScale, maxScale);
+    // set job to cancel on any errors
+    generateOfflineMapParameters.setContinueOnErrors(false);
+
+    // create an offline map offlineMapTask with the map
+    OfflineMapTask offlineMapTask = new OfflineMapTask(mMapView.getMap());
+
+    // create an offline map job with the download directory path and parameters and start the job
+    GenerateOfflineMapJob job = offlineMapTask
+        .generateOfflineMap(generateOfflineMapParameters, offlineMapDirectory.getPath());
+
+    // replace the current map with the result offline map when the job finishes
+    job.addJobDoneListener(() -> {
+      if (job.getStatus() == Job.Status.SUCCEEDED) {
+        sOfflineContentStore.commit(key);
+        GenerateOfflineMapResult result = job.getResult();
+        showOfflineMap(key, result.getOfflineMap());
+      } else {
+        sOfflineContentStore.remove(key);
+        String error = "Error in generate offline map job: " + job.getError().getAdditionalMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
+      progressDialog.dismiss();
     });
 
+    // show the job's progress with the progress dialog
+    job.addProgressChangedListener(() -> progressDialog.setProgress(job.getProgress()));
+
+    // start the job
+    job.start();
+  }
+
+  /**
+   * Opens an offline map taken earlier from the offline content store, generating it again if it can't be opened.
+   */
+  private void showStoredOfflineMap(String key, File offlineMapDirectory, ProgressDialog progressDialog,
+      double minScale, double maxScale) {
+    MobileMapPackage offlineMapPackage = new MobileMapPackage(offlineMapDirectory.getPath());
+    offlineMapPackage.loadAsync();
+    offlineMapPackage.addDoneLoadingListener(() -> {
+      if (offlineMapPackage.getLoadStatus() == LoadStatus.LOADED && !offlineMapPackage.getMaps().isEmpty()) {
+        showOfflineMap(key, offlineMapPackage.getMaps().get(0));
+      } else {
+        Log.w(TAG, "Could not open stored offline map, generating it again: " + key);
+        generateOfflineMap(key, progressDialog, minScale, maxScale);
+      }
+    });
+  }
+
+  private void showOfflineMap(String key, ArcGISMap offlineMap) {
+    if (isDestroyed()) {
+      // the job finished after the activity was recreated, which can open the offline map from the store
+      return;
+    }
+    // keep the offline map from being evicted while it is shown
+    sOfflineContentStore.pin(key);
+    mShownKey = key;
+    mMapView.setMap(offlineMap);
+    mGraphicsOverlay.getGraphics().clear();
+    mTakeMapOfflineButton.setEnabled(false);
+    Toast.makeText(this, "Now displaying offline map.", Toast.LENGTH_LONG).show();
   }
 
   @Override
@@ -193,23 +255,11 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    Log.i(TAG, "Offline content: " + sOfflineContentStore);
+    if (mShownKey != null) {
+      sOfflineContentStore.unpin(mShownKey);
+    }
     mMapView.dispose();
     super.onDestroy();
   }
-
-  /**
-   * Recursively deletes all files in the given directory.
-   *
-   * @param file to delete
-   */
-  private static void deleteDirectory(File file) {
-    if (file.isDirectory())
-      for (File subFile : file.listFiles()) {
-        deleteDirectory(subFile);
-      }
-    if (!file.delete()) {
-      Log.e(TAG, "Failed to delete file: " + file.getPath());
-    }
-  }
 }
-
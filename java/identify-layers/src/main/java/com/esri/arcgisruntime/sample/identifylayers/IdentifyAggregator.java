@@ -0,0 +1,518 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.identifylayers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.layers.Layer;
+import com.esri.arcgisruntime.mapping.view.IdentifyLayerResult;
+import com.esri.arcgisruntime.mapping.view.MapView;
+
+/**
+ * Identifies each layer of a map separately and in parallel, instead of waiting for a single identify of every layer.
+ *
+ * Each layer's results are passed on as soon as the layer has been identified. A layer which takes longer than a
+ * timeout is cancelled and reported as timed out, so one slow service doesn't hold up the results of the others. Once
+ * the layers have returned as many GeoElements as the result budget allows, the layers still being identified are
+ * cancelled. The sublayer results of each layer are flattened by the layer source, off the main thread.
+ *
+ * The time each layer takes to identify is recorded across identifies, so the layers which slow taps down show up in
+ * {@link #toString()}.
+ *
+ * @param <L> type of the layers
+ */
+final class IdentifyAggregator<L> {
+
+  /**
+   * The GeoElements a layer or sublayer returned.
+   */
+  static final class LayerResult {
+    private final String mName;
+    private final int mCount;
+    private final List<LayerResult> mSublayers;
+    private final boolean mTruncated;
+    private final boolean mTimedOut;
+    private final Exception mError;
+
+    /**
+     * @param name      name of the layer
+     * @param count     number of GeoElements the layer and its sublayers returned
+     * @param sublayers sublayers which returned GeoElements, flattened depth first
+     */
+    LayerResult(String name, int count, List<LayerResult> sublayers) {
+      this(name, count, sublayers, false, false, null);
+    }
+
+    private LayerResult(String name, int count, List<LayerResult> sublayers, boolean truncated, boolean timedOut,
+        Exception error) {
+      mName = name;
+      mCount = count;
+      mSublayers = sublayers;
+      mTruncated = truncated;
+      mTimedOut = timedOut;
+      mError = error;
+    }
+
+    String getName() {
+      return mName;
+    }
+
+    int getCount() {
+      return mCount;
+    }
+
+    List<LayerResult> getSublayers() {
+      return mSublayers;
+    }
+
+    /**
+     * @return whether the count was cut short by the result budget
+     */
+    boolean isTruncated() {
+      return mTruncated;
+    }
+
+    boolean isTimedOut() {
+      return mTimedOut;
+    }
+
+    /**
+     * @return the error the layer failed with, or null
+     */
+    Exception getError() {
+      return mError;
+    }
+  }
+
+  /**
+   * Identifies a single layer.
+   */
+  interface LayerSource<L> {
+    String nameOf(L layer);
+
+    /**
+     * Starts identifying a layer.
+     *
+     * @param maxResults maximum number of GeoElements to return
+     * @param callback   receives the result, on any thread
+     * @return cancels the identify
+     */
+    Runnable identify(L layer, int maxResults, Callback callback);
+  }
+
+  /**
+   * Receives the result of identifying a layer.
+   */
+  interface Callback {
+    void onIdentified(LayerResult result);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Receives results on the callback executor.
+   */
+  interface Listener {
+    /**
+     * @param results    results of the layers identified so far, in layer order
+     * @param totalCount number of GeoElements returned so far
+     */
+    void onProgress(List<LayerResult> results, int totalCount);
+
+    /**
+     * @param results       results of every layer, in layer order, with those cancelled by the result budget left out
+     * @param totalCount    number of GeoElements returned
+     * @param budgetReached whether layers were cut short by the result budget
+     */
+    void onComplete(List<LayerResult> results, int totalCount, boolean budgetReached);
+  }
+
+  private static final long[] HISTOGRAM_BOUNDS_MILLIS = { 100, 250, 500, 1000, 2500, 5000 };
+
+  private final ScheduledExecutorService mScheduler;
+  private final Executor mCallbackExecutor;
+  private final long mLayerTimeoutMillis;
+  private final int mMaxResultsPerLayer;
+  private final int mMaxResults;
+
+  // state of the current identify, whose callbacks are ignored once a newer identify starts
+  private int mIdentifyId;
+  private LayerSource<L> mSource;
+  private Listener mListener;
+  // listener of the latest identify, until it is cancelled, whose calls are still delivered once it completes
+  private Listener mLatestListener;
+  private List<L> mLayers = Collections.emptyList();
+  private LayerResult[] mResults = new LayerResult[0];
+  private Runnable[] mCancels = new Runnable[0];
+  private ScheduledFuture<?>[] mTimeouts = new ScheduledFuture<?>[0];
+  private long[] mStartNanos = new long[0];
+  private int mPending;
+  private int mTotalCount;
+  private boolean mBudgetReached;
+
+  private final Map<String, LatencyHistogram> mLatencies = new LinkedHashMap<>();
+  private int mIdentifies;
+  private int mBudgetCancellations;
+
+  /**
+   * @param scheduler          runs the per layer timeouts
+   * @param callbackExecutor   runs the listener, usually on the main thread
+   * @param layerTimeoutMillis time a layer is given to identify before it is cancelled
+   * @param maxResultsPerLayer maximum number of GeoElements requested from each layer
+   * @param maxResults         maximum number of GeoElements returned across every layer
+   */
+  IdentifyAggregator(ScheduledExecutorService scheduler, Executor callbackExecutor, long layerTimeoutMillis,
+      int maxResultsPerLayer, int maxResults) {
+    mScheduler = scheduler;
+    mCallbackExecutor = callbackExecutor;
+    mLayerTimeoutMillis = layerTimeoutMillis;
+    mMaxResultsPerLayer = maxResultsPerLayer;
+    mMaxResults = maxResults;
+  }
+
+  /**
+   * Creates a layer source which identifies layers at a point on a map view, flattening the sublayer results of each
+   * layer on an executor.
+   *
+   * @param mapView         the map view showing the layers
+   * @param screenPoint     the point to identify at
+   * @param tolerance       distance from the point in density independent pixels
+   * @param flattenExecutor executor to flatten sublayer results on
+   */
+  static LayerSource<Layer> mapViewLayerSource(MapView mapView, android.graphics.Point screenPoint, double tolerance,
+      Executor flattenExecutor) {
+    return new LayerSource<Layer>() {
+      @Override public String nameOf(Layer layer) {
+        return layer.getName();
+      }
+
+      @Override public Runnable identify(Layer layer, int maxResults, Callback callback) {
+        final ListenableFuture<IdentifyLayerResult> future = mapView
+            .identifyLayerAsync(layer, screenPoint, tolerance, false, maxResults);
+        future.addDoneListener(() -> {
+          if (future.isCancelled()) {
+            return;
+          }
+          flattenExecutor.execute(() -> {
+            try {
+              callback.onIdentified(flatten(future.get()));
+            } catch (Exception e) {
+              callback.onError(e);
+            }
+          });
+        });
+        return () -> future.cancel(true);
+      }
+    };
+  }
+
+  /**
+   * Counts the GeoElements of a layer and each of its sublayers, walking the sublayer results depth first.
+   */
+  static LayerResult flatten(IdentifyLayerResult result) {
+    List<LayerResult> sublayers = new ArrayList<>();
+    int count = result.getElements().size();
+    Deque<IdentifyLayerResult> stack = new ArrayDeque<>();
+    pushSublayers(result, stack);
+    while (!stack.isEmpty()) {
+      IdentifyLayerResult sublayerResult = stack.pop();
+      int sublayerCount = sublayerResult.getElements().size();
+      if (sublayerCount > 0) {
+        sublayers.add(new LayerResult(sublayerResult.getLayerContent().getName(), sublayerCount,
+            Collections.<LayerResult>emptyList()));
+        count += sublayerCount;
+      }
+      pushSublayers(sublayerResult, stack);
+    }
+    return new LayerResult(result.getLayerContent().getName(), count, sublayers);
+  }
+
+  private static void pushSublayers(IdentifyLayerResult result, Deque<IdentifyLayerResult> stack) {
+    // pushed in reverse, so they are popped in order
+    List<IdentifyLayerResult> sublayerResults = result.getSublayerResults();
+    for (int i = sublayerResults.size() - 1; i >= 0; i--) {
+      stack.push(sublayerResults.get(i));
+    }
+  }
+
+  /**
+   * Identifies every layer in parallel, cancelling any identify still in progress.
+   *
+   * @param layers   the layers to identify
+   * @param source   identifies each layer
+   * @param listener receives the results
+   */
+  synchronized void identify(List<L> layers, LayerSource<L> source, Listener listener) {
+    cancel();
+    int identifyId = ++mIdentifyId;
+    mIdentifies++;
+    mSource = source;
+    mListener = listener;
+    mLatestListener = listener;
+    mLayers = new ArrayList<>(layers);
+    int layerCount = mLayers.size();
+    mResults = new LayerResult[layerCount];
+    mCancels = new Runnable[layerCount];
+    mTimeouts = new ScheduledFuture<?>[layerCount];
+    mStartNanos = new long[layerCount];
+    mPending = layerCount;
+    mTotalCount = 0;
+    mBudgetReached = false;
+    if (layerCount == 0) {
+      complete();
+      return;
+    }
+    int maxResults = Math.min(mMaxResultsPerLayer, mMaxResults);
+    for (int i = 0; i < layerCount; i++) {
+      final int layerIndex = i;
+      mStartNanos[i] = System.nanoTime();
+      mTimeouts[i] = mScheduler.schedule(() -> onTimeout(identifyId, layerIndex), mLayerTimeoutMillis,
+          TimeUnit.MILLISECONDS);
+      Callback callback = new Callback() {
+        @Override public void onIdentified(LayerResult result) {
+          onLayerDone(identifyId, layerIndex, result);
+        }
+
+        @Override public void onError(Exception e) {
+          onLayerDone(identifyId, layerIndex, failed(layerIndex, false, e));
+        }
+      };
+      try {
+        mCancels[i] = source.identify(mLayers.get(i), maxResults, callback);
+      } catch (RuntimeException e) {
+        callback.onError(e);
+      }
+      if (mIdentifyId != identifyId || mListener == null) {
+        // the result budget was reached by a layer which called back straight away
+        return;
+      }
+    }
+  }
+
+  /**
+   * Cancels the identify in progress, without calling its listener again.
+   */
+  synchronized void cancel() {
+    mListener = null;
+    mLatestListener = null;
+    cancelPending();
+  }
+
+  private synchronized void onTimeout(int identifyId, int layerIndex) {
+    if (identifyId == mIdentifyId && mResults[layerIndex] == null && mListener != null) {
+      Runnable cancel = mCancels[layerIndex];
+      if (cancel != null) {
+        cancel.run();
+      }
+      onLayerDone(identifyId, layerIndex, failed(layerIndex, true, null));
+    }
+  }
+
+  private synchronized void onLayerDone(int identifyId, int layerIndex, LayerResult result) {
+    if (identifyId != mIdentifyId || mResults[layerIndex] != null || mListener == null) {
+      // from an earlier identify, already timed out, or cancelled by the result budget
+      return;
+    }
+    ScheduledFuture<?> timeout = mTimeouts[layerIndex];
+    if (timeout != null) {
+      timeout.cancel(false);
+    }
+    latencies(mSource.nameOf(mLayers.get(layerIndex))).add(System.nanoTime() - mStartNanos[layerIndex], result);
+
+    int remaining = mMaxResults - mTotalCount;
+    if (result.mCount >= remaining) {
+      mBudgetReached = true;
+      if (result.mCount > remaining) {
+        result = new LayerResult(result.mName, remaining, result.mSublayers, true, false, null);
+      }
+    }
+    mResults[layerIndex] = result;
+    mTotalCount += result.mCount;
+    mPending--;
+    if (mBudgetReached || mPending == 0) {
+      if (mPending > 0) {
+        mBudgetCancellations += mPending;
+      }
+      cancelPending();
+      complete();
+    } else {
+      Listener listener = mListener;
+      List<LayerResult> results = results();
+      int totalCount = mTotalCount;
+      mCallbackExecutor.execute(() -> {
+        if (isLatest(listener)) {
+          listener.onProgress(results, totalCount);
+        }
+      });
+    }
+  }
+
+  private LayerResult failed(int layerIndex, boolean timedOut, Exception error) {
+    return new LayerResult(mSource.nameOf(mLayers.get(layerIndex)), 0, Collections.<LayerResult>emptyList(), false,
+        timedOut, error);
+  }
+
+  /**
+   * Cancels the identifies and timeouts of the layers still being identified.
+   */
+  private void cancelPending() {
+    for (int i = 0; i < mResults.length; i++) {
+      if (mResults[i] == null) {
+        if (mTimeouts[i] != null) {
+          mTimeouts[i].cancel(false);
+        }
+        if (mCancels[i] != null) {
+          mCancels[i].run();
+        }
+      }
+    }
+    // ignore callbacks from the cancelled identifies
+    mIdentifyId++;
+  }
+
+  private void complete() {
+    Listener listener = mListener;
+    mListener = null;
+    if (listener != null) {
+      List<LayerResult> results = results();
+      int totalCount = mTotalCount;
+      boolean budgetReached = mBudgetReached;
+      mCallbackExecutor.execute(() -> {
+        if (isLatest(listener)) {
+          listener.onComplete(results, totalCount, budgetReached);
+        }
+      });
+    }
+  }
+
+  /**
+   * @return whether a listener is still that of the latest identify, so calls queued on the callback executor before a
+   *         newer identify started are dropped
+   */
+  private synchronized boolean isLatest(Listener listener) {
+    return listener == mLatestListener;
+  }
+
+  private List<LayerResult> results() {
+    List<LayerResult> results = new ArrayList<>(mResults.length);
+    for (LayerResult result : mResults) {
+      if (result != null) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  private LatencyHistogram latencies(String layerName) {
+    LatencyHistogram latencies = mLatencies.get(layerName);
+    if (latencies == null) {
+      latencies = new LatencyHistogram();
+      mLatencies.put(layerName, latencies);
+    }
+    return latencies;
+  }
+
+  /**
+   * @return the number of identifies and, for each layer, its identify latency percentiles and histogram, timeouts and
+   *         failures
+   */
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder(String.format(Locale.US,
+        "%d identifies, %d layers cancelled by the result budget", mIdentifies, mBudgetCancellations));
+    for (Map.Entry<String, LatencyHistogram> entry : mLatencies.entrySet()) {
+      builder.append("\n").append(entry.getKey()).append(": ").append(entry.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * The identify latencies of a layer.
+   */
+  private static final class LatencyHistogram {
+    private long[] mLatencyNanos = new long[16];
+    private int mCount;
+    private final int[] mBuckets = new int[HISTOGRAM_BOUNDS_MILLIS.length + 1];
+    private int mTimeouts;
+    private int mFailures;
+
+    void add(long latencyNanos, LayerResult result) {
+      if (result.mTimedOut) {
+        mTimeouts++;
+        return;
+      } else if (result.mError != null) {
+        mFailures++;
+        return;
+      }
+      if (mCount == mLatencyNanos.length) {
+        mLatencyNanos = Arrays.copyOf(mLatencyNanos, mCount * 2);
+      }
+      mLatencyNanos[mCount++] = latencyNanos;
+      long millis = latencyNanos / 1_000_000;
+      int bucket = 0;
+      while (bucket < HISTOGRAM_BOUNDS_MILLIS.length && millis >= HISTOGRAM_BOUNDS_MILLIS[bucket]) {
+        bucket++;
+      }
+      mBuckets[bucket]++;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      if (mCount > 0) {
+        long[] sorted = Arrays.copyOf(mLatencyNanos, mCount);
+        Arrays.sort(sorted);
+        builder.append(String.format(Locale.US, "%d identified, p50 %d ms, p95 %d ms, max %d ms", mCount,
+            percentile(sorted, 50) / 1_000_000, percentile(sorted, 95) / 1_000_000, sorted[mCount - 1] / 1_000_000));
+      } else {
+        builder.append("none identified");
+      }
+      builder.append(String.format(Locale.US, ", %d timed out, %d failed, [", mTimeouts, mFailures));
+      for (int i = 0; i < mBuckets.length; i++) {
+        if (i > 0) {
+          builder.append(", ");
+        }
+        if (i < HISTOGRAM_BOUNDS_MILLIS.length) {
+          builder.append("<").append(HISTOGRAM_BOUNDS_MILLIS[i]);
+        } else {
+          builder.append(">=").append(HISTOGRAM_BOUNDS_MILLIS[i - 1]);
+        }
+        builder.append(" ms: ").append(mBuckets[i]);
+      }
+      return builder.append("]").toString();
+    }
+  }
+
+  private static long percentile(long[] sorted, double percentile) {
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+}
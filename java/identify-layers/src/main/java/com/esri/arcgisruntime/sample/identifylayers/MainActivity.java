@@ -16,12 +16,14 @@
 
 package com.esri.arcgisruntime.sample.identifylayers;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.widget.Toast;
@@ -29,23 +31,33 @@ import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
-import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.FeatureTable;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReference;
 import com.esri.arcgisruntime.layers.ArcGISMapImageLayer;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.layers.Layer;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.Viewpoint;
 import com.esri.arcgisruntime.mapping.view.DefaultMapViewOnTouchListener;
-import com.esri.arcgisruntime.mapping.view.IdentifyLayerResult;
 import com.esri.arcgisruntime.mapping.view.MapView;
 
 public class MainActivity extends AppCompatActivity {
 
   private final String TAG = MainActivity.class.getSimpleName();
+  private static final double IDENTIFY_TOLERANCE_DP = 12;
+  // time each layer is given to identify before its results are given up on
+  private static final long LAYER_TIMEOUT_MILLIS = 5000;
+  private static final int MAX_RESULTS_PER_LAYER = 10;
+  // once the layers have returned this many elements, the layers still being identified are cancelled
+  private static final int MAX_RESULTS = 20;
+
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final ScheduledExecutorService mIdentifyExecutor = Executors.newSingleThreadScheduledExecutor();
+  private IdentifyAggregator<Layer> mIdentifyAggregator;
+  private AlertDialog mResultsDialog;
 
   private ArcGISMapImageLayer mMapImageLayer;
   private MapView mMapView;
@@ -61,6 +73,10 @@ public class MainActivity extends AppCompatActivity {
 
     mMapView = findViewById(R.id.mapView);
 
+    // identifies each layer in parallel, on the identify executor, and passes the results back to the main thread
+    mIdentifyAggregator = new IdentifyAggregator<>(mIdentifyExecutor, mMainHandler::post, LAYER_TIMEOUT_MILLIS,
+        MAX_RESULTS_PER_LAYER, MAX_RESULTS);
+
     // create an instance of a map
     ArcGISMap map = new ArcGISMap(BasemapStyle.ARCGIS_TOPOGRAPHIC);
 
@@ -102,87 +118,71 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Performs an identify on layers at the given screenpoint and calls handleIdentifyResults(...) to process them.
+   * Performs an identify on each layer at the given screenpoint, showing the results of each layer as they arrive.
    *
    * @param screenPoint in Android graphic coordinates.
    */
   private void identifyResult(android.graphics.Point screenPoint) {
+    mResultsDialog = null;
+    mIdentifyAggregator.identify(mMapView.getMap().getOperationalLayers(),
+        IdentifyAggregator.mapViewLayerSource(mMapView, screenPoint, IDENTIFY_TOLERANCE_DP, mIdentifyExecutor),
+        new IdentifyAggregator.Listener() {
+          @Override public void onProgress(List<IdentifyAggregator.LayerResult> results, int totalCount) {
+            // show the results found so far, while slower layers are still being identified
+            if (totalCount > 0) {
+              showAlertDialog(resultsMessage(results, false));
+            }
+          }
 
-    final ListenableFuture<List<IdentifyLayerResult>> identifyLayerResultsFuture = mMapView
-        .identifyLayersAsync(screenPoint, 12, false, 10);
-
-    identifyLayerResultsFuture.addDoneListener(new Runnable() {
-      @Override public void run() {
-        try {
-          List<IdentifyLayerResult> identifyLayerResults = identifyLayerResultsFuture.get();
-          handleIdentifyResults(identifyLayerResults);
-        } catch (InterruptedException | ExecutionException e) {
-          Log.e(TAG, "Error identifying results: " + e.getMessage());
-        }
-      }
-    });
+          @Override public void onComplete(List<IdentifyAggregator.LayerResult> results, int totalCount,
+              boolean budgetReached) {
+            for (IdentifyAggregator.LayerResult result : results) {
+              if (result.getError() != null) {
+                Log.e(TAG, "Error identifying " + result.getName() + ": " + result.getError().getMessage());
+              }
+            }
+            // if any elements were found show the results, else notify user that no elements were found
+            if (totalCount > 0) {
+              showAlertDialog(resultsMessage(results, budgetReached));
+            } else {
+              Toast.makeText(MainActivity.this, "No element found", Toast.LENGTH_SHORT).show();
+              Log.i(TAG, "No element found.");
+            }
+            Log.i(TAG, "Identify latencies: " + mIdentifyAggregator);
+          }
+        });
   }
 
   /**
    * Processes identify results into a string which is passed to showAlertDialog(...).
    *
-   * @param identifyLayerResults a list of identify results generated in identifyResult().
+   * @param results       the results of each layer identified
+   * @param budgetReached whether the results were cut short
+   * @return a line for each layer, followed by a line for each of its sublayers with elements
    */
-  private void handleIdentifyResults(List<IdentifyLayerResult> identifyLayerResults) {
+  private static StringBuilder resultsMessage(List<IdentifyAggregator.LayerResult> results, boolean budgetReached) {
     StringBuilder message = new StringBuilder();
-    int totalCount = 0;
-    for (IdentifyLayerResult identifyLayerResult : identifyLayerResults) {
-      int count = geoElementsCountFromResult(identifyLayerResult);
-      String layerName = identifyLayerResult.getLayerContent().getName();
-      message.append(layerName).append(": ").append(count);
-
-      // add new line character if not the final element in array
-      if (!identifyLayerResult.equals(identifyLayerResults.get(identifyLayerResults.size() - 1))) {
+    for (IdentifyAggregator.LayerResult result : results) {
+      // add new line character if not the first element in array
+      if (message.length() > 0) {
         message.append("\n");
       }
-      totalCount += count;
-    }
-
-    // if any elements were found show the results, else notify user that no elements were found
-    if (totalCount > 0) {
-      showAlertDialog(message);
-    } else {
-      Toast.makeText(this, "No element found", Toast.LENGTH_SHORT).show();
-      Log.i(TAG, "No element found.");
-    }
-  }
-
-  /**
-   * Gets a count of the GeoElements in the passed result layer.
-   *
-   * @param result from a single layer.
-   * @return the total count of GeoElements.
-   */
-  private int geoElementsCountFromResult(IdentifyLayerResult result) {
-    // create temp array
-    List<IdentifyLayerResult> tempResults = new ArrayList<>();
-    tempResults.add(result);
-
-    // using Depth First Search approach to handle recursion
-    int count = 0;
-    int index = 0;
-
-    while (index < tempResults.size()) {
-      // get the result object from the array
-      IdentifyLayerResult identifyResult = tempResults.get(index);
-
-      // update count with geoElements from the result
-      count += identifyResult.getElements().size();
-
-      // if sublayer has any results, add result objects in the tempResults array after the current result
-      if (identifyResult.getSublayerResults().size() > 0) {
-        tempResults.add(identifyResult.getSublayerResults().get(index));
+      message.append(result.getName()).append(": ");
+      if (result.isTimedOut()) {
+        message.append("timed out");
+      } else if (result.getError() != null) {
+        message.append("failed");
+      } else {
+        message.append(result.getCount());
+      }
+      for (IdentifyAggregator.LayerResult sublayer : result.getSublayers()) {
+        message.append("\n    ").append(sublayer.getName()).append(": ").append(sublayer.getCount());
       }
-
-      // update the count and repeat
-      index += 1;
     }
-    return count;
+    if (budgetReached) {
+      message.append("\n\nOnly the first ").append(MAX_RESULTS).append(" elements are shown");
+    }
+    return message;
   }
 
   /**
@@ -191,6 +191,11 @@ public class MainActivity extends AppCompatActivity {
    * @param message contains identify results processed into a string.
    */
   private void showAlertDialog(StringBuilder message) {
+    // update the dialog already showing the results of this identify
+    if (mResultsDialog != null) {
+      mResultsDialog.setMessage(message);
+      return;
+    }
     AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(this);
 
     // set title
@@ -206,10 +211,10 @@ public class MainActivity extends AppCompatActivity {
         });
 
     // create alert dialog
-    AlertDialog alertDialog = alertDialogBuilder.create();
+    mResultsDialog = alertDialogBuilder.create();
 
     // show the alert dialog
-    alertDialog.show();
+    mResultsDialog.show();
   }
 
   @Override
@@ -227,6 +232,8 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    mIdentifyAggregator.cancel();
+    mIdentifyExecutor.shutdownNow();
     mMapView.dispose();
   }
 }
@@ -0,0 +1,208 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.lineofsightgeoelement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * Delivers animation ticks on the main thread aligned to display frames. Ticks are driven by the {@link Choreographer}
+ * so graphics can be updated directly from a listener without hopping threads.
+ *
+ * A clock created with a tick interval delivers at most one tick per display frame once that interval has elapsed. If
+ * the app falls behind, the ticks it couldn't deliver are dropped rather than queued, and counted. Display frames
+ * which arrive late are counted as missed frames.
+ *
+ * Observe the clock from an activity's lifecycle to pause it with the activity, at the same time as the activity
+ * pauses its MapView or SceneView.
+ */
+final class AnimationClock implements Choreographer.FrameCallback, LifecycleEventObserver {
+
+  /**
+   * Receives ticks from an {@link AnimationClock}.
+   */
+  interface OnTickListener {
+    /**
+     * @param frameTimeNanos vsync time of the display frame the tick is delivered on
+     * @param elapsedNanos   time since the previous tick, 0 for the first tick after starting or resuming
+     */
+    void onTick(long frameTimeNanos, long elapsedNanos);
+  }
+
+  private final List<OnTickListener> mListeners = new ArrayList<>();
+  private final long mFrameIntervalNanos;
+  private final long mTickIntervalNanos;
+
+  private boolean mPaused;
+  private boolean mPosted;
+  private long mLastFrameTimeNanos;
+  private long mLastTickTimeNanos;
+  private long mPendingNanos;
+  private long mMissedFrames;
+  private long mDroppedTicks;
+
+  /**
+   * Creates a clock which ticks on every display frame.
+   *
+   * @param refreshRate refresh rate of the display in frames per second
+   */
+  AnimationClock(float refreshRate) {
+    this(refreshRate, 0);
+  }
+
+  /**
+   * Creates a clock which ticks on the first display frame after each tick interval has elapsed.
+   *
+   * @param refreshRate        refresh rate of the display in frames per second
+   * @param tickIntervalMillis minimum time between ticks, 0 to tick on every display frame
+   */
+  AnimationClock(float refreshRate, long tickIntervalMillis) {
+    mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    mTickIntervalNanos = TimeUnit.MILLISECONDS.toNanos(tickIntervalMillis);
+  }
+
+  /**
+   * Adds a listener and starts the clock if it is not paused. Must be called on the main thread.
+   */
+  void addOnTickListener(OnTickListener listener) {
+    if (!mListeners.contains(listener)) {
+      mListeners.add(listener);
+    }
+    schedule();
+  }
+
+  /**
+   * Removes a listener. The clock stops once it has no listeners. Must be called on the main thread.
+   */
+  void removeOnTickListener(OnTickListener listener) {
+    mListeners.remove(listener);
+    if (mListeners.isEmpty()) {
+      unschedule();
+    }
+  }
+
+  /**
+   * Stops delivering ticks until {@link #resume()} is called.
+   */
+  void pause() {
+    mPaused = true;
+    unschedule();
+  }
+
+  /**
+   * Resumes delivering ticks to any listeners.
+   */
+  void resume() {
+    mPaused = false;
+    schedule();
+  }
+
+  /**
+   * @return the number of display frames which passed without a callback, because the main thread was busy
+   */
+  long getMissedFrames() {
+    return mMissedFrames;
+  }
+
+  /**
+   * @return the number of ticks dropped instead of being delivered late
+   */
+  long getDroppedTicks() {
+    return mDroppedTicks;
+  }
+
+  @Override
+  public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+    if (event == Lifecycle.Event.ON_PAUSE) {
+      pause();
+    } else if (event == Lifecycle.Event.ON_RESUME) {
+      resume();
+    } else if (event == Lifecycle.Event.ON_DESTROY) {
+      mListeners.clear();
+      unschedule();
+      source.getLifecycle().removeObserver(this);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    mPosted = false;
+    if (mPaused || mListeners.isEmpty()) {
+      return;
+    }
+    schedule();
+
+    if (mLastFrameTimeNanos != 0) {
+      long frameDelta = frameTimeNanos - mLastFrameTimeNanos;
+      // allow for jitter in the frame time before counting a frame as missed
+      if (frameDelta > mFrameIntervalNanos * 3 / 2) {
+        mMissedFrames += Math.round((double) frameDelta / mFrameIntervalNanos) - 1;
+      }
+      mPendingNanos += frameDelta;
+    }
+    mLastFrameTimeNanos = frameTimeNanos;
+
+    if (mTickIntervalNanos > 0 && mLastTickTimeNanos != 0) {
+      if (mPendingNanos < mTickIntervalNanos) {
+        return;
+      }
+      // deliver one tick and drop any others which became due while the app was behind
+      mPendingNanos -= mTickIntervalNanos;
+      if (mPendingNanos >= mTickIntervalNanos) {
+        mDroppedTicks += mPendingNanos / mTickIntervalNanos;
+        mPendingNanos %= mTickIntervalNanos;
+      }
+    } else {
+      mPendingNanos = 0;
+    }
+
+    long elapsed = mLastTickTimeNanos == 0 ? 0 : frameTimeNanos - mLastTickTimeNanos;
+    mLastTickTimeNanos = frameTimeNanos;
+    // index based loop, listeners may remove themselves from the callback
+    for (int i = mListeners.size() - 1; i >= 0; i--) {
+      if (i < mListeners.size()) {
+        mListeners.get(i).onTick(frameTimeNanos, elapsed);
+      }
+    }
+  }
+
+  private void schedule() {
+    if (!mPosted && !mPaused && !mListeners.isEmpty()) {
+      mPosted = true;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  private void unschedule() {
+    if (mPosted) {
+      mPosted = false;
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+    // the next tick measures elapsed time from when the clock restarts
+    mLastFrameTimeNanos = 0;
+    mLastTickTimeNanos = 0;
+    mPendingNanos = 0;
+  }
+}
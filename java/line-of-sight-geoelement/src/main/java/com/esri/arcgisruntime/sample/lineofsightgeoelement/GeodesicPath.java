@@ -0,0 +1,301 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.lineofsightgeoelement;
+
+import java.util.Arrays;
+
+/**
+ * A path of WGS84 waypoints densified once along the geodesics between them, so a GeoElement can be moved along it by
+ * arc length without any per frame geometry engine calls. Geodesics are solved in Java with Vincenty's formulae on the
+ * WGS84 ellipsoid, which are accurate to well under a millimetre for paths which aren't close to antipodal.
+ *
+ * Densified vertices are held in primitive arrays and {@link #sample(double, double[])} writes into a caller owned
+ * array, so sampling allocates nothing.
+ */
+final class GeodesicPath {
+
+  // WGS84 ellipsoid
+  private static final double SEMI_MAJOR_AXIS = 6378137.0;
+  private static final double FLATTENING = 1 / 298.257223563;
+  private static final double SEMI_MINOR_AXIS = SEMI_MAJOR_AXIS * (1 - FLATTENING);
+
+  private static final int MAX_ITERATIONS = 200;
+  private static final double CONVERGENCE = 1e-12;
+
+  /**
+   * Index of the longitude in degrees in a sampled position.
+   */
+  static final int LONGITUDE = 0;
+  /**
+   * Index of the latitude in degrees in a sampled position.
+   */
+  static final int LATITUDE = 1;
+  /**
+   * Index of the forward azimuth in degrees clockwise from north in a sampled position.
+   */
+  static final int AZIMUTH = 2;
+
+  private final boolean mClosed;
+  private final int mSize;
+  // arc length from the start of the path to each densified vertex
+  private final double[] mDistance;
+  private final double[] mLongitude;
+  private final double[] mLatitude;
+  private final double[] mAzimuth;
+
+  /**
+   * Densifies the geodesics between consecutive waypoints.
+   *
+   * @param longitudes waypoint longitudes in degrees
+   * @param latitudes  waypoint latitudes in degrees
+   * @param closed     whether the path returns from the last waypoint to the first
+   * @param spacing    maximum distance in meters between densified vertices
+   */
+  GeodesicPath(double[] longitudes, double[] latitudes, boolean closed, double spacing) {
+    if (longitudes.length != latitudes.length || longitudes.length == 0) {
+      throw new IllegalArgumentException("Path needs matching, non-empty longitude and latitude arrays");
+    }
+    if (!(spacing > 0)) {
+      throw new IllegalArgumentException("Spacing must be greater than 0");
+    }
+    mClosed = closed;
+    int waypoints = longitudes.length;
+    int segments = closed ? waypoints : waypoints - 1;
+
+    // solve each segment first to size the arrays exactly
+    double[] segmentLengths = new double[segments];
+    double[] segmentAzimuths = new double[segments];
+    int[] segmentSteps = new int[segments];
+    double[] inverse = new double[3];
+    int size = 1;
+    for (int i = 0; i < segments; i++) {
+      int j = (i + 1) % waypoints;
+      inverse(latitudes[i], longitudes[i], latitudes[j], longitudes[j], inverse);
+      segmentLengths[i] = inverse[0];
+      segmentAzimuths[i] = inverse[1];
+      segmentSteps[i] = Math.max(1, (int) Math.ceil(inverse[0] / spacing));
+      size += segmentSteps[i];
+    }
+
+    mSize = size;
+    mDistance = new double[size];
+    mLongitude = new double[size];
+    mLatitude = new double[size];
+    mAzimuth = new double[size];
+
+    double[] direct = new double[3];
+    int vertex = 0;
+    double distance = 0;
+    for (int i = 0; i < segments; i++) {
+      int steps = segmentSteps[i];
+      double step = segmentLengths[i] / steps;
+      for (int k = 0; k < steps; k++) {
+        direct(latitudes[i], longitudes[i], segmentAzimuths[i], k * step, direct);
+        mDistance[vertex] = distance + k * step;
+        mLatitude[vertex] = direct[0];
+        mLongitude[vertex] = direct[1];
+        mAzimuth[vertex] = direct[2];
+        vertex++;
+      }
+      distance += segmentLengths[i];
+    }
+    // final vertex is the last waypoint, or the first again for a closed path
+    int last = segments % waypoints;
+    mDistance[vertex] = distance;
+    mLatitude[vertex] = latitudes[last];
+    mLongitude[vertex] = longitudes[last];
+    mAzimuth[vertex] = vertex == 0 ? 0 : mAzimuth[vertex - 1];
+  }
+
+  /**
+   * @return the geodesic length of the path in meters
+   */
+  double getLength() {
+    return mDistance[mSize - 1];
+  }
+
+  /**
+   * Samples the position and azimuth at a distance along the path. Distances beyond the ends of an open path are
+   * clamped, and wrap around a closed path.
+   *
+   * @param arcLength distance along the path in meters
+   * @param out       array of at least 3 values to write the longitude, latitude and azimuth into
+   */
+  void sample(double arcLength, double[] out) {
+    double length = getLength();
+    if (mClosed && length > 0) {
+      arcLength %= length;
+      if (arcLength < 0) {
+        arcLength += length;
+      }
+    } else {
+      arcLength = Math.max(0, Math.min(length, arcLength));
+    }
+    int index = Arrays.binarySearch(mDistance, arcLength);
+    if (index >= 0) {
+      out[LONGITUDE] = mLongitude[index];
+      out[LATITUDE] = mLatitude[index];
+      out[AZIMUTH] = mAzimuth[index];
+      return;
+    }
+    // between two densified vertices, close enough together to interpolate linearly
+    int b = -index - 1;
+    int a = b - 1;
+    double t = (arcLength - mDistance[a]) / (mDistance[b] - mDistance[a]);
+    out[LONGITUDE] = mLongitude[a] + (mLongitude[b] - mLongitude[a]) * t;
+    out[LATITUDE] = mLatitude[a] + (mLatitude[b] - mLatitude[a]) * t;
+    double azimuthDelta = mAzimuth[b] - mAzimuth[a];
+    // take the short way around at the 180 degree boundary
+    if (azimuthDelta > 180) {
+      azimuthDelta -= 360;
+    } else if (azimuthDelta < -180) {
+      azimuthDelta += 360;
+    }
+    out[AZIMUTH] = normalizeDegrees(mAzimuth[a] + azimuthDelta * t);
+  }
+
+  private static double normalizeDegrees(double degrees) {
+    degrees %= 360;
+    if (degrees > 180) {
+      degrees -= 360;
+    } else if (degrees <= -180) {
+      degrees += 360;
+    }
+    return degrees;
+  }
+
+  /**
+   * Solves the inverse geodesic problem with Vincenty's formula.
+   *
+   * @param out receives the distance in meters and the forward azimuths in degrees at the start and end points
+   * @throws IllegalArgumentException if the formula fails to converge, for nearly antipodal points
+   */
+  static void inverse(double lat1, double lon1, double lat2, double lon2, double[] out) {
+    double l = Math.toRadians(lon2 - lon1);
+    double u1 = Math.atan((1 - FLATTENING) * Math.tan(Math.toRadians(lat1)));
+    double u2 = Math.atan((1 - FLATTENING) * Math.tan(Math.toRadians(lat2)));
+    double sinU1 = Math.sin(u1);
+    double cosU1 = Math.cos(u1);
+    double sinU2 = Math.sin(u2);
+    double cosU2 = Math.cos(u2);
+
+    double lambda = l;
+    double sinLambda;
+    double cosLambda;
+    double sinSigma;
+    double cosSigma;
+    double sigma;
+    double cosSqAlpha;
+    double cos2SigmaM;
+    int iterations = 0;
+    while (true) {
+      sinLambda = Math.sin(lambda);
+      cosLambda = Math.cos(lambda);
+      double a = cosU2 * sinLambda;
+      double b = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+      sinSigma = Math.sqrt(a * a + b * b);
+      if (sinSigma == 0) {
+        // coincident points
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = 0;
+        return;
+      }
+      cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+      sigma = Math.atan2(sinSigma, cosSigma);
+      double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+      cosSqAlpha = 1 - sinAlpha * sinAlpha;
+      // equatorial lines have cosSqAlpha of 0
+      cos2SigmaM = cosSqAlpha == 0 ? 0 : cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha;
+      double c = FLATTENING / 16 * cosSqAlpha * (4 + FLATTENING * (4 - 3 * cosSqAlpha));
+      double previous = lambda;
+      lambda = l + (1 - c) * FLATTENING * sinAlpha
+          * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+      if (Math.abs(lambda - previous) < CONVERGENCE) {
+        break;
+      }
+      if (++iterations >= MAX_ITERATIONS) {
+        throw new IllegalArgumentException("Geodesic failed to converge between nearly antipodal points");
+      }
+    }
+
+    double uSq = cosSqAlpha * (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS * SEMI_MINOR_AXIS)
+        / (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS);
+    double a = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+    double b = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+    double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+        - b / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+
+    out[0] = SEMI_MINOR_AXIS * a * (sigma - deltaSigma);
+    out[1] = Math.toDegrees(Math.atan2(cosU2 * sinLambda, cosU1 * sinU2 - sinU1 * cosU2 * cosLambda));
+    out[2] = Math.toDegrees(Math.atan2(cosU1 * sinLambda, -sinU1 * cosU2 + cosU1 * sinU2 * cosLambda));
+  }
+
+  /**
+   * Solves the direct geodesic problem with Vincenty's formula.
+   *
+   * @param out receives the latitude and longitude in degrees of the destination and the forward azimuth there
+   */
+  static void direct(double lat1, double lon1, double azimuth1, double distance, double[] out) {
+    double alpha1 = Math.toRadians(azimuth1);
+    double sinAlpha1 = Math.sin(alpha1);
+    double cosAlpha1 = Math.cos(alpha1);
+    double tanU1 = (1 - FLATTENING) * Math.tan(Math.toRadians(lat1));
+    double cosU1 = 1 / Math.sqrt(1 + tanU1 * tanU1);
+    double sinU1 = tanU1 * cosU1;
+    double sigma1 = Math.atan2(tanU1, cosAlpha1);
+    double sinAlpha = cosU1 * sinAlpha1;
+    double cosSqAlpha = 1 - sinAlpha * sinAlpha;
+    double uSq = cosSqAlpha * (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS * SEMI_MINOR_AXIS)
+        / (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS);
+    double a = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+    double b = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+
+    double sigma = distance / (SEMI_MINOR_AXIS * a);
+    double sinSigma;
+    double cosSigma;
+    double cos2SigmaM;
+    int iterations = 0;
+    while (true) {
+      cos2SigmaM = Math.cos(2 * sigma1 + sigma);
+      sinSigma = Math.sin(sigma);
+      cosSigma = Math.cos(sigma);
+      double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+          - b / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+      double previous = sigma;
+      sigma = distance / (SEMI_MINOR_AXIS * a) + deltaSigma;
+      if (Math.abs(sigma - previous) < CONVERGENCE || ++iterations >= MAX_ITERATIONS) {
+        break;
+      }
+    }
+    cos2SigmaM = Math.cos(2 * sigma1 + sigma);
+    sinSigma = Math.sin(sigma);
+    cosSigma = Math.cos(sigma);
+
+    double tmp = sinU1 * sinSigma - cosU1 * cosSigma * cosAlpha1;
+    double lat2 = Math.atan2(sinU1 * cosSigma + cosU1 * sinSigma * cosAlpha1,
+        (1 - FLATTENING) * Math.sqrt(sinAlpha * sinAlpha + tmp * tmp));
+    double lambda = Math.atan2(sinSigma * sinAlpha1, cosU1 * cosSigma - sinU1 * sinSigma * cosAlpha1);
+    double c = FLATTENING / 16 * cosSqAlpha * (4 + FLATTENING * (4 - 3 * cosSqAlpha));
+    double l = lambda - (1 - c) * FLATTENING * sinAlpha
+        * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+
+    out[0] = Math.toDegrees(lat2);
+    out[1] = normalizeDegrees(lon1 + Math.toDegrees(l));
+    out[2] = Math.toDegrees(Math.atan2(sinAlpha, -tmp));
+  }
+}
@@ -17,30 +17,21 @@
 package com.esri.arcgisruntime.sample.lineofsightgeoelement;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
-import android.content.res.AssetManager;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 import android.util.Log;
 import android.widget.SeekBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geoanalysis.GeoElementLineOfSight;
 import com.esri.arcgisruntime.geoanalysis.LineOfSight;
-import com.esri.arcgisruntime.geometry.AngularUnit;
-import com.esri.arcgisruntime.geometry.AngularUnitId;
-import com.esri.arcgisruntime.geometry.GeodeticCurveType;
-import com.esri.arcgisruntime.geometry.GeodeticDistanceResult;
-import com.esri.arcgisruntime.geometry.GeometryEngine;
-import com.esri.arcgisruntime.geometry.LinearUnit;
-import com.esri.arcgisruntime.geometry.LinearUnitId;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.PointBuilder;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
@@ -64,26 +55,25 @@ import com.esri.arcgisruntime.symbology.SimpleRenderer;
 public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
-  private static final LinearUnit METERS = new LinearUnit(LinearUnitId.METERS);
-  private static final AngularUnit DEGREES = new AngularUnit(AngularUnitId.DEGREES);
-
-  private int mWaypointIndex = 0;
+  // distance in meters the taxi moves on each tick
+  private static final double STEP = 1.0;
 
   private SceneView mSceneView;
   private Graphic mTaxiGraphic;
   private List<Point> mWaypoints;
+  private GeodesicPath mPath;
+  private double mDistanceAlongPath;
+  private final double[] mPathSample = new double[3];
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    // load taxi model from assets into cache directory
-    copyFileFromAssetsToCache(getString(R.string.dolmus_model));
-    copyFileFromAssetsToCache(getString(R.string.dolmus_back));
-    copyFileFromAssetsToCache(getString(R.string.dolmus_front));
-    copyFileFromAssetsToCache(getString(R.string.dolmus_side));
-    copyFileFromAssetsToCache(getString(R.string.tire_tread));
+    // stage the taxi model from assets into the cache directory in the background
+    ListenableFuture<Map<String, File>> stagedModel = new AssetStager(this)
+        .stage(getString(R.string.dolmus_model), getString(R.string.dolmus_back), getString(R.string.dolmus_front),
+            getString(R.string.dolmus_side), getString(R.string.tire_tread));
 
     // create a scene and add a basemap to it
     ArcGISScene scene = new ArcGISScene();
@@ -155,15 +145,35 @@ public class MainActivity extends AppCompatActivity {
         new Point(-73.982961, 40.747762, SpatialReferences.getWgs84())
     );
 
+    // densify the loop around the block once so the taxi can be moved along it without per tick geodesic calls
+    double[] longitudes = new double[mWaypoints.size()];
+    double[] latitudes = new double[mWaypoints.size()];
+    for (int i = 0; i < mWaypoints.size(); i++) {
+      longitudes[i] = mWaypoints.get(i).getX();
+      latitudes[i] = mWaypoints.get(i).getY();
+    }
+    mPath = new GeodesicPath(longitudes, latitudes, true, STEP);
+
     // create a graphic of a taxi to be the target
-    String pathToModel = getCacheDir() + File.separator + getString(R.string.dolmus_model);
-    ModelSceneSymbol taxiSymbol = new ModelSceneSymbol(pathToModel, 1.0);
-    taxiSymbol.setAnchorPosition(SceneSymbol.AnchorPosition.BOTTOM);
-    taxiSymbol.loadAsync();
-    mTaxiGraphic = new Graphic(mWaypoints.get(0), taxiSymbol);
+    mTaxiGraphic = new Graphic(mWaypoints.get(0));
     mTaxiGraphic.getAttributes().put("HEADING", 0.0);
     graphicsOverlay.getGraphics().add(mTaxiGraphic);
 
+    // give the taxi its model symbol once the model has been staged
+    stagedModel.addDoneListener(() -> {
+      try {
+        File taxiModel = stagedModel.get().get(getString(R.string.dolmus_model));
+        ModelSceneSymbol taxiSymbol = new ModelSceneSymbol(taxiModel.getPath(), 1.0);
+        taxiSymbol.setAnchorPosition(SceneSymbol.AnchorPosition.BOTTOM);
+        taxiSymbol.loadAsync();
+        mTaxiGraphic.setSymbol(taxiSymbol);
+      } catch (InterruptedException | ExecutionException e) {
+        String error = "Error staging taxi model: " + e.getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
+    });
+
     // create an analysis overlay to hold the line of sight
     AnalysisOverlay analysisOverlay = new AnalysisOverlay();
     mSceneView.getAnalysisOverlays().add(analysisOverlay);
@@ -177,13 +187,10 @@ public class MainActivity extends AppCompatActivity {
         .setSelected(targetVisibilityChangedEvent.getTargetVisibility() == LineOfSight.TargetVisibility.VISIBLE)
     );
 
-    // create a timer to animate the tank
-    Timer timer = new Timer();
-    timer.scheduleAtFixedRate(new TimerTask() {
-      @Override public void run() {
-        animate();
-      }
-    }, 0, 50);
+    // animate the taxi on a clock which ticks at most every 50ms and pauses with the activity
+    AnimationClock animationClock = new AnimationClock(getWindowManager().getDefaultDisplay().getRefreshRate(), 50);
+    getLifecycle().addObserver(animationClock);
+    animationClock.addOnTickListener((frameTimeNanos, elapsedNanos) -> animate());
 
     // zoom to show the observer
     Camera camera = new Camera((Point) observer.getGeometry(), 700, -30, 45, 0);
@@ -191,54 +198,17 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Moves the taxi toward the current waypoint a short distance.
+   * Moves the taxi a short distance along the loop of waypoints.
    */
   private void animate() {
-    Point waypoint = mWaypoints.get(mWaypointIndex);
-    // get current location and distance from waypoint
-    Point location = (Point) mTaxiGraphic.getGeometry();
-    GeodeticDistanceResult distance = GeometryEngine.distanceGeodetic(location, waypoint, METERS, DEGREES,
-        GeodeticCurveType.GEODESIC);
-
-    // move toward waypoint a short distance
-    location = GeometryEngine.moveGeodetic(location, 1.0, METERS, distance.getAzimuth1(), DEGREES,
-        GeodeticCurveType.GEODESIC);
-    mTaxiGraphic.setGeometry(location);
-
-    // rotate to the waypoint
-    mTaxiGraphic.getAttributes().put("HEADING", distance.getAzimuth1());
-
-    // reached waypoint, move to next waypoint
-    if (distance.getDistance() <= 2) {
-      mWaypointIndex = (mWaypointIndex + 1) % mWaypoints.size();
-    }
-  }
-
-  /**
-   * Copy the given file from the app's assets folder to the app's cache directory.
-   *
-   * @param fileName as String
-   */
-  private void copyFileFromAssetsToCache(String fileName) {
-    AssetManager assetManager = getApplicationContext().getAssets();
-    File file = new File(getCacheDir() + File.separator + fileName);
-    if (!file.exists()) {
-      try {
-        InputStream in = assetManager.open(fileName);
-        OutputStream out = new FileOutputStream(getCacheDir() + File.separator + fileName);
-        byte[] buffer = new byte[1024];
-        int read = in.read(buffer);
-        while (read != -1) {
-          out.write(buffer, 0, read);
-          read = in.read(buffer);
-        }
-        Log.i(TAG, fileName + " copied to cache.");
-      } catch (Exception e) {
-        Log.e(TAG, "Error writing " + fileName + " to cache. " + e.getMessage());
-      }
-    } else {
-      Log.i(TAG, fileName + " already in cache.");
-    }
+    // move a short distance along the path, wrapping back to the first waypoint at the end of the loop
+    mDistanceAlongPath = (mDistanceAlongPath + STEP) % mPath.getLength();
+    mPath.sample(mDistanceAlongPath, mPathSample);
+    mTaxiGraphic.setGeometry(new Point(mPathSample[GeodesicPath.LONGITUDE], mPathSample[GeodesicPath.LATITUDE],
+        SpatialReferences.getWgs84()));
+
+    // rotate to the direction of travel
+    mTaxiGraphic.getAttributes().put("HEADING", mPathSample[GeodesicPath.AZIMUTH]);
   }
 
   @Override
@@ -36,9 +36,10 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.ArcGISFeature;
-import com.esri.arcgisruntime.data.ArcGISFeatureTable;
 import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.RelatedFeatureQueryResult;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.geometry.Polygon;
 import com.esri.arcgisruntime.layers.FeatureLayer;
 import com.esri.arcgisruntime.layers.Layer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
@@ -54,12 +55,22 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // related records are kept for this many parks, for this long
+  private static final int RELATED_CACHE_FEATURES = 200;
+  private static final long RELATED_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+  // parks in the visible extent are prefetched this many at a time, up to a limit per extent
+  private static final int MAX_PREFETCHES = 4;
+  private static final int MAX_PREFETCH_FEATURES = 50;
+
   private final ArrayList<FeatureLayer> mOperationalLayers = new ArrayList<>();
   private final List<String> mRelatedValues = new LinkedList<>();
   private MapView mMapView;
   private ArcGISMap mArcGISMap;
   private BottomSheetBehavior mBottomSheetBehavior = null;
   private ArrayAdapter<String> mArrayAdapter;
+  private final RelatedRecordCache<ArcGISFeature> mRelatedCache = new RelatedRecordCache<>(
+      RelatedRecordCache.tableSource(), RELATED_CACHE_FEATURES, RELATED_CACHE_TTL_MILLIS, MAX_PREFETCHES);
+  private ListenableFuture<FeatureQueryResult> mPrefetchQueryFuture;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -93,6 +104,13 @@ public class MainActivity extends AppCompatActivity {
       }
     });
 
+    // prefetch the related records of the parks in view whenever the map stops moving
+    mMapView.addNavigationChangedListener(navigationChangedEvent -> {
+      if (!navigationChangedEvent.isNavigating()) {
+        prefetchVisibleFeatures();
+      }
+    });
+
     mMapView.setOnTouchListener(new DefaultMapViewOnTouchListener(this, mMapView) {
       @Override
       public boolean onSingleTapConfirmed(MotionEvent e) {
@@ -131,8 +149,8 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Uses the selected FeatureLayer to get FeatureTable RelationshipInfos used to
-   * QueryRelatedFeaturesAsync which returns a list of related features.
+   * Identifies the tapped feature and lists its related features, from the related record cache if they have been
+   * prefetched or queried before.
    *
    * @param featureLayer Layer selected from the Map
    * @param clickPoint   Tapped location to query
@@ -149,33 +167,24 @@ public class MainActivity extends AppCompatActivity {
       try {
         IdentifyLayerResult identifyLayerResult = identifyLayerResultFuture.get();
         for (GeoElement element : identifyLayerResult.getElements()) {
-          Feature feature = (Feature) element;
-          ArcGISFeature arcGISFeature = (ArcGISFeature) feature;
-          ArcGISFeatureTable selectedTable = (ArcGISFeatureTable) feature.getFeatureTable();
-          final ListenableFuture<List<RelatedFeatureQueryResult>> relatedFeatureQueryResultFuture = selectedTable
-              .queryRelatedFeaturesAsync(arcGISFeature);
-          relatedFeatureQueryResultFuture.addDoneListener(() -> {
-            try {
-              List<RelatedFeatureQueryResult> relatedFeatureQueryResultList = relatedFeatureQueryResultFuture.get();
-              // iterate over returned RelatedFeatureQueryResults
-              for (RelatedFeatureQueryResult relatedQueryResult : relatedFeatureQueryResultList) {
+          ArcGISFeature arcGISFeature = (ArcGISFeature) element;
+          mRelatedCache.get(arcGISFeature, new RelatedRecordCache.Callback() {
+            @Override public void onRelated(List<RelatedRecordCache.Relationship> relationships) {
+              for (RelatedRecordCache.Relationship relationship : relationships) {
                 // add Table Name to List
-                String relatedTableName = relatedQueryResult.getRelatedTable().getTableName();
-                mRelatedValues.add(relatedTableName);
-                // iterate over Features returned
-                for (Feature relatedFeature : relatedQueryResult) {
-                  // get the Display field to use as filter on related attributes
-                  ArcGISFeature agsFeature = (ArcGISFeature) relatedFeature;
-                  String displayFieldName = agsFeature.getFeatureTable().getLayerInfo().getDisplayFieldName();
-                  String displayFieldValue = agsFeature.getAttributes().get(displayFieldName).toString();
-                  mRelatedValues.add(displayFieldValue);
-                  // notify ListAdapter content has changed
-                  mArrayAdapter.notifyDataSetChanged();
+                mRelatedValues.add(relationship.getTableName());
+                // add the Display field value of each related feature
+                for (RelatedRecordCache.Record record : relationship.getRecords()) {
+                  mRelatedValues.add(record.getDisplayValue());
                 }
               }
-            } catch (InterruptedException | ExecutionException e) {
+              // notify ListAdapter content has changed
+              mArrayAdapter.notifyDataSetChanged();
+            }
+
+            @Override public void onError(Exception e) {
               String error = "Error getting related feature query result: " + e.getMessage();
-              Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+              Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
               Log.e(TAG, error);
             }
           });
@@ -190,6 +199,41 @@ public class MainActivity extends AppCompatActivity {
     });
   }
 
+  /**
+   * Queries the parks in the visible extent and prefetches their related records, replacing any prefetches still
+   * waiting from the previous extent.
+   */
+  private void prefetchVisibleFeatures() {
+    Polygon visibleArea = mMapView.getVisibleArea();
+    if (mOperationalLayers.isEmpty() || visibleArea == null) {
+      return;
+    }
+    if (mPrefetchQueryFuture != null) {
+      mPrefetchQueryFuture.cancel(true);
+    }
+    QueryParameters queryParameters = new QueryParameters();
+    queryParameters.setGeometry(visibleArea);
+    queryParameters.setReturnGeometry(false);
+    queryParameters.setMaxFeatures(MAX_PREFETCH_FEATURES);
+    final ListenableFuture<FeatureQueryResult> queryFuture = mOperationalLayers.get(0).getFeatureTable()
+        .queryFeaturesAsync(queryParameters);
+    mPrefetchQueryFuture = queryFuture;
+    queryFuture.addDoneListener(() -> {
+      if (queryFuture != mPrefetchQueryFuture || queryFuture.isCancelled()) {
+        return;
+      }
+      try {
+        List<ArcGISFeature> features = new ArrayList<>();
+        for (Feature feature : queryFuture.get()) {
+          features.add((ArcGISFeature) feature);
+        }
+        mRelatedCache.prefetch(features);
+      } catch (InterruptedException | ExecutionException e) {
+        Log.e(TAG, "Error querying features to prefetch: " + e.getMessage());
+      }
+    });
+  }
+
   /**
    * Create Features from Layers in the Map
    *
@@ -204,10 +248,12 @@ public class MainActivity extends AppCompatActivity {
         mOperationalLayers.add(fLayer);
       }
     }
+    prefetchVisibleFeatures();
   }
 
   @Override
   protected void onPause() {
+    Log.i(TAG, "Related record cache: " + mRelatedCache);
     mMapView.pause();
     super.onPause();
   }
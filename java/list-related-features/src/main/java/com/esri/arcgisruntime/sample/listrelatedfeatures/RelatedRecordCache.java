@@ -0,0 +1,463 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.listrelatedfeatures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.ArcGISFeature;
+import com.esri.arcgisruntime.data.ArcGISFeatureTable;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.RelatedFeatureQueryResult;
+
+/**
+ * Caches the records related to features of a table, so listing them for a feature which has been queried before
+ * needs no round trip to the service.
+ *
+ * Features can be prefetched, for example those in the visible extent, a few at a time in the background. A request
+ * for a feature's related records is answered from the cache, joins a query already in flight for the feature, or is
+ * queried straight away ahead of any prefetches. A related record shared by several features is kept once.
+ *
+ * Entries expire after a time to live, and the least recently used features are evicted once the cache is full. After
+ * editing a related record, call {@link #invalidateRecord(String, long)} to drop it and every feature related to it;
+ * after editing a feature's relationships, call {@link #invalidate(long)}.
+ *
+ * Must be used from the thread the {@link RelatedSource} calls back on.
+ *
+ * @param <F> type of the features whose related records are cached
+ */
+final class RelatedRecordCache<F> {
+
+  /**
+   * A related record, shown by the value of its table's display field.
+   */
+  static final class Record {
+    private final String mTableName;
+    private final long mObjectId;
+    private final String mDisplayValue;
+
+    Record(String tableName, long objectId, String displayValue) {
+      mTableName = tableName;
+      mObjectId = objectId;
+      mDisplayValue = displayValue;
+    }
+
+    String getTableName() {
+      return mTableName;
+    }
+
+    long getObjectId() {
+      return mObjectId;
+    }
+
+    String getDisplayValue() {
+      return mDisplayValue;
+    }
+  }
+
+  /**
+   * The records of one related table which are related to a feature.
+   */
+  static final class Relationship {
+    private final String mTableName;
+    private final List<Record> mRecords;
+
+    Relationship(String tableName, List<Record> records) {
+      mTableName = tableName;
+      mRecords = records;
+    }
+
+    String getTableName() {
+      return mTableName;
+    }
+
+    List<Record> getRecords() {
+      return mRecords;
+    }
+  }
+
+  /**
+   * Queries the records related to a feature.
+   */
+  interface RelatedSource<F> {
+    long idOf(F feature);
+
+    void queryRelated(F feature, Callback callback);
+  }
+
+  /**
+   * Receives the records related to a feature.
+   */
+  interface Callback {
+    void onRelated(List<Relationship> relationships);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * A feature's cached entry, holding the keys of its related records so shared records are kept once.
+   */
+  private static final class Entry {
+    private final long mTime;
+    private final List<String> mTableNames;
+    private final List<List<String>> mRecordKeys;
+    private boolean mPrefetched;
+
+    Entry(long time, List<String> tableNames, List<List<String>> recordKeys, boolean prefetched) {
+      mTime = time;
+      mTableNames = tableNames;
+      mRecordKeys = recordKeys;
+      mPrefetched = prefetched;
+    }
+  }
+
+  private final RelatedSource<F> mSource;
+  private final int mMaxFeatures;
+  private final long mTimeToLiveMillis;
+  private final int mMaxPrefetches;
+
+  private final LinkedHashMap<Long, Entry> mEntries;
+  // each record shared by the cached features, and the number of features referring to it
+  private final Map<String, Record> mRecords = new HashMap<>();
+  private final Map<String, Integer> mRecordReferences = new HashMap<>();
+  // callbacks waiting for each query in flight, and whether it is a prefetch
+  private final Map<Long, List<Callback>> mInFlight = new HashMap<>();
+  private final Map<Long, Boolean> mInFlightPrefetch = new HashMap<>();
+  private final Deque<F> mPrefetchQueue = new ArrayDeque<>();
+  private int mPrefetchesInFlight;
+  private int mGeneration;
+
+  private long mHits;
+  private long mMisses;
+  private long mJoined;
+  private long mPrefetched;
+  private long mPrefetchesUsed;
+  private long mEvictions;
+  private long mInvalidations;
+
+  /**
+   * @param source           queries the records related to a feature
+   * @param maxFeatures      number of features to keep related records for
+   * @param timeToLiveMillis time after which a feature's related records are queried again
+   * @param maxPrefetches    number of prefetch queries in flight at a time
+   */
+  RelatedRecordCache(RelatedSource<F> source, int maxFeatures, long timeToLiveMillis, int maxPrefetches) {
+    mSource = source;
+    mMaxFeatures = maxFeatures;
+    mTimeToLiveMillis = timeToLiveMillis;
+    mMaxPrefetches = maxPrefetches;
+    // access ordered, so the eldest entry is the least recently used
+    mEntries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Creates a related source which queries the relationships of features of an {@link ArcGISFeatureTable}, showing
+   * each related record by its table's display field.
+   */
+  static RelatedSource<ArcGISFeature> tableSource() {
+    return new RelatedSource<ArcGISFeature>() {
+      @Override public long idOf(ArcGISFeature feature) {
+        return objectIdOf(feature);
+      }
+
+      @Override public void queryRelated(ArcGISFeature feature, Callback callback) {
+        final ListenableFuture<List<RelatedFeatureQueryResult>> relatedFeatureQueryResultFuture =
+            ((ArcGISFeatureTable) feature.getFeatureTable()).queryRelatedFeaturesAsync(feature);
+        relatedFeatureQueryResultFuture.addDoneListener(() -> {
+          List<Relationship> relationships = new ArrayList<>();
+          try {
+            for (RelatedFeatureQueryResult relatedQueryResult : relatedFeatureQueryResultFuture.get()) {
+              String relatedTableName = relatedQueryResult.getRelatedTable().getTableName();
+              List<Record> records = new ArrayList<>();
+              for (Feature relatedFeature : relatedQueryResult) {
+                ArcGISFeature agsFeature = (ArcGISFeature) relatedFeature;
+                String displayFieldName = agsFeature.getFeatureTable().getLayerInfo().getDisplayFieldName();
+                records.add(new Record(relatedTableName, objectIdOf(agsFeature),
+                    String.valueOf(agsFeature.getAttributes().get(displayFieldName))));
+              }
+              relationships.add(new Relationship(relatedTableName, records));
+            }
+          } catch (Exception e) {
+            callback.onError(e);
+            return;
+          }
+          callback.onRelated(relationships);
+        });
+      }
+    };
+  }
+
+  private static long objectIdOf(ArcGISFeature feature) {
+    String objectIdField = ((ArcGISFeatureTable) feature.getFeatureTable()).getObjectIdField();
+    return ((Number) feature.getAttributes().get(objectIdField)).longValue();
+  }
+
+  /**
+   * Gets the records related to a feature, calling back straight away if they are cached.
+   */
+  void get(F feature, Callback callback) {
+    long id = mSource.idOf(feature);
+    Entry entry = liveEntry(id);
+    if (entry != null) {
+      mHits++;
+      if (entry.mPrefetched) {
+        // count each prefetch once, however often its feature is opened
+        entry.mPrefetched = false;
+        mPrefetchesUsed++;
+      }
+      callback.onRelated(relationshipsOf(entry));
+      return;
+    }
+    List<Callback> waiting = mInFlight.get(id);
+    if (waiting != null) {
+      // the query is already in flight, usually as a prefetch which hasn't returned yet
+      mJoined++;
+      if (Boolean.TRUE.equals(mInFlightPrefetch.put(id, false))) {
+        mPrefetchesUsed++;
+      }
+      waiting.add(callback);
+      return;
+    }
+    mMisses++;
+    query(feature, id, false, callback);
+  }
+
+  /**
+   * Prefetches the related records of features which aren't already cached, replacing any features still waiting to
+   * be prefetched from an earlier call.
+   */
+  void prefetch(List<F> features) {
+    mPrefetchQueue.clear();
+    for (F feature : features) {
+      long id = mSource.idOf(feature);
+      if (liveEntry(id) == null && !mInFlight.containsKey(id)) {
+        mPrefetchQueue.add(feature);
+      }
+    }
+    prefetchNext();
+  }
+
+  /**
+   * Drops the related records of a feature, after its relationships have been edited.
+   */
+  void invalidate(long featureId) {
+    if (remove(featureId)) {
+      mInvalidations++;
+    }
+    // a query in flight may return the records from before the edit
+    mGeneration++;
+  }
+
+  /**
+   * Drops a related record and the related records of every feature related to it, after it has been edited.
+   */
+  void invalidateRecord(String tableName, long objectId) {
+    String key = keyOf(tableName, objectId);
+    if (mRecords.containsKey(key)) {
+      for (Iterator<Map.Entry<Long, Entry>> iterator = mEntries.entrySet().iterator(); iterator.hasNext(); ) {
+        Entry entry = iterator.next().getValue();
+        for (List<String> recordKeys : entry.mRecordKeys) {
+          if (recordKeys.contains(key)) {
+            iterator.remove();
+            release(entry);
+            mInvalidations++;
+            break;
+          }
+        }
+      }
+    }
+    mGeneration++;
+  }
+
+  /**
+   * Drops all the cached related records.
+   */
+  void clear() {
+    mEntries.clear();
+    mRecords.clear();
+    mRecordReferences.clear();
+    mPrefetchQueue.clear();
+    mGeneration++;
+  }
+
+  private void prefetchNext() {
+    while (mPrefetchesInFlight < mMaxPrefetches && !mPrefetchQueue.isEmpty()) {
+      F feature = mPrefetchQueue.poll();
+      long id = mSource.idOf(feature);
+      if (liveEntry(id) != null || mInFlight.containsKey(id)) {
+        continue;
+      }
+      mPrefetchesInFlight++;
+      mPrefetched++;
+      query(feature, id, true, null);
+    }
+  }
+
+  private void query(F feature, long id, boolean prefetch, Callback callback) {
+    List<Callback> waiting = new ArrayList<>();
+    if (callback != null) {
+      waiting.add(callback);
+    }
+    mInFlight.put(id, waiting);
+    mInFlightPrefetch.put(id, prefetch);
+    int generation = mGeneration;
+    Callback queryCallback = new Callback() {
+      @Override public void onRelated(List<Relationship> relationships) {
+        onQueried(id, prefetch, generation, relationships, null);
+      }
+
+      @Override public void onError(Exception e) {
+        onQueried(id, prefetch, generation, null, e);
+      }
+    };
+    try {
+      mSource.queryRelated(feature, queryCallback);
+    } catch (RuntimeException e) {
+      queryCallback.onError(e);
+    }
+  }
+
+  private void onQueried(long id, boolean prefetch, int generation, List<Relationship> relationships,
+      Exception error) {
+    List<Callback> waiting = mInFlight.remove(id);
+    // still a prefetch only if nothing asked for the feature while it was in flight
+    boolean unused = Boolean.TRUE.equals(mInFlightPrefetch.remove(id));
+    if (prefetch) {
+      mPrefetchesInFlight--;
+    }
+    if (relationships != null && generation == mGeneration) {
+      put(id, relationships, unused);
+    }
+    if (waiting != null) {
+      for (Callback callback : waiting) {
+        if (relationships != null) {
+          callback.onRelated(relationships);
+        } else {
+          callback.onError(error);
+        }
+      }
+    }
+    prefetchNext();
+  }
+
+  private void put(long id, List<Relationship> relationships, boolean prefetched) {
+    remove(id);
+    List<String> tableNames = new ArrayList<>(relationships.size());
+    List<List<String>> recordKeys = new ArrayList<>(relationships.size());
+    for (Relationship relationship : relationships) {
+      tableNames.add(relationship.mTableName);
+      List<String> keys = new ArrayList<>(relationship.mRecords.size());
+      for (Record record : relationship.mRecords) {
+        String key = keyOf(record.mTableName, record.mObjectId);
+        // the latest query of a shared record replaces what earlier ones returned
+        mRecords.put(key, record);
+        Integer references = mRecordReferences.get(key);
+        mRecordReferences.put(key, references == null ? 1 : references + 1);
+        keys.add(key);
+      }
+      recordKeys.add(keys);
+    }
+    mEntries.put(id, new Entry(System.currentTimeMillis(), tableNames, recordKeys, prefetched));
+    // evict the least recently used features
+    Iterator<Map.Entry<Long, Entry>> iterator = mEntries.entrySet().iterator();
+    while (mEntries.size() > mMaxFeatures) {
+      Entry eldest = iterator.next().getValue();
+      iterator.remove();
+      release(eldest);
+      mEvictions++;
+    }
+  }
+
+  private Entry liveEntry(long id) {
+    Entry entry = mEntries.get(id);
+    if (entry != null && System.currentTimeMillis() - entry.mTime >= mTimeToLiveMillis) {
+      remove(id);
+      return null;
+    }
+    return entry;
+  }
+
+  private boolean remove(long id) {
+    Entry entry = mEntries.remove(id);
+    if (entry == null) {
+      return false;
+    }
+    release(entry);
+    return true;
+  }
+
+  /**
+   * Drops the references of a feature's entry to its related records, and any records no longer referred to.
+   */
+  private void release(Entry entry) {
+    for (List<String> keys : entry.mRecordKeys) {
+      for (String key : keys) {
+        Integer references = mRecordReferences.get(key);
+        if (references == null || references <= 1) {
+          mRecordReferences.remove(key);
+          mRecords.remove(key);
+        } else {
+          mRecordReferences.put(key, references - 1);
+        }
+      }
+    }
+  }
+
+  private List<Relationship> relationshipsOf(Entry entry) {
+    List<Relationship> relationships = new ArrayList<>(entry.mTableNames.size());
+    for (int i = 0; i < entry.mTableNames.size(); i++) {
+      List<String> keys = entry.mRecordKeys.get(i);
+      List<Record> records = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        records.add(mRecords.get(key));
+      }
+      relationships.add(new Relationship(entry.mTableNames.get(i), Collections.unmodifiableList(records)));
+    }
+    return relationships;
+  }
+
+  private static String keyOf(String tableName, long objectId) {
+    return tableName + '#' + objectId;
+  }
+
+  /**
+   * @return the hit rate, how many prefetches were used, and how many records are shared between features
+   */
+  @Override
+  public String toString() {
+    long requests = mHits + mMisses + mJoined;
+    int references = 0;
+    for (Integer count : mRecordReferences.values()) {
+      references += count;
+    }
+    return String.format(Locale.US,
+        "hit rate %.2f (%d hits, %d joined in flight, %d misses), %d prefetched, %d used (%.2f), "
+            + "%d features cached, %d records for %d references, %d evicted, %d invalidated",
+        requests == 0 ? 0 : (double) mHits / requests, mHits, mJoined, mMisses, mPrefetched, mPrefetchesUsed,
+        mPrefetched == 0 ? 0 : (double) mPrefetchesUsed / mPrefetched, mEntries.size(), mRecords.size(), references,
+        mEvictions, mInvalidations);
+  }
+}
@@ -0,0 +1,463 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinegeocode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geocodes every address in a CSV file and writes the matches to another CSV file, for geocoding large numbers of
+ * addresses with an offline locator.
+ *
+ * The input is read a line at a time, a bounded number of addresses are geocoded at once, and a bounded number of
+ * results wait for an earlier address to be written, so memory use doesn't grow with the size of the file. Each output
+ * line is the input line followed by the status, location, score and label of the best match, written in the same
+ * order as the input. An address the locator hasn't answered within a timeout is written as an error, so a lost
+ * callback can't stall the batch.
+ *
+ * Progress is saved to a file next to the output as results are written. Starting a batch again with the same files
+ * after it was cancelled, or the app was killed, carries on from the last saved row. The progress file is deleted once
+ * the batch completes.
+ *
+ * The locator is hidden behind the {@link Locator} interface, so that a batch can be run against a stand-in locator.
+ */
+final class BatchGeocoder {
+
+  /**
+   * Geocodes a single address.
+   */
+  interface Locator {
+    /**
+     * Geocodes an address and reports the result to the callback, from any thread.
+     */
+    void geocode(String address, Callback callback);
+  }
+
+  /**
+   * Receives the result of geocoding a single address.
+   */
+  interface Callback {
+    /**
+     * @param match the best match, or null if the address wasn't found
+     */
+    void onMatch(Match match);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Receives the progress of a batch, on the thread running the batch.
+   */
+  interface Listener {
+    void onProgress(long geocoded, double addressesPerSecond);
+
+    /**
+     * @param geocoded           the number of addresses geocoded, including those from before the batch was resumed
+     * @param failed             the number of addresses which failed to geocode in this run
+     * @param addressesPerSecond the throughput of this run
+     * @param cancelled          whether the batch was cancelled before the end of the input
+     */
+    void onComplete(long geocoded, long failed, double addressesPerSecond, boolean cancelled);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * The best match for an address.
+   */
+  static final class Match {
+    private final double mX;
+    private final double mY;
+    private final double mScore;
+    private final String mLabel;
+
+    Match(double x, double y, double score, String label) {
+      mX = x;
+      mY = y;
+      mScore = score;
+      mLabel = label;
+    }
+  }
+
+  static final String STATUS_MATCHED = "MATCHED";
+  static final String STATUS_UNMATCHED = "UNMATCHED";
+  static final String STATUS_ERROR = "ERROR";
+
+  private static final String RESULT_HEADER = "status,x,y,score,match";
+  private static final String PROGRESS_SUFFIX = ".progress";
+  // rows written between saving progress
+  private static final int CHECKPOINT_INTERVAL = 500;
+  private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+  private final Locator mLocator;
+  private final int mConcurrency;
+  private final int mMaxBufferedRows;
+  private final long mTimeoutMillis;
+  private final int mAddressColumn;
+  private final boolean mHasHeader;
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+  private volatile boolean mCancelled;
+
+  /**
+   * @param locator         geocodes each address
+   * @param concurrency     maximum number of addresses geocoded at once
+   * @param maxBufferedRows maximum number of rows read ahead of the first row not yet written, at least concurrency
+   * @param timeoutMillis   time to wait for an address to be geocoded before writing it as an error
+   * @param addressColumn   index of the CSV column holding the address
+   * @param hasHeader       whether the first line of the input is a header
+   */
+  BatchGeocoder(Locator locator, int concurrency, int maxBufferedRows, long timeoutMillis, int addressColumn,
+      boolean hasHeader) {
+    mLocator = locator;
+    mConcurrency = concurrency;
+    mMaxBufferedRows = Math.max(maxBufferedRows, concurrency);
+    mTimeoutMillis = timeoutMillis;
+    mAddressColumn = addressColumn;
+    mHasHeader = hasHeader;
+  }
+
+  /**
+   * Starts geocoding the input in the background, or resumes a batch which was interrupted.
+   *
+   * @param input    CSV file of addresses
+   * @param output   CSV file to write results to
+   * @param listener receives progress on the background thread
+   */
+  void start(File input, File output, Listener listener) {
+    mCancelled = false;
+    mExecutor.execute(() -> {
+      try {
+        run(input, output, listener);
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        listener.onError(e);
+      }
+    });
+  }
+
+  /**
+   * Stops reading the input. Addresses already being geocoded are written and progress is saved, so the batch can be
+   * resumed.
+   */
+  void cancel() {
+    mCancelled = true;
+  }
+
+  /**
+   * Cancels the batch, and stops the background thread once the batch has saved its progress.
+   */
+  void shutdown() {
+    cancel();
+    mExecutor.shutdown();
+  }
+
+  private void run(File input, File output, Listener listener) throws IOException, InterruptedException {
+    File progressFile = new File(output.getPath() + PROGRESS_SUFFIX);
+    long resumeRow = readProgress(progressFile, input, output);
+    if (resumeRow < 0) {
+      resumeRow = 0;
+      // start again from scratch
+      new FileOutputStream(output).close();
+    }
+
+    Semaphore permits = new Semaphore(mConcurrency);
+    Rows rows = new Rows();
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8));
+         FileOutputStream out = new FileOutputStream(output, true);
+         Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+      String header = mHasHeader ? reader.readLine() : null;
+      if (header != null && output.length() == 0) {
+        writer.write(header + "," + RESULT_HEADER + "\n");
+      }
+      for (long i = 0; i < resumeRow; i++) {
+        if (reader.readLine() == null) {
+          break;
+        }
+      }
+
+      long start = System.nanoTime();
+      long lastProgress = start;
+      long nextRow = resumeRow;
+      long written = resumeRow;
+      String line;
+      while (!mCancelled && (line = reader.readLine()) != null) {
+        long row = nextRow++;
+        // hold back while the results waiting for an earlier row fill the buffer
+        while (row - written >= mMaxBufferedRows) {
+          rows.awaitCompleted(written, mTimeoutMillis);
+          permits.release(rows.expire(mTimeoutMillis));
+          written = drain(rows, written, writer, out, progressFile, input);
+        }
+        while (!permits.tryAcquire(mTimeoutMillis, TimeUnit.MILLISECONDS)) {
+          permits.release(rows.expire(mTimeoutMillis));
+        }
+        List<String> fields = parseCsvLine(line);
+        String address = mAddressColumn < fields.size() ? fields.get(mAddressColumn) : "";
+        rows.start(row, line);
+        Callback callback = new Callback() {
+          @Override public void onMatch(Match match) {
+            String result = match == null ? STATUS_UNMATCHED + ",,,," : STATUS_MATCHED + "," + match.mX + ","
+                + match.mY + "," + match.mScore + "," + escapeCsv(match.mLabel);
+            if (rows.complete(row, result, false)) {
+              permits.release();
+            }
+          }
+
+          @Override public void onError(Exception e) {
+            if (rows.complete(row, STATUS_ERROR + ",,,," + escapeCsv(String.valueOf(e.getMessage())), true)) {
+              permits.release();
+            }
+          }
+        };
+        try {
+          mLocator.geocode(address, callback);
+        } catch (RuntimeException e) {
+          callback.onError(e);
+        }
+
+        written = drain(rows, written, writer, out, progressFile, input);
+        long now = System.nanoTime();
+        if (now - lastProgress > PROGRESS_INTERVAL_MILLIS * 1_000_000) {
+          lastProgress = now;
+          listener.onProgress(written, rate(written - resumeRow, start));
+        }
+      }
+      // wait for the addresses still being geocoded
+      while (!permits.tryAcquire(mConcurrency, mTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        permits.release(rows.expire(mTimeoutMillis));
+      }
+      written = drain(rows, written, writer, out, progressFile, input);
+      writer.flush();
+      boolean cancelled = mCancelled;
+      if (cancelled) {
+        writeProgress(progressFile, written, out.getChannel().size(), input);
+      } else {
+        progressFile.delete();
+      }
+      listener.onComplete(written, rows.getFailed(), rate(written - resumeRow, start), cancelled);
+    }
+  }
+
+  /**
+   * Writes the results which follow on from those already written, in input order.
+   *
+   * @return the number of rows written
+   */
+  private long drain(Rows rows, long written, Writer writer, FileOutputStream out, File progressFile, File input)
+      throws IOException {
+    for (String line : rows.take(written)) {
+      writer.write(line);
+      writer.write('\n');
+      written++;
+      if (written % CHECKPOINT_INTERVAL == 0) {
+        writer.flush();
+        writeProgress(progressFile, written, out.getChannel().size(), input);
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Reads the saved progress of an interrupted batch and truncates the output to the rows it covers.
+   *
+   * @return the number of input rows already written, or -1 if the batch must start from the beginning
+   */
+  private static long readProgress(File progressFile, File input, File output) {
+    if (!progressFile.isFile() || !output.isFile()) {
+      return -1;
+    }
+    try (BufferedReader reader = new BufferedReader(new FileReader(progressFile))) {
+      String[] fields = reader.readLine().split(" ");
+      long rows = Long.parseLong(fields[0]);
+      long length = Long.parseLong(fields[1]);
+      // the input must be the same file the progress was saved for
+      if (Long.parseLong(fields[2]) != input.length() || Long.parseLong(fields[3]) != input.lastModified()
+          || output.length() < length) {
+        return -1;
+      }
+      // drop anything written after the progress was saved
+      try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+        file.setLength(length);
+      }
+      return rows;
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+  }
+
+  private static void writeProgress(File progressFile, long rows, long length, File input) throws IOException {
+    File temp = new File(progressFile.getPath() + ".part");
+    try (PrintWriter writer = new PrintWriter(temp)) {
+      writer.println(rows + " " + length + " " + input.length() + " " + input.lastModified());
+    }
+    if (!temp.renameTo(progressFile)) {
+      temp.delete();
+      throw new IOException("Unable to save batch geocode progress");
+    }
+  }
+
+  private static double rate(long count, long startNanos) {
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    return seconds > 0 ? count / seconds : 0;
+  }
+
+  /**
+   * Splits a line of CSV into fields. Fields may be quoted, with quotes inside them doubled.
+   */
+  static List<String> parseCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"') {
+          if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+            field.append('"');
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * Quotes a value for CSV if it contains a comma, quote or line break.
+   */
+  static String escapeCsv(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * The rows of a batch being geocoded, and the results waiting to be written in input order. Rows are completed on
+   * the locator's threads, so access is synchronized.
+   */
+  private static final class Rows {
+    // input lines of the rows being geocoded, in the order they were started
+    private final Map<Long, String> mInputLines = new LinkedHashMap<>();
+    private final Map<Long, Long> mStartNanos = new HashMap<>();
+    // output lines waiting for an earlier row to be written
+    private final Map<Long, String> mCompleted = new HashMap<>();
+    private long mFailed;
+
+    synchronized void start(long row, String inputLine) {
+      mInputLines.put(row, inputLine);
+      mStartNanos.put(row, System.nanoTime());
+    }
+
+    /**
+     * @return whether the row was still being geocoded, rather than already written as timed out
+     */
+    synchronized boolean complete(long row, String result, boolean failed) {
+      String inputLine = mInputLines.remove(row);
+      if (inputLine == null) {
+        return false;
+      }
+      mStartNanos.remove(row);
+      mCompleted.put(row, inputLine + "," + result);
+      if (failed) {
+        mFailed++;
+      }
+      notifyAll();
+      return true;
+    }
+
+    /**
+     * Completes the rows which have been geocoded for longer than the timeout as errors.
+     *
+     * @return the number of rows completed
+     */
+    synchronized int expire(long timeoutMillis) {
+      long now = System.nanoTime();
+      List<Long> expired = new ArrayList<>();
+      for (long row : mInputLines.keySet()) {
+        if (now - mStartNanos.get(row) < TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+          // the rows after it were started later
+          break;
+        }
+        expired.add(row);
+      }
+      for (long row : expired) {
+        complete(row, STATUS_ERROR + ",,,,Timed out", true);
+      }
+      return expired.size();
+    }
+
+    /**
+     * Waits for a row to be completed, or for the timeout to pass.
+     */
+    synchronized void awaitCompleted(long row, long timeoutMillis) throws InterruptedException {
+      if (mInputLines.containsKey(row)) {
+        wait(timeoutMillis);
+      }
+    }
+
+    /**
+     * @return the output lines of the rows which follow on from those already written, in input order
+     */
+    synchronized List<String> take(long written) {
+      List<String> lines = new ArrayList<>();
+      String line;
+      while ((line = mCompleted.remove(written + lines.size())) != null) {
+        lines.add(line);
+      }
+      return lines;
+    }
+
+    synchronized long getFailed() {
+      return mFailed;
+    }
+  }
+}
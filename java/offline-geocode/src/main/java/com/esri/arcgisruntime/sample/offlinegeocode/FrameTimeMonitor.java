@@ -0,0 +1,107 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinegeocode;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import android.view.Choreographer;
+
+/**
+ * Measures the time between display frames while it is running, to show whether the main thread kept up with the
+ * display during an interaction.
+ */
+final class FrameTimeMonitor implements Choreographer.FrameCallback {
+
+  private static final int MAX_FRAMES = 4096;
+
+  private final long mFrameIntervalNanos;
+  private final long[] mFrameNanos = new long[MAX_FRAMES];
+  private int mFrameCount;
+  private long mLastFrameTimeNanos;
+  private boolean mRunning;
+
+  /**
+   * @param refreshRate refresh rate of the display in frames per second
+   */
+  FrameTimeMonitor(float refreshRate) {
+    mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+  }
+
+  /**
+   * Starts measuring frames, discarding any previous measurements. Must be called on the main thread.
+   */
+  void start() {
+    mFrameCount = 0;
+    mLastFrameTimeNanos = 0;
+    if (!mRunning) {
+      mRunning = true;
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  /**
+   * Stops measuring frames. Must be called on the main thread.
+   */
+  void stop() {
+    if (mRunning) {
+      mRunning = false;
+      Choreographer.getInstance().removeFrameCallback(this);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    if (!mRunning) {
+      return;
+    }
+    if (mLastFrameTimeNanos != 0 && mFrameCount < MAX_FRAMES) {
+      mFrameNanos[mFrameCount++] = frameTimeNanos - mLastFrameTimeNanos;
+    }
+    mLastFrameTimeNanos = frameTimeNanos;
+    Choreographer.getInstance().postFrameCallback(this);
+  }
+
+  /**
+   * @return the frame time percentiles and the number of frames which took longer than one and a half refresh
+   * intervals, since the monitor was last started
+   */
+  @Override
+  public String toString() {
+    if (mFrameCount == 0) {
+      return "no frames";
+    }
+    long[] sorted = Arrays.copyOf(mFrameNanos, mFrameCount);
+    Arrays.sort(sorted);
+    int janky = 0;
+    for (long frameNanos : sorted) {
+      // allow for jitter in the frame time before counting a frame as janky
+      if (frameNanos > mFrameIntervalNanos * 3 / 2) {
+        janky++;
+      }
+    }
+    return String.format(Locale.US, "%d frames, p50 %.1f ms, p95 %.1f ms, %d janky", mFrameCount,
+        percentile(sorted, 50), percentile(sorted, 95), janky);
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
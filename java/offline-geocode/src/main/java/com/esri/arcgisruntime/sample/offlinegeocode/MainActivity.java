@@ -16,7 +16,9 @@
 
 package com.esri.arcgisruntime.sample.offlinegeocode;
 
+import java.io.File;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 
 import android.content.Context;
@@ -24,6 +26,8 @@ import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.AdapterView;
@@ -37,6 +41,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.TileCache;
 import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.layers.ArcGISTiledLayer;
 import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
@@ -58,6 +63,15 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // size of the grid cells reverse geocode results are cached against, in meters
+  private static final double REVERSE_GEOCODE_CELL_SIZE = 10;
+  private static final int REVERSE_GEOCODE_CACHE_SIZE = 4096;
+  // column of addresses.csv holding the address, after a header line
+  private static final int BATCH_ADDRESS_COLUMN = 0;
+  // results held waiting for an earlier address, per address geocoded at once
+  private static final int BATCH_BUFFERED_ROWS_PER_ADDRESS = 16;
+  private static final long BATCH_GEOCODE_TIMEOUT_MILLIS = 30000;
+
   private GraphicsOverlay mGraphicsOverlay;
   private GeocodeParameters mGeocodeParameters;
   private MapView mMapView;
@@ -65,6 +79,14 @@ public class MainActivity extends AppCompatActivity {
   private ReverseGeocodeParameters mReverseGeocodeParameters;
   private SearchView mSearchView;
   private SimpleMarkerSymbol mPointSymbol;
+  private TextView mCalloutTextView;
+  private ReverseGeocoder mReverseGeocoder;
+  private FrameTimeMonitor mFrameTimeMonitor;
+  // whether reverse geocode results come from dragging the graphic, rather than a long press
+  private boolean mDragging;
+  private GeocodeParameters mBatchGeocodeParameters;
+  private BatchGeocoder mBatchGeocoder;
+  private boolean mBatchRunning;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -105,6 +127,56 @@ public class MainActivity extends AppCompatActivity {
     mLocatorTask = new LocatorTask(
         getExternalFilesDir(null) + getResources().getString(R.string.san_diego_loc));
     mLocatorTask.loadAsync();
+    // reverse geocode points without blocking the main thread, skipping points dragged past while the locator is busy
+    mReverseGeocoder = new ReverseGeocoder(mLocatorTask, mReverseGeocodeParameters, REVERSE_GEOCODE_CELL_SIZE,
+        REVERSE_GEOCODE_CACHE_SIZE, new ReverseGeocoder.Listener() {
+      @Override public void onResult(Point point, GeocodeResult result) {
+        if (result != null) {
+          if (mDragging) {
+            // the graphic and callout already follow the drag, so just update the address
+            showCallout(mGraphicsOverlay.getGraphics().isEmpty() ? point
+                : (Point) mGraphicsOverlay.getGraphics().get(0).getGeometry(), formatAddress(result));
+          } else {
+            displayGeocodeResult(point, formatAddress(result));
+          }
+        }
+      }
+
+      @Override public void onError(Point point, Exception e) {
+        String error = "Error getting geocode results: " + e.getMessage();
+        Log.e(TAG, error);
+        if (!mDragging) {
+          Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+        }
+      }
+    });
+    mFrameTimeMonitor = new FrameTimeMonitor(getWindowManager().getDefaultDisplay().getRefreshRate());
+    // batch results only need the best match, as longitude and latitude
+    mBatchGeocodeParameters = new GeocodeParameters();
+    mBatchGeocodeParameters.setMaxResults(1);
+    mBatchGeocodeParameters.setOutputSpatialReference(SpatialReferences.getWgs84());
+    // geocode as many addresses at once as there are cores to run the locator on
+    mBatchGeocoder = new BatchGeocoder((address, callback) -> {
+      ListenableFuture<List<GeocodeResult>> geocodeFuture = mLocatorTask.geocodeAsync(address, mBatchGeocodeParameters);
+      geocodeFuture.addDoneListener(() -> {
+        try {
+          List<GeocodeResult> geocodeResults = geocodeFuture.get();
+          if (geocodeResults.isEmpty()) {
+            callback.onMatch(null);
+          } else {
+            GeocodeResult geocodeResult = geocodeResults.get(0);
+            Point location = geocodeResult.getDisplayLocation();
+            callback.onMatch(new BatchGeocoder.Match(location.getX(), location.getY(), geocodeResult.getScore(),
+                geocodeResult.getLabel()));
+          }
+        } catch (InterruptedException | ExecutionException e) {
+          callback.onError(e);
+        }
+      });
+    }, Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().availableProcessors() * BATCH_BUFFERED_ROWS_PER_ADDRESS, BATCH_GEOCODE_TIMEOUT_MILLIS,
+        BATCH_ADDRESS_COLUMN, true);
+    mCalloutTextView = new TextView(this);
 
     mSearchView = findViewById(R.id.searchView);
     mSearchView.setIconifiedByDefault(true);
@@ -197,32 +269,82 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Uses the locator task to reverse geocode for the given point.
+   * Geocodes every address in addresses.csv in the app's external files directory to addresses_geocoded.csv, or stops
+   * the batch if it is already running. A stopped batch carries on from where it left off when started again.
+   */
+  private void toggleBatchGeocode() {
+    if (mBatchRunning) {
+      mBatchGeocoder.cancel();
+      return;
+    }
+    File input = new File(getExternalFilesDir(null) + getString(R.string.batch_addresses_csv));
+    File output = new File(getExternalFilesDir(null) + getString(R.string.batch_output_csv));
+    if (!input.isFile()) {
+      Toast.makeText(this, getString(R.string.batch_input_missing, input.getPath()), Toast.LENGTH_LONG).show();
+      return;
+    }
+    mLocatorTask.addDoneLoadingListener(() -> {
+      if (mLocatorTask.getLoadStatus() == LoadStatus.LOADED) {
+        mBatchRunning = true;
+        Toast.makeText(this, R.string.batch_started, Toast.LENGTH_SHORT).show();
+        mBatchGeocoder.start(input, output, new BatchGeocoder.Listener() {
+          @Override public void onProgress(long geocoded, double addressesPerSecond) {
+            Log.i(TAG, String.format(Locale.US, "Batch geocoded %d addresses, %.1f per second", geocoded,
+                addressesPerSecond));
+          }
+
+          @Override public void onComplete(long geocoded, long failed, double addressesPerSecond, boolean cancelled) {
+            Log.i(TAG, String.format(Locale.US, "Batch geocoding %s: %d addresses, %d failed, %.1f per second",
+                cancelled ? "stopped" : "complete", geocoded, failed, addressesPerSecond));
+            runOnUiThread(() -> {
+              mBatchRunning = false;
+              String message = cancelled ? getString(R.string.batch_stopped, geocoded)
+                  : getString(R.string.batch_complete, geocoded, addressesPerSecond);
+              Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+            });
+          }
+
+          @Override public void onError(Exception e) {
+            String error = "Error batch geocoding: " + e.getMessage();
+            Log.e(TAG, error);
+            runOnUiThread(() -> {
+              mBatchRunning = false;
+              Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+            });
+          }
+        });
+      } else {
+        String error = "Error loading locator task: " + mLocatorTask.getLoadError().getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
+    });
+  }
+
+  /**
+   * Uses the locator task to reverse geocode for the given point. The result is shown once the locator answers.
    *
    * @param point on which to perform the reverse geocode
    */
   private void reverseGeocode(Point point) {
-    final ListenableFuture<List<GeocodeResult>> results = mLocatorTask.reverseGeocodeAsync(point, mReverseGeocodeParameters);
-    try {
-      List<GeocodeResult> geocodeResults = results.get();
-      if (!geocodeResults.isEmpty()) {
-        // get the top result
-        GeocodeResult geocode = geocodeResults.get(0);
-        String detail;
-        // attributes from a click-based search
-        String street = geocode.getAttributes().get("Street").toString();
-        String city = geocode.getAttributes().get("City").toString();
-        String state = geocode.getAttributes().get("State").toString();
-        String zip = geocode.getAttributes().get("ZIP").toString();
-        detail = city + ", " + state + " " + zip;
-        String address = street + "," + detail;
-        displayGeocodeResult(point, address);
-      }
-    } catch (ExecutionException | InterruptedException e) {
-      String error = "Error getting geocode results: " + e.getMessage();
-      Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-      Log.e(TAG, error);
-    }
+    mReverseGeocoder.request(point);
+  }
+
+  /**
+   * Formats a reverse geocode result as a single line address.
+   *
+   * @param geocode result of a click-based search
+   * @return the address
+   */
+  private static String formatAddress(GeocodeResult geocode) {
+    String detail;
+    // attributes from a click-based search
+    String street = geocode.getAttributes().get("Street").toString();
+    String city = geocode.getAttributes().get("City").toString();
+    String state = geocode.getAttributes().get("State").toString();
+    String zip = geocode.getAttributes().get("ZIP").toString();
+    detail = city + ", " + state + " " + zip;
+    return street + "," + detail;
   }
 
   /**
@@ -255,11 +377,15 @@ public class MainActivity extends AppCompatActivity {
    */
   private void showCallout(Point point, CharSequence text) {
     Callout callout = mMapView.getCallout();
-    TextView calloutTextView = new TextView(this);
-    calloutTextView.setText(text);
+    // reuse the same text view, as the callout is updated continuously while dragging
+    mCalloutTextView.setText(text);
     callout.setLocation(point);
-    callout.setContent(calloutTextView);
-    callout.show();
+    if (callout.getContent() != mCalloutTextView) {
+      callout.setContent(mCalloutTextView);
+    }
+    if (!callout.isShowing()) {
+      callout.show();
+    }
   }
 
   /**
@@ -274,15 +400,28 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onTouch(View view, MotionEvent event) {
       switch (event.getAction()) {
+        case MotionEvent.ACTION_DOWN:
+          mFrameTimeMonitor.start();
+          break;
         case MotionEvent.ACTION_MOVE:
           final int pointerIndex = event.getActionIndex();
           final float x = event.getX(pointerIndex);
           final float y = event.getY(pointerIndex);
           android.graphics.Point screenPoint = new android.graphics.Point(Math.round(x), Math.round(y));
           final Point singleTapPoint = mMapView.screenToLocation(screenPoint);
+          // move the graphic and callout with the drag straight away, the address follows once it is found
+          if (!mGraphicsOverlay.getGraphics().isEmpty()) {
+            mGraphicsOverlay.getGraphics().get(0).setGeometry(singleTapPoint);
+          }
+          if (mMapView.getCallout().isShowing()) {
+            mMapView.getCallout().setLocation(singleTapPoint);
+          }
           reverseGeocode(singleTapPoint);
           break;
         case MotionEvent.ACTION_UP:
+          mFrameTimeMonitor.stop();
+          Log.i(TAG, "Drag frames: " + mFrameTimeMonitor);
+          Log.i(TAG, "Reverse geocoding: " + mReverseGeocoder);
           if (!mGraphicsOverlay.getGraphics().isEmpty()) {
             mGraphicsOverlay.getGraphics().get(0).setSelected(false);
             mMapView.setOnTouchListener(new CustomMapViewOnTouchListener(getApplicationContext(), mMapView));
@@ -308,6 +447,7 @@ public class MainActivity extends AppCompatActivity {
     public void onLongPress(MotionEvent event) {
       android.graphics.Point screenPoint = new android.graphics.Point(Math.round(event.getX()), Math.round(event.getY()));
       Point mapPoint = mMapView.screenToLocation(screenPoint);
+      mDragging = false;
       reverseGeocode(mapPoint);
     }
 
@@ -333,6 +473,7 @@ public class MainActivity extends AppCompatActivity {
           if (!graphic.isEmpty()) {
             graphic.get(0).setSelected(true);
             Toast.makeText(MainActivity.this, getString(R.string.reverse_geocode_message), Toast.LENGTH_SHORT).show();
+            mDragging = true;
             mMapView.setOnTouchListener(new DragTouchListener(getApplicationContext(), mMapView));
           }
         } catch (InterruptedException | ExecutionException e) {
@@ -345,8 +486,24 @@ public class MainActivity extends AppCompatActivity {
     }
   }
 
+  @Override
+  public boolean onCreateOptionsMenu(Menu menu) {
+    getMenuInflater().inflate(R.menu.batch_geocode, menu);
+    return super.onCreateOptionsMenu(menu);
+  }
+
+  @Override
+  public boolean onOptionsItemSelected(MenuItem item) {
+    if (item.getItemId() == R.id.batch_geocode) {
+      toggleBatchGeocode();
+      return true;
+    }
+    return super.onOptionsItemSelected(item);
+  }
+
   @Override
   protected void onPause() {
+    mFrameTimeMonitor.stop();
     mMapView.pause();
     super.onPause();
   }
@@ -359,6 +516,8 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    // progress is saved, so the batch resumes next time it is started
+    mBatchGeocoder.shutdown();
     mMapView.dispose();
     super.onDestroy();
   }
@@ -0,0 +1,199 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinegeocode;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.tasks.geocode.GeocodeResult;
+import com.esri.arcgisruntime.tasks.geocode.LocatorTask;
+import com.esri.arcgisruntime.tasks.geocode.ReverseGeocodeParameters;
+
+/**
+ * Reverse geocodes points as fast as the locator can keep up, for example while a graphic is dragged across the map.
+ *
+ * At most one request is in flight at a time. Points requested while it runs replace each other, and only the latest
+ * is sent once the request completes, so the locator never works through a backlog of positions the user has already
+ * dragged past. Results for a point which has since been replaced are cached but not delivered.
+ *
+ * Results are cached against the cell of a square grid the point falls in, so points already visited are answered
+ * immediately without a request.
+ *
+ * Must be used from the main thread, which is where the locator calls its done listeners.
+ */
+final class ReverseGeocoder {
+
+  /**
+   * Receives reverse geocode results.
+   */
+  interface Listener {
+    /**
+     * @param point  the point which was reverse geocoded
+     * @param result the closest result, or null if nothing was found
+     */
+    void onResult(Point point, GeocodeResult result);
+
+    void onError(Point point, Exception e);
+  }
+
+  private static final int LATENCY_SAMPLES = 256;
+
+  private final LocatorTask mLocatorTask;
+  private final ReverseGeocodeParameters mParameters;
+  private final double mCellSize;
+  private final Map<String, GeocodeResult> mCache;
+  private final Listener mListener;
+
+  private boolean mInFlight;
+  private Point mPending;
+  private long mGeneration;
+
+  private long mRequests;
+  private long mCoalesced;
+  private long mCacheHits;
+  private final long[] mLatencyNanos = new long[LATENCY_SAMPLES];
+  private int mLatencyCount;
+
+  /**
+   * @param locatorTask the locator to reverse geocode with
+   * @param parameters  reverse geocode parameters
+   * @param cellSize    size of the grid cells results are cached against, in the units of the points' spatial
+   *                    reference
+   * @param cacheSize   number of cells to cache results for
+   * @param listener    receives results on the main thread
+   */
+  ReverseGeocoder(LocatorTask locatorTask, ReverseGeocodeParameters parameters, double cellSize, int cacheSize,
+      Listener listener) {
+    mLocatorTask = locatorTask;
+    mParameters = parameters;
+    mCellSize = cellSize;
+    mListener = listener;
+    // access ordered, so the eldest entry is the least recently used
+    mCache = new LinkedHashMap<String, GeocodeResult>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, GeocodeResult> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Reverse geocodes a point, replacing any point which is still waiting to be sent.
+   *
+   * @param point the point to reverse geocode
+   */
+  void request(Point point) {
+    String cell = cellOf(point);
+    if (mCache.containsKey(cell)) {
+      mCacheHits++;
+      // anything still waiting is older than this point
+      if (mPending != null) {
+        mPending = null;
+        mCoalesced++;
+      }
+      mGeneration++;
+      mListener.onResult(point, mCache.get(cell));
+      return;
+    }
+    if (mInFlight) {
+      if (mPending != null) {
+        mCoalesced++;
+      }
+      mPending = point;
+      mGeneration++;
+      return;
+    }
+    send(point, cell);
+  }
+
+  /**
+   * Drops any point waiting to be sent. A request already in flight completes, but its result is only cached.
+   */
+  void cancel() {
+    mPending = null;
+    mGeneration++;
+  }
+
+  private void send(Point point, String cell) {
+    mInFlight = true;
+    mRequests++;
+    long generation = ++mGeneration;
+    long start = System.nanoTime();
+    ListenableFuture<List<GeocodeResult>> future = mLocatorTask.reverseGeocodeAsync(point, mParameters);
+    future.addDoneListener(() -> {
+      mInFlight = false;
+      recordLatency(System.nanoTime() - start);
+      try {
+        List<GeocodeResult> geocodeResults = future.get();
+        GeocodeResult result = geocodeResults.isEmpty() ? null : geocodeResults.get(0);
+        mCache.put(cell, result);
+        if (generation == mGeneration) {
+          mListener.onResult(point, result);
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        if (generation == mGeneration) {
+          mListener.onError(point, e);
+        }
+      }
+      // send the latest point requested while this one was in flight
+      if (mPending != null) {
+        Point pending = mPending;
+        mPending = null;
+        request(pending);
+      }
+    });
+  }
+
+  private String cellOf(Point point) {
+    return (long) Math.floor(point.getX() / mCellSize) + ":" + (long) Math.floor(point.getY() / mCellSize);
+  }
+
+  private void recordLatency(long nanos) {
+    mLatencyNanos[mLatencyCount % LATENCY_SAMPLES] = nanos;
+    mLatencyCount++;
+  }
+
+  /**
+   * Gets a percentile of the time taken by the locator to answer a request, over the most recent requests.
+   *
+   * @param percentile between 0 and 100
+   * @return the latency in milliseconds, or 0 if no requests have completed
+   */
+  double getLatencyPercentileMillis(double percentile) {
+    int count = Math.min(mLatencyCount, LATENCY_SAMPLES);
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(mLatencyNanos, count);
+    Arrays.sort(sorted);
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return sorted[Math.max(0, Math.min(count, rank) - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%d requests, %d coalesced, %d cache hits, latency p50 %.1f ms, p95 %.1f ms",
+        mRequests, mCoalesced, mCacheHits, getLatencyPercentileMillis(50), getLatencyPercentileMillis(95));
+  }
+}
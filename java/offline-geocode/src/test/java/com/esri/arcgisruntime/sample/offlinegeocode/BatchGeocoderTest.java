@@ -0,0 +1,222 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinegeocode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchGeocoderTest {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File mInput;
+  private File mOutput;
+  private FakeLocator mLocator;
+
+  @Before
+  public void setUp() throws IOException {
+    mInput = mFolder.newFile("addresses.csv");
+    mOutput = new File(mFolder.getRoot(), "results.csv");
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    if (mLocator != null) {
+      mLocator.shutdown();
+    }
+  }
+
+  @Test
+  public void writesResultsInInputOrder() throws Exception {
+    writeInput(300);
+    mLocator = new FakeLocator(5);
+    BatchGeocoder geocoder = new BatchGeocoder(mLocator, 8, 32, 10_000, 1, true);
+
+    Result result = run(geocoder);
+
+    assertFalse(result.mCancelled);
+    assertEquals(300, result.mGeocoded);
+    assertEquals(0, result.mFailed);
+    assertTrue(mLocator.getMaxInFlight() <= 8);
+    List<String> lines = readOutput();
+    assertEquals(301, lines.size());
+    assertEquals("id,address,status,x,y,score,match", lines.get(0));
+    for (int i = 0; i < 300; i++) {
+      String address = "street " + i;
+      assertEquals(i + "," + address + ",MATCHED," + (double) address.length() + "," + (double) i + ",100.0,"
+          + address.toUpperCase(), lines.get(i + 1));
+    }
+    assertFalse(new File(mOutput.getPath() + ".progress").exists());
+  }
+
+  @Test
+  public void writesUnansweredAddressAsTimedOut() throws Exception {
+    writeInput(20);
+    mLocator = new FakeLocator(5).lose("street 5");
+    BatchGeocoder geocoder = new BatchGeocoder(mLocator, 4, 8, 200, 1, true);
+
+    Result result = run(geocoder);
+
+    assertEquals(20, result.mGeocoded);
+    assertEquals(1, result.mFailed);
+    List<String> lines = readOutput();
+    assertEquals(21, lines.size());
+    assertEquals("5,street 5,ERROR,,,,Timed out", lines.get(6));
+    for (int i = 0; i < 20; i++) {
+      assertTrue(lines.get(i + 1).startsWith(i + ",street " + i + ","));
+      if (i != 5) {
+        assertTrue(lines.get(i + 1).contains(",MATCHED,"));
+      }
+    }
+  }
+
+  @Test
+  public void writesUnmatchedAddress() throws Exception {
+    try (PrintWriter writer = new PrintWriter(mInput, "UTF-8")) {
+      writer.println("id,address");
+      writer.println("0,street 0");
+      writer.println("1,unknown place");
+      writer.println("2,\"street 2, upstairs\"");
+    }
+    mLocator = new FakeLocator(5);
+
+    run(new BatchGeocoder(mLocator, 2, 2, 10_000, 1, true));
+
+    List<String> lines = readOutput();
+    assertEquals(4, lines.size());
+    assertEquals("1,unknown place,UNMATCHED,,,,", lines.get(2));
+    assertTrue(lines.get(3).endsWith(",\"STREET 2, UPSTAIRS\""));
+  }
+
+  @Test
+  public void resumesFromSavedProgressAfterCancel() throws Exception {
+    writeInput(2000);
+    mLocator = new FakeLocator(2);
+    BatchGeocoder geocoder = new BatchGeocoder(mLocator, 8, 32, 10_000, 1, true);
+    mLocator.setHook((calls, address) -> {
+      if (calls == 700) {
+        geocoder.cancel();
+      }
+    });
+
+    Result first = run(geocoder);
+
+    assertTrue(first.mCancelled);
+    assertTrue(first.mGeocoded >= 700 && first.mGeocoded < 2000);
+    assertTrue(new File(mOutput.getPath() + ".progress").isFile());
+    assertEquals(first.mGeocoded + 1, readOutput().size());
+
+    mLocator.setHook(null);
+    int callsBefore = mLocator.getCalls();
+    Result second = run(new BatchGeocoder(mLocator, 8, 32, 10_000, 1, true));
+
+    assertFalse(second.mCancelled);
+    assertEquals(2000, second.mGeocoded);
+    // only the rows which weren't written before the cancel are geocoded again
+    assertEquals(2000 - first.mGeocoded, mLocator.getCalls() - callsBefore);
+    List<String> lines = readOutput();
+    assertEquals(2001, lines.size());
+    for (int i = 0; i < 2000; i++) {
+      assertTrue(lines.get(i + 1).startsWith(i + ",street " + i + ",MATCHED,"));
+    }
+    assertFalse(new File(mOutput.getPath() + ".progress").exists());
+  }
+
+  @Test
+  public void startsAgainWhenInputChanged() throws Exception {
+    writeInput(1000);
+    mLocator = new FakeLocator(1);
+    BatchGeocoder geocoder = new BatchGeocoder(mLocator, 4, 16, 10_000, 1, true);
+    mLocator.setHook((calls, address) -> {
+      if (calls == 600) {
+        geocoder.cancel();
+      }
+    });
+    assertTrue(run(geocoder).mCancelled);
+
+    writeInput(10);
+    mLocator.setHook(null);
+    Result result = run(new BatchGeocoder(mLocator, 4, 16, 10_000, 1, true));
+
+    assertEquals(10, result.mGeocoded);
+    assertEquals(11, readOutput().size());
+  }
+
+  private void writeInput(int rows) throws IOException {
+    try (PrintWriter writer = new PrintWriter(mInput, "UTF-8")) {
+      writer.println("id,address");
+      for (int i = 0; i < rows; i++) {
+        writer.println(i + ",street " + i);
+      }
+    }
+  }
+
+  private List<String> readOutput() throws IOException {
+    return Files.readAllLines(mOutput.toPath(), StandardCharsets.UTF_8);
+  }
+
+  private Result run(BatchGeocoder geocoder) throws Exception {
+    Result result = new Result();
+    CountDownLatch done = new CountDownLatch(1);
+    geocoder.start(mInput, mOutput, new BatchGeocoder.Listener() {
+      @Override public void onProgress(long geocoded, double addressesPerSecond) {
+      }
+
+      @Override public void onComplete(long geocoded, long failed, double addressesPerSecond, boolean cancelled) {
+        result.mGeocoded = geocoded;
+        result.mFailed = failed;
+        result.mCancelled = cancelled;
+        done.countDown();
+      }
+
+      @Override public void onError(Exception e) {
+        result.mError = e;
+        done.countDown();
+      }
+    });
+    assertTrue("batch didn't finish", done.await(30, TimeUnit.SECONDS));
+    geocoder.shutdown();
+    if (result.mError != null) {
+      throw result.mError;
+    }
+    return result;
+  }
+
+  private static final class Result {
+    private volatile long mGeocoded;
+    private volatile long mFailed;
+    private volatile boolean mCancelled;
+    private volatile Exception mError;
+  }
+}
@@ -0,0 +1,107 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinegeocode;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the offline locator. Each address is answered on a pool thread after a random delay, so results come
+ * back out of order. The match for an address is its length as x and its row number as y, addresses starting with
+ * "unknown" aren't matched, and addresses which have been marked as lost are never answered.
+ */
+final class FakeLocator implements BatchGeocoder.Locator {
+
+  /**
+   * Called with each address as it is geocoded, before the result is scheduled.
+   */
+  interface Hook {
+    void onGeocode(int calls, String address);
+  }
+
+  private final ScheduledExecutorService mExecutor = Executors.newScheduledThreadPool(4);
+  private final Random mRandom = new Random(1);
+  private final Set<String> mLost = new HashSet<>();
+  private final AtomicInteger mCalls = new AtomicInteger();
+  private final AtomicInteger mMaxInFlight = new AtomicInteger();
+  private final AtomicInteger mInFlight = new AtomicInteger();
+  private final int mMaxDelayMillis;
+  private volatile Hook mHook;
+
+  FakeLocator(int maxDelayMillis) {
+    mMaxDelayMillis = maxDelayMillis;
+  }
+
+  /**
+   * Never answers the given address.
+   */
+  FakeLocator lose(String address) {
+    mLost.add(address);
+    return this;
+  }
+
+  void setHook(Hook hook) {
+    mHook = hook;
+  }
+
+  @Override
+  public void geocode(String address, BatchGeocoder.Callback callback) {
+    int calls = mCalls.incrementAndGet();
+    Hook hook = mHook;
+    if (hook != null) {
+      hook.onGeocode(calls, address);
+    }
+    if (mLost.contains(address)) {
+      return;
+    }
+    mMaxInFlight.accumulateAndGet(mInFlight.incrementAndGet(), Math::max);
+    int delay;
+    synchronized (mRandom) {
+      delay = mRandom.nextInt(mMaxDelayMillis + 1);
+    }
+    mExecutor.schedule(() -> {
+      mInFlight.decrementAndGet();
+      if (address.startsWith("unknown")) {
+        callback.onMatch(null);
+      } else {
+        callback.onMatch(new BatchGeocoder.Match(address.length(), Integer.parseInt(address.replaceAll("\\D", "")),
+            100, address.toUpperCase()));
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  int getCalls() {
+    return mCalls.get();
+  }
+
+  /**
+   * @return the largest number of addresses which were waiting for an answer at once
+   */
+  int getMaxInFlight() {
+    return mMaxInFlight.get();
+  }
+
+  void shutdown() throws InterruptedException {
+    mExecutor.shutdown();
+    mExecutor.awaitTermination(5, TimeUnit.SECONDS);
+  }
+}
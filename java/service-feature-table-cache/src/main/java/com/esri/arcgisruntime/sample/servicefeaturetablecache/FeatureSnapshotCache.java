@@ -0,0 +1,781 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.servicefeaturetablecache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.esri.arcgisruntime.arcgisservices.EditFieldsInfo;
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureCollectionTable;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.Field;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.data.ServiceFeatureTable;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.Geometry;
+import com.esri.arcgisruntime.geometry.GeometryEngine;
+import com.esri.arcgisruntime.geometry.GeometryType;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.symbology.Renderer;
+
+/**
+ * Keeps a snapshot of the features a service feature table has fetched, so they can be drawn straight away the next
+ * time the app starts instead of waiting for them to download again.
+ *
+ * The features of the extent being viewed are queried from the service with all their fields, and saved to a compact
+ * binary file along with the table's fields and the layer's renderer. Snapshots of a number of extents are kept, and
+ * the least recently viewed extent is evicted once there are too many. On the next start the snapshot is drawn by a
+ * feature collection layer in place of the service's own layer, so nothing is downloaded again. It is revalidated in
+ * the background by fetching only the features edited since the snapshot was taken, using the table's edit date field,
+ * and the object IDs of the features in the snapshot's extents, to find those which have been deleted. The changes are
+ * applied to the drawn features in place. Extents the snapshot doesn't cover are fetched as they are viewed.
+ *
+ * Must be used from the main thread. Files are read and written in the background, until {@link #shutdown()}.
+ */
+final class FeatureSnapshotCache {
+
+  private static final String TAG = FeatureSnapshotCache.class.getSimpleName();
+
+  private static final int MAGIC = 0x46534e50; // "FSNP"
+  private static final int VERSION = 2;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte DATE = 5;
+
+  private final File mFile;
+  private final int mMaxExtents;
+  private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+  // schema of the snapshot, from the table the last snapshot was taken from
+  private List<FieldInfo> mFields = new ArrayList<>();
+  private String mGeometryType;
+  private int mWkid;
+  private String mRendererJson;
+  // snapshots of each extent, least recently viewed first
+  private final List<ExtentEntry> mEntries = new ArrayList<>();
+  // extents being fetched, which aren't fetched again while they are in flight
+  private final List<Envelope> mFetching = new ArrayList<>();
+
+  // the table drawing the snapshot, and its features keyed by the object ID of the service feature they copy
+  private FeatureCollectionTable mSnapshotTable;
+  private final Map<Long, Feature> mSnapshotFeatures = new HashMap<>();
+
+  private long mHits;
+  private long mMisses;
+
+  // queries whose results are still to be saved, which the background thread is kept for after a shutdown
+  private int mPendingQueries;
+  private boolean mShutdown;
+
+  /**
+   * @param file       file the snapshot is saved to
+   * @param maxExtents number of extents to keep snapshots of
+   */
+  FeatureSnapshotCache(File file, int maxExtents) {
+    mFile = file;
+    mMaxExtents = maxExtents;
+  }
+
+  /**
+   * Reads the saved snapshot in the background. The snapshot can only be revalidated once it has been read.
+   *
+   * @param onLoaded called on the main thread once the snapshot has been read, or if there isn't one
+   */
+  void load(Runnable onLoaded) {
+    mExecutor.execute(() -> {
+      long start = System.nanoTime();
+      Snapshot snapshot = read();
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      mMainHandler.post(() -> {
+        if (snapshot != null) {
+          mFields = snapshot.mFields;
+          mGeometryType = snapshot.mGeometryType;
+          mWkid = snapshot.mWkid;
+          mRendererJson = snapshot.mRendererJson;
+          mEntries.clear();
+          mEntries.addAll(snapshot.mEntries);
+          mHits = snapshot.mHits;
+          mMisses = snapshot.mMisses;
+          Log.i(TAG, "Read snapshot in " + millis + " ms: " + this);
+        }
+        onLoaded.run();
+      });
+    });
+  }
+
+  /**
+   * @return whether there is a snapshot to draw
+   */
+  boolean hasSnapshot() {
+    return !mEntries.isEmpty();
+  }
+
+  /**
+   * Creates a layer which draws the snapshot with the renderer of the layer it was taken from. Features revalidated or
+   * fetched from then on are applied to this layer.
+   *
+   * @return a layer of every feature in the snapshot
+   */
+  FeatureLayer createSnapshotLayer() {
+    List<Field> fields = new ArrayList<>();
+    for (FieldInfo fieldInfo : mFields) {
+      fields.add(fieldInfo.create());
+    }
+    mSnapshotTable = new FeatureCollectionTable(fields, GeometryType.valueOf(mGeometryType),
+        SpatialReference.create(mWkid));
+    mSnapshotFeatures.clear();
+    showRecords(uniqueRecords().values());
+    FeatureLayer layer = new FeatureLayer(mSnapshotTable);
+    if (mRendererJson != null) {
+      layer.setRenderer(Renderer.fromJson(mRendererJson));
+    }
+    return layer;
+  }
+
+  /**
+   * Counts whether an extent being viewed is covered by the snapshot, and marks the extent which covers it as recently
+   * viewed.
+   *
+   * @return whether the snapshot covers the extent
+   */
+  boolean recordViewpoint(Envelope extent) {
+    for (int i = mEntries.size() - 1; i >= 0; i--) {
+      ExtentEntry entry = mEntries.get(i);
+      if (GeometryEngine.contains(entry.getExtent(), extent)) {
+        mHits++;
+        entry.mLastViewed = System.currentTimeMillis();
+        mEntries.add(mEntries.remove(i));
+        return true;
+      }
+    }
+    mMisses++;
+    return false;
+  }
+
+  /**
+   * @return whether the snapshot covers an extent, or will once the extents being fetched have arrived
+   */
+  boolean covers(Envelope extent) {
+    for (ExtentEntry entry : mEntries) {
+      if (GeometryEngine.contains(entry.getExtent(), extent)) {
+        return true;
+      }
+    }
+    for (Envelope fetching : mFetching) {
+      if (GeometryEngine.contains(fetching, extent)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Fetches the features in an extent from the service, adds them to the snapshot layer if there is one, and saves the
+   * snapshot in the background.
+   *
+   * @param table  a loaded service feature table
+   * @param layer  the layer of the table, whose renderer is saved with the snapshot
+   * @param extent the extent to snapshot
+   */
+  void snapshot(ServiceFeatureTable table, FeatureLayer layer, Envelope extent) {
+    QueryParameters query = new QueryParameters();
+    query.setGeometry(extent);
+    // the table's local cache only holds the fields needed to draw, so fetch every field from the service
+    ListenableFuture<FeatureQueryResult> future = table.queryFeaturesAsync(query,
+        ServiceFeatureTable.QueryFeatureFields.LOAD_ALL);
+    mPendingQueries++;
+    mFetching.add(extent);
+    future.addDoneListener(() -> {
+      mFetching.remove(extent);
+      try {
+        List<Record> records = toRecords(future.get(), table);
+        mFields = fieldsOf(table);
+        mGeometryType = table.getGeometryType().name();
+        mWkid = table.getSpatialReference().getWkid();
+        mRendererJson = layer.getRenderer() != null ? layer.getRenderer().toJson() : null;
+        // drop snapshots of extents inside this one, they are superseded by it
+        for (Iterator<ExtentEntry> iterator = mEntries.iterator(); iterator.hasNext(); ) {
+          if (GeometryEngine.contains(extent, iterator.next().getExtent())) {
+            iterator.remove();
+          }
+        }
+        mEntries.add(new ExtentEntry(extent.toJson(), System.currentTimeMillis(), System.currentTimeMillis(),
+            records));
+        // evict the least recently viewed extents. Their features stay drawn for the rest of the run, they just aren't
+        // saved
+        while (mEntries.size() > mMaxExtents) {
+          mEntries.remove(0);
+        }
+        showRecords(records);
+        save();
+      } catch (Exception e) {
+        Log.e(TAG, "Unable to snapshot features: " + e.getMessage());
+      } finally {
+        onQueryDone();
+      }
+    });
+  }
+
+  /**
+   * Fetches the features edited since the snapshot was taken and the object IDs of the features still in its extents,
+   * and updates the snapshot and the snapshot layer with them. Must be called once {@link #load(Runnable)} has
+   * finished.
+   *
+   * @param table a loaded service feature table
+   */
+  void revalidate(ServiceFeatureTable table) {
+    if (mEntries.isEmpty()) {
+      return;
+    }
+    List<Geometry> extents = new ArrayList<>();
+    for (ExtentEntry entry : mEntries) {
+      extents.add(entry.getExtent());
+    }
+    Geometry snapshotArea = GeometryEngine.union(extents);
+    long start = System.nanoTime();
+
+    // features which are in the snapshot but no longer in the service have been deleted, or moved out of its extents
+    QueryParameters idsQuery = new QueryParameters();
+    idsQuery.setGeometry(snapshotArea);
+    idsQuery.setReturnGeometry(false);
+    Set<Long> snapshotIds = new HashSet<>(uniqueRecords().keySet());
+    ListenableFuture<FeatureQueryResult> idsFuture = table.queryFeaturesAsync(idsQuery,
+        ServiceFeatureTable.QueryFeatureFields.IDS_ONLY);
+    mPendingQueries++;
+    idsFuture.addDoneListener(() -> {
+      try {
+        String objectIdField = table.getObjectIdField();
+        for (Feature feature : idsFuture.get()) {
+          snapshotIds.remove(((Number) feature.getAttributes().get(objectIdField)).longValue());
+        }
+        for (long objectId : snapshotIds) {
+          for (ExtentEntry entry : mEntries) {
+            entry.mRecords.remove(objectId);
+          }
+        }
+        hideRecords(snapshotIds);
+        Log.i(TAG, String.format(Locale.US, "Reconciled snapshot in %d ms, %d features deleted",
+            (System.nanoTime() - start) / 1_000_000, snapshotIds.size()));
+        if (!snapshotIds.isEmpty()) {
+          save();
+        }
+      } catch (Exception e) {
+        Log.e(TAG, "Unable to reconcile snapshot: " + e.getMessage());
+      } finally {
+        onQueryDone();
+      }
+    });
+
+    EditFieldsInfo editFieldsInfo = table.getLayerInfo() != null ? table.getLayerInfo().getEditFieldsInfo() : null;
+    if (editFieldsInfo == null || editFieldsInfo.getEditDateField() == null) {
+      Log.i(TAG, "Snapshot edits can't be revalidated, the table doesn't track edit dates");
+      return;
+    }
+    String editDateField = editFieldsInfo.getEditDateField();
+    long lastEdit = 0;
+    for (Record record : uniqueRecords().values()) {
+      lastEdit = Math.max(lastEdit, record.mEditDate);
+    }
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    // the service rounds edit dates to seconds, so features edited in the same second as the latest are fetched again
+    String since = format.format(new Date(lastEdit - 1000));
+    QueryParameters query = new QueryParameters();
+    query.setWhereClause(editDateField + " > timestamp '" + since + "'");
+    query.setGeometry(snapshotArea);
+    ListenableFuture<FeatureQueryResult> future = table.queryFeaturesAsync(query,
+        ServiceFeatureTable.QueryFeatureFields.LOAD_ALL);
+    mPendingQueries++;
+    future.addDoneListener(() -> {
+      try {
+        List<Record> edited = toRecords(future.get(), table);
+        List<Record> shown = new ArrayList<>();
+        List<Long> hidden = new ArrayList<>();
+        for (Record record : edited) {
+          Geometry geometry = Geometry.fromJson(record.mGeometryJson);
+          boolean inSnapshot = false;
+          for (ExtentEntry entry : mEntries) {
+            entry.mRecords.remove(record.mObjectId);
+            if (GeometryEngine.intersects(entry.getExtent(), geometry)) {
+              entry.mRecords.put(record.mObjectId, record);
+              inSnapshot = true;
+            }
+          }
+          if (inSnapshot) {
+            shown.add(record);
+          } else {
+            hidden.add(record.mObjectId);
+          }
+        }
+        showRecords(shown);
+        hideRecords(hidden);
+        Log.i(TAG, String.format(Locale.US, "Revalidated snapshot in %d ms, %d features edited since %s UTC",
+            (System.nanoTime() - start) / 1_000_000, edited.size(), since));
+        if (!edited.isEmpty()) {
+          save();
+        }
+      } catch (Exception e) {
+        Log.e(TAG, "Unable to revalidate snapshot: " + e.getMessage());
+      } finally {
+        onQueryDone();
+      }
+    });
+  }
+
+  /**
+   * Adds records to the snapshot layer, or updates the features already drawn for them.
+   */
+  private void showRecords(Iterable<Record> records) {
+    if (mSnapshotTable == null) {
+      return;
+    }
+    List<Feature> added = new ArrayList<>();
+    for (Record record : records) {
+      Geometry geometry = Geometry.fromJson(record.mGeometryJson);
+      Feature feature = mSnapshotFeatures.get(record.mObjectId);
+      if (feature == null) {
+        feature = mSnapshotTable.createFeature(record.mAttributes, geometry);
+        mSnapshotFeatures.put(record.mObjectId, feature);
+        added.add(feature);
+      } else {
+        feature.getAttributes().putAll(record.mAttributes);
+        feature.setGeometry(geometry);
+        mSnapshotTable.updateFeatureAsync(feature);
+      }
+    }
+    if (!added.isEmpty()) {
+      mSnapshotTable.addFeaturesAsync(added);
+    }
+  }
+
+  /**
+   * Removes the features drawn for records from the snapshot layer.
+   */
+  private void hideRecords(Iterable<Long> objectIds) {
+    if (mSnapshotTable == null) {
+      return;
+    }
+    List<Feature> removed = new ArrayList<>();
+    for (long objectId : objectIds) {
+      Feature feature = mSnapshotFeatures.remove(objectId);
+      if (feature != null) {
+        removed.add(feature);
+      }
+    }
+    if (!removed.isEmpty()) {
+      mSnapshotTable.deleteFeaturesAsync(removed);
+    }
+  }
+
+  /**
+   * Stops the background thread once the snapshots being taken have been saved.
+   */
+  void shutdown() {
+    mShutdown = true;
+    if (mPendingQueries == 0) {
+      mExecutor.shutdown();
+    }
+  }
+
+  private void onQueryDone() {
+    if (--mPendingQueries == 0 && mShutdown) {
+      mExecutor.shutdown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    long oldest = Long.MAX_VALUE;
+    for (ExtentEntry entry : mEntries) {
+      oldest = Math.min(oldest, entry.mSavedTime);
+    }
+    long ageMinutes = mEntries.isEmpty() ? 0 : (System.currentTimeMillis() - oldest) / 60_000;
+    long total = mHits + mMisses;
+    return String.format(Locale.US, "%d extents, %d features, %d bytes, oldest %d min, hit ratio %.2f (%d/%d)",
+        mEntries.size(), uniqueRecords().size(), mFile.length(), ageMinutes, total == 0 ? 0 : (double) mHits / total,
+        mHits, total);
+  }
+
+  private Map<Long, Record> uniqueRecords() {
+    Map<Long, Record> records = new HashMap<>();
+    for (ExtentEntry entry : mEntries) {
+      records.putAll(entry.mRecords);
+    }
+    return records;
+  }
+
+  private List<Record> toRecords(FeatureQueryResult result, ServiceFeatureTable table) {
+    String objectIdField = table.getObjectIdField();
+    EditFieldsInfo editFieldsInfo = table.getLayerInfo() != null ? table.getLayerInfo().getEditFieldsInfo() : null;
+    String editDateField = editFieldsInfo != null ? editFieldsInfo.getEditDateField() : null;
+    List<Record> records = new ArrayList<>();
+    for (Feature feature : result) {
+      if (feature.getGeometry() == null) {
+        continue;
+      }
+      Map<String, Object> attributes = new LinkedHashMap<>();
+      for (FieldInfo fieldInfo : fieldsOf(table)) {
+        attributes.put(fieldInfo.mName, fieldInfo.convert(feature.getAttributes().get(fieldInfo.mName)));
+      }
+      Object objectId = feature.getAttributes().get(objectIdField);
+      Object editDate = editDateField != null ? feature.getAttributes().get(editDateField) : null;
+      records.add(new Record(((Number) objectId).longValue(),
+          editDate instanceof Calendar ? ((Calendar) editDate).getTimeInMillis() : 0, feature.getGeometry().toJson(),
+          attributes));
+    }
+    return records;
+  }
+
+  private static List<FieldInfo> fieldsOf(ServiceFeatureTable table) {
+    List<FieldInfo> fields = new ArrayList<>();
+    for (Field field : table.getFields()) {
+      FieldInfo fieldInfo = FieldInfo.of(field);
+      if (fieldInfo != null) {
+        fields.add(fieldInfo);
+      }
+    }
+    return fields;
+  }
+
+  private void save() {
+    // copy the entries, they can be revalidated on the main thread while they are written
+    List<ExtentEntry> entries = new ArrayList<>(mEntries.size());
+    for (ExtentEntry entry : mEntries) {
+      entries.add(new ExtentEntry(entry.mExtentJson, entry.mSavedTime, entry.mLastViewed,
+          new ArrayList<>(entry.mRecords.values())));
+    }
+    Snapshot snapshot = new Snapshot(mFields, mGeometryType, mWkid, mRendererJson, entries, mHits, mMisses);
+    mExecutor.execute(() -> write(snapshot));
+  }
+
+  private Snapshot read() {
+    if (!mFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      long hits = in.readLong();
+      long misses = in.readLong();
+      int fieldCount = in.readInt();
+      List<FieldInfo> fields = new ArrayList<>(fieldCount);
+      for (int i = 0; i < fieldCount; i++) {
+        fields.add(new FieldInfo(in.readUTF(), in.readUTF(), in.readByte(), in.readInt()));
+      }
+      String geometryType = in.readUTF();
+      int wkid = in.readInt();
+      String rendererJson = in.readBoolean() ? readString(in) : null;
+      int entryCount = in.readInt();
+      List<ExtentEntry> entries = new ArrayList<>(entryCount);
+      for (int i = 0; i < entryCount; i++) {
+        String extentJson = readString(in);
+        long savedTime = in.readLong();
+        long lastViewed = in.readLong();
+        int recordCount = in.readInt();
+        List<Record> records = new ArrayList<>(recordCount);
+        for (int j = 0; j < recordCount; j++) {
+          long objectId = in.readLong();
+          long editDate = in.readLong();
+          String geometryJson = readString(in);
+          Map<String, Object> attributes = new LinkedHashMap<>(fieldCount * 2);
+          for (FieldInfo field : fields) {
+            attributes.put(field.mName, readValue(in));
+          }
+          records.add(new Record(objectId, editDate, geometryJson, attributes));
+        }
+        entries.add(new ExtentEntry(extentJson, savedTime, lastViewed, records));
+      }
+      return new Snapshot(fields, geometryType, wkid, rendererJson, entries, hits, misses);
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Ignoring unreadable snapshot: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void write(Snapshot snapshot) {
+    long start = System.nanoTime();
+    File temp = new File(mFile.getPath() + ".part");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(snapshot.mHits);
+      out.writeLong(snapshot.mMisses);
+      out.writeInt(snapshot.mFields.size());
+      for (FieldInfo field : snapshot.mFields) {
+        out.writeUTF(field.mName);
+        out.writeUTF(field.mAlias);
+        out.writeByte(field.mType);
+        out.writeInt(field.mLength);
+      }
+      out.writeUTF(snapshot.mGeometryType);
+      out.writeInt(snapshot.mWkid);
+      out.writeBoolean(snapshot.mRendererJson != null);
+      if (snapshot.mRendererJson != null) {
+        writeString(out, snapshot.mRendererJson);
+      }
+      out.writeInt(snapshot.mEntries.size());
+      for (ExtentEntry entry : snapshot.mEntries) {
+        writeString(out, entry.mExtentJson);
+        out.writeLong(entry.mSavedTime);
+        out.writeLong(entry.mLastViewed);
+        out.writeInt(entry.mRecords.size());
+        for (Record record : entry.mRecords.values()) {
+          out.writeLong(record.mObjectId);
+          out.writeLong(record.mEditDate);
+          writeString(out, record.mGeometryJson);
+          for (FieldInfo field : snapshot.mFields) {
+            writeValue(out, record.mAttributes.get(field.mName));
+          }
+        }
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to save snapshot: " + e.getMessage());
+      temp.delete();
+      return;
+    }
+    if (!temp.renameTo(mFile)) {
+      temp.delete();
+      Log.w(TAG, "Unable to save snapshot");
+      return;
+    }
+    Log.i(TAG, String.format(Locale.US, "Saved snapshot of %d extents in %d ms, %d bytes", snapshot.mEntries.size(),
+        (System.nanoTime() - start) / 1_000_000, mFile.length()));
+  }
+
+  /**
+   * Writes a string which may be longer than {@link DataOutputStream#writeUTF(String)} allows, such as geometry JSON.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Calendar) {
+      out.writeByte(DATE);
+      out.writeLong(((Calendar) value).getTimeInMillis());
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case DATE:
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(in.readLong());
+        return calendar;
+      case STRING:
+        return readString(in);
+      default:
+        throw new IOException("Unknown attribute type " + type);
+    }
+  }
+
+  /**
+   * A field of the snapshot. Only fields which a feature collection table can hold are kept, so object ID and global
+   * ID fields are left out.
+   */
+  private static final class FieldInfo {
+    private final String mName;
+    private final String mAlias;
+    private final byte mType;
+    private final int mLength;
+
+    FieldInfo(String name, String alias, byte type, int length) {
+      mName = name;
+      mAlias = alias;
+      mType = type;
+      mLength = length;
+    }
+
+    /**
+     * @return the field's info, or null if the field can't be kept
+     */
+    static FieldInfo of(Field field) {
+      String alias = field.getAlias() != null ? field.getAlias() : field.getName();
+      switch (field.getFieldType()) {
+        case TEXT:
+          return new FieldInfo(field.getName(), alias, STRING, field.getLength());
+        case SHORT:
+        case INTEGER:
+          return new FieldInfo(field.getName(), alias, INTEGER, 0);
+        case FLOAT:
+        case DOUBLE:
+          return new FieldInfo(field.getName(), alias, DOUBLE, 0);
+        case DATE:
+          return new FieldInfo(field.getName(), alias, DATE, 0);
+        default:
+          return null;
+      }
+    }
+
+    Field create() {
+      switch (mType) {
+        case INTEGER:
+          return Field.createInteger(mName, mAlias);
+        case DOUBLE:
+          return Field.createDouble(mName, mAlias);
+        case DATE:
+          return Field.createDate(mName, mAlias);
+        default:
+          return Field.createString(mName, mAlias, mLength);
+      }
+    }
+
+    /**
+     * Converts an attribute value to the type the field is recreated with.
+     */
+    Object convert(Object value) {
+      if (value == null) {
+        return null;
+      }
+      switch (mType) {
+        case INTEGER:
+          return ((Number) value).intValue();
+        case DOUBLE:
+          return ((Number) value).doubleValue();
+        case DATE:
+          return value instanceof Calendar ? value : null;
+        default:
+          return value.toString();
+      }
+    }
+  }
+
+  private static final class Record {
+    private final long mObjectId;
+    private final long mEditDate;
+    private final String mGeometryJson;
+    private final Map<String, Object> mAttributes;
+
+    Record(long objectId, long editDate, String geometryJson, Map<String, Object> attributes) {
+      mObjectId = objectId;
+      mEditDate = editDate;
+      mGeometryJson = geometryJson;
+      mAttributes = attributes;
+    }
+  }
+
+  private static final class ExtentEntry {
+    private final String mExtentJson;
+    private final long mSavedTime;
+    private long mLastViewed;
+    private final Map<Long, Record> mRecords = new LinkedHashMap<>();
+    private Envelope mExtent;
+
+    ExtentEntry(String extentJson, long savedTime, long lastViewed, List<Record> records) {
+      mExtentJson = extentJson;
+      mSavedTime = savedTime;
+      mLastViewed = lastViewed;
+      for (Record record : records) {
+        mRecords.put(record.mObjectId, record);
+      }
+    }
+
+    Envelope getExtent() {
+      if (mExtent == null) {
+        mExtent = (Envelope) Geometry.fromJson(mExtentJson);
+      }
+      return mExtent;
+    }
+  }
+
+  private static final class Snapshot {
+    private final List<FieldInfo> mFields;
+    private final String mGeometryType;
+    private final int mWkid;
+    private final String mRendererJson;
+    private final List<ExtentEntry> mEntries;
+    private final long mHits;
+    private final long mMisses;
+
+    Snapshot(List<FieldInfo> fields, String geometryType, int wkid, String rendererJson, List<ExtentEntry> entries,
+        long hits, long misses) {
+      mFields = fields;
+      mGeometryType = geometryType;
+      mWkid = wkid;
+      mRendererJson = rendererJson;
+      mEntries = entries;
+      mHits = hits;
+      mMisses = misses;
+    }
+  }
+}
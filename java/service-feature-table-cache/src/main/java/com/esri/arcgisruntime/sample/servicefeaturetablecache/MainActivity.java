@@ -13,7 +13,10 @@
 
 package com.esri.arcgisruntime.sample.servicefeaturetablecache;
 
+import java.io.File;
+
 import android.os.Bundle;
+import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
@@ -21,6 +24,7 @@ import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.Viewpoint;
@@ -28,8 +32,19 @@ import com.esri.arcgisruntime.mapping.view.MapView;
 
 public class MainActivity extends AppCompatActivity {
 
+  private static final String TAG = MainActivity.class.getSimpleName();
+
+  // number of extents snapshots are kept of before the least recently viewed is evicted
+  private static final int SNAPSHOT_MAX_EXTENTS = 8;
+
   MapView mMapView;
 
+  private ServiceFeatureTable mServiceFeatureTable;
+  private FeatureLayer mFeatureLayer;
+  private FeatureSnapshotCache mSnapshotCache;
+  // whether the snapshot is drawn in place of the feature layer
+  private boolean mDrawingSnapshot;
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
@@ -47,17 +62,46 @@ public class MainActivity extends AppCompatActivity {
 
     // create feature layer with its service feature table
     // create the service feature table
-    ServiceFeatureTable serviceFeatureTable = new ServiceFeatureTable(
-        getResources().getString(R.string.sample_service_url));
+    mServiceFeatureTable = new ServiceFeatureTable(getResources().getString(R.string.sample_service_url));
 
     //explicitly set the mode to on interaction cache (which is also the default mode for service feature tables)
-    serviceFeatureTable.setFeatureRequestMode(ServiceFeatureTable.FeatureRequestMode.ON_INTERACTION_CACHE);
+    mServiceFeatureTable.setFeatureRequestMode(ServiceFeatureTable.FeatureRequestMode.ON_INTERACTION_CACHE);
 
     // create the feature layer using the service feature table
-    FeatureLayer featureLayer = new FeatureLayer(serviceFeatureTable);
-
-    // add the layer to the map
-    map.getOperationalLayers().add(featureLayer);
+    mFeatureLayer = new FeatureLayer(mServiceFeatureTable);
+
+    // draw the features snapshotted by the last run in place of the feature layer, so they aren't downloaded again
+    mSnapshotCache = new FeatureSnapshotCache(new File(getCacheDir(), "pool_permits.snapshot"), SNAPSHOT_MAX_EXTENTS);
+    mSnapshotCache.load(() -> {
+      if (isDestroyed()) {
+        return;
+      }
+      if (!mSnapshotCache.hasSnapshot()) {
+        // add the layer to the map
+        map.getOperationalLayers().add(mFeatureLayer);
+        return;
+      }
+      mDrawingSnapshot = true;
+      map.getOperationalLayers().add(mSnapshotCache.createSnapshotLayer());
+      // the feature layer isn't drawn, but is loaded so the table can be queried for the changes since the snapshot
+      mFeatureLayer.addDoneLoadingListener(() -> {
+        if (mFeatureLayer.getLoadStatus() == LoadStatus.LOADED) {
+          mSnapshotCache.revalidate(mServiceFeatureTable);
+          fetchVisibleExtent();
+        } else {
+          Log.e(TAG, "Unable to revalidate snapshot: " + mFeatureLayer.getLoadError().getMessage());
+        }
+      });
+      mFeatureLayer.loadAsync();
+    });
+
+    // count whether each extent viewed is covered by the snapshot, and fetch those which aren't while it is drawn
+    mMapView.addNavigationChangedListener(navigationChangedEvent -> {
+      if (!navigationChangedEvent.isNavigating() && mMapView.getVisibleArea() != null
+          && !mSnapshotCache.recordViewpoint(mMapView.getVisibleArea().getExtent()) && mDrawingSnapshot) {
+        fetchVisibleExtent();
+      }
+    });
 
     // set the map to be displayed in the mapview
     mMapView.setMap(map);
@@ -68,8 +112,23 @@ public class MainActivity extends AppCompatActivity {
             SpatialReferences.getWebMercator())));
   }
 
+  /**
+   * Adds the features in the visible extent to the snapshot, unless it already covers the extent.
+   */
+  private void fetchVisibleExtent() {
+    if (mFeatureLayer.getLoadStatus() == LoadStatus.LOADED && mMapView.getVisibleArea() != null) {
+      Envelope extent = mMapView.getVisibleArea().getExtent();
+      if (!mSnapshotCache.covers(extent)) {
+        mSnapshotCache.snapshot(mServiceFeatureTable, mFeatureLayer, extent);
+      }
+    }
+  }
+
   @Override
   protected void onPause() {
+    // snapshot the features in the visible extent, so they can be drawn straight away next time
+    fetchVisibleExtent();
+    Log.i(TAG, "Feature snapshot: " + mSnapshotCache);
     super.onPause();
     // pause MapView
     mMapView.pause();
@@ -84,6 +143,7 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    mSnapshotCache.shutdown();
     super.onDestroy();
     // dispose MapView
     mMapView.dispose();
@@ -17,8 +17,9 @@
 package com.esri.arcgisruntime.samples.servicefeaturetablemanualcache;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import android.os.Bundle;
 import android.util.Log;
@@ -26,22 +27,30 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
-import com.esri.arcgisruntime.concurrent.ListenableFuture;
-import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.FeatureQueryResult;
-import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
+import com.esri.arcgisruntime.geometry.Envelope;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.layers.FeatureLayer;
+import com.esri.arcgisruntime.loadable.LoadStatus;
 import com.esri.arcgisruntime.mapping.ArcGISMap;
 import com.esri.arcgisruntime.mapping.BasemapStyle;
 import com.esri.arcgisruntime.mapping.Viewpoint;
 import com.esri.arcgisruntime.mapping.view.MapView;
+import com.esri.arcgisruntime.symbology.ClassBreaksRenderer;
+import com.esri.arcgisruntime.symbology.Renderer;
+import com.esri.arcgisruntime.symbology.UniqueValueRenderer;
 
 public class MainActivity extends AppCompatActivity {
 
+  // maximum number of features the service returns for a single request
+  private static final int SERVICE_MAX_RECORD_COUNT = 1000;
+  private static final int MAX_PARALLEL_TILES = 4;
+  private static final int MAX_TILE_DEPTH = 8;
+  private static final int MAX_TILE_ATTEMPTS = 3;
+
   private MapView mMapView;
+  private TiledPopulator mTiledPopulator;
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -72,49 +81,46 @@ public class MainActivity extends AppCompatActivity {
     // add the layer to the map
     map.getOperationalLayers().add(featureLayer);
 
-    // load the table
-    serviceFeatureTable.loadAsync();
-    // add a done loading listener to call populate from service when the table is loaded is done
-    serviceFeatureTable.addDoneLoadingListener(new Runnable() {
-      @Override
-      public void run() {
-
-        // set up the query parameters
-        QueryParameters params = new QueryParameters();
-        // for a specific 311 request type
-        params.setWhereClause("req_type = 'Tree Maintenance or Damage'");
-        // set all outfields
-        List<String> outFields = new ArrayList<>();
-        outFields.add("*");
-        //populate the table based on the query, listen for result in a listenable future
-        final ListenableFuture<FeatureQueryResult> future = serviceFeatureTable
-            .populateFromServiceAsync(params, true, outFields);
-        //add done listener to the future which fires when the async method is complete
-        future.addDoneListener(new Runnable() {
-          @Override
-          public void run() {
-            try {
-              //call get on the future to get the result
-              FeatureQueryResult result = future.get();
-              // create an Iterator
-              Iterator<Feature> iterator = result.iterator();
-              Feature feature;
-              // cycle through selections
-              int counter = 0;
-              while (iterator.hasNext()) {
-                feature = iterator.next();
-                counter++;
-                Log.d(getResources().getString(R.string.app_name),
-                    "Selection #: " + counter + " Table name: " + feature.getFeatureTable().getTableName());
-              }
-              Toast.makeText(getApplicationContext(), counter + " features returned", Toast.LENGTH_SHORT).show();
-
-            } catch (Exception e) {
-              Log.e(getResources().getString(R.string.app_name), "Populate from service failed: " + e.getMessage());
-            }
-          }
-        });
+    // load the layer, which loads its table and renderer
+    featureLayer.loadAsync();
+    // add a done loading listener to populate the table from the service when the layer is loaded
+    featureLayer.addDoneLoadingListener(() -> {
+      if (featureLayer.getLoadStatus() != LoadStatus.LOADED) {
+        Log.e(getResources().getString(R.string.app_name),
+            "Populate from service failed: " + featureLayer.getLoadError().getMessage());
+        return;
       }
+      // only fetch the fields needed to draw the features
+      List<String> outFields = getRenderedFields(featureLayer, serviceFeatureTable);
+      // populate a quadtree of tiles covering the table, for a specific 311 request type
+      Envelope extent = serviceFeatureTable.getExtent();
+      TiledPopulator.TileSource tileSource = TiledPopulator.serviceTileSource(serviceFeatureTable,
+          "req_type = 'Tree Maintenance or Damage'", outFields, extent.getSpatialReference());
+      mTiledPopulator = new TiledPopulator(tileSource, SERVICE_MAX_RECORD_COUNT, MAX_PARALLEL_TILES, MAX_TILE_DEPTH,
+          MAX_TILE_ATTEMPTS);
+      mTiledPopulator.start(new TiledPopulator.Tile(extent.getXMin(), extent.getYMin(), extent.getXMax(),
+          extent.getYMax(), 0), new TiledPopulator.Listener() {
+        @Override public void onTilePopulated(TiledPopulator.Tile tile, int featureCount, long millis, boolean split) {
+          Log.d(getResources().getString(R.string.app_name),
+              "Tile " + tile + ": " + featureCount + " features in " + millis + " ms" + (split ? ", splitting" : ""));
+        }
+
+        @Override public void onTileFailed(TiledPopulator.Tile tile, Exception e, boolean retrying) {
+          Log.w(getResources().getString(R.string.app_name),
+              "Tile " + tile + " failed" + (retrying ? ", retrying: " : ": ") + e.getMessage());
+        }
+
+        @Override public void onComplete(int tilesPopulated, int tilesFailed, long featureCount, long millis) {
+          Log.i(getResources().getString(R.string.app_name),
+              "Populated in " + millis + " ms: " + mTiledPopulator);
+          if (tilesFailed > 0) {
+            Log.e(getResources().getString(R.string.app_name),
+                "Populate from service failed for " + tilesFailed + " tiles");
+          }
+          Toast.makeText(getApplicationContext(), serviceFeatureTable.getTotalFeatureCount() + " features returned",
+              Toast.LENGTH_SHORT).show();
+        }
+      });
     });
 
     // set the map to be displayed in the mapview
@@ -125,6 +131,26 @@ public class MainActivity extends AppCompatActivity {
 
   }
 
+  /**
+   * Gets the fields the layer's renderer draws features with, along with the object ID field which identifies each
+   * feature in the table.
+   *
+   * @param featureLayer a loaded feature layer
+   * @param table        the layer's table
+   * @return names of the fields to fetch
+   */
+  private static List<String> getRenderedFields(FeatureLayer featureLayer, ServiceFeatureTable table) {
+    Set<String> fields = new LinkedHashSet<>();
+    fields.add(table.getObjectIdField());
+    Renderer renderer = featureLayer.getRenderer();
+    if (renderer instanceof UniqueValueRenderer) {
+      fields.addAll(((UniqueValueRenderer) renderer).getFieldNames());
+    } else if (renderer instanceof ClassBreaksRenderer) {
+      fields.add(((ClassBreaksRenderer) renderer).getFieldName());
+    }
+    return new ArrayList<>(fields);
+  }
+
   @Override
   protected void onPause() {
     super.onPause();
@@ -142,6 +168,9 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onDestroy() {
     super.onDestroy();
+    if (mTiledPopulator != null) {
+      mTiledPopulator.cancel();
+    }
     // dispose MapView
     mMapView.dispose();
   }
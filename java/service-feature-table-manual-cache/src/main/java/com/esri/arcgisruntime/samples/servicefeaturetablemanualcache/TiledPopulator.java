@@ -0,0 +1,268 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.samples.servicefeaturetablemanualcache;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.QueryParameters;
+import com.esri.arcgisruntime.data.ServiceFeatureTable;
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+
+/**
+ * Populates a feature table from a service one tile at a time, so that filling a large area isn't limited by the
+ * maximum number of records the service returns for a single request.
+ *
+ * The extent is split into a quadtree of tiles. A tile which returns as many features as the service's maximum record
+ * count may have been cut short, so it is split into four smaller tiles which are requested in turn, down to a maximum
+ * depth. A bounded number of tiles are requested at once, and each tile's features are merged into the table as soon
+ * as it arrives. Tiles which fail are retried after the other queued tiles, up to a maximum number of attempts.
+ */
+final class TiledPopulator {
+
+  /**
+   * A square or rectangular tile of the quadtree.
+   */
+  static final class Tile {
+    final double mXMin;
+    final double mYMin;
+    final double mXMax;
+    final double mYMax;
+    final int mDepth;
+    int mAttempts;
+
+    Tile(double xMin, double yMin, double xMax, double yMax, int depth) {
+      mXMin = xMin;
+      mYMin = yMin;
+      mXMax = xMax;
+      mYMax = yMax;
+      mDepth = depth;
+    }
+
+    Tile[] split() {
+      double xMid = (mXMin + mXMax) / 2;
+      double yMid = (mYMin + mYMax) / 2;
+      return new Tile[] {
+          new Tile(mXMin, mYMin, xMid, yMid, mDepth + 1),
+          new Tile(xMid, mYMin, mXMax, yMid, mDepth + 1),
+          new Tile(mXMin, yMid, xMid, mYMax, mDepth + 1),
+          new Tile(xMid, yMid, mXMax, mYMax, mDepth + 1)
+      };
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "[%.0f, %.0f, %.0f, %.0f] depth %d", mXMin, mYMin, mXMax, mYMax, mDepth);
+    }
+  }
+
+  /**
+   * Populates the table with the features in one tile.
+   */
+  interface TileSource {
+    void populate(Tile tile, Callback callback);
+  }
+
+  /**
+   * Receives the result of populating one tile, on any thread.
+   */
+  interface Callback {
+    void onPopulated(int featureCount);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Receives progress, on the thread the tile source calls back on.
+   */
+  interface Listener {
+    /**
+     * @param tile         the tile which was populated
+     * @param featureCount number of features the tile returned
+     * @param millis       time taken to populate the tile
+     * @param split        whether the tile was cut short and has been split into smaller tiles
+     */
+    void onTilePopulated(Tile tile, int featureCount, long millis, boolean split);
+
+    void onTileFailed(Tile tile, Exception e, boolean retrying);
+
+    /**
+     * @param tilesPopulated number of tiles populated
+     * @param tilesFailed    number of tiles which failed every attempt
+     * @param featureCount   number of features returned, including features returned by more than one tile
+     * @param millis         time taken to populate every tile
+     */
+    void onComplete(int tilesPopulated, int tilesFailed, long featureCount, long millis);
+  }
+
+  private final TileSource mTileSource;
+  private final int mMaxRecordCount;
+  private final int mMaxParallel;
+  private final int mMaxDepth;
+  private final int mMaxAttempts;
+
+  private final ArrayDeque<Tile> mQueue = new ArrayDeque<>();
+  private Listener mListener;
+  private int mInFlight;
+  private boolean mCancelled;
+  private long mStartNanos;
+
+  private int mTilesPopulated;
+  private int mTilesSplit;
+  private int mTilesFailed;
+  private int mRetries;
+  private long mFeatureCount;
+
+  /**
+   * @param tileSource     populates each tile
+   * @param maxRecordCount maximum number of features the service returns for a request
+   * @param maxParallel    maximum number of tiles requested at once
+   * @param maxDepth       depth of the quadtree at which tiles are no longer split
+   * @param maxAttempts    number of times a tile is requested before it is given up on
+   */
+  TiledPopulator(TileSource tileSource, int maxRecordCount, int maxParallel, int maxDepth, int maxAttempts) {
+    mTileSource = tileSource;
+    mMaxRecordCount = maxRecordCount;
+    mMaxParallel = maxParallel;
+    mMaxDepth = maxDepth;
+    mMaxAttempts = maxAttempts;
+  }
+
+  /**
+   * Creates a tile source which populates a service feature table with the features matching a where clause.
+   *
+   * @param table            a loaded service feature table in manual cache mode
+   * @param whereClause      where clause features must match
+   * @param outFields        fields to fetch for each feature
+   * @param spatialReference spatial reference of the tiles
+   */
+  static TileSource serviceTileSource(ServiceFeatureTable table, String whereClause, List<String> outFields,
+      SpatialReference spatialReference) {
+    return (tile, callback) -> {
+      QueryParameters params = new QueryParameters();
+      params.setWhereClause(whereClause);
+      params.setGeometry(new Envelope(tile.mXMin, tile.mYMin, tile.mXMax, tile.mYMax, spatialReference));
+      params.setSpatialRelationship(QueryParameters.SpatialRelationship.INTERSECTS);
+      // keep the features already populated by other tiles
+      final ListenableFuture<FeatureQueryResult> future = table.populateFromServiceAsync(params, false, outFields);
+      future.addDoneListener(() -> {
+        try {
+          int count = 0;
+          for (Object ignored : future.get()) {
+            count++;
+          }
+          callback.onPopulated(count);
+        } catch (InterruptedException | ExecutionException e) {
+          callback.onError(e);
+        }
+      });
+    };
+  }
+
+  /**
+   * Starts populating the extent.
+   *
+   * @param root     the extent to populate
+   * @param listener receives progress
+   */
+  synchronized void start(Tile root, Listener listener) {
+    mListener = listener;
+    mStartNanos = System.nanoTime();
+    mQueue.add(root);
+    pump();
+  }
+
+  /**
+   * Stops requesting tiles. Tiles already requested are still merged into the table.
+   */
+  synchronized void cancel() {
+    mCancelled = true;
+    mQueue.clear();
+  }
+
+  private synchronized void pump() {
+    while (!mCancelled && mInFlight < mMaxParallel && !mQueue.isEmpty()) {
+      Tile tile = mQueue.poll();
+      tile.mAttempts++;
+      mInFlight++;
+      long tileStart = System.nanoTime();
+      Callback callback = new Callback() {
+        @Override public void onPopulated(int featureCount) {
+          onTileDone(tile, featureCount, null, tileStart);
+        }
+
+        @Override public void onError(Exception e) {
+          onTileDone(tile, 0, e, tileStart);
+        }
+      };
+      try {
+        mTileSource.populate(tile, callback);
+      } catch (RuntimeException e) {
+        callback.onError(e);
+      }
+    }
+    if (mInFlight == 0 && (mQueue.isEmpty() || mCancelled) && mListener != null) {
+      Listener listener = mListener;
+      mListener = null;
+      listener.onComplete(mTilesPopulated, mTilesFailed, mFeatureCount, (System.nanoTime() - mStartNanos) / 1_000_000);
+    }
+  }
+
+  private synchronized void onTileDone(Tile tile, int featureCount, Exception error, long tileStart) {
+    mInFlight--;
+    long millis = (System.nanoTime() - tileStart) / 1_000_000;
+    if (error != null) {
+      boolean retrying = !mCancelled && tile.mAttempts < mMaxAttempts;
+      if (retrying) {
+        // give the service a chance to recover while other tiles are requested
+        mRetries++;
+        mQueue.addLast(tile);
+      } else {
+        mTilesFailed++;
+      }
+      if (mListener != null) {
+        mListener.onTileFailed(tile, error, retrying);
+      }
+    } else {
+      mTilesPopulated++;
+      mFeatureCount += featureCount;
+      // a full tile may have been cut short by the service, so fetch its quarters as well
+      boolean split = featureCount >= mMaxRecordCount && tile.mDepth < mMaxDepth;
+      if (split && !mCancelled) {
+        mTilesSplit++;
+        for (Tile child : tile.split()) {
+          mQueue.addFirst(child);
+        }
+      }
+      if (mListener != null) {
+        mListener.onTilePopulated(tile, featureCount, millis, split);
+      }
+    }
+    pump();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(Locale.US, "%d tiles populated, %d split, %d failed, %d retries, %d features", mTilesPopulated,
+        mTilesSplit, mTilesFailed, mRetries, mFeatureCount);
+  }
+}
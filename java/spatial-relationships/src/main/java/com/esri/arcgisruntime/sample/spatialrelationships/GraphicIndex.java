@@ -0,0 +1,458 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.spatialrelationships;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.esri.arcgisruntime.geometry.Envelope;
+import com.esri.arcgisruntime.geometry.Geometry;
+import com.esri.arcgisruntime.geometry.GeometryEngine;
+import com.esri.arcgisruntime.geometry.Point;
+import com.esri.arcgisruntime.geometry.SpatialReference;
+import com.esri.arcgisruntime.mapping.view.Graphic;
+import com.esri.arcgisruntime.mapping.view.GraphicsOverlay;
+import com.esri.arcgisruntime.util.ListChangedEvent;
+import com.esri.arcgisruntime.util.ListChangedListener;
+import com.esri.arcgisruntime.util.ListenableList;
+
+/**
+ * Indexes the graphics of a graphics overlay by their extents, so that taps and selections can be resolved on the
+ * device without an identify round trip, however many graphics the overlay holds.
+ *
+ * The graphics are packed into an R-tree with the sort-tile-recursive method: sorted into vertical slices by x, each
+ * slice sorted by y, and runs of graphics grouped into leaf nodes, with each level of nodes grouped the same way up to
+ * the root. The index follows the overlay's graphics list. Graphics added since the tree was packed are searched one by
+ * one and removed graphics are skipped, until there are enough changes for the tree to be packed again on the next
+ * search. A graphic whose geometry changes must be passed to {@link #update(Graphic)}.
+ *
+ * Searches are of the graphics' geometries, not their symbols, in the spatial reference the index is created with.
+ * Must be used from the main thread.
+ */
+final class GraphicIndex implements ListChangedListener<Graphic> {
+
+  private static final int NODE_CAPACITY = 16;
+  // the tree is packed again once the changes since it was packed are more than an eighth of the graphics, or 64
+  // changes if that is more
+  private static final int REPACK_DIVISOR = 8;
+  private static final int MIN_REPACK_CHANGES = 64;
+
+  private final ListenableList<Graphic> mGraphics;
+  private final SpatialReference mSpatialReference;
+
+  // graphics in packed order, with the extent of each as xmin, ymin, xmax, ymax
+  private Graphic[] mItems = new Graphic[0];
+  private double[] mItemBoxes = new double[0];
+  // extents of the nodes of each level, from the leaves up to the root
+  private final List<double[]> mLevelBoxes = new ArrayList<>();
+
+  private final List<Graphic> mAdded = new ArrayList<>();
+  private final Set<Graphic> mRemoved = Collections.newSetFromMap(new IdentityHashMap<>());
+  private boolean mRepackNeeded = true;
+  private int mRepackCount;
+  private long mRepackNanos;
+
+  /**
+   * Indexes the overlay's graphics and follows changes to them.
+   *
+   * @param graphicsOverlay  the overlay to index
+   * @param spatialReference spatial reference of searches, which graphics in another spatial reference are projected
+   *                         to, or null if every graphic is in the spatial reference of the searches
+   */
+  GraphicIndex(GraphicsOverlay graphicsOverlay, SpatialReference spatialReference) {
+    mGraphics = graphicsOverlay.getGraphics();
+    mSpatialReference = spatialReference;
+    mGraphics.addListChangedListener(this);
+  }
+
+  /**
+   * Stops following changes to the overlay's graphics.
+   */
+  void dispose() {
+    mGraphics.removeListChangedListener(this);
+  }
+
+  @Override
+  public void listChanged(ListChangedEvent<Graphic> listChangedEvent) {
+    if (mRepackNeeded) {
+      // packed from the list on the next search anyway
+      return;
+    }
+    for (Graphic graphic : listChangedEvent.getItems()) {
+      if (listChangedEvent.getAction() == ListChangedEvent.Action.ADDED) {
+        // a graphic removed and added again is still in the tree
+        if (!mRemoved.remove(graphic)) {
+          mAdded.add(graphic);
+        }
+      } else if (!mAdded.remove(graphic)) {
+        mRemoved.add(graphic);
+      }
+    }
+    checkChanges();
+  }
+
+  /**
+   * Updates the index after the geometry of a graphic in the overlay has changed.
+   */
+  void update(Graphic graphic) {
+    if (!mRepackNeeded && !mAdded.contains(graphic)) {
+      mRemoved.add(graphic);
+      mAdded.add(graphic);
+      checkChanges();
+    }
+  }
+
+  /**
+   * Finds the graphics whose geometry intersects an area, such as a lasso.
+   *
+   * @param area an envelope, or any geometry
+   * @return the graphics, in no particular order
+   */
+  List<Graphic> query(Geometry area) {
+    Envelope extent = area.getExtent();
+    boolean envelope = area instanceof Envelope;
+    List<Graphic> candidates = new ArrayList<>();
+    search(extent.getXMin(), extent.getYMin(), extent.getXMax(), extent.getYMax(), candidates);
+    List<Graphic> results = new ArrayList<>(candidates.size());
+    for (Graphic graphic : candidates) {
+      // the extent of a point is the point itself, so it is in an envelope if its extent is
+      Geometry geometry = geometryOf(graphic);
+      if ((envelope && geometry instanceof Point) || GeometryEngine.intersects(area, geometry)) {
+        results.add(graphic);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Finds the graphics whose geometry is within a distance of a point, such as a tap.
+   *
+   * @param point     point to search around
+   * @param tolerance distance from the point in map units
+   * @return the graphics, nearest first
+   */
+  List<Graphic> hitTest(Point point, double tolerance) {
+    List<Graphic> candidates = new ArrayList<>();
+    search(point.getX() - tolerance, point.getY() - tolerance, point.getX() + tolerance, point.getY() + tolerance,
+        candidates);
+    List<Graphic> results = new ArrayList<>(candidates.size());
+    List<Double> distances = new ArrayList<>(candidates.size());
+    for (Graphic graphic : candidates) {
+      double distance = distance(point, geometryOf(graphic));
+      if (distance <= tolerance) {
+        // insert in order of distance, there are only ever a few hits
+        int i = distances.size();
+        while (i > 0 && distances.get(i - 1) > distance) {
+          i--;
+        }
+        distances.add(i, distance);
+        results.add(i, graphic);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Finds the graphics nearest a point, searching the nodes nearest the point first.
+   *
+   * @param point point to search around
+   * @param count maximum number of graphics to find
+   * @return the graphics, nearest first
+   */
+  List<Graphic> nearest(Point point, int count) {
+    repackIfNeeded();
+    double x = point.getX();
+    double y = point.getY();
+    // entries are a node at level 0 or above, a packed graphic at level -1 or an added graphic at level -2, ordered by
+    // their distance from the point, which for a node is the distance to its extent
+    PriorityQueue<double[]> queue = new PriorityQueue<>(64, (a, b) -> Double.compare(a[0], b[0]));
+    int top = mLevelBoxes.size() - 1;
+    if (top >= 0) {
+      double[] rootBoxes = mLevelBoxes.get(top);
+      for (int i = 0; i < rootBoxes.length / 4; i++) {
+        queue.add(new double[] { boxDistance(rootBoxes, i, x, y), top, i });
+      }
+    }
+    for (int i = 0; i < mAdded.size(); i++) {
+      Geometry geometry = geometryOf(mAdded.get(i));
+      if (geometry != null && !geometry.isEmpty()) {
+        queue.add(new double[] { distance(point, geometry), -2, i });
+      }
+    }
+    List<Graphic> results = new ArrayList<>(count);
+    while (!queue.isEmpty() && results.size() < count) {
+      double[] entry = queue.poll();
+      int level = (int) entry[1];
+      int index = (int) entry[2];
+      if (level == -2) {
+        results.add(mAdded.get(index));
+      } else if (level == -1) {
+        if (!mRemoved.contains(mItems[index])) {
+          results.add(mItems[index]);
+        }
+      } else if (level == 0) {
+        for (int item = index * NODE_CAPACITY; item < Math.min((index + 1) * NODE_CAPACITY, mItems.length); item++) {
+          queue.add(new double[] { distance(point, geometryOf(mItems[item])), -1, item });
+        }
+      } else {
+        double[] childBoxes = mLevelBoxes.get(level - 1);
+        for (int child = index * NODE_CAPACITY; child < Math.min((index + 1) * NODE_CAPACITY, childBoxes.length / 4);
+            child++) {
+          queue.add(new double[] { boxDistance(childBoxes, child, x, y), level - 1, child });
+        }
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US, "%d graphics packed in %d levels, %d added, %d removed, %d repacks, last %.1f ms",
+        mItems.length, mLevelBoxes.size(), mAdded.size(), mRemoved.size(), mRepackCount, mRepackNanos / 1e6);
+  }
+
+  private void checkChanges() {
+    if (mAdded.size() + mRemoved.size() > Math.max(MIN_REPACK_CHANGES, mItems.length / REPACK_DIVISOR)) {
+      mRepackNeeded = true;
+    }
+  }
+
+  /**
+   * Adds the graphics whose extent intersects a box to the results, skipping removed graphics.
+   */
+  private void search(double xMin, double yMin, double xMax, double yMax, List<Graphic> results) {
+    repackIfNeeded();
+    int top = mLevelBoxes.size() - 1;
+    if (top >= 0) {
+      double[] rootBoxes = mLevelBoxes.get(top);
+      for (int i = 0; i < rootBoxes.length / 4; i++) {
+        search(top, i, xMin, yMin, xMax, yMax, results);
+      }
+    }
+    for (Graphic graphic : mAdded) {
+      Geometry geometry = geometryOf(graphic);
+      if (geometry == null || geometry.isEmpty()) {
+        continue;
+      }
+      Envelope extent = geometry.getExtent();
+      if (extent.getXMin() <= xMax && extent.getXMax() >= xMin && extent.getYMin() <= yMax
+          && extent.getYMax() >= yMin) {
+        results.add(graphic);
+      }
+    }
+  }
+
+  private void search(int level, int node, double xMin, double yMin, double xMax, double yMax,
+      List<Graphic> results) {
+    if (!intersects(mLevelBoxes.get(level), node, xMin, yMin, xMax, yMax)) {
+      return;
+    }
+    int start = node * NODE_CAPACITY;
+    if (level == 0) {
+      for (int item = start; item < Math.min(start + NODE_CAPACITY, mItems.length); item++) {
+        if (intersects(mItemBoxes, item, xMin, yMin, xMax, yMax) && !mRemoved.contains(mItems[item])) {
+          results.add(mItems[item]);
+        }
+      }
+    } else {
+      int childCount = mLevelBoxes.get(level - 1).length / 4;
+      for (int child = start; child < Math.min(start + NODE_CAPACITY, childCount); child++) {
+        search(level - 1, child, xMin, yMin, xMax, yMax, results);
+      }
+    }
+  }
+
+  /**
+   * Packs the graphics currently in the overlay into a new tree.
+   */
+  private void repackIfNeeded() {
+    if (!mRepackNeeded) {
+      return;
+    }
+    long start = System.nanoTime();
+    List<Graphic> graphics = new ArrayList<>(mGraphics.size());
+    List<Geometry> geometries = new ArrayList<>(mGraphics.size());
+    for (Graphic graphic : mGraphics) {
+      Geometry geometry = geometryOf(graphic);
+      if (geometry != null && !geometry.isEmpty()) {
+        graphics.add(graphic);
+        geometries.add(geometry);
+      }
+    }
+    int count = graphics.size();
+    double[] boxes = new double[count * 4];
+    for (int i = 0; i < count; i++) {
+      Geometry geometry = geometries.get(i);
+      if (geometry instanceof Point) {
+        Point point = (Point) geometry;
+        boxes[i * 4] = boxes[i * 4 + 2] = point.getX();
+        boxes[i * 4 + 1] = boxes[i * 4 + 3] = point.getY();
+      } else {
+        Envelope extent = geometry.getExtent();
+        boxes[i * 4] = extent.getXMin();
+        boxes[i * 4 + 1] = extent.getYMin();
+        boxes[i * 4 + 2] = extent.getXMax();
+        boxes[i * 4 + 3] = extent.getYMax();
+      }
+    }
+    int[] order = strOrder(boxes, count);
+    mItems = new Graphic[count];
+    mItemBoxes = new double[count * 4];
+    for (int i = 0; i < count; i++) {
+      mItems[i] = graphics.get(order[i]);
+      System.arraycopy(boxes, order[i] * 4, mItemBoxes, i * 4, 4);
+    }
+
+    // group each level into the nodes of the level above until there is a single root
+    mLevelBoxes.clear();
+    double[] childBoxes = mItemBoxes;
+    int childCount = count;
+    while (childCount > 0 && (mLevelBoxes.isEmpty() || childCount > 1)) {
+      int nodeCount = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+      double[] nodeBoxes = new double[nodeCount * 4];
+      for (int node = 0; node < nodeCount; node++) {
+        double nodeXMin = Double.POSITIVE_INFINITY;
+        double nodeYMin = Double.POSITIVE_INFINITY;
+        double nodeXMax = Double.NEGATIVE_INFINITY;
+        double nodeYMax = Double.NEGATIVE_INFINITY;
+        for (int child = node * NODE_CAPACITY; child < Math.min((node + 1) * NODE_CAPACITY, childCount); child++) {
+          nodeXMin = Math.min(nodeXMin, childBoxes[child * 4]);
+          nodeYMin = Math.min(nodeYMin, childBoxes[child * 4 + 1]);
+          nodeXMax = Math.max(nodeXMax, childBoxes[child * 4 + 2]);
+          nodeYMax = Math.max(nodeYMax, childBoxes[child * 4 + 3]);
+        }
+        nodeBoxes[node * 4] = nodeXMin;
+        nodeBoxes[node * 4 + 1] = nodeYMin;
+        nodeBoxes[node * 4 + 2] = nodeXMax;
+        nodeBoxes[node * 4 + 3] = nodeYMax;
+      }
+      mLevelBoxes.add(nodeBoxes);
+      childBoxes = nodeBoxes;
+      childCount = nodeCount;
+    }
+
+    mAdded.clear();
+    mRemoved.clear();
+    mRepackNeeded = false;
+    mRepackCount++;
+    mRepackNanos = System.nanoTime() - start;
+  }
+
+  /**
+   * Orders boxes into vertical slices by the x of their centers, and each slice by the y of their centers, so that
+   * each run of boxes which makes up a leaf node is close together.
+   */
+  private static int[] strOrder(double[] boxes, int count) {
+    int[] order = new int[count];
+    double[] xCenters = new double[count];
+    double[] yCenters = new double[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+      xCenters[i] = (boxes[i * 4] + boxes[i * 4 + 2]) / 2;
+      yCenters[i] = (boxes[i * 4 + 1] + boxes[i * 4 + 3]) / 2;
+    }
+    sort(order, 0, count, xCenters);
+    int leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+    int sliceSize = (int) Math.ceil(Math.sqrt(leafCount)) * NODE_CAPACITY;
+    for (int start = 0; start < count; start += sliceSize) {
+      sort(order, start, Math.min(start + sliceSize, count), yCenters);
+    }
+    return order;
+  }
+
+  /**
+   * Sorts a range of indexes by their keys, without boxing them.
+   */
+  private static void sort(int[] indexes, int from, int to, double[] keys) {
+    while (to - from > 16) {
+      // median of three pivot
+      int middle = (from + to) >>> 1;
+      double a = keys[indexes[from]];
+      double b = keys[indexes[middle]];
+      double c = keys[indexes[to - 1]];
+      double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (keys[indexes[i]] < pivot) {
+          i++;
+        }
+        while (keys[indexes[j]] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int swap = indexes[i];
+          indexes[i++] = indexes[j];
+          indexes[j--] = swap;
+        }
+      }
+      // recurse into the smaller side and loop on the larger, to bound the stack depth
+      if (j - from < to - i) {
+        sort(indexes, from, j + 1, keys);
+        from = i;
+      } else {
+        sort(indexes, i, to, keys);
+        to = j + 1;
+      }
+    }
+    for (int i = from + 1; i < to; i++) {
+      int index = indexes[i];
+      int j = i - 1;
+      while (j >= from && keys[indexes[j]] > keys[index]) {
+        indexes[j + 1] = indexes[j];
+        j--;
+      }
+      indexes[j + 1] = index;
+    }
+  }
+
+  /**
+   * @return the graphic's geometry in the spatial reference of searches
+   */
+  private Geometry geometryOf(Graphic graphic) {
+    Geometry geometry = graphic.getGeometry();
+    if (geometry != null && mSpatialReference != null && geometry.getSpatialReference() != null
+        && !mSpatialReference.equals(geometry.getSpatialReference())) {
+      return GeometryEngine.project(geometry, mSpatialReference);
+    }
+    return geometry;
+  }
+
+  private static boolean intersects(double[] boxes, int i, double xMin, double yMin, double xMax, double yMax) {
+    return boxes[i * 4] <= xMax && boxes[i * 4 + 2] >= xMin && boxes[i * 4 + 1] <= yMax && boxes[i * 4 + 3] >= yMin;
+  }
+
+  private static double boxDistance(double[] boxes, int i, double x, double y) {
+    double dx = Math.max(0, Math.max(boxes[i * 4] - x, x - boxes[i * 4 + 2]));
+    double dy = Math.max(0, Math.max(boxes[i * 4 + 1] - y, y - boxes[i * 4 + 3]));
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  private static double distance(Point point, Geometry geometry) {
+    if (geometry instanceof Point) {
+      double dx = ((Point) geometry).getX() - point.getX();
+      double dy = ((Point) geometry).getY() - point.getY();
+      return Math.sqrt(dx * dx + dy * dy);
+    }
+    return GeometryEngine.distanceBetween(point, geometry);
+  }
+}
@@ -55,6 +55,9 @@ import com.esri.arcgisruntime.symbology.SimpleMarkerSymbol;
 public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
+  // distance from a graphic within which a click selects it
+  private static final int IDENTIFY_TOLERANCE_DP = 1;
+  private static final int POINT_SYMBOL_SIZE_DP = 10;
 
   private MapView mMapView;
 
@@ -104,7 +107,8 @@ public class MainActivity extends AppCompatActivity {
 
     // create a point graphic
     Point point = new Point(-4487263.495911, 3699176.480377, SpatialReferences.getWebMercator());
-    SimpleMarkerSymbol locationMarker = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, Color.BLUE, 10);
+    SimpleMarkerSymbol locationMarker = new SimpleMarkerSymbol(SimpleMarkerSymbol.Style.CIRCLE, Color.BLUE,
+        POINT_SYMBOL_SIZE_DP);
     Graphic pointGraphic = new Graphic(point, locationMarker);
     graphicsOverlay.getGraphics().add(pointGraphic);
 
@@ -118,15 +122,32 @@ public class MainActivity extends AppCompatActivity {
     // create intent to be passed to the other activity
     Intent intent = new Intent(this, ResultsActivity.class);
 
+    // index the graphics, so most taps are resolved without identifying them
+    GraphicIndex graphicIndex = new GraphicIndex(graphicsOverlay, null);
+
     // add a touch listener to identify the selected graphic
     mMapView.setOnTouchListener(new DefaultMapViewOnTouchListener(this, mMapView) {
       @Override
       public boolean onSingleTapConfirmed(MotionEvent motionEvent) {
-        // identify the clicked graphic(s)
         android.graphics.Point clickLocation = new android.graphics.Point((int) motionEvent.getX(),
             (int) motionEvent.getY());
+        Point mapPoint = mMapView.screenToLocation(clickLocation);
+        if (mapPoint == null) {
+          return true;
+        }
+        // find the graphics near the clicked location from the index, allowing for the size of the point symbol
+        double tolerance = (IDENTIFY_TOLERANCE_DP + POINT_SYMBOL_SIZE_DP / 2) * mMapView
+            .getUnitsPerDensityIndependentPixel();
+        List<Graphic> hitGraphics = graphicIndex.hitTest(mapPoint, tolerance);
+        if (hitGraphics.size() == 1) {
+          selectGraphic(hitGraphics.get(0));
+          return true;
+        } else if (hitGraphics.isEmpty()) {
+          return true;
+        }
+        // where graphics overlap, identify the clicked graphic(s) to find the one drawn on top
         ListenableFuture<IdentifyGraphicsOverlayResult> identifyGraphics =
-            mMapView.identifyGraphicsOverlayAsync(graphicsOverlay, clickLocation, 1, false);
+            mMapView.identifyGraphicsOverlayAsync(graphicsOverlay, clickLocation, IDENTIFY_TOLERANCE_DP, false);
         identifyGraphics.addDoneListener(() -> {
 
           try {
@@ -134,39 +155,7 @@ public class MainActivity extends AppCompatActivity {
             IdentifyGraphicsOverlayResult result = identifyGraphics.get();
             List<Graphic> identifiedGraphics = result.getGraphics();
             if (!identifiedGraphics.isEmpty()) {
-              // clear previous results
-              relationships.put("Point", new ArrayList<>());
-              relationships.put("Polyline", new ArrayList<>());
-              relationships.put("Polygon", new ArrayList<>());
-
-              // select the identified graphic
-              graphicsOverlay.clearSelection();
-              Graphic identifiedGraphic = identifiedGraphics.get(0);
-              identifiedGraphic.setSelected(true);
-              Geometry selectedGeometry = identifiedGraphic.getGeometry();
-              GeometryType selectedGeometryType = selectedGeometry.getGeometryType();
-              Toast.makeText(MainActivity.this,selectedGeometry.getGeometryType().toString() + " is selected",Toast.LENGTH_LONG).show();
-              // populate HashMap that will be passed to the expandable list view
-              if (selectedGeometryType != GeometryType.POINT) {
-                ArrayList<String> pointRelationships = relationshipStringList(getSpatialRelationships(selectedGeometry,
-                    pointGraphic.getGeometry()));
-                relationships.put("Point", pointRelationships);
-              }
-              if (selectedGeometryType != GeometryType.POLYLINE) {
-                ArrayList<String> polylineRelationships = relationshipStringList(
-                    getSpatialRelationships(selectedGeometry,
-                        polylineGraphic.getGeometry()));
-                relationships.put("Polyline", polylineRelationships);
-              }
-              if (selectedGeometryType != GeometryType.POLYGON) {
-                ArrayList<String> polygonRelationships = relationshipStringList(
-                    getSpatialRelationships(selectedGeometry,
-                        polygonGraphic.getGeometry()));
-                relationships.put("Polygon", polygonRelationships);
-              }
-              // pass the HashMap to the intent
-              intent.putExtra("HashMap", relationships);
-              startActivity(intent);
+              selectGraphic(identifiedGraphics.get(0));
             }
           } catch (InterruptedException | ExecutionException e) {
             Log.e(TAG, e.toString());
@@ -174,6 +163,46 @@ public class MainActivity extends AppCompatActivity {
         });
         return true;
       }
+
+      /**
+       * Selects a graphic and shows the spatial relationships it has to the other graphics.
+       *
+       * @param identifiedGraphic the clicked graphic
+       */
+      private void selectGraphic(Graphic identifiedGraphic) {
+        // clear previous results
+        relationships.put("Point", new ArrayList<>());
+        relationships.put("Polyline", new ArrayList<>());
+        relationships.put("Polygon", new ArrayList<>());
+
+        // select the identified graphic
+        graphicsOverlay.clearSelection();
+        identifiedGraphic.setSelected(true);
+        Geometry selectedGeometry = identifiedGraphic.getGeometry();
+        GeometryType selectedGeometryType = selectedGeometry.getGeometryType();
+        Toast.makeText(MainActivity.this,selectedGeometry.getGeometryType().toString() + " is selected",Toast.LENGTH_LONG).show();
+        // populate HashMap that will be passed to the expandable list view
+        if (selectedGeometryType != GeometryType.POINT) {
+          ArrayList<String> pointRelationships = relationshipStringList(getSpatialRelationships(selectedGeometry,
+              pointGraphic.getGeometry()));
+          relationships.put("Point", pointRelationships);
+        }
+        if (selectedGeometryType != GeometryType.POLYLINE) {
+          ArrayList<String> polylineRelationships = relationshipStringList(
+              getSpatialRelationships(selectedGeometry,
+                  polylineGraphic.getGeometry()));
+          relationships.put("Polyline", polylineRelationships);
+        }
+        if (selectedGeometryType != GeometryType.POLYGON) {
+          ArrayList<String> polygonRelationships = relationshipStringList(
+              getSpatialRelationships(selectedGeometry,
+                  polygonGraphic.getGeometry()));
+          relationships.put("Polygon", polygonRelationships);
+        }
+        // pass the HashMap to the intent
+        intent.putExtra("HashMap", relationships);
+        startActivity(intent);
+      }
     });
   }
 
@@ -17,8 +17,8 @@
 package com.esri.arcgisruntime.sample.statisticalquerygroupandsort;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import android.content.Context;
 import android.graphics.Typeface;
@@ -29,23 +29,50 @@ import android.widget.BaseExpandableListAdapter;
 import android.widget.TextView;
 
 /**
- * Expandable list view which displays grouped results from a LinkedHashMap.
+ * Expandable list view which displays the statistics of each group.
  */
 class ExpandableListViewAdapter extends BaseExpandableListAdapter {
 
   private final Context context;
   private final List<String> mGroupList;
-  private final LinkedHashMap<String, List<String>> mStatList;
+  private final List<List<String>> mStatList;
 
-  public ExpandableListViewAdapter(Context context, LinkedHashMap<String, List<String>> statList) {
+  public ExpandableListViewAdapter(Context context, List<StatisticsEngine.GroupResult> groupedStatistics) {
     this.context = context;
-    mGroupList = new ArrayList<>(statList.keySet());
-    mStatList = statList;
+    mGroupList = new ArrayList<>(groupedStatistics.size());
+    mStatList = new ArrayList<>(groupedStatistics.size());
+    for (StatisticsEngine.GroupResult groupResult : groupedStatistics) {
+      // title each group with its values of the group fields
+      StringBuilder group = new StringBuilder();
+      for (Object value : groupResult.getGroup().values()) {
+        group.append(group.length() == 0 ? "" : ", ").append(format(value));
+      }
+      mGroupList.add(groupResult.getGroup().isEmpty() ? "Ungrouped statistics" : group.toString());
+      List<String> stats = new ArrayList<>();
+      for (Map.Entry<String, Double> stat : groupResult.getStatistics().entrySet()) {
+        stats.add(stat.getKey() + ": " + format(stat.getValue()));
+      }
+      mStatList.add(stats);
+    }
+  }
+
+  /**
+   * Formats a statistic or a numeric group value, showing whole numbers such as counts and the values of integer
+   * fields, which the statistics engine stores as doubles, without a decimal point.
+   */
+  private static String format(Object value) {
+    if (value instanceof Number) {
+      double number = ((Number) value).doubleValue();
+      if (number == Math.rint(number) && !Double.isInfinite(number)) {
+        return String.valueOf(((Number) value).longValue());
+      }
+    }
+    return String.valueOf(value);
   }
 
   @Override
   public Object getChild(int groupListPosition, int statListPosition) {
-    return mStatList.get(mGroupList.get(groupListPosition)).get(statListPosition);
+    return mStatList.get(groupListPosition).get(statListPosition);
   }
 
   @Override
@@ -68,7 +95,7 @@ class ExpandableListViewAdapter extends BaseExpandableListAdapter {
 
   @Override
   public int getChildrenCount(int listPosition) {
-    return mStatList.get(mGroupList.get(listPosition)).size();
+    return mStatList.get(listPosition).size();
   }
 
   @Override
@@ -39,6 +39,9 @@ import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.Field;
 import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.data.StatisticDefinition;
@@ -46,7 +49,6 @@ import com.esri.arcgisruntime.data.StatisticRecord;
 import com.esri.arcgisruntime.data.StatisticType;
 import com.esri.arcgisruntime.data.StatisticsQueryParameters;
 import com.esri.arcgisruntime.data.StatisticsQueryResult;
-import com.google.gson.Gson;
 
 /**
  * This class demonstrates querying statistics from a service feature table. To make the query relevant,
@@ -59,7 +61,14 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // ignore counties with missing data
+  private static final String WHERE_CLAUSE = "\"State\" IS NOT NULL";
+  // number of features fetched at a time to fill the statistics engine, no more than the service's maximum record count
+  private static final int PAGE_SIZE = 1000;
+
   private ServiceFeatureTable mUsStatesFeatureTable;
+  // computes statistics on the device once every feature has been fetched
+  private StatisticsEngine mStatisticsEngine;
 
   private RecyclerView mStatisticsDefinitionRecyclerView;
   private RecyclerView mGroupRecyclerView;
@@ -98,6 +107,9 @@ public class MainActivity extends AppCompatActivity {
         mFieldNameList.add(fieldName);
       }
 
+      // fetch the features so statistics can be computed without querying the service each time
+      loadStatisticsEngine();
+
       createRecyclerViews();
 
       // fill the field spinner with field names
@@ -152,16 +164,73 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Creates a new StatisticsQueryParameters from a list of  StatisticDefinitions. Also adds a list of field names on
-   * which the result should be grouped, as well as a list of field names for sort order.
+   * Fetches the attributes of every feature a page at a time and adds them to a statistics engine. Statistics are
+   * queried from the service until every page has been fetched.
    */
-  private void executeStatisticsQuery() {
+  private void loadStatisticsEngine() {
+    List<String> numericFields = new ArrayList<>();
+    List<String> otherFields = new ArrayList<>();
+    for (Field field : mUsStatesFeatureTable.getFields()) {
+      switch (field.getFieldType()) {
+        case OID:
+        case SHORT:
+        case INTEGER:
+        case FLOAT:
+        case DOUBLE:
+          numericFields.add(field.getName());
+          break;
+        case TEXT:
+        case DATE:
+        case GUID:
+        case GLOBALID:
+          otherFields.add(field.getName());
+          break;
+        default:
+          // geometry, blob, raster and xml fields can't be grouped on or counted
+          break;
+      }
+    }
+    QueryParameters queryParameters = new QueryParameters();
+    queryParameters.setWhereClause(WHERE_CLAUSE);
+    // only the attributes are aggregated, so don't download each county's polygon
+    queryParameters.setReturnGeometry(false);
+    // a stable order, so each page follows on from the one before
+    queryParameters.getOrderByFields().add(new QueryParameters.OrderBy(mUsStatesFeatureTable.getObjectIdField(),
+        QueryParameters.SortOrder.ASCENDING));
+    queryParameters.setMaxFeatures(PAGE_SIZE);
+    loadStatisticsPage(new StatisticsEngine(numericFields, otherFields), queryParameters, System.nanoTime());
+  }
 
-    // create the statistics query parameters, pass in the list of statistic definitions
-    StatisticsQueryParameters statQueryParams = new StatisticsQueryParameters(mStatisticDefinitionList);
+  private void loadStatisticsPage(StatisticsEngine statisticsEngine, QueryParameters queryParameters,
+      long startNanos) {
+    queryParameters.setResultOffset(statisticsEngine.getRowCount());
+    ListenableFuture<FeatureQueryResult> featureQueryResultFuture = mUsStatesFeatureTable
+        .queryFeaturesAsync(queryParameters, ServiceFeatureTable.QueryFeatureFields.LOAD_ALL);
+    featureQueryResultFuture.addDoneListener(() -> {
+      try {
+        int pageCount = 0;
+        for (Feature feature : featureQueryResultFuture.get()) {
+          statisticsEngine.addRow(feature.getAttributes());
+          pageCount++;
+        }
+        if (pageCount >= PAGE_SIZE) {
+          loadStatisticsPage(statisticsEngine, queryParameters, startNanos);
+        } else {
+          mStatisticsEngine = statisticsEngine;
+          Log.i(TAG, "Fetched " + statisticsEngine.getRowCount() + " features for statistics in "
+              + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        }
+      } catch (InterruptedException | ExecutionException e) {
+        Log.e(TAG, "Unable to fetch features, statistics will be queried from the service: " + e.getMessage());
+      }
+    });
+  }
 
-    // ignore counties with missing data
-    statQueryParams.setWhereClause("\"State\" IS NOT NULL");
+  /**
+   * Computes statistics for the list of StatisticDefinitions, grouped and ordered by the selected fields. Statistics
+   * are computed on the device once every feature has been fetched, and queried from the service until then.
+   */
+  private void executeStatisticsQuery() {
 
     // specify the fields to group by (if any)
     List<String> groupList = new ArrayList<>();
@@ -170,16 +239,16 @@ public class MainActivity extends AppCompatActivity {
         groupList.add(mFieldNameList.get(i));
       }
     }
-    statQueryParams.getGroupByFieldNames().addAll(groupList);
 
     // specify the fields to order by (if any)
+    List<QueryParameters.OrderBy> orderByList = new ArrayList<>();
     for (String fieldAndSortOrder : mOrderByList) {
       // check that all orderBy fields are also checked for grouping
       if (groupList.contains(getFieldFrom(fieldAndSortOrder))) {
         // create a new OrderBy object to define the sort order for the selected field
         QueryParameters.OrderBy orderBy = new QueryParameters.OrderBy(getFieldFrom(fieldAndSortOrder),
             getSortOrderFrom(fieldAndSortOrder));
-        statQueryParams.getOrderByFields().add(orderBy);
+        orderByList.add(orderBy);
       } else {
         Toast.makeText(this,
             "Only checked fields in the 'Group Fields' list can be selected for ordering in the 'Order by Field' list.",
@@ -187,6 +256,50 @@ public class MainActivity extends AppCompatActivity {
       }
     }
 
+    if (mStatisticsEngine != null) {
+      computeStatistics(groupList, orderByList);
+    } else {
+      queryStatistics(groupList, orderByList);
+    }
+  }
+
+  /**
+   * Computes the statistics with the statistics engine.
+   */
+  private void computeStatistics(List<String> groupList, List<QueryParameters.OrderBy> orderByList) {
+    List<StatisticsEngine.Statistic> statistics = new ArrayList<>();
+    for (StatisticDefinition statDefinition : mStatisticDefinitionList) {
+      statistics.add(new StatisticsEngine.Statistic(statDefinition.getFieldName(),
+          StatisticsEngine.Type.valueOf(statDefinition.getStatisticType().name()), statDefinition.getOutputAlias()));
+    }
+    List<StatisticsEngine.OrderBy> orderBys = new ArrayList<>();
+    for (QueryParameters.OrderBy orderBy : orderByList) {
+      orderBys.add(new StatisticsEngine.OrderBy(orderBy.getFieldName(),
+          orderBy.getSortOrder() == QueryParameters.SortOrder.ASCENDING));
+    }
+    try {
+      long startNanos = System.nanoTime();
+      List<StatisticsEngine.GroupResult> groupedStatistics = mStatisticsEngine.query(statistics, groupList, orderBys);
+      Log.i(TAG, "Computed statistics of " + mStatisticsEngine.getRowCount() + " features in "
+          + (System.nanoTime() - startNanos) / 1_000 + " us");
+      displayResults(groupedStatistics);
+    } catch (IllegalArgumentException e) {
+      Log.e(TAG, "Invalid statistics definition: " + e.getMessage());
+      Toast.makeText(this, "Invalid statistics definition: " + e.getMessage(), Toast.LENGTH_LONG).show();
+    }
+  }
+
+  /**
+   * Queries the statistics from the service with a new StatisticsQueryParameters.
+   */
+  private void queryStatistics(List<String> groupList, List<QueryParameters.OrderBy> orderByList) {
+
+    // create the statistics query parameters, pass in the list of statistic definitions
+    StatisticsQueryParameters statQueryParams = new StatisticsQueryParameters(mStatisticDefinitionList);
+    statQueryParams.setWhereClause(WHERE_CLAUSE);
+    statQueryParams.getGroupByFieldNames().addAll(groupList);
+    statQueryParams.getOrderByFields().addAll(orderByList);
+
     // execute the statistical query with these parameters and await the results
     ListenableFuture<StatisticsQueryResult> statisticsQueryResultFuture = mUsStatesFeatureTable
         .queryStatisticsAsync(statQueryParams);
@@ -199,38 +312,19 @@ public class MainActivity extends AppCompatActivity {
         // get the StatisticsQueryResult
         StatisticsQueryResult statisticsQueryResult = statisticsQueryResultFuture.get();
 
-        // create a LinkedHashMap (preserves ordering) and populate it with the statistics query result
-        Map<String, List<String>> groupedStatistics = new LinkedHashMap<>();
-        // get each statistic record
+        // convert each statistic record to the same results the statistics engine gives
+        List<StatisticsEngine.GroupResult> groupedStatistics = new ArrayList<>();
         for (Iterator<StatisticRecord> results = statisticsQueryResult.iterator(); results.hasNext(); ) {
           StatisticRecord statisticRecord = results.next();
-          // if statistic record contains no grouping
-          if (statisticRecord.getGroup().isEmpty()) {
-            List<String> statsWithoutGroup = new ArrayList<>();
-            for (Map.Entry<String, Object> stat : statisticRecord.getStatistics().entrySet()) {
-              statsWithoutGroup.add(stat.getKey() + ": " + stat.getValue());
-            }
-            // add statistics to an expandable list view category called ungrouped statistics
-            groupedStatistics.put("Ungrouped statistics", statsWithoutGroup);
-          } else {
-            // get group for each statistic record
-            for (Map.Entry<String, Object> group : statisticRecord.getGroup().entrySet()) {
-              // add all stats for each group to a new list
-              List<String> statsForGroup = new ArrayList<>();
-              for (Map.Entry<String, Object> stat : statisticRecord.getStatistics().entrySet()) {
-                statsForGroup.add(stat.getKey() + ": " + stat.getValue());
-              }
-              // add group and associated stats for that group to linked hash map
-              groupedStatistics.put(group.getValue().toString(), statsForGroup);
-            }
+          Map<String, Double> statistics = new LinkedHashMap<>();
+          for (Map.Entry<String, Object> stat : statisticRecord.getStatistics().entrySet()) {
+            statistics.put(stat.getKey(),
+                stat.getValue() instanceof Number ? ((Number) stat.getValue()).doubleValue() : null);
           }
+          groupedStatistics.add(new StatisticsEngine.GroupResult(statisticRecord.getGroup(), statistics));
         }
-
-        // write the linked hash map out to json
-        Gson gson = new Gson();
-        String groupedStatisticsJson = gson.toJson(groupedStatistics, LinkedHashMap.class);
         // pass the results to displayResults
-        displayResults(groupedStatisticsJson);
+        displayResults(groupedStatistics);
       } catch (InterruptedException | ExecutionException e) {
         Log.e(TAG, "Invalid statistics definition: " + e.getMessage());
       }
@@ -244,10 +338,12 @@ public class MainActivity extends AppCompatActivity {
   private void addStatistic(String fieldName, StatisticType statType) {
 
     // check if the list already contains this field/type pair, and adds it if it doesn't
-    if (!mStatisticDefinitionsAsStringsList.contains(fieldName + " (" + statType + ')')) {
-      mStatisticDefinitionsAsStringsList.add(fieldName + " (" + statType + ')');
+    String alias = fieldName + " (" + statType + ')';
+    if (!mStatisticDefinitionsAsStringsList.contains(alias)) {
+      mStatisticDefinitionsAsStringsList.add(alias);
       mStatisticsDefinitionAdapter.notifyItemInserted(mStatisticDefinitionsAsStringsList.size() - 1);
-      StatisticDefinition statDefinition = new StatisticDefinition(fieldName, statType);
+      // name the statistic in the results the same whether it is computed on the device or queried from the service
+      StatisticDefinition statDefinition = new StatisticDefinition(fieldName, statType, alias);
       mStatisticDefinitionList.add(statDefinition);
     } else {
       Toast.makeText(this, "The statistic definitions list already contains this field and type pair.",
@@ -336,11 +432,11 @@ public class MainActivity extends AppCompatActivity {
   /**
    * Creates a new activity to display results.
    *
-   * @param groupedStatisticsJson Json of LinkedHashMap containing grouped result from statisticsQueryResult
+   * @param groupedStatistics statistics of each group
    */
-  private void displayResults(String groupedStatisticsJson) {
+  private void displayResults(List<StatisticsEngine.GroupResult> groupedStatistics) {
     Intent intent = new Intent(this, ResultsActivity.class);
-    ResultsActivity.results = groupedStatisticsJson;
+    ResultsActivity.results = groupedStatistics;
     startActivity(intent);
   }
 
@@ -16,7 +16,7 @@
 
 package com.esri.arcgisruntime.sample.statisticalquerygroupandsort;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
 
 import android.os.Bundle;
@@ -25,34 +25,24 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.widget.ExpandableListAdapter;
 import android.widget.ExpandableListView;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
 /**
- * Gets results from the main activity through an Intent extra, converts the results to a LinkedHashMap, and creates an
- * ExpandableListView to display the results.
+ * Gets results from the main activity and creates an ExpandableListView to display the results.
  */
 public class ResultsActivity extends AppCompatActivity {
 
-  public static String results = "";
+  static List<StatisticsEngine.GroupResult> results = new ArrayList<>();
 
   @Override protected void onCreate(@Nullable Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.results_expandablelistview);
 
-    Gson gson = new Gson();
-
-    LinkedHashMap<String, List<String>> groupedStatistics = gson
-        .fromJson(results, new ResultsActivity.LinkedHashMapTypeToken().getType());
-
     // create expandable list view
     ExpandableListView expandableListView = findViewById(R.id.expandableListView);
-    ExpandableListAdapter expandableListAdapter = new ExpandableListViewAdapter(this, groupedStatistics);
+    ExpandableListAdapter expandableListAdapter = new ExpandableListViewAdapter(this, results);
     expandableListView.setAdapter(expandableListAdapter);
     // expand the first group by default
-    expandableListView.expandGroup(0);
-  }
-
-  private static class LinkedHashMapTypeToken extends TypeToken<LinkedHashMap<String, List<String>>> {
+    if (!results.isEmpty()) {
+      expandableListView.expandGroup(0);
+    }
   }
 }
@@ -0,0 +1,357 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.statisticalquerygroupandsort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes grouped statistics on the device from a cache of feature attributes, instead of sending a statistics query
+ * to the service each time.
+ *
+ * Attributes are stored a column at a time, numeric fields as arrays of doubles with NaN for nulls, so a query reads
+ * through primitive arrays. Each query makes a single pass over the rows, hashing each row to its group and updating a
+ * running count, sum, minimum, maximum, mean and sum of squared differences from the mean for each field, using
+ * Welford's method so the variance doesn't lose precision to large sums of squares. Like the service, nulls are left
+ * out of every statistic, and the variance and standard deviation are those of a sample.
+ */
+final class StatisticsEngine {
+
+  /**
+   * The statistics which can be computed, named as in the runtime's StatisticType.
+   */
+  enum Type {
+    AVERAGE, COUNT, MAXIMUM, MINIMUM, STANDARD_DEVIATION, SUM, VARIANCE
+  }
+
+  /**
+   * A statistic to compute for a field.
+   */
+  static final class Statistic {
+    private final String mFieldName;
+    private final Type mType;
+    private final String mAlias;
+
+    /**
+     * @param alias name of the statistic in the results
+     */
+    Statistic(String fieldName, Type type, String alias) {
+      mFieldName = fieldName;
+      mType = type;
+      mAlias = alias;
+    }
+  }
+
+  /**
+   * Orders results by a group field or a statistic's alias.
+   */
+  static final class OrderBy {
+    private final String mName;
+    private final boolean mAscending;
+
+    OrderBy(String name, boolean ascending) {
+      mName = name;
+      mAscending = ascending;
+    }
+  }
+
+  /**
+   * The statistics of one group.
+   */
+  static final class GroupResult {
+    private final Map<String, Object> mGroup;
+    private final Map<String, Double> mStatistics;
+
+    /**
+     * @param group      value of each group field, empty if the results aren't grouped
+     * @param statistics value of each statistic by alias, null where there were too few values to compute it
+     */
+    GroupResult(Map<String, Object> group, Map<String, Double> statistics) {
+      mGroup = group;
+      mStatistics = statistics;
+    }
+
+    Map<String, Object> getGroup() {
+      return mGroup;
+    }
+
+    Map<String, Double> getStatistics() {
+      return mStatistics;
+    }
+  }
+
+  private final Map<String, Column> mColumns = new LinkedHashMap<>();
+  private int mRowCount;
+
+  /**
+   * @param numericFields names of fields with numeric values
+   * @param otherFields   names of other fields which can be grouped on or counted
+   */
+  StatisticsEngine(List<String> numericFields, List<String> otherFields) {
+    for (String fieldName : numericFields) {
+      mColumns.put(fieldName, new Column(true));
+    }
+    for (String fieldName : otherFields) {
+      mColumns.put(fieldName, new Column(false));
+    }
+  }
+
+  /**
+   * Adds a row of attributes. Fields the engine doesn't know about are ignored, and fields missing from the
+   * attributes are null.
+   */
+  void addRow(Map<String, Object> attributes) {
+    for (Map.Entry<String, Column> entry : mColumns.entrySet()) {
+      entry.getValue().set(mRowCount, attributes.get(entry.getKey()));
+    }
+    mRowCount++;
+  }
+
+  int getRowCount() {
+    return mRowCount;
+  }
+
+  /**
+   * Computes statistics over every row.
+   *
+   * @param statistics  statistics to compute
+   * @param groupFields fields to group rows by, or an empty list for a single group of every row
+   * @param orderBy     group fields or statistic aliases to order the results by, or an empty list for the order in
+   *                    which groups are first found
+   * @return the statistics of each group
+   * @throws IllegalArgumentException if a field isn't known, or a statistic other than a count is of a field which
+   *                                  isn't numeric
+   */
+  List<GroupResult> query(List<Statistic> statistics, List<String> groupFields, List<OrderBy> orderBy) {
+    // each field is accumulated once, however many statistics there are of it
+    Map<String, Integer> accumulatorIndexes = new LinkedHashMap<>();
+    for (Statistic statistic : statistics) {
+      Column column = getColumn(statistic.mFieldName);
+      if (!column.mNumeric && statistic.mType != Type.COUNT) {
+        throw new IllegalArgumentException(statistic.mType + " of " + statistic.mFieldName + " needs a numeric field");
+      }
+      if (!accumulatorIndexes.containsKey(statistic.mFieldName)) {
+        accumulatorIndexes.put(statistic.mFieldName, accumulatorIndexes.size());
+      }
+    }
+    Column[] accumulatedColumns = new Column[accumulatorIndexes.size()];
+    for (Map.Entry<String, Integer> entry : accumulatorIndexes.entrySet()) {
+      accumulatedColumns[entry.getValue()] = mColumns.get(entry.getKey());
+    }
+    Column[] groupColumns = new Column[groupFields.size()];
+    for (int i = 0; i < groupColumns.length; i++) {
+      groupColumns[i] = getColumn(groupFields.get(i));
+    }
+
+    // hash each row to its group, in the order groups are first found
+    Map<Object, Accumulator[]> groups = new LinkedHashMap<>();
+    if (groupColumns.length == 0) {
+      groups.put(Collections.emptyList(), newAccumulators(accumulatedColumns.length));
+    }
+    Accumulator[] ungrouped = groupColumns.length == 0 ? groups.values().iterator().next() : null;
+    for (int row = 0; row < mRowCount; row++) {
+      Accumulator[] accumulators = ungrouped;
+      if (accumulators == null) {
+        Object key = groupKey(groupColumns, row);
+        accumulators = groups.get(key);
+        if (accumulators == null) {
+          accumulators = newAccumulators(accumulatedColumns.length);
+          groups.put(key, accumulators);
+        }
+      }
+      for (int i = 0; i < accumulatedColumns.length; i++) {
+        Column column = accumulatedColumns[i];
+        if (column.mNumeric) {
+          double value = column.mNumbers[row];
+          if (!Double.isNaN(value)) {
+            accumulators[i].add(value);
+          }
+        } else if (column.mValues[row] != null) {
+          accumulators[i].mCount++;
+        }
+      }
+    }
+
+    List<GroupResult> results = new ArrayList<>(groups.size());
+    for (Map.Entry<Object, Accumulator[]> group : groups.entrySet()) {
+      Map<String, Object> groupValues = new LinkedHashMap<>();
+      for (int i = 0; i < groupColumns.length; i++) {
+        Object key = group.getKey();
+        groupValues.put(groupFields.get(i), groupColumns.length == 1 ? key : ((List<?>) key).get(i));
+      }
+      Map<String, Double> statisticValues = new LinkedHashMap<>();
+      for (Statistic statistic : statistics) {
+        Accumulator accumulator = group.getValue()[accumulatorIndexes.get(statistic.mFieldName)];
+        statisticValues.put(statistic.mAlias, accumulator.get(statistic.mType));
+      }
+      results.add(new GroupResult(groupValues, statisticValues));
+    }
+    if (!orderBy.isEmpty()) {
+      Collections.sort(results, comparator(orderBy));
+    }
+    return results;
+  }
+
+  private Column getColumn(String fieldName) {
+    Column column = mColumns.get(fieldName);
+    if (column == null) {
+      throw new IllegalArgumentException("Unknown field " + fieldName);
+    }
+    return column;
+  }
+
+  private static Object groupKey(Column[] groupColumns, int row) {
+    if (groupColumns.length == 1) {
+      return groupColumns[0].get(row);
+    }
+    Object[] key = new Object[groupColumns.length];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = groupColumns[i].get(row);
+    }
+    return Arrays.asList(key);
+  }
+
+  private static Accumulator[] newAccumulators(int count) {
+    Accumulator[] accumulators = new Accumulator[count];
+    for (int i = 0; i < count; i++) {
+      accumulators[i] = new Accumulator();
+    }
+    return accumulators;
+  }
+
+  private static Comparator<GroupResult> comparator(List<OrderBy> orderBy) {
+    return (a, b) -> {
+      for (OrderBy order : orderBy) {
+        Object valueA = a.mGroup.containsKey(order.mName) ? a.mGroup.get(order.mName) : a.mStatistics.get(order.mName);
+        Object valueB = b.mGroup.containsKey(order.mName) ? b.mGroup.get(order.mName) : b.mStatistics.get(order.mName);
+        int compare = compareValues(valueA, valueB);
+        if (compare != 0) {
+          return order.mAscending ? compare : -compare;
+        }
+      }
+      return 0;
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compareValues(Object a, Object b) {
+    // nulls first
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    }
+    if (a instanceof Number && b instanceof Number) {
+      return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+    }
+    if (a instanceof Comparable && a.getClass() == b.getClass()) {
+      return ((Comparable<Object>) a).compareTo(b);
+    }
+    return a.toString().compareTo(b.toString());
+  }
+
+  /**
+   * The values of one field, stored in an array which grows as rows are added.
+   */
+  private static final class Column {
+    private final boolean mNumeric;
+    private double[] mNumbers;
+    private Object[] mValues;
+
+    Column(boolean numeric) {
+      mNumeric = numeric;
+      if (numeric) {
+        mNumbers = new double[16];
+      } else {
+        mValues = new Object[16];
+      }
+    }
+
+    void set(int row, Object value) {
+      if (mNumeric) {
+        if (row == mNumbers.length) {
+          mNumbers = Arrays.copyOf(mNumbers, row * 2);
+        }
+        mNumbers[row] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+      } else {
+        if (row == mValues.length) {
+          mValues = Arrays.copyOf(mValues, row * 2);
+        }
+        mValues[row] = value;
+      }
+    }
+
+    Object get(int row) {
+      if (!mNumeric) {
+        return mValues[row];
+      }
+      double number = mNumbers[row];
+      return Double.isNaN(number) ? null : number;
+    }
+  }
+
+  /**
+   * Running statistics of the non-null values of a field in a group.
+   */
+  private static final class Accumulator {
+    private long mCount;
+    private double mSum;
+    private double mMin = Double.POSITIVE_INFINITY;
+    private double mMax = Double.NEGATIVE_INFINITY;
+    private double mMean;
+    // sum of squared differences from the mean
+    private double mM2;
+
+    void add(double value) {
+      mCount++;
+      mSum += value;
+      if (value < mMin) {
+        mMin = value;
+      }
+      if (value > mMax) {
+        mMax = value;
+      }
+      double delta = value - mMean;
+      mMean += delta / mCount;
+      mM2 += delta * (value - mMean);
+    }
+
+    Double get(Type type) {
+      switch (type) {
+        case COUNT:
+          return (double) mCount;
+        case SUM:
+          return mCount > 0 ? mSum : null;
+        case MINIMUM:
+          return mCount > 0 ? mMin : null;
+        case MAXIMUM:
+          return mCount > 0 ? mMax : null;
+        case AVERAGE:
+          return mCount > 0 ? mMean : null;
+        case VARIANCE:
+          return mCount > 1 ? mM2 / (mCount - 1) : null;
+        case STANDARD_DEVIATION:
+          return mCount > 1 ? Math.sqrt(mM2 / (mCount - 1)) : null;
+        default:
+          throw new IllegalArgumentException("Unknown statistic " + type);
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.statisticalquerygroupandsort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the statistics engine against statistics of the same counties computed independently, with the service's
+ * rules: nulls are left out of every statistic and the standard deviation is that of a sample.
+ */
+public class StatisticsEngineTest {
+
+  private static final double TOLERANCE = 1e-9;
+
+  private StatisticsEngine mEngine;
+
+  @Before
+  public void setUp() throws IOException {
+    mEngine = new StatisticsEngine(
+        Arrays.asList("FID", "Diabetes_Percent", "Inactivity_Percent", "Obesity_Percent"),
+        Arrays.asList("State", "County"));
+    List<String[]> rows = readCsv("counties.csv");
+    String[] header = rows.get(0);
+    for (String[] row : rows.subList(1, rows.size())) {
+      Map<String, Object> attributes = new LinkedHashMap<>();
+      for (int i = 0; i < header.length; i++) {
+        String value = row[i];
+        if (value.isEmpty()) {
+          attributes.put(header[i], null);
+        } else if (header[i].equals("FID")) {
+          attributes.put(header[i], Integer.parseInt(value));
+        } else if (header[i].endsWith("_Percent")) {
+          attributes.put(header[i], Double.parseDouble(value));
+        } else {
+          attributes.put(header[i], value);
+        }
+      }
+      mEngine.addRow(attributes);
+    }
+  }
+
+  @Test
+  public void matchesExpectedStatisticsByState() throws IOException {
+    List<StatisticsEngine.Statistic> statistics = Arrays.asList(
+        statistic("Diabetes_Percent", StatisticsEngine.Type.AVERAGE),
+        statistic("Diabetes_Percent", StatisticsEngine.Type.COUNT),
+        statistic("Diabetes_Percent", StatisticsEngine.Type.STANDARD_DEVIATION),
+        statistic("Inactivity_Percent", StatisticsEngine.Type.MAXIMUM),
+        statistic("Inactivity_Percent", StatisticsEngine.Type.SUM));
+
+    List<StatisticsEngine.GroupResult> results = mEngine.query(statistics, Collections.singletonList("State"),
+        Collections.singletonList(new StatisticsEngine.OrderBy("State", false)));
+
+    List<String[]> expected = readCsv("statistics_by_state.csv");
+    String[] header = expected.get(0);
+    assertEquals(expected.size() - 1, results.size());
+    for (int i = 1; i < expected.size(); i++) {
+      String[] row = expected.get(i);
+      StatisticsEngine.GroupResult result = results.get(i - 1);
+      assertEquals(row[0], result.getGroup().get("State"));
+      assertEquals(Arrays.asList(header).subList(1, header.length),
+          new ArrayList<>(result.getStatistics().keySet()));
+      for (int j = 1; j < header.length; j++) {
+        Double value = result.getStatistics().get(header[j]);
+        if (row[j].isEmpty()) {
+          assertNull(row[0] + " " + header[j], value);
+        } else {
+          assertEquals(row[0] + " " + header[j], Double.parseDouble(row[j]), value, TOLERANCE);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void ordersByStatisticAlias() {
+    List<StatisticsEngine.GroupResult> results = mEngine.query(
+        Collections.singletonList(statistic("Diabetes_Percent", StatisticsEngine.Type.AVERAGE)),
+        Collections.singletonList("State"),
+        Collections.singletonList(new StatisticsEngine.OrderBy("Diabetes_Percent (AVERAGE)", true)));
+
+    List<Object> states = new ArrayList<>();
+    for (StatisticsEngine.GroupResult result : results) {
+      states.add(result.getGroup().get("State"));
+    }
+    assertEquals(Arrays.asList("Alabama", "Vermont", "Georgia", "Wyoming"), states);
+  }
+
+  @Test
+  public void countsNonNullValuesOfOtherFields() {
+    List<StatisticsEngine.GroupResult> results = mEngine.query(
+        Collections.singletonList(statistic("County", StatisticsEngine.Type.COUNT)), Collections.emptyList(),
+        Collections.emptyList());
+
+    assertEquals(1, results.size());
+    assertEquals(21.0, results.get(0).getStatistics().get("County (COUNT)"), 0);
+  }
+
+  @Test
+  public void keepsPrecisionOfLargeValues() {
+    StatisticsEngine engine = new StatisticsEngine(Collections.singletonList("Value"), Collections.emptyList());
+    for (double value : new double[] { 1e9 + 4, 1e9 + 7, 1e9 + 13, 1e9 + 16 }) {
+      engine.addRow(Collections.singletonMap("Value", value));
+    }
+
+    List<StatisticsEngine.GroupResult> results = engine.query(
+        Collections.singletonList(statistic("Value", StatisticsEngine.Type.VARIANCE)), Collections.emptyList(),
+        Collections.emptyList());
+
+    // the squared differences from the mean of 1e9 + 10 are 36, 9, 9 and 36
+    assertEquals(30.0, results.get(0).getStatistics().get("Value (VARIANCE)"), TOLERANCE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAverageOfTextField() {
+    mEngine.query(Collections.singletonList(statistic("County", StatisticsEngine.Type.AVERAGE)),
+        Collections.emptyList(), Collections.emptyList());
+  }
+
+  private static StatisticsEngine.Statistic statistic(String fieldName, StatisticsEngine.Type type) {
+    // named as the sample names its statistic definitions
+    return new StatisticsEngine.Statistic(fieldName, type, fieldName + " (" + type + ')');
+  }
+
+  private static List<String[]> readCsv(String resource) throws IOException {
+    List<String[]> rows = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        StatisticsEngineTest.class.getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // the fixtures don't quote any values
+        rows.add(line.split(",", -1));
+      }
+    }
+    return rows;
+  }
+}
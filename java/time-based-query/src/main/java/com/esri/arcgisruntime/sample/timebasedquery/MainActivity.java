@@ -16,16 +16,33 @@
 
 package com.esri.arcgisruntime.sample.timebasedquery;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.GregorianCalendar;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.widget.Button;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
+import com.esri.arcgisruntime.data.Feature;
+import com.esri.arcgisruntime.data.FeatureCollectionTable;
+import com.esri.arcgisruntime.data.FeatureQueryResult;
+import com.esri.arcgisruntime.data.Field;
 import com.esri.arcgisruntime.data.QueryParameters;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.layers.FeatureLayer;
@@ -39,7 +56,42 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  private static final long HOUR_MILLIS = 60 * 60 * 1000;
+  // features are cached a day at a time, and the last three days before the time cursor are shown
+  private static final long BUCKET_MILLIS = 24 * HOUR_MILLIS;
+  private static final int WINDOW_BUCKETS = 3;
+  private static final int PREFETCH_BUCKETS = 2;
+  private static final int MAX_CACHED_BUCKETS = 16;
+  // each step of the time slider, and how often playback takes a step
+  private static final long STEP_MILLIS = 6 * HOUR_MILLIS;
+  private static final long PLAYBACK_INTERVAL_MILLIS = 250;
+
   private MapView mMapView;
+  private SeekBar mTimeSeekBar;
+  private TextView mTimeTextView;
+  private Button mPlayButton;
+
+  private ServiceFeatureTable mServiceFeatureTable;
+  private FeatureCollectionTable mFeatureCollectionTable;
+  private TimeWindowCache<Feature> mTimeWindowCache;
+  // features added to the feature collection table for each bucket shown
+  private final Map<Long, List<Feature>> mShownFeatures = new HashMap<>();
+  private final List<Field> mFields = new ArrayList<>();
+  private long mStartMillis;
+  private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.US);
+
+  private final Handler mPlaybackHandler = new Handler(Looper.getMainLooper());
+  private boolean mPlaying;
+  private final Runnable mPlaybackStep = new Runnable() {
+    @Override public void run() {
+      if (mTimeSeekBar.getProgress() >= mTimeSeekBar.getMax()) {
+        setPlaying(false);
+        return;
+      }
+      mTimeSeekBar.setProgress(mTimeSeekBar.getProgress() + 1);
+      mPlaybackHandler.postDelayed(this, PLAYBACK_INTERVAL_MILLIS);
+    }
+  };
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -50,56 +102,193 @@ public class MainActivity extends AppCompatActivity {
     // location services
     ArcGISRuntimeEnvironment.setApiKey(BuildConfig.API_KEY);
 
-    // inflate MapView from layout
+    // inflate views from layout
     mMapView = findViewById(R.id.mapView);
+    mTimeSeekBar = findViewById(R.id.timeSeekBar);
+    mTimeTextView = findViewById(R.id.timeTextView);
+    mPlayButton = findViewById(R.id.playButton);
+    mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
 
     // create a new map with oceans basemap
     ArcGISMap map = new ArcGISMap(BasemapStyle.ARCGIS_OCEANS);
+    mMapView.setMap(map);
 
     // create feature table for the hurricane feature service
-    ServiceFeatureTable serviceFeatureTable = new ServiceFeatureTable(getString(R.string.hurricanes_service));
+    mServiceFeatureTable = new ServiceFeatureTable(getString(R.string.hurricanes_service));
 
-    // define the request mode
-    serviceFeatureTable.setFeatureRequestMode(ServiceFeatureTable.FeatureRequestMode.MANUAL_CACHE);
+    // the table is only queried a time bucket at a time, and the time window cache keeps the features, so the table
+    // doesn't need to cache them as well
+    mServiceFeatureTable.setFeatureRequestMode(ServiceFeatureTable.FeatureRequestMode.ON_INTERACTION_NO_CACHE);
 
-    // when feature table is loaded, populate data
-    serviceFeatureTable.addDoneLoadingListener(() -> {
-      if (serviceFeatureTable.getLoadStatus() == LoadStatus.FAILED_TO_LOAD) {
-        String error = "Service feature table failed to load: " + serviceFeatureTable.getLoadError().getCause();
+    // load a feature layer of the table for its renderer and time extent, without adding it to the map
+    FeatureLayer serviceFeatureLayer = new FeatureLayer(mServiceFeatureTable);
+    serviceFeatureLayer.addDoneLoadingListener(() -> {
+      if (serviceFeatureLayer.getLoadStatus() == LoadStatus.FAILED_TO_LOAD) {
+        String error = "Service feature table failed to load: " + serviceFeatureLayer.getLoadError().getCause();
         Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
         Log.e(TAG, error);
         return;
       }
+      TimeExtent fullTimeExtent = serviceFeatureLayer.getFullTimeExtent();
+      if (fullTimeExtent == null || fullTimeExtent.getStartTime() == null || fullTimeExtent.getEndTime() == null) {
+        String error = "Service feature table isn't time enabled";
+        Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+        return;
+      }
+
+      // draw the features of the buckets being shown with a feature collection table, with the service's renderer
+      for (Field field : mServiceFeatureTable.getFields()) {
+        if (isCollectionField(field)) {
+          mFields.add(field);
+        }
+      }
+      mFeatureCollectionTable = new FeatureCollectionTable(mFields, mServiceFeatureTable.getGeometryType(),
+          mServiceFeatureTable.getSpatialReference());
+      FeatureLayer featureLayer = new FeatureLayer(mFeatureCollectionTable);
+      featureLayer.setRenderer(serviceFeatureLayer.getRenderer());
+      map.getOperationalLayers().add(featureLayer);
 
-      // create new query object that contains a basic 'include everything' clause
-      QueryParameters queryParameters = new QueryParameters();
-      queryParameters.setWhereClause("1=1");
+      mTimeWindowCache = new TimeWindowCache<>(this::fetchBucket, BUCKET_MILLIS, WINDOW_BUCKETS, PREFETCH_BUCKETS,
+          MAX_CACHED_BUCKETS, new TimeWindowCache.Listener<Feature>() {
+        @Override public void onBucketShown(long bucket, List<Feature> features) {
+          showBucket(bucket, features);
+        }
 
-      // create a new time extent that covers the desired interval (beginning of time to September 16th, 2000)
-      TimeExtent timeExtent = new TimeExtent(TimeExtent.MIN_CALENDAR, new GregorianCalendar(2000, 9, 16));
+        @Override public void onBucketHidden(long bucket, List<Feature> features) {
+          List<Feature> shownFeatures = mShownFeatures.remove(bucket);
+          if (shownFeatures != null) {
+            mFeatureCollectionTable.deleteFeaturesAsync(shownFeatures);
+          }
+        }
 
-      // apply the time extent to the query parameters
-      queryParameters.setTimeExtent(timeExtent);
+        @Override public void onError(long bucket, Exception e) {
+          Log.e(TAG, "Unable to fetch features from " + mDateFormat.format(bucket * BUCKET_MILLIS) + ": "
+              + e.getMessage());
+        }
+      });
 
-      // create list of the fields that are returned from the service
-      List<String> outFields = new ArrayList<>();
-      outFields.add("*");
+      // scrub through the time extent of the service a step at a time
+      mStartMillis = fullTimeExtent.getStartTime().getTimeInMillis();
+      mTimeSeekBar.setMax((int) ((fullTimeExtent.getEndTime().getTimeInMillis() - mStartMillis) / STEP_MILLIS));
+      mTimeSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+        @Override
+        public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+          setTimeCursor(progress);
+        }
 
-      // populate feature table with the data based on query
-      serviceFeatureTable.populateFromServiceAsync(queryParameters, true, outFields);
+        @Override
+        public void onStartTrackingTouch(SeekBar seekBar) {
+          setPlaying(false);
+        }
+
+        @Override
+        public void onStopTrackingTouch(SeekBar seekBar) {
+        }
+      });
+      mTimeSeekBar.setEnabled(true);
+      mPlayButton.setEnabled(true);
+      mPlayButton.setOnClickListener(v -> setPlaying(!mPlaying));
+      setTimeCursor(0);
     });
+    serviceFeatureLayer.loadAsync();
+  }
 
-    // create a feature layer from the service feature table
-    FeatureLayer featureLayer = new FeatureLayer(serviceFeatureTable);
+  /**
+   * Fetches the features in a time bucket from the service.
+   */
+  private void fetchBucket(long startMillis, long endMillis, TimeWindowCache.Callback<Feature> callback) {
+    // create new query object that contains a basic 'include everything' clause
+    QueryParameters queryParameters = new QueryParameters();
+    queryParameters.setWhereClause("1=1");
 
-    // add created layer to the map and add the map to the map view
-    map.getOperationalLayers().add(featureLayer);
-    mMapView.setMap(map);
+    // apply the time extent of the bucket to the query parameters
+    queryParameters.setTimeExtent(new TimeExtent(toCalendar(startMillis), toCalendar(endMillis)));
+
+    ListenableFuture<FeatureQueryResult> future = mServiceFeatureTable
+        .queryFeaturesAsync(queryParameters, ServiceFeatureTable.QueryFeatureFields.LOAD_ALL);
+    future.addDoneListener(() -> {
+      try {
+        List<Feature> features = new ArrayList<>();
+        for (Feature feature : future.get()) {
+          features.add(feature);
+        }
+        callback.onFetched(features);
+      } catch (InterruptedException | ExecutionException e) {
+        callback.onError(e);
+      }
+    });
+  }
+
+  /**
+   * Adds copies of the features in a bucket to the feature collection table.
+   */
+  private void showBucket(long bucket, List<Feature> features) {
+    List<Feature> shownFeatures = new ArrayList<>(features.size());
+    for (Feature feature : features) {
+      Map<String, Object> attributes = new LinkedHashMap<>();
+      for (Field field : mFields) {
+        attributes.put(field.getName(), feature.getAttributes().get(field.getName()));
+      }
+      shownFeatures.add(mFeatureCollectionTable.createFeature(attributes, feature.getGeometry()));
+    }
+    mShownFeatures.put(bucket, shownFeatures);
+    mFeatureCollectionTable.addFeaturesAsync(shownFeatures);
+  }
+
+  private void setTimeCursor(int step) {
+    long timeMillis = mStartMillis + step * STEP_MILLIS;
+    mTimeTextView.setText(mDateFormat.format(timeMillis));
+    mTimeWindowCache.setCursor(timeMillis);
+  }
+
+  private void setPlaying(boolean playing) {
+    if (playing == mPlaying) {
+      return;
+    }
+    mPlaying = playing;
+    mPlayButton.setText(playing ? R.string.pause : R.string.play);
+    if (playing) {
+      // start again from the beginning once playback has reached the end
+      if (mTimeSeekBar.getProgress() >= mTimeSeekBar.getMax()) {
+        mTimeSeekBar.setProgress(0);
+      }
+      mPlaybackHandler.postDelayed(mPlaybackStep, PLAYBACK_INTERVAL_MILLIS);
+    } else {
+      mPlaybackHandler.removeCallbacks(mPlaybackStep);
+      Log.i(TAG, "Time window cache: " + mTimeWindowCache);
+    }
+  }
+
+  /**
+   * @return whether a feature collection table can have the field, which object ID and global ID fields can't
+   */
+  private static boolean isCollectionField(Field field) {
+    switch (field.getFieldType()) {
+      case TEXT:
+      case SHORT:
+      case INTEGER:
+      case FLOAT:
+      case DOUBLE:
+      case DATE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static Calendar toCalendar(long timeMillis) {
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(timeMillis);
+    return calendar;
   }
 
   @Override
   protected void onPause() {
     super.onPause();
+    if (mTimeWindowCache != null) {
+      setPlaying(false);
+    }
     mMapView.pause();
   }
 
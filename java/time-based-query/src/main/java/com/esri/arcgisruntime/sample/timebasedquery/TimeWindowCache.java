@@ -0,0 +1,262 @@
+/* Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.timebasedquery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches features in fixed time buckets, so moving a time cursor back and forth only fetches the buckets which haven't
+ * been fetched already.
+ *
+ * The buckets in a window ending at the cursor are shown. Buckets just beyond the window in the direction the cursor
+ * last moved are prefetched, so they are usually cached by the time playback reaches them. Once more than a maximum
+ * number of buckets are cached, those furthest from the cursor are evicted.
+ *
+ * Must be used from the thread the {@link BucketSource} calls back on.
+ *
+ * @param <T> type of the features in a bucket
+ */
+final class TimeWindowCache<T> {
+
+  /**
+   * Fetches the features in a time bucket.
+   */
+  interface BucketSource<T> {
+    /**
+     * @param startMillis start of the bucket
+     * @param endMillis   end of the bucket, inclusive
+     */
+    void fetch(long startMillis, long endMillis, Callback<T> callback);
+  }
+
+  /**
+   * Receives the features of a bucket.
+   */
+  interface Callback<T> {
+    void onFetched(List<T> features);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Shows and hides the features of buckets as they move in and out of the window.
+   */
+  interface Listener<T> {
+    void onBucketShown(long bucket, List<T> features);
+
+    void onBucketHidden(long bucket, List<T> features);
+
+    void onError(long bucket, Exception e);
+  }
+
+  private static final int LATENCY_SAMPLES = 256;
+
+  private final BucketSource<T> mBucketSource;
+  private final long mBucketMillis;
+  private final int mWindowBuckets;
+  private final int mPrefetchBuckets;
+  private final int mMaxBuckets;
+  private final Listener<T> mListener;
+
+  private final Map<Long, List<T>> mCached = new HashMap<>();
+  // start time of each fetch in flight, and which of them are prefetches
+  private final Map<Long, Long> mFetchStartNanos = new HashMap<>();
+  private final Set<Long> mPrefetching = new HashSet<>();
+  private final Set<Long> mShown = new HashSet<>();
+  private long mCursorBucket = Long.MIN_VALUE;
+  private int mDirection = 1;
+
+  private long mHits;
+  private long mMisses;
+  private long mEvictions;
+  // latencies of the most recent prefetches, overwritten in turn once full
+  private final long[] mPrefetchLatencyNanos = new long[LATENCY_SAMPLES];
+  private int mPrefetchCount;
+
+  /**
+   * @param bucketSource    fetches the features of each bucket
+   * @param bucketMillis    length of a bucket
+   * @param windowBuckets   number of buckets shown, ending with the cursor's bucket
+   * @param prefetchBuckets number of buckets beyond the window to prefetch
+   * @param maxBuckets      number of buckets cached before those furthest from the cursor are evicted, at least the
+   *                        window and prefetched buckets
+   * @param listener        shows and hides the buckets
+   */
+  TimeWindowCache(BucketSource<T> bucketSource, long bucketMillis, int windowBuckets, int prefetchBuckets,
+      int maxBuckets, Listener<T> listener) {
+    mBucketSource = bucketSource;
+    mBucketMillis = bucketMillis;
+    mWindowBuckets = windowBuckets;
+    mPrefetchBuckets = prefetchBuckets;
+    mMaxBuckets = Math.max(maxBuckets, windowBuckets + prefetchBuckets);
+    mListener = listener;
+  }
+
+  /**
+   * Moves the cursor, showing the buckets in the window ending at it and prefetching those beyond it.
+   *
+   * @param timeMillis time of the cursor
+   */
+  void setCursor(long timeMillis) {
+    // round down, including for times before 1970
+    long bucket = timeMillis >= 0 ? timeMillis / mBucketMillis : (timeMillis + 1) / mBucketMillis - 1;
+    if (bucket == mCursorBucket) {
+      return;
+    }
+    if (mCursorBucket != Long.MIN_VALUE) {
+      mDirection = bucket > mCursorBucket ? 1 : -1;
+    }
+    mCursorBucket = bucket;
+
+    // hide the buckets which have left the window
+    for (Long shown : new ArrayList<>(mShown)) {
+      if (!inWindow(shown)) {
+        mShown.remove(shown);
+        mListener.onBucketHidden(shown, mCached.get(shown));
+      }
+    }
+    // show the buckets which have entered it, fetching any which aren't cached
+    for (long windowBucket = bucket - mWindowBuckets + 1; windowBucket <= bucket; windowBucket++) {
+      if (mShown.contains(windowBucket)) {
+        continue;
+      }
+      List<T> features = mCached.get(windowBucket);
+      if (features != null) {
+        mHits++;
+        show(windowBucket, features);
+      } else {
+        mMisses++;
+        // a bucket still being prefetched is needed now, so it no longer counts as a prefetch
+        mPrefetching.remove(windowBucket);
+        fetch(windowBucket, false);
+      }
+    }
+    // prefetch the buckets playback will reach next
+    long edge = mDirection > 0 ? bucket : bucket - mWindowBuckets + 1;
+    for (int i = 1; i <= mPrefetchBuckets; i++) {
+      long prefetchBucket = edge + i * mDirection;
+      if (!mCached.containsKey(prefetchBucket)) {
+        fetch(prefetchBucket, true);
+      }
+    }
+    evict();
+  }
+
+  private void fetch(long bucket, boolean prefetch) {
+    if (mFetchStartNanos.containsKey(bucket)) {
+      return;
+    }
+    mFetchStartNanos.put(bucket, System.nanoTime());
+    if (prefetch) {
+      mPrefetching.add(bucket);
+    }
+    long start = bucket * mBucketMillis;
+    Callback<T> callback = new Callback<T>() {
+      @Override public void onFetched(List<T> features) {
+        onBucketFetched(bucket, features, null);
+      }
+
+      @Override public void onError(Exception e) {
+        onBucketFetched(bucket, null, e);
+      }
+    };
+    try {
+      mBucketSource.fetch(start, start + mBucketMillis - 1, callback);
+    } catch (RuntimeException e) {
+      callback.onError(e);
+    }
+  }
+
+  private void onBucketFetched(long bucket, List<T> features, Exception error) {
+    Long startNanos = mFetchStartNanos.remove(bucket);
+    boolean prefetch = mPrefetching.remove(bucket);
+    if (error != null) {
+      // not cached, so the bucket is fetched again when it is next needed
+      mListener.onError(bucket, error);
+      return;
+    }
+    if (prefetch && startNanos != null) {
+      mPrefetchLatencyNanos[mPrefetchCount % LATENCY_SAMPLES] = System.nanoTime() - startNanos;
+      mPrefetchCount++;
+    }
+    mCached.put(bucket, features);
+    if (inWindow(bucket) && !mShown.contains(bucket)) {
+      show(bucket, features);
+    }
+    evict();
+  }
+
+  private void show(long bucket, List<T> features) {
+    mShown.add(bucket);
+    mListener.onBucketShown(bucket, features);
+  }
+
+  private boolean inWindow(long bucket) {
+    return bucket <= mCursorBucket && bucket > mCursorBucket - mWindowBuckets;
+  }
+
+  /**
+   * Evicts the cached buckets furthest from the cursor, other than those being shown.
+   */
+  private void evict() {
+    while (mCached.size() > mMaxBuckets) {
+      Long furthest = null;
+      for (Long bucket : mCached.keySet()) {
+        if (!mShown.contains(bucket) && (furthest == null
+            || Math.abs(bucket - mCursorBucket) > Math.abs(furthest - mCursorBucket))) {
+          furthest = bucket;
+        }
+      }
+      if (furthest == null) {
+        return;
+      }
+      mCached.remove(furthest);
+      mEvictions++;
+    }
+  }
+
+  /**
+   * @return the bucket hit rate, latency percentiles of the most recent prefetches and number of buckets cached and
+   * evicted
+   */
+  @Override
+  public String toString() {
+    long total = mHits + mMisses;
+    String latency = "no prefetches";
+    if (mPrefetchCount > 0) {
+      long[] sorted = Arrays.copyOf(mPrefetchLatencyNanos, Math.min(mPrefetchCount, LATENCY_SAMPLES));
+      Arrays.sort(sorted);
+      latency = String.format(Locale.US, "%d prefetches, p50 %d ms, p95 %d ms", mPrefetchCount,
+          percentile(sorted, 50) / 1_000_000, percentile(sorted, 95) / 1_000_000);
+    }
+    return String.format(Locale.US, "bucket hit rate %.2f (%d/%d), %s, %d cached, %d evicted",
+        total == 0 ? 0 : (double) mHits / total, mHits, total, latency, mCached.size(), mEvictions);
+  }
+
+  private static long percentile(long[] sorted, double percentile) {
+    // nearest rank
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+}
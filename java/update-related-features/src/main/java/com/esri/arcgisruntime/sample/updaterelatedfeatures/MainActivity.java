@@ -16,12 +16,16 @@
 
 package com.esri.arcgisruntime.sample.updaterelatedfeatures;
 
+import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import android.app.ProgressDialog;
 import android.graphics.Point;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -37,7 +41,6 @@ import com.esri.arcgisruntime.ArcGISRuntimeEnvironment;
 import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.data.ArcGISFeature;
 import com.esri.arcgisruntime.data.Feature;
-import com.esri.arcgisruntime.data.FeatureEditResult;
 import com.esri.arcgisruntime.data.RelatedFeatureQueryResult;
 import com.esri.arcgisruntime.data.ServiceFeatureTable;
 import com.esri.arcgisruntime.layers.FeatureLayer;
@@ -54,6 +57,17 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
+  // related feature updates are sent to the server once this many are waiting, or after a delay
+  private static final int EDIT_BATCH_SIZE = 10;
+  private static final long EDIT_BATCH_DELAY_MILLIS = 5000;
+  private static final long EDIT_RETRY_MILLIS = 1000;
+  private static final long EDIT_MAX_RETRY_MILLIS = 60000;
+
+  // the edits belong to the process rather than the activity, so a batch being applied when the activity is
+  // recreated isn't restored to the new activity's table and applied again
+  private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+  private static EditQueue sEditQueue;
+
   private MapView mMapView;
 
   private ServiceFeatureTable mParksFeatureTable;
@@ -100,6 +114,39 @@ public class MainActivity extends AppCompatActivity {
     mPreservesFeatureTable = new ServiceFeatureTable(getString(R.string.preserves_feature_table));
     FeatureLayer preservesFeatureLayer = new FeatureLayer(mPreservesFeatureTable);
 
+    // queue the updates of related features, and send them to the server in batches
+    if (sEditQueue == null) {
+      sEditQueue = new EditQueue(new File(getFilesDir(), "edits.journal"), (task, delayMillis) -> {
+        sMainHandler.postDelayed(task, delayMillis);
+        return () -> sMainHandler.removeCallbacks(task);
+      }, EDIT_BATCH_SIZE, EDIT_BATCH_DELAY_MILLIS, EDIT_RETRY_MILLIS, EDIT_MAX_RETRY_MILLIS);
+    }
+
+    // once the table has loaded, update the related features again which hadn't been updated on the server when the
+    // app was last closed
+    mPreservesFeatureTable.addDoneLoadingListener(() -> {
+      if (mPreservesFeatureTable.getLoadStatus() == LoadStatus.LOADED) {
+        sEditQueue.attach(EditQueue.serviceEditService(mPreservesFeatureTable),
+            (edits, onDone) -> EditQueue.restore(mPreservesFeatureTable, edits, onDone), new EditQueue.Listener() {
+          @Override public void onBatchApplied(int editCount, int failedCount, Exception firstError) {
+            if (failedCount == 0) {
+              Toast.makeText(MainActivity.this, getString(R.string.update_success), Toast.LENGTH_SHORT).show();
+            } else {
+              Log.e(TAG, "Error applying related feature updates: " + firstError.getMessage());
+              Toast.makeText(MainActivity.this, getString(R.string.update_fail), Toast.LENGTH_LONG).show();
+            }
+          }
+
+          @Override public void onBatchFailed(Exception e, long retryMillis) {
+            String error = "Error applying related feature updates, retrying in " + retryMillis / 1000 + " s: "
+                + e.getMessage();
+            Toast.makeText(MainActivity.this, error, Toast.LENGTH_LONG).show();
+            Log.e(TAG, error);
+          }
+        });
+      }
+    });
+
     // add feature layers to map
     map.getOperationalLayers().add(mParksFeatureLayer);
     map.getOperationalLayers().add(preservesFeatureLayer);
@@ -232,7 +279,7 @@ public class MainActivity extends AppCompatActivity {
   }
 
   /**
-   * Update the related feature table and apply update on the server
+   * Update the related feature table and queue the update to be applied on the server
    *
    * @param visitors annual visitors value
    */
@@ -248,30 +295,22 @@ public class MainActivity extends AppCompatActivity {
         // update feature in the related feature table
         ListenableFuture<Void> updateFeature = mPreservesFeatureTable.updateFeatureAsync(mSelectedRelatedFeature);
         updateFeature.addDoneListener(() -> {
-          // apply update to the server
-          final ListenableFuture<List<FeatureEditResult>> serverResult = mPreservesFeatureTable.applyEditsAsync();
-          serverResult.addDoneListener(() -> {
-            try {
-              // check if server result successful
-              List<FeatureEditResult> edits = serverResult.get();
-              if (!edits.isEmpty()) {
-                if (!edits.get(0).hasCompletedWithErrors()) {
-                  mParksFeatureLayer.clearSelection();
-                  mProgressDialog.dismiss();
-                  Toast.makeText(this, getString(R.string.update_success), Toast.LENGTH_SHORT).show();
-                  // show callout with new value
-                  mCallout.show();
-                } else {
-                  mProgressDialog.dismiss();
-                  Toast.makeText(this, getString(R.string.update_fail), Toast.LENGTH_LONG).show();
-                }
-              }
-            } catch (InterruptedException | ExecutionException e) {
-              String error = "Error getting feature edit result: " + e.getMessage();
-              Toast.makeText(this, error, Toast.LENGTH_LONG).show();
-              Log.e(TAG, error);
-            }
-          });
+          try {
+            updateFeature.get();
+            // queue the update to be sent to the server with the next batch
+            long objectId = ((Number) mSelectedRelatedFeature.getAttributes()
+                .get(mPreservesFeatureTable.getObjectIdField())).longValue();
+            sEditQueue.update(objectId, Collections.<String, Object>singletonMap("ANNUAL_VISITORS", visitors), null);
+            mParksFeatureLayer.clearSelection();
+            mProgressDialog.dismiss();
+            // show callout with new value
+            mCallout.show();
+          } catch (InterruptedException | ExecutionException e) {
+            mProgressDialog.dismiss();
+            String error = "Error updating related feature: " + e.getMessage();
+            Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+            Log.e(TAG, error);
+          }
         });
       }
     });
@@ -300,6 +339,9 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onPause() {
+    // send the updates waiting for the next batch while the app is still in the foreground
+    sEditQueue.flush();
+    Log.i(TAG, "Edit queue: " + sEditQueue);
     mMapView.pause();
     super.onPause();
   }
@@ -312,6 +354,7 @@ public class MainActivity extends AppCompatActivity {
 
   @Override
   protected void onDestroy() {
+    sEditQueue.detach();
     mMapView.dispose();
     super.onDestroy();
   }
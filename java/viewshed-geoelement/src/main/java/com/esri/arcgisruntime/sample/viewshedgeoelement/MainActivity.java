@@ -14,15 +14,11 @@
 package com.esri.arcgisruntime.sample.viewshedgeoelement;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.content.res.AssetManager;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
@@ -32,14 +28,9 @@ import android.util.Log;
 import android.view.MotionEvent;
 import android.widget.Toast;
 
+import com.esri.arcgisruntime.concurrent.ListenableFuture;
 import com.esri.arcgisruntime.geoanalysis.GeoElementViewshed;
-import com.esri.arcgisruntime.geometry.AngularUnit;
-import com.esri.arcgisruntime.geometry.AngularUnitId;
-import com.esri.arcgisruntime.geometry.GeodeticCurveType;
-import com.esri.arcgisruntime.geometry.GeodeticDistanceResult;
 import com.esri.arcgisruntime.geometry.GeometryEngine;
-import com.esri.arcgisruntime.geometry.LinearUnit;
-import com.esri.arcgisruntime.geometry.LinearUnitId;
 import com.esri.arcgisruntime.geometry.Point;
 import com.esri.arcgisruntime.geometry.SpatialReferences;
 import com.esri.arcgisruntime.layers.ArcGISSceneLayer;
@@ -63,18 +54,28 @@ public class MainActivity extends AppCompatActivity {
 
   private static final String TAG = MainActivity.class.getSimpleName();
 
-  private static final LinearUnit METERS = new LinearUnit(LinearUnitId.METERS);
-  private static final AngularUnit DEGREES = new AngularUnit(AngularUnitId.DEGREES);
+  // distance in meters the tank moves on each tick
+  private static final double STEP = 1.0;
+  // distance in meters from the waypoint at which the tank stops
+  private static final double ARRIVAL_DISTANCE = 5.0;
+
   private SceneView mSceneView;
-  private Point mWaypoint;
+  private GeodesicPath mPath;
+  private double mDistanceAlongPath;
+  private final double[] mPathSample = new double[3];
   private Graphic mTankGraphic;
-  private Timer mTimer;
+  private AnimationClock mAnimationClock;
+  private final AnimationClock.OnTickListener mTickListener = (frameTimeNanos, elapsedNanos) -> animate();
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
+    // create a clock to animate the tank which ticks at most every 50ms and pauses with the activity
+    mAnimationClock = new AnimationClock(getWindowManager().getDefaultDisplay().getRefreshRate(), 50);
+    getLifecycle().addObserver(mAnimationClock);
+
     // create a scene and add a basemap to it
     ArcGISScene scene = new ArcGISScene();
     scene.setBasemap(Basemap.createImagery());
@@ -96,15 +97,30 @@ public class MainActivity extends AppCompatActivity {
     requestWritePermission();
   }
 
+  /**
+   * Stages the tank model from assets into the cache directory in the background, then creates the viewshed.
+   */
+  private void stageTankModel() {
+    ListenableFuture<Map<String, File>> stagedModel = new AssetStager(this)
+        .stage(getString(R.string.bradley_model), getString(R.string.bradley_skin));
+    stagedModel.addDoneListener(() -> {
+      try {
+        viewshedGeoElement(stagedModel.get().get(getString(R.string.bradley_model)));
+      } catch (InterruptedException | ExecutionException e) {
+        String error = "Error staging tank model: " + e.getMessage();
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
+        Log.e(TAG, error);
+      }
+    });
+  }
+
   /**
    * Creates a GeoElement Viewshed fixed to a graphic of a tank. Includes a touch listener which uses a single tap as a
    * waypoint for navigation of the tank and associated viewshed.
+   *
+   * @param tankModel staged tank model file
    */
-  private void viewshedGeoElement() {
-
-    // load tank model from assets into cache directory
-    copyFileFromAssetsToCache(getString(R.string.bradley_model));
-    copyFileFromAssetsToCache(getString(R.string.bradley_skin));
+  private void viewshedGeoElement(File tankModel) {
 
     // create a graphics overlay for the tank
     GraphicsOverlay graphicsOverlay = new GraphicsOverlay();
@@ -117,9 +133,7 @@ public class MainActivity extends AppCompatActivity {
     renderProperties.setHeadingExpression("[HEADING]");
     graphicsOverlay.setRenderer(renderer3D);
 
-    String pathToModel = getCacheDir() + File.separator + getString(R.string.bradley_model);
-
-    ModelSceneSymbol tankSymbol = new ModelSceneSymbol(pathToModel, 10.0);
+    ModelSceneSymbol tankSymbol = new ModelSceneSymbol(tankModel.getPath(), 10.0);
     tankSymbol.setHeading(90);
     tankSymbol.setAnchorPosition(SceneSymbol.AnchorPosition.BOTTOM);
     mTankGraphic = new Graphic(new Point(-4.506390, 48.385624, SpatialReferences.getWgs84()), tankSymbol);
@@ -143,16 +157,21 @@ public class MainActivity extends AppCompatActivity {
         android.graphics.Point screenPoint = new android.graphics.Point(Math.round(motionEvent.getX()),
             Math.round(motionEvent.getY()));
 
-        // convert the screen point to a scene point
-        mWaypoint = mSceneView.screenToBaseSurface(screenPoint);
+        // convert the screen point to a scene point, ignoring taps on the sky
+        Point surfacePoint = mSceneView.screenToBaseSurface(screenPoint);
+        if (surfacePoint == null) {
+          return true;
+        }
+        Point waypoint = (Point) GeometryEngine.project(surfacePoint, SpatialReferences.getWgs84());
+
+        // solve the path from the tank to the waypoint once, rather than on every tick
+        Point location = (Point) mTankGraphic.getGeometry();
+        mPath = new GeodesicPath(new double[] { location.getX(), waypoint.getX() },
+            new double[] { location.getY(), waypoint.getY() }, false, STEP);
+        mDistanceAlongPath = 0;
 
-        // create a timer to animate the tank
-        mTimer = new Timer();
-        mTimer.scheduleAtFixedRate(new TimerTask() {
-          @Override public void run() {
-            animate();
-          }
-        }, 0, 50);
+        // animate the tank on the animation clock
+        mAnimationClock.addOnTickListener(mTickListener);
 
         return true;
       }
@@ -168,25 +187,22 @@ public class MainActivity extends AppCompatActivity {
    * Moves the tank toward the current waypoint a short distance.
    */
   private void animate() {
-    if (mWaypoint != null) {
-      // get current location and distance from waypoint
-      Point location = (Point) mTankGraphic.getGeometry();
-      GeodeticDistanceResult distance = GeometryEngine
-          .distanceGeodetic(location, mWaypoint, METERS, DEGREES, GeodeticCurveType.GEODESIC);
-
-      // move toward waypoint a short distance
-      location = GeometryEngine
-          .moveGeodetic(location, 1.0, METERS, distance.getAzimuth1(), DEGREES, GeodeticCurveType.GEODESIC);
-      mTankGraphic.setGeometry(location);
+    if (mPath != null) {
+      // move toward waypoint a short distance along the precomputed path
+      mDistanceAlongPath += STEP;
+      mPath.sample(mDistanceAlongPath, mPathSample);
+      mTankGraphic.setGeometry(new Point(mPathSample[GeodesicPath.LONGITUDE], mPathSample[GeodesicPath.LATITUDE],
+          SpatialReferences.getWgs84()));
 
       // rotate toward waypoint
+      double azimuth = mPathSample[GeodesicPath.AZIMUTH];
       double heading = (double) mTankGraphic.getAttributes().get("HEADING");
-      mTankGraphic.getAttributes().put("HEADING", heading + ((distance.getAzimuth1() - heading) / 10));
+      mTankGraphic.getAttributes().put("HEADING", heading + ((azimuth - heading) / 10));
 
-      // reached waypoint, stop moving and set waypoint to null
-      if (distance.getDistance() <= 5) {
-        mTimer.cancel();
-        mWaypoint = null;
+      // reached waypoint, stop moving and clear the path
+      if (mPath.getLength() - mDistanceAlongPath <= ARRIVAL_DISTANCE) {
+        mAnimationClock.removeOnTickListener(mTickListener);
+        mPath = null;
       }
     }
   }
@@ -201,7 +217,7 @@ public class MainActivity extends AppCompatActivity {
     // For API level 23+ request permission at runtime
     if (ContextCompat.checkSelfPermission(MainActivity.this,
         reqPermission[0]) == PackageManager.PERMISSION_GRANTED) {
-      viewshedGeoElement();
+      stageTankModel();
     } else {
       // request permission
       ActivityCompat.requestPermissions(MainActivity.this, reqPermission, requestCode);
@@ -213,7 +229,7 @@ public class MainActivity extends AppCompatActivity {
    */
   public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
     if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-      viewshedGeoElement();
+      stageTankModel();
     } else {
       // report to user that permission was denied
       Toast.makeText(MainActivity.this, getResources().getString(R.string.write_permission_denied),
@@ -221,35 +237,6 @@ public class MainActivity extends AppCompatActivity {
     }
   }
 
-  /**
-   * Copy the given file from the app's assets folder to the app's cache directory.
-   *
-   * @param fileName as String
-   */
-  private void copyFileFromAssetsToCache(String fileName) {
-    AssetManager assetManager = getApplicationContext().getAssets();
-
-    File file = new File(getCacheDir() + File.separator + fileName);
-
-    if (!file.exists()) {
-      try {
-        InputStream in = assetManager.open(fileName);
-        OutputStream out = new FileOutputStream(getCacheDir() + File.separator + fileName);
-        byte[] buffer = new byte[1024];
-        int read = in.read(buffer);
-        while (read != -1) {
-          out.write(buffer, 0, read);
-          read = in.read(buffer);
-        }
-        Log.i(TAG, fileName + " copied to cache.");
-      } catch (Exception e) {
-        Log.e(TAG, "Error writing " + fileName + " to cache. " + e.getMessage());
-      }
-    } else {
-      Log.i(TAG, fileName + " already in cache.");
-    }
-  }
-
   @Override
   protected void onPause() {
     super.onPause();
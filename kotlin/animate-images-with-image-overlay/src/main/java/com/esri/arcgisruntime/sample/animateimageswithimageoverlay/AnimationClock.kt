@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.animateimageswithimageoverlay
+
+import android.view.Choreographer
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.LifecycleOwner
+import java.util.concurrent.TimeUnit
+import kotlin.math.roundToLong
+
+/**
+ * Delivers animation ticks on the main thread aligned to display frames, so an image overlay can
+ * be updated directly from a listener without hopping threads.
+ *
+ * A tick is delivered on the first display frame after each tick interval has elapsed. If the app
+ * falls behind, the ticks it couldn't deliver are dropped rather than queued, and counted. Display
+ * frames which arrive late are counted as missed frames. Observe the clock from an activity's
+ * lifecycle to pause it with the activity, at the same time as the activity pauses its SceneView.
+ *
+ * @param refreshRate refresh rate of the display in frames per second
+ */
+class AnimationClock(refreshRate: Float) : Choreographer.FrameCallback, LifecycleEventObserver {
+
+  private val listeners = mutableListOf<(frameTimeNanos: Long, elapsedNanos: Long) -> Unit>()
+  private val frameIntervalNanos = (TimeUnit.SECONDS.toNanos(1) / refreshRate).toLong()
+
+  /**
+   * Minimum time between ticks, 0 to tick on every display frame.
+   */
+  var tickIntervalMillis: Long = 0
+    set(value) {
+      field = value
+      pendingNanos = 0
+    }
+
+  private var paused = false
+  private var posted = false
+  private var lastFrameTimeNanos = 0L
+  private var lastTickTimeNanos = 0L
+  private var pendingNanos = 0L
+
+  /**
+   * The number of display frames which passed without a callback because the main thread was busy.
+   */
+  var missedFrames = 0L
+    private set
+
+  /**
+   * The number of ticks dropped instead of being delivered late.
+   */
+  var droppedTicks = 0L
+    private set
+
+  /**
+   * Adds a listener and starts the clock if it is not paused. Must be called on the main thread.
+   */
+  fun addOnTickListener(listener: (frameTimeNanos: Long, elapsedNanos: Long) -> Unit) {
+    if (!listeners.contains(listener)) {
+      listeners.add(listener)
+    }
+    schedule()
+  }
+
+  /**
+   * Removes a listener. The clock stops once it has no listeners. Must be called on the main thread.
+   */
+  fun removeOnTickListener(listener: (frameTimeNanos: Long, elapsedNanos: Long) -> Unit) {
+    listeners.remove(listener)
+    if (listeners.isEmpty()) {
+      unschedule()
+    }
+  }
+
+  fun pause() {
+    paused = true
+    unschedule()
+  }
+
+  fun resume() {
+    paused = false
+    schedule()
+  }
+
+  override fun onStateChanged(source: LifecycleOwner, event: Lifecycle.Event) {
+    when (event) {
+      Lifecycle.Event.ON_PAUSE -> pause()
+      Lifecycle.Event.ON_RESUME -> resume()
+      Lifecycle.Event.ON_DESTROY -> {
+        listeners.clear()
+        unschedule()
+        source.lifecycle.removeObserver(this)
+      }
+      else -> {}
+    }
+  }
+
+  override fun doFrame(frameTimeNanos: Long) {
+    posted = false
+    if (paused || listeners.isEmpty()) {
+      return
+    }
+    schedule()
+
+    if (lastFrameTimeNanos != 0L) {
+      val frameDelta = frameTimeNanos - lastFrameTimeNanos
+      // allow for jitter in the frame time before counting a frame as missed
+      if (frameDelta > frameIntervalNanos * 3 / 2) {
+        missedFrames += (frameDelta.toDouble() / frameIntervalNanos).roundToLong() - 1
+      }
+      pendingNanos += frameDelta
+    }
+    lastFrameTimeNanos = frameTimeNanos
+
+    val tickIntervalNanos = TimeUnit.MILLISECONDS.toNanos(tickIntervalMillis)
+    if (tickIntervalNanos > 0 && lastTickTimeNanos != 0L) {
+      if (pendingNanos < tickIntervalNanos) {
+        return
+      }
+      // deliver one tick and drop any others which became due while the app was behind
+      pendingNanos -= tickIntervalNanos
+      if (pendingNanos >= tickIntervalNanos) {
+        droppedTicks += pendingNanos / tickIntervalNanos
+        pendingNanos %= tickIntervalNanos
+      }
+    } else {
+      pendingNanos = 0
+    }
+
+    val elapsed = if (lastTickTimeNanos == 0L) 0L else frameTimeNanos - lastTickTimeNanos
+    lastTickTimeNanos = frameTimeNanos
+    // iterate over a copy, listeners may remove themselves from the callback
+    listeners.toList().forEach { it(frameTimeNanos, elapsed) }
+  }
+
+  private fun schedule() {
+    if (!posted && !paused && listeners.isNotEmpty()) {
+      posted = true
+      Choreographer.getInstance().postFrameCallback(this)
+    }
+  }
+
+  private fun unschedule() {
+    if (posted) {
+      posted = false
+      Choreographer.getInstance().removeFrameCallback(this)
+    }
+    // the next tick measures elapsed time from when the clock restarts
+    lastFrameTimeNanos = 0
+    lastTickTimeNanos = 0
+    pendingNanos = 0
+  }
+}
@@ -41,22 +41,25 @@ import com.esri.arcgisruntime.mapping.view.ImageOverlay
 import kotlinx.android.synthetic.main.activity_main.*
 import java.io.File
 import java.util.Arrays
-import java.util.Timer
-import kotlin.concurrent.fixedRateTimer
 
 class MainActivity : AppCompatActivity() {
 
   private val imageFrames: MutableList<ImageFrame> by lazy { mutableListOf<ImageFrame>() }
   private var imageIndex: Int = 0
 
-  private var timer: Timer? = null
+  private val animationClock: AnimationClock by lazy {
+    AnimationClock(windowManager.defaultDisplay.refreshRate)
+  }
+  private val onTick: (Long, Long) -> Unit = { _, _ -> addNextImageFrameToImageOverlay() }
   private var isTimerRunning = true
-  private var period: Long = 67
 
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
     setContentView(R.layout.activity_main)
 
+    // pause the animation clock with the activity
+    lifecycle.addObserver(animationClock)
+
     // create a new tiled layer from the World Dark Gray Base REST service
     val worldDarkGrayBasemap =
       ArcGISTiledLayer("https://services.arcgisonline.com/arcgis/rest/services/Canvas/World_Dark_Gray_Base/MapServer")
@@ -124,15 +127,15 @@ class MainActivity : AppCompatActivity() {
   fun toggleAnimationTimer(view: View) {
     isTimerRunning = when {
       isTimerRunning -> {
-        // cancel any running timer
-        timer?.cancel()
+        // stop receiving ticks from the animation clock
+        animationClock.removeOnTickListener(onTick)
         // change the start/stop button to "start"
         startStopButton.text = getString(R.string.start)
         // set the isTimerRunning flag to false
         false
       }
       else -> {
-        createNewTimer()
+        animationClock.addOnTickListener(onTick)
         // change the start/stop button to "stop"
         startStopButton.text = getString(R.string.stop)
         // set the isTimerRunning flag to true
@@ -141,15 +144,6 @@ class MainActivity : AppCompatActivity() {
     }
   }
 
-  /**
-   * Create a new timer for the given period which repeatedly calls animateImagesWithImageOverlay.
-   */
-  private fun createNewTimer() {
-    timer = fixedRateTimer("Image overlay timer", period = period) {
-      addNextImageFrameToImageOverlay()
-    }
-  }
-
   /**
    * Sets up UI behaviour. Closes expandable floating action button on touching the scene view.
    * Moves floating action button on attribution view expanded. Expands floating action button on
@@ -209,17 +203,15 @@ class MainActivity : AppCompatActivity() {
           position: Int,
           id: Long
         ) {
-          // get the period for the chosen fps
-          period = when (position) {
-            0 -> 17 // 1000ms/17 = 60 fps
+          // get the tick interval for the chosen fps
+          animationClock.tickIntervalMillis = when (position) {
+            0 -> 0 // every display frame, 60 fps on most devices
             1 -> 33 // 1000ms/33 = 30 fps
             2 -> 67 // 1000ms/67 = 15 fps
             else -> 0
           }
-          // create a new timer for this period
           if (isTimerRunning) {
-            timer?.cancel()
-            createNewTimer()
+            animationClock.addOnTickListener(onTick)
           }
         }
 
@@ -231,10 +223,7 @@ class MainActivity : AppCompatActivity() {
   }
 
   override fun onPause() {
-    // cancel timer if it's running
-    if (isTimerRunning) {
-      toggleAnimationTimer(startStopButton)
-    }
+    // the animation clock pauses itself through the activity lifecycle
     sceneView.pause()
     super.onPause()
   }
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2021 Esri
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.esri.arcgisruntime.sample.offlinerouting
+
+import com.esri.arcgisruntime.geometry.Envelope
+import com.esri.arcgisruntime.geometry.Geometry
+import com.esri.arcgisruntime.geometry.GeometryEngine
+import com.esri.arcgisruntime.geometry.Point
+import com.esri.arcgisruntime.geometry.SpatialReference
+import com.esri.arcgisruntime.mapping.view.Graphic
+import com.esri.arcgisruntime.mapping.view.GraphicsOverlay
+import com.esri.arcgisruntime.util.ListChangedEvent
+import com.esri.arcgisruntime.util.ListChangedListener
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.Locale
+import java.util.PriorityQueue
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * Indexes the graphics of a graphics overlay by their extents, so that taps and selections can be
+ * resolved on the device without an identify round trip, however many graphics the overlay holds.
+ *
+ * The graphics are packed into an R-tree with the sort-tile-recursive method: sorted into vertical
+ * slices by x, each slice sorted by y, and runs of graphics grouped into leaf nodes, with each level
+ * of nodes grouped the same way up to the root. The index follows the overlay's graphics list.
+ * Graphics added since the tree was packed are searched one by one and removed graphics are
+ * skipped, until there are enough changes for the tree to be packed again on the next search. A
+ * graphic whose geometry changes must be passed to [update].
+ *
+ * Searches are of the graphics' geometries, not their symbols, in the spatial reference the index
+ * is created with. Must be used from the main thread.
+ *
+ * @param graphicsOverlay the overlay to index
+ * @param spatialReference spatial reference of searches, which graphics in another spatial
+ * reference are projected to, or null if every graphic is in the spatial reference of the searches
+ */
+class GraphicIndex(
+  graphicsOverlay: GraphicsOverlay,
+  private val spatialReference: SpatialReference?
+) : ListChangedListener<Graphic> {
+
+  private val graphics = graphicsOverlay.graphics
+
+  // graphics in packed order, with the extent of each as xmin, ymin, xmax, ymax
+  private var items = emptyArray<Graphic>()
+  private var itemBoxes = DoubleArray(0)
+  // extents of the nodes of each level, from the leaves up to the root
+  private val levelBoxes = mutableListOf<DoubleArray>()
+
+  private val added = mutableListOf<Graphic>()
+  private val removed: MutableSet<Graphic> = Collections.newSetFromMap(IdentityHashMap())
+  private var repackNeeded = true
+  private var repackCount = 0
+  private var repackNanos = 0L
+
+  init {
+    graphics.addListChangedListener(this)
+  }
+
+  /**
+   * Stops following changes to the overlay's graphics.
+   */
+  fun dispose() {
+    graphics.removeListChangedListener(this)
+  }
+
+  override fun listChanged(listChangedEvent: ListChangedEvent<Graphic>) {
+    if (repackNeeded) {
+      // packed from the list on the next search anyway
+      return
+    }
+    for (graphic in listChangedEvent.items) {
+      if (listChangedEvent.action == ListChangedEvent.Action.ADDED) {
+        // a graphic removed and added again is still in the tree
+        if (!removed.remove(graphic)) {
+          added.add(graphic)
+        }
+      } else if (!added.remove(graphic)) {
+        removed.add(graphic)
+      }
+    }
+    checkChanges()
+  }
+
+  /**
+   * Updates the index after the geometry of a graphic in the overlay has changed.
+   */
+  fun update(graphic: Graphic) {
+    if (!repackNeeded && !added.contains(graphic)) {
+      removed.add(graphic)
+      added.add(graphic)
+      checkChanges()
+    }
+  }
+
+  /**
+   * Finds the graphics whose geometry intersects an area, such as a lasso.
+   *
+   * @param area an envelope, or any geometry
+   * @return the graphics, in no particular order
+   */
+  fun query(area: Geometry): List<Graphic> {
+    val extent = area.extent
+    val candidates = mutableListOf<Graphic>()
+    search(extent.xMin, extent.yMin, extent.xMax, extent.yMax, candidates)
+    return candidates.filter { graphic ->
+      // the extent of a point is the point itself, so it is in an envelope if its extent is
+      val geometry = geometryOf(graphic)
+      (area is Envelope && geometry is Point) || GeometryEngine.intersects(area, geometry)
+    }
+  }
+
+  /**
+   * Finds the graphics whose geometry is within a distance of a point, such as a tap.
+   *
+   * @param point point to search around
+   * @param tolerance distance from the point in map units
+   * @return the graphics, nearest first
+   */
+  fun hitTest(point: Point, tolerance: Double): List<Graphic> {
+    val candidates = mutableListOf<Graphic>()
+    search(
+      point.x - tolerance, point.y - tolerance, point.x + tolerance, point.y + tolerance,
+      candidates
+    )
+    return candidates
+      .map { it to distance(point, geometryOf(it)) }
+      .filter { it.second <= tolerance }
+      .sortedBy { it.second }
+      .map { it.first }
+  }
+
+  /**
+   * Finds the graphics nearest a point, searching the nodes nearest the point first.
+   *
+   * @param point point to search around
+   * @param count maximum number of graphics to find
+   * @return the graphics, nearest first
+   */
+  fun nearest(point: Point, count: Int): List<Graphic> {
+    repackIfNeeded()
+    val x = point.x
+    val y = point.y
+    // entries are a node at level 0 or above, a packed graphic at level -1 or an added graphic at
+    // level -2, ordered by their distance from the point, which for a node is the distance to its
+    // extent
+    val queue = PriorityQueue<DoubleArray>(64) { a, b -> a[0].compareTo(b[0]) }
+    val top = levelBoxes.size - 1
+    if (top >= 0) {
+      val rootBoxes = levelBoxes[top]
+      for (i in 0 until rootBoxes.size / 4) {
+        queue.add(doubleArrayOf(boxDistance(rootBoxes, i, x, y), top.toDouble(), i.toDouble()))
+      }
+    }
+    added.forEachIndexed { i, graphic ->
+      val geometry = geometryOf(graphic)
+      if (geometry != null && !geometry.isEmpty) {
+        queue.add(doubleArrayOf(distance(point, geometry), -2.0, i.toDouble()))
+      }
+    }
+    val results = mutableListOf<Graphic>()
+    while (queue.isNotEmpty() && results.size < count) {
+      val entry = queue.poll() ?: break
+      val level = entry[1].toInt()
+      val index = entry[2].toInt()
+      when {
+        level == -2 -> results.add(added[index])
+        level == -1 -> if (!removed.contains(items[index])) results.add(items[index])
+        level == 0 -> for (item in index * NODE_CAPACITY until min((index + 1) * NODE_CAPACITY, items.size)) {
+          queue.add(doubleArrayOf(distance(point, geometryOf(items[item])), -1.0, item.toDouble()))
+        }
+        else -> {
+          val childBoxes = levelBoxes[level - 1]
+          for (child in index * NODE_CAPACITY until min((index + 1) * NODE_CAPACITY, childBoxes.size / 4)) {
+            queue.add(
+              doubleArrayOf(boxDistance(childBoxes, child, x, y), (level - 1).toDouble(), child.toDouble())
+            )
+          }
+        }
+      }
+    }
+    return results
+  }
+
+  override fun toString(): String {
+    return String.format(
+      Locale.US, "%d graphics packed in %d levels, %d added, %d removed, %d repacks, last %.1f ms",
+      items.size, levelBoxes.size, added.size, removed.size, repackCount, repackNanos / 1e6
+    )
+  }
+
+  private fun checkChanges() {
+    if (added.size + removed.size > max(MIN_REPACK_CHANGES, items.size / REPACK_DIVISOR)) {
+      repackNeeded = true
+    }
+  }
+
+  /**
+   * Adds the graphics whose extent intersects a box to the results, skipping removed graphics.
+   */
+  private fun search(xMin: Double, yMin: Double, xMax: Double, yMax: Double, results: MutableList<Graphic>) {
+    repackIfNeeded()
+    val top = levelBoxes.size - 1
+    if (top >= 0) {
+      for (i in 0 until levelBoxes[top].size / 4) {
+        search(top, i, xMin, yMin, xMax, yMax, results)
+      }
+    }
+    for (graphic in added) {
+      val geometry = geometryOf(graphic)
+      if (geometry == null || geometry.isEmpty) {
+        continue
+      }
+      val extent = geometry.extent
+      if (extent.xMin <= xMax && extent.xMax >= xMin && extent.yMin <= yMax && extent.yMax >= yMin) {
+        results.add(graphic)
+      }
+    }
+  }
+
+  private fun search(
+    level: Int, node: Int, xMin: Double, yMin: Double, xMax: Double, yMax: Double,
+    results: MutableList<Graphic>
+  ) {
+    if (!intersects(levelBoxes[level], node, xMin, yMin, xMax, yMax)) {
+      return
+    }
+    val start = node * NODE_CAPACITY
+    if (level == 0) {
+      for (item in start until min(start + NODE_CAPACITY, items.size)) {
+        if (intersects(itemBoxes, item, xMin, yMin, xMax, yMax) && !removed.contains(items[item])) {
+          results.add(items[item])
+        }
+      }
+    } else {
+      val childCount = levelBoxes[level - 1].size / 4
+      for (child in start until min(start + NODE_CAPACITY, childCount)) {
+        search(level - 1, child, xMin, yMin, xMax, yMax, results)
+      }
+    }
+  }
+
+  /**
+   * Packs the graphics currently in the overlay into a new tree.
+   */
+  private fun repackIfNeeded() {
+    if (!repackNeeded) {
+      return
+    }
+    val start = System.nanoTime()
+    val packed = mutableListOf<Graphic>()
+    val geometries = mutableListOf<Geometry>()
+    for (graphic in graphics) {
+      val geometry = geometryOf(graphic)
+      if (geometry != null && !geometry.isEmpty) {
+        packed.add(graphic)
+        geometries.add(geometry)
+      }
+    }
+    val count = packed.size
+    val boxes = DoubleArray(count * 4)
+    geometries.forEachIndexed { i, geometry ->
+      if (geometry is Point) {
+        boxes[i * 4] = geometry.x
+        boxes[i * 4 + 2] = geometry.x
+        boxes[i * 4 + 1] = geometry.y
+        boxes[i * 4 + 3] = geometry.y
+      } else {
+        val extent = geometry.extent
+        boxes[i * 4] = extent.xMin
+        boxes[i * 4 + 1] = extent.yMin
+        boxes[i * 4 + 2] = extent.xMax
+        boxes[i * 4 + 3] = extent.yMax
+      }
+    }
+    val order = strOrder(boxes, count)
+    items = Array(count) { packed[order[it]] }
+    itemBoxes = DoubleArray(count * 4)
+    for (i in 0 until count) {
+      System.arraycopy(boxes, order[i] * 4, itemBoxes, i * 4, 4)
+    }
+
+    // group each level into the nodes of the level above until there is a single root
+    levelBoxes.clear()
+    var childBoxes = itemBoxes
+    var childCount = count
+    while (childCount > 0 && (levelBoxes.isEmpty() || childCount > 1)) {
+      val nodeCount = (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY
+      val nodeBoxes = DoubleArray(nodeCount * 4)
+      for (node in 0 until nodeCount) {
+        var nodeXMin = Double.POSITIVE_INFINITY
+        var nodeYMin = Double.POSITIVE_INFINITY
+        var nodeXMax = Double.NEGATIVE_INFINITY
+        var nodeYMax = Double.NEGATIVE_INFINITY
+        for (child in node * NODE_CAPACITY until min((node + 1) * NODE_CAPACITY, childCount)) {
+          nodeXMin = min(nodeXMin, childBoxes[child * 4])
+          nodeYMin = min(nodeYMin, childBoxes[child * 4 + 1])
+          nodeXMax = max(nodeXMax, childBoxes[child * 4 + 2])
+          nodeYMax = max(nodeYMax, childBoxes[child * 4 + 3])
+        }
+        nodeBoxes[node * 4] = nodeXMin
+        nodeBoxes[node * 4 + 1] = nodeYMin
+        nodeBoxes[node * 4 + 2] = nodeXMax
+        nodeBoxes[node * 4 + 3] = nodeYMax
+      }
+      levelBoxes.add(nodeBoxes)
+      childBoxes = nodeBoxes
+      childCount = nodeCount
+    }
+
+    added.clear()
+    removed.clear()
+    repackNeeded = false
+    repackCount++
+    repackNanos = System.nanoTime() - start
+  }
+
+  /**
+   * @return the graphic's geometry in the spatial reference of searches
+   */
+  private fun geometryOf(graphic: Graphic): Geometry? {
+    val geometry = graphic.geometry
+    if (geometry != null && spatialReference != null && geometry.spatialReference != null &&
+      spatialReference != geometry.spatialReference
+    ) {
+      return GeometryEngine.project(geometry, spatialReference)
+    }
+    return geometry
+  }
+
+  companion object {
+    private const val NODE_CAPACITY = 16
+    // the tree is packed again once the changes since it was packed are more than an eighth of the
+    // graphics, or 64 changes if that is more
+    private const val REPACK_DIVISOR = 8
+    private const val MIN_REPACK_CHANGES = 64
+
+    /**
+     * Orders boxes into vertical slices by the x of their centers, and each slice by the y of their
+     * centers, so that each run of boxes which makes up a leaf node is close together.
+     */
+    private fun strOrder(boxes: DoubleArray, count: Int): IntArray {
+      val order = IntArray(count) { it }
+      val xCenters = DoubleArray(count) { (boxes[it * 4] + boxes[it * 4 + 2]) / 2 }
+      val yCenters = DoubleArray(count) { (boxes[it * 4 + 1] + boxes[it * 4 + 3]) / 2 }
+      sort(order, 0, count, xCenters)
+      val leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY
+      val sliceSize = ceil(sqrt(leafCount.toDouble())).toInt() * NODE_CAPACITY
+      var sliceStart = 0
+      while (sliceStart < count) {
+        sort(order, sliceStart, min(sliceStart + sliceSize, count), yCenters)
+        sliceStart += sliceSize
+      }
+      return order
+    }
+
+    /**
+     * Sorts a range of indexes by their keys, without boxing them.
+     */
+    private fun sort(indexes: IntArray, fromIndex: Int, toIndex: Int, keys: DoubleArray) {
+      var from = fromIndex
+      var to = toIndex
+      while (to - from > 16) {
+        // median of three pivot
+        val a = keys[indexes[from]]
+        val b = keys[indexes[(from + to) ushr 1]]
+        val c = keys[indexes[to - 1]]
+        val pivot = max(min(a, b), min(max(a, b), c))
+        var i = from
+        var j = to - 1
+        while (i <= j) {
+          while (keys[indexes[i]] < pivot) {
+            i++
+          }
+          while (keys[indexes[j]] > pivot) {
+            j--
+          }
+          if (i <= j) {
+            val swap = indexes[i]
+            indexes[i++] = indexes[j]
+            indexes[j--] = swap
+          }
+        }
+        // recurse into the smaller side and loop on the larger, to bound the stack depth
+        if (j - from < to - i) {
+          sort(indexes, from, j + 1, keys)
+          from = i
+        } else {
+          sort(indexes, i, to, keys)
+          to = j + 1
+        }
+      }
+      for (i in from + 1 until to) {
+        val index = indexes[i]
+        var j = i - 1
+        while (j >= from && keys[indexes[j]] > keys[index]) {
+          indexes[j + 1] = indexes[j]
+          j--
+        }
+        indexes[j + 1] = index
+      }
+    }
+
+    private fun intersects(
+      boxes: DoubleArray, i: Int, xMin: Double, yMin: Double, xMax: Double, yMax: Double
+    ): Boolean {
+      return boxes[i * 4] <= xMax && boxes[i * 4 + 2] >= xMin && boxes[i * 4 + 1] <= yMax &&
+          boxes[i * 4 + 3] >= yMin
+    }
+
+    private fun boxDistance(boxes: DoubleArray, i: Int, x: Double, y: Double): Double {
+      val dx = max(0.0, max(boxes[i * 4] - x, x - boxes[i * 4 + 2]))
+      val dy = max(0.0, max(boxes[i * 4 + 1] - y, y - boxes[i * 4 + 3]))
+      return sqrt(dx * dx + dy * dy)
+    }
+
+    private fun distance(point: Point, geometry: Geometry?): Double {
+      if (geometry is Point) {
+        val dx = geometry.x - point.x
+        val dy = geometry.y - point.y
+        return sqrt(dx * dx + dy * dy)
+      }
+      return GeometryEngine.distanceBetween(point, geometry)
+    }
+  }
+}
@@ -49,6 +49,8 @@ import kotlin.math.roundToInt
 class MainActivity : AppCompatActivity() {
 
   private val stopsOverlay: GraphicsOverlay by lazy { GraphicsOverlay() }
+  // resolves taps on stops on the device, the stops are in the spatial reference of the map
+  private val stopsIndex: GraphicIndex by lazy { GraphicIndex(stopsOverlay, null) }
   private val routeOverlay: GraphicsOverlay by lazy { GraphicsOverlay() }
   private var routeParameters: RouteParameters? = null
   private val routeTask: RouteTask by lazy {
@@ -61,6 +63,15 @@ class MainActivity : AppCompatActivity() {
 
   private val TAG: String = MainActivity::class.java.simpleName
 
+  // distance from a stop within which a tap selects it
+  private val identifyToleranceDp = 10.0
+  // half the size of the pin of a stop
+  private val stopSymbolHalfSizeDp: Double by lazy {
+    ContextCompat.getDrawable(this, R.drawable.pin_symbol)?.let {
+      it.intrinsicWidth / resources.displayMetrics.density / 2.0
+    } ?: 0.0
+  }
+
   override fun onCreate(savedInstanceState: Bundle?) {
     super.onCreate(savedInstanceState)
     setContentView(R.layout.activity_main)
@@ -159,7 +170,10 @@ class MainActivity : AppCompatActivity() {
 
         // move the selected graphic to the new location
         if (stopsOverlay.selectedGraphics.isNotEmpty()) {
-          stopsOverlay.selectedGraphics[0]?.geometry = mapView.screenToLocation(screenPoint)
+          stopsOverlay.selectedGraphics[0]?.let {
+            it.geometry = mapView.screenToLocation(screenPoint)
+            stopsIndex.update(it)
+          }
           updateRoute()
         }
         // ignore default double touch drag gesture
@@ -216,28 +230,24 @@ class MainActivity : AppCompatActivity() {
 
   /**
    * Selects a graphic if there is one at the provided tapped location or, if there is none, creates a new graphic.
+   * Stops are found from the index of the stops, and only identified where more than one is under the tap.
    *
    * @param screenPoint a point in screen space where the user tapped
    * */
   private fun addOrSelectGraphic(screenPoint: android.graphics.Point) {
-    // identify the selected graphic
-    val results = mapView.identifyGraphicsOverlayAsync(stopsOverlay, screenPoint, 10.0, false)
+    val locationPoint = mapView.screenToLocation(screenPoint) ?: return
+    // find the stops whose symbol is under the tap from the index of the stops
+    val tolerance = (identifyToleranceDp + stopSymbolHalfSizeDp) * mapView.unitsPerDensityIndependentPixel
+    val hitGraphics = stopsIndex.hitTest(locationPoint, tolerance)
+    if (hitGraphics.size <= 1) {
+      selectOrCreateStop(hitGraphics.firstOrNull(), locationPoint)
+      return
+    }
+    // where stops overlap, only an identify knows which is drawn on top
+    val results = mapView.identifyGraphicsOverlayAsync(stopsOverlay, screenPoint, identifyToleranceDp, false)
     results.addDoneListener {
       try {
-        val graphics = results.get().graphics
-        // unselect everything
-        if (stopsOverlay.selectedGraphics.isNotEmpty()) {
-          stopsOverlay.unselectGraphics(stopsOverlay.selectedGraphics)
-        }
-        // if the user tapped on something, select it
-        if (graphics.isNotEmpty()) {
-          val firstGraphic = graphics[0]
-          firstGraphic.isSelected = true
-        } else { // there is no graphic at this location
-          // make a new graphic at the tapped location
-          val locationPoint = mapView.screenToLocation(screenPoint)
-          createStopSymbol(stopsOverlay.graphics.size + 1, locationPoint)
-        }
+        selectOrCreateStop(results.get().graphics.firstOrNull(), locationPoint)
       } catch (e: Exception) {
         val error = "Error identifying graphic: ${e.stackTrace}"
         Log.e(TAG, error)
@@ -246,6 +256,26 @@ class MainActivity : AppCompatActivity() {
     }
   }
 
+  /**
+   * Selects the tapped stop or, if no stop was tapped, creates a new stop.
+   *
+   * @param graphic the tapped stop, or null if there is none
+   * @param locationPoint the point in map space where the user tapped
+   */
+  private fun selectOrCreateStop(graphic: Graphic?, locationPoint: Point) {
+    // unselect everything
+    if (stopsOverlay.selectedGraphics.isNotEmpty()) {
+      stopsOverlay.unselectGraphics(stopsOverlay.selectedGraphics)
+    }
+    // if the user tapped on something, select it
+    if (graphic != null) {
+      graphic.isSelected = true
+    } else { // there is no graphic at this location
+      // make a new graphic at the tapped location
+      createStopSymbol(stopsOverlay.graphics.size + 1, locationPoint)
+    }
+  }
+
   /**
    * Creates a composite symbol to represent a numbered stop.
    *
@@ -294,6 +324,7 @@ class MainActivity : AppCompatActivity() {
   }
 
   override fun onDestroy() {
+    stopsIndex.dispose()
     mapView.dispose()
     super.onDestroy()
   }